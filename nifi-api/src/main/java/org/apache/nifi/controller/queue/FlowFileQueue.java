@@ -60,6 +60,20 @@ public interface FlowFileQueue {
      */
     void purgeSwapFiles();
 
+    /**
+     * @param timeUnit the unit of time to return the value in
+     * @return the total amount of time that has been spent reading Swap Files in order to
+     *         swap FlowFiles back into this queue
+     */
+    long getSwapInTime(TimeUnit timeUnit);
+
+    /**
+     * @param timeUnit the unit of time to return the value in
+     * @return the total amount of time that has been spent writing Swap Files in order to
+     *         swap FlowFiles out of this queue
+     */
+    long getSwapOutTime(TimeUnit timeUnit);
+
     /**
      * Resets the comparator used by this queue to maintain order.
      *
@@ -154,6 +168,20 @@ public interface FlowFileQueue {
      */
     List<FlowFileRecord> poll(int maxResults, Set<FlowFileRecord> expiredRecords);
 
+    /**
+     * Polls up to maxResults FlowFiles from the queue, adding them to the
+     * given destination. No filter is evaluated for each FlowFile, so
+     * implementations are free to remove FlowFiles from the queue in bulk. The
+     * destination is not cleared, which allows a caller to reuse the same
+     * container for many calls.
+     *
+     * @param maxResults limits how many results can be polled
+     * @param expiredRecords for expired records
+     * @param destination the List to add the polled FlowFiles to
+     * @return the number of FlowFiles that were added to the destination
+     */
+    int poll(int maxResults, Set<FlowFileRecord> expiredRecords, List<FlowFileRecord> destination);
+
     /**
      * Drains flow files from the given source queue into the given destination
      * list.
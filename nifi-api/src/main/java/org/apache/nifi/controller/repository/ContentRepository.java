@@ -19,6 +19,8 @@ package org.apache.nifi.controller.repository;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Set;
@@ -175,6 +177,19 @@ public interface ContentRepository {
      */
     long importFrom(InputStream content, ContentClaim claim) throws IOException;
 
+    /**
+     * Imports all of the content from the given channel into the given claim.
+     * If the channel is a FileChannel and the repository stores content in
+     * files, the bytes may be transferred by the operating system without
+     * being copied into the Java heap.
+     *
+     * @return the size of the claim
+     * @param content to import from, which must be in blocking mode
+     * @param claim the claim to write imported content to
+     * @throws IOException if unable to read content
+     */
+    long importFrom(ReadableByteChannel content, ContentClaim claim) throws IOException;
+
     /**
      * Exports the content of the given claim to the given destination.
      *
@@ -226,6 +241,22 @@ public interface ContentRepository {
      */
     long exportTo(ContentClaim claim, OutputStream destination, long offset, long length) throws IOException;
 
+    /**
+     * Exports a subset of the content of the given claim, starting at offset
+     * and copying length bytes, to the given channel. If the repository stores
+     * content in files, the bytes may be transferred by the operating system
+     * without being copied into the Java heap, for instance when the
+     * destination is a FileChannel or a SocketChannel.
+     *
+     * @return the number of bytes copied
+     * @param claim to export from
+     * @param destination where to export data, which must be in blocking mode
+     * @param offset the offset into the claim at which the copy should begin
+     * @param length the number of bytes to copy
+     * @throws IOException if an IO error occurs.
+     */
+    long exportTo(ContentClaim claim, WritableByteChannel destination, long offset, long length) throws IOException;
+
     /**
      * @param claim to get size of
      * @return size in bytes of content for given claim
@@ -251,6 +282,20 @@ public interface ContentRepository {
      */
     OutputStream write(ContentClaim claim) throws IOException;
 
+    /**
+     * Ensures that the content of the given claims, all of which have been
+     * written and whose streams have been closed, is on disk if the repository
+     * is configured to guarantee that. This is called before the FlowFile
+     * Repository is updated to reference the claims, so that a FlowFile is
+     * never restored with content that was lost. A repository that syncs
+     * content as it is written, or that does not sync at all, need not do
+     * anything here.
+     *
+     * @param claims the claims to sync
+     * @throws IOException if unable to sync the content
+     */
+    void sync(Collection<ContentClaim> claims) throws IOException;
+
     /**
      * Purges the contents of the repository, as if the repository were newly
      * created.
@@ -33,6 +33,8 @@ public class ConnectionStatus implements Cloneable {
     private long queuedBytes;
     private int outputCount;
     private long outputBytes;
+    private long swapInMillis;
+    private long swapOutMillis;
 
     public String getId() {
         return id;
@@ -138,6 +140,28 @@ public class ConnectionStatus implements Cloneable {
         this.outputCount = outputCount;
     }
 
+    /**
+     * @return the total number of milliseconds that have been spent reading Swap Files for this connection
+     */
+    public long getSwapInMillis() {
+        return swapInMillis;
+    }
+
+    public void setSwapInMillis(long swapInMillis) {
+        this.swapInMillis = swapInMillis;
+    }
+
+    /**
+     * @return the total number of milliseconds that have been spent writing Swap Files for this connection
+     */
+    public long getSwapOutMillis() {
+        return swapOutMillis;
+    }
+
+    public void setSwapOutMillis(long swapOutMillis) {
+        this.swapOutMillis = swapOutMillis;
+    }
+
     @Override
     public ConnectionStatus clone() {
         final ConnectionStatus clonedObj = new ConnectionStatus();
@@ -154,6 +178,8 @@ public class ConnectionStatus implements Cloneable {
         clonedObj.sourceName = sourceName;
         clonedObj.destinationId = destinationId;
         clonedObj.destinationName = destinationName;
+        clonedObj.swapInMillis = swapInMillis;
+        clonedObj.swapOutMillis = swapOutMillis;
         return clonedObj;
     }
 
@@ -186,6 +212,10 @@ public class ConnectionStatus implements Cloneable {
         builder.append(outputCount);
         builder.append(", outputBytes=");
         builder.append(outputBytes);
+        builder.append(", swapInMillis=");
+        builder.append(swapInMillis);
+        builder.append(", swapOutMillis=");
+        builder.append(swapOutMillis);
         builder.append("]");
         return builder.toString();
     }
@@ -432,6 +432,8 @@ public class ProcessGroupStatus implements Cloneable {
             merged.setInputBytes(merged.getInputBytes() + statusToMerge.getInputBytes());
             merged.setOutputCount(merged.getOutputCount() + statusToMerge.getOutputCount());
             merged.setOutputBytes(merged.getOutputBytes() + statusToMerge.getOutputBytes());
+            merged.setSwapInMillis(merged.getSwapInMillis() + statusToMerge.getSwapInMillis());
+            merged.setSwapOutMillis(merged.getSwapOutMillis() + statusToMerge.getSwapOutMillis());
         }
         target.setConnectionStatus(mergedConnectionMap.values());
 
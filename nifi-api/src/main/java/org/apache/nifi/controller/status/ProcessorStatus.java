@@ -42,6 +42,7 @@ public class ProcessorStatus implements Cloneable {
     private long bytesReceived;
     private int flowFilesSent;
     private long bytesSent;
+    private long runDurationNanos;
 
     public String getId() {
         return id;
@@ -211,6 +212,18 @@ public class ProcessorStatus implements Cloneable {
         this.bytesSent = bytesSent;
     }
 
+    /**
+     * @return the Run Duration that the Processor is batching for, which is
+     * chosen at runtime if the Processor's Run Duration is adaptive
+     */
+    public long getRunDurationNanos() {
+        return runDurationNanos;
+    }
+
+    public void setRunDurationNanos(final long runDurationNanos) {
+        this.runDurationNanos = runDurationNanos;
+    }
+
     @Override
     public ProcessorStatus clone() {
         final ProcessorStatus clonedObj = new ProcessorStatus();
@@ -234,6 +247,7 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.flowFilesRemoved = flowFilesRemoved;
         clonedObj.runStatus = runStatus;
         clonedObj.type = type;
+        clonedObj.runDurationNanos = runDurationNanos;
         return clonedObj;
     }
 
@@ -268,6 +282,8 @@ public class ProcessorStatus implements Cloneable {
         builder.append(processingNanos);
         builder.append(", activeThreadCount=");
         builder.append(activeThreadCount);
+        builder.append(", runDurationNanos=");
+        builder.append(runDurationNanos);
         builder.append("]");
         return builder.toString();
     }
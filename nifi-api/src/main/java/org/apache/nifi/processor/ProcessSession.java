@@ -18,6 +18,8 @@ package org.apache.nifi.processor;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
@@ -713,6 +715,32 @@ public interface ProcessSession {
      */
     FlowFile importFrom(InputStream source, FlowFile destination);
 
+    /**
+     * Writes to the given FlowFile all content from the given channel. When
+     * the source is a FileChannel, the content may be transferred by the
+     * operating system without being copied into the Java heap, which makes
+     * this preferable to {@link #importFrom(InputStream, FlowFile)} for moving
+     * large amounts of data.
+     *
+     * @param source the channel from which content will be obtained, which
+     * must be in blocking mode
+     * @param destination the FlowFile whose content will be updated
+     * @return the updated destination FlowFile (new size)
+     * @throws IllegalStateException if detected that this method is being
+     * called from within a callback of another method in this session and for
+     * the given FlowFile(s)
+     * @throws FlowFileHandlingException if the given FlowFile is already
+     * transferred or removed or doesn't belong to this session. Automatic
+     * rollback will occur.
+     * @throws MissingFlowFileException if the given FlowFile content cannot be
+     * found. The FlowFile should no longer be reference, will be internally
+     * destroyed, and the session is automatically rolled back and what is left
+     * of the FlowFile is destroyed.
+     * @throws FlowFileAccessException if some IO problem occurs accessing
+     * FlowFile content
+     */
+    FlowFile importFrom(ReadableByteChannel source, FlowFile destination);
+
     /**
      * Writes the content of the given FlowFile to the given destination path.
      *
@@ -755,6 +783,32 @@ public interface ProcessSession {
      */
     void exportTo(FlowFile flowFile, OutputStream destination);
 
+    /**
+     * Writes the content of the given FlowFile to the given destination
+     * channel. When the destination is a FileChannel or a SocketChannel, the
+     * content may be transferred by the operating system without being copied
+     * into the Java heap, which makes this preferable to
+     * {@link #exportTo(FlowFile, OutputStream)} for moving large amounts of
+     * data.
+     *
+     * @param flowFile to export the content of
+     * @param destination to export the content to, which must be in blocking
+     * mode
+     * @throws IllegalStateException if detected that this method is being
+     * called from within a callback of another method in this session and for
+     * the given FlowFile(s)
+     * @throws FlowFileHandlingException if the given FlowFile is already
+     * transferred or removed or doesn't belong to this session. Automatic
+     * rollback will occur.
+     * @throws MissingFlowFileException if the given FlowFile content cannot be
+     * found. The FlowFile should no longer be reference, will be internally
+     * destroyed, and the session is automatically rolled back and what is left
+     * of the FlowFile is destroyed.
+     * @throws FlowFileAccessException if some IO problem occurs accessing
+     * FlowFile content
+     */
+    void exportTo(FlowFile flowFile, WritableByteChannel destination);
+
     /**
      * Returns a ProvenanceReporter that is tied to this ProcessSession.
      *
@@ -22,6 +22,7 @@ import java.util.List;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
 
@@ -108,6 +109,25 @@ public interface ProvenanceEventRepository {
      */
     QuerySubmission retrieveQuerySubmission(String queryIdentifier);
 
+    /**
+     * Searches the repository for the next page of events that match the
+     * given query, in ascending order of Event ID. Unlike
+     * {@link #submitQuery(Query)}, which gathers all of the results before
+     * any can be retrieved, this method stops searching as soon as the page
+     * is full, so only one page of events is held in memory at a time. The
+     * maximum number of results of the query is ignored.
+     *
+     * @param query to run
+     * @param continuationToken the token returned by
+     * {@link QueryPage#getContinuationToken()} for the previous page, or
+     * <code>null</code> to start with the first event in the repository
+     * @param pageSize the maximum number of events to return
+     * @return the page of matching events
+     * @throws IOException if unable to read from the repository
+     * @throws IllegalArgumentException if the continuation token is not valid
+     */
+    QueryPage getQueryPage(Query query, String continuationToken, int pageSize) throws IOException;
+
     /**
      * Submits a Lineage Computation to be completed and returns the
      * AsynchronousLineageResult that indicates the status of the request and
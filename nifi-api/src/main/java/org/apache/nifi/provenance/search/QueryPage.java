@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.search;
+
+import java.util.List;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+
+/**
+ * A page of the Provenance events that match a query, as returned by
+ * {@link org.apache.nifi.provenance.ProvenanceEventRepository#getQueryPage(Query, String, int)}
+ */
+public interface QueryPage {
+
+    /**
+     * @return the Provenance events on this page that match the query, in
+     * ascending order of Event ID
+     */
+    List<ProvenanceEventRecord> getMatchingEvents();
+
+    /**
+     * @return a token that identifies where the next page begins, which can
+     * be passed to
+     * {@link org.apache.nifi.provenance.ProvenanceEventRepository#getQueryPage(Query, String, int)}
+     * in order to retrieve the next page. The token is never <code>null</code>,
+     * so that the events that are added to the repository later can be
+     * retrieved even after {@link #hasMoreResults()} returns
+     * <code>false</code>
+     */
+    String getContinuationToken();
+
+    /**
+     * @return <code>true</code> if the page was filled before all of the
+     * events in the repository were searched, so that the next page may
+     * contain more events; <code>false</code> if the search reached the last
+     * event in the repository
+     */
+    boolean hasMoreResults();
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.util.RingBuffer.Filter;
+
+/**
+ * Evaluates a {@link Query} against individual Provenance Events, for repositories that search their events
+ * directly rather than through an index. Search terms are compared without regard to case and may contain the
+ * wildcards <code>*</code> and <code>?</code>. The patterns and data sizes of the query are parsed only once, when
+ * the filter is created.
+ */
+public class QueryFilter implements Filter<ProvenanceEventRecord> {
+
+    private final Query query;
+    private final Long minFileSize;
+    private final Long maxFileSize;
+
+    // the pattern for each search term that contains a wildcard, or null for those that do not
+    private final List<Pattern> patterns;
+
+    public QueryFilter(final Query query) {
+        this.query = query;
+        this.minFileSize = query.getMinFileSize() == null ? null : DataUnit.parseDataSize(query.getMinFileSize(), DataUnit.B).longValue();
+        this.maxFileSize = query.getMaxFileSize() == null ? null : DataUnit.parseDataSize(query.getMaxFileSize(), DataUnit.B).longValue();
+
+        this.patterns = new ArrayList<>(query.getSearchTerms().size());
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            final String searchValue = searchTerm.getValue();
+            if (searchValue.contains("?") || searchValue.contains("*")) {
+                final String regex = searchValue.replace("?", ".").replace("*", ".*");
+                patterns.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+            } else {
+                patterns.add(null);
+            }
+        }
+    }
+
+    @Override
+    public boolean select(final ProvenanceEventRecord event) {
+        if (query.getStartDate() != null && query.getStartDate().getTime() > event.getEventTime()) {
+            return false;
+        }
+
+        if (query.getEndDate() != null && query.getEndDate().getTime() < event.getEventTime()) {
+            return false;
+        }
+
+        if (maxFileSize != null && event.getFileSize() > maxFileSize) {
+            return false;
+        }
+
+        if (minFileSize != null && event.getFileSize() < minFileSize) {
+            return false;
+        }
+
+        final List<SearchTerm> searchTerms = query.getSearchTerms();
+        for (int i = 0; i < searchTerms.size(); i++) {
+            final SearchTerm searchTerm = searchTerms.get(i);
+            final SearchableField searchableField = searchTerm.getSearchableField();
+            final String searchValue = searchTerm.getValue();
+            final Pattern pattern = patterns.get(i);
+
+            if (searchableField.isAttribute()) {
+                final String attributeName = searchableField.getIdentifier();
+
+                final String eventAttributeValue = event.getAttributes().get(attributeName);
+
+                if (pattern != null) {
+                    if (eventAttributeValue == null || eventAttributeValue.isEmpty()) {
+                        return false;
+                    }
+
+                    if (!pattern.matcher(eventAttributeValue).matches()) {
+                        return false;
+                    }
+                } else {
+                    if (!searchValue.equalsIgnoreCase(eventAttributeValue)) {
+                        return false;
+                    }
+                }
+            } else {
+                // if FlowFileUUID, search parent & child UUID's and the Source System's FlowFile UUID also, as the index does
+                if (searchableField.equals(SearchableFields.FlowFileUUID)) {
+                    if (matchesFlowFileUuid(event, searchValue, pattern)) {
+                        continue;
+                    }
+
+                    return false;
+                }
+
+                final Object fieldValue = getFieldValue(event, searchableField);
+                if (fieldValue == null) {
+                    return false;
+                }
+
+                if (pattern != null) {
+                    if (!pattern.matcher(String.valueOf(fieldValue)).matches()) {
+                        return false;
+                    }
+                } else {
+                    if (!searchValue.equalsIgnoreCase(String.valueOf(fieldValue))) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matchesFlowFileUuid(final ProvenanceEventRecord event, final String searchValue, final Pattern pattern) {
+        if (matches(event.getFlowFileUuid(), searchValue, pattern)) {
+            return true;
+        }
+
+        for (final String uuid : event.getParentUuids()) {
+            if (matches(uuid, searchValue, pattern)) {
+                return true;
+            }
+        }
+
+        for (final String uuid : event.getChildUuids()) {
+            if (matches(uuid, searchValue, pattern)) {
+                return true;
+            }
+        }
+
+        // a RECEIVE event is also found by the UUID that the Source System uses to refer to the data
+        final String sourceIdentifier = event.getSourceSystemFlowFileIdentifier();
+        if (event.getEventType() == ProvenanceEventType.RECEIVE && sourceIdentifier != null) {
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                return matches(sourceIdentifier.substring(lastColon + 1), searchValue, pattern);
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean matches(final String value, final String searchValue, final Pattern pattern) {
+        if (value == null) {
+            return false;
+        }
+        return pattern == null ? searchValue.equalsIgnoreCase(value) : pattern.matcher(value).matches();
+    }
+
+    private Object getFieldValue(final ProvenanceEventRecord record, final SearchableField field) {
+        if (SearchableFields.AlternateIdentifierURI.equals(field)) {
+            return record.getAlternateIdentifierUri();
+        }
+        if (SearchableFields.ComponentID.equals(field)) {
+            return record.getComponentId();
+        }
+        if (SearchableFields.Details.equals(field)) {
+            return record.getDetails();
+        }
+        if (SearchableFields.EventTime.equals(field)) {
+            return record.getEventTime();
+        }
+        if (SearchableFields.EventType.equals(field)) {
+            return record.getEventType();
+        }
+        if (SearchableFields.Filename.equals(field)) {
+            return record.getAttributes().get(CoreAttributes.FILENAME.key());
+        }
+        if (SearchableFields.FileSize.equals(field)) {
+            return record.getFileSize();
+        }
+        if (SearchableFields.FlowFileUUID.equals(field)) {
+            return record.getFlowFileUuid();
+        }
+        if (SearchableFields.LineageStartDate.equals(field)) {
+            return record.getLineageStartDate();
+        }
+        if (SearchableFields.Relationship.equals(field)) {
+            return record.getRelationship();
+        }
+        if (SearchableFields.TransitURI.equals(field)) {
+            return record.getTransitUri();
+        }
+        if (SearchableFields.ContentClaimSection.equals(field)) {
+            return record.getContentClaimSection();
+        }
+        if (SearchableFields.ContentClaimContainer.equals(field)) {
+            return record.getContentClaimContainer();
+        }
+        if (SearchableFields.ContentClaimIdentifier.equals(field)) {
+            return record.getContentClaimIdentifier();
+        }
+        if (SearchableFields.ContentClaimOffset.equals(field)) {
+            return record.getContentClaimOffset();
+        }
+        if (SearchableFields.SourceQueueIdentifier.equals(field)) {
+            return record.getSourceQueueIdentifier();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.util.List;
+
+import org.apache.nifi.provenance.search.QueryPage;
+
+public class StandardQueryPage implements QueryPage {
+
+    private final List<ProvenanceEventRecord> matchingEvents;
+    private final long nextEventId;
+    private final boolean moreResults;
+
+    /**
+     * @param matchingEvents the events on the page, in ascending order of Event ID
+     * @param nextEventId the ID of the event at which the search for the next page should begin
+     * @param moreResults whether or not the page was filled before the search reached the last event in the repository
+     */
+    public StandardQueryPage(final List<ProvenanceEventRecord> matchingEvents, final long nextEventId, final boolean moreResults) {
+        this.matchingEvents = matchingEvents;
+        this.nextEventId = nextEventId;
+        this.moreResults = moreResults;
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getMatchingEvents() {
+        return matchingEvents;
+    }
+
+    @Override
+    public String getContinuationToken() {
+        return Long.toString(nextEventId);
+    }
+
+    @Override
+    public boolean hasMoreResults() {
+        return moreResults;
+    }
+
+    /**
+     * @return the ID of the event at which the search for the next page should begin
+     */
+    public long getNextEventId() {
+        return nextEventId;
+    }
+
+    /**
+     * @param continuationToken a token returned by {@link #getContinuationToken()}, or <code>null</code>
+     * @return the ID of the event at which the search for the page identified by the given token should begin,
+     *         which is 0 if the token is <code>null</code>
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static long getFirstEventId(final String continuationToken) {
+        if (continuationToken == null) {
+            return 0L;
+        }
+
+        final long eventId;
+        try {
+            eventId = Long.parseLong(continuationToken);
+        } catch (final NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, nfe);
+        }
+
+        if (eventId < 0L) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+        }
+        return eventId;
+    }
+
+    @Override
+    public String toString() {
+        return "StandardQueryPage[events=" + matchingEvents.size() + ", continuationToken=" + getContinuationToken() + "]";
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.APPEND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ATTRIBUTE_REFERENCE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ATTR_NAME;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.CONTAINS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ENDS_WITH;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EQUALS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EQUALS_IGNORE_CASE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EXPRESSION;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.FUNCTION_CALL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.IS_EMPTY;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.IS_NULL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.NOT_NULL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.PREPEND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.STARTS_WITH;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.STRING_LITERAL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_AFTER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_AFTER_LAST;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_BEFORE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_BEFORE_LAST;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_LOWER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_UPPER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TRIM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.runtime.tree.Tree;
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.compiled.CompiledBooleanEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.compiled.CompiledExpression;
+import org.apache.nifi.attribute.expression.language.evaluation.compiled.CompiledStringEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.literals.StringLiteralEvaluator;
+
+/**
+ * Compiles the most common shape of Expression, a single attribute reference followed by a chain of String
+ * functions with literal arguments, into a {@link CompiledExpression}. Expressions of any other shape are left to
+ * the interpreted Evaluators that are built by {@link Query}.
+ */
+final class ExpressionCompiler {
+
+    /**
+     * System property that may be set to <code>false</code> in order to always use the interpreted Evaluators
+     */
+    static final String COMPILE_PROPERTY = "nifi.expression.language.compile";
+
+    private ExpressionCompiler() {
+    }
+
+    static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(COMPILE_PROPERTY));
+    }
+
+    /**
+     * @param tree an EXPRESSION tree, as returned by {@link Query#compileTree(String)}
+     * @return an Evaluator that is equivalent to the interpreted Evaluator for the given tree, or <code>null</code> if
+     *         the Expression uses a function or argument that is not supported by the compiler
+     */
+    static Evaluator<?> compile(final Tree tree) {
+        if (tree.getType() != EXPRESSION || tree.getChildCount() == 0) {
+            return null;
+        }
+
+        final String attributeName = getAttributeName(tree.getChild(0));
+        if (attributeName == null) {
+            return null;
+        }
+
+        final List<Integer> opCodes = new ArrayList<>();
+        final List<String> arguments = new ArrayList<>();
+        int predicateOpCode = 0;
+        String predicateArgument = null;
+        String token = null;
+
+        for (int i = 1; i < tree.getChildCount(); i++) {
+            final Tree functionTree = tree.getChild(i);
+            if (functionTree.getType() != FUNCTION_CALL || predicateOpCode != 0) {
+                // a function applied to the result of a Boolean function is not supported
+                return null;
+            }
+
+            final Tree functionNameTree = functionTree.getChild(0);
+            final int argCount = functionTree.getChildCount() - 1;
+            final String argument;
+            if (argCount == 0) {
+                argument = null;
+            } else if (argCount == 1) {
+                argument = getLiteralValue(functionTree.getChild(1));
+                if (argument == null) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+
+            final int stringOpCode = getStringOpCode(functionNameTree.getType(), argCount);
+            if (stringOpCode != 0) {
+                opCodes.add(stringOpCode);
+                arguments.add(argument);
+            } else {
+                predicateOpCode = getPredicateOpCode(functionNameTree.getType(), argCount);
+                if (predicateOpCode == 0) {
+                    return null;
+                }
+                predicateArgument = argument;
+            }
+
+            token = functionNameTree.getText();
+        }
+
+        final int[] opCodeArray = new int[opCodes.size()];
+        for (int i = 0; i < opCodeArray.length; i++) {
+            opCodeArray[i] = opCodes.get(i);
+        }
+
+        final CompiledExpression expression = new CompiledExpression(attributeName, opCodeArray, arguments.toArray(new String[arguments.size()]),
+            predicateOpCode, predicateArgument);
+
+        final Evaluator<?> evaluator;
+        if (expression.isPredicate()) {
+            evaluator = new CompiledBooleanEvaluator(expression);
+        } else {
+            evaluator = new CompiledStringEvaluator(expression);
+        }
+
+        evaluator.setToken(token);
+        return evaluator;
+    }
+
+    private static int getStringOpCode(final int functionType, final int argCount) {
+        if (argCount == 0) {
+            switch (functionType) {
+                case TO_UPPER:
+                    return CompiledExpression.TO_UPPER;
+                case TO_LOWER:
+                    return CompiledExpression.TO_LOWER;
+                case TRIM:
+                    return CompiledExpression.TRIM;
+                default:
+                    return 0;
+            }
+        }
+
+        switch (functionType) {
+            case SUBSTRING_BEFORE:
+                return CompiledExpression.SUBSTRING_BEFORE;
+            case SUBSTRING_BEFORE_LAST:
+                return CompiledExpression.SUBSTRING_BEFORE_LAST;
+            case SUBSTRING_AFTER:
+                return CompiledExpression.SUBSTRING_AFTER;
+            case SUBSTRING_AFTER_LAST:
+                return CompiledExpression.SUBSTRING_AFTER_LAST;
+            case APPEND:
+                return CompiledExpression.APPEND;
+            case PREPEND:
+                return CompiledExpression.PREPEND;
+            default:
+                return 0;
+        }
+    }
+
+    private static int getPredicateOpCode(final int functionType, final int argCount) {
+        if (argCount == 0) {
+            switch (functionType) {
+                case IS_NULL:
+                    return CompiledExpression.IS_NULL;
+                case NOT_NULL:
+                    return CompiledExpression.NOT_NULL;
+                case IS_EMPTY:
+                    return CompiledExpression.IS_EMPTY;
+                default:
+                    return 0;
+            }
+        }
+
+        switch (functionType) {
+            case EQUALS:
+                return CompiledExpression.EQUALS;
+            case EQUALS_IGNORE_CASE:
+                return CompiledExpression.EQUALS_IGNORE_CASE;
+            case STARTS_WITH:
+                return CompiledExpression.STARTS_WITH;
+            case ENDS_WITH:
+                return CompiledExpression.ENDS_WITH;
+            case CONTAINS:
+                return CompiledExpression.CONTAINS;
+            default:
+                return 0;
+        }
+    }
+
+    private static String getAttributeName(final Tree subjectTree) {
+        if (subjectTree.getType() != ATTRIBUTE_REFERENCE || subjectTree.getChildCount() != 1) {
+            return null;
+        }
+
+        final Tree nameTree = subjectTree.getChild(0);
+        if (nameTree.getType() != ATTR_NAME || nameTree.getChildCount() != 1) {
+            return null;
+        }
+
+        return unescape(nameTree.getChild(0).getText());
+    }
+
+    private static String getLiteralValue(final Tree argTree) {
+        if (argTree.getType() != STRING_LITERAL) {
+            return null;
+        }
+
+        return unescape(argTree.getText());
+    }
+
+    /**
+     * Resolves the text of a literal exactly as the interpreted StringLiteralEvaluator would, or returns
+     * <code>null</code> if the literal contains embedded Expressions, which are not supported
+     */
+    private static String unescape(final String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.length() >= 2 && !Query.extractExpressionRanges(text).isEmpty()) {
+            return null;
+        }
+
+        return new StringLiteralEvaluator(text).evaluate(null).getValue();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.nifi.flowfile.FlowFile;
+
+/**
+ * A read-only view of all of the values that an Expression is able to reference: the additional attributes
+ * that were provided, the FlowFile's attributes, the FlowFile's properties (flowFileId, fileSize, entryDate and
+ * lineageStartDate), environment variables, and system properties, in that order of precedence.
+ *
+ * Nothing is copied when the map is created. Each call to {@link #get(Object)} or {@link #containsKey(Object)}
+ * looks the name up in each source in turn. Only the bulk views ({@link #entrySet()}, {@link #keySet()} and
+ * {@link #values()}) require that the sources be merged, and this is done when they are first requested.
+ */
+final class LayeredExpressionMap extends AbstractMap<String, String> {
+
+    private static final String FLOWFILE_ID = "flowFileId";
+    private static final String FILE_SIZE = "fileSize";
+    private static final String ENTRY_DATE = "entryDate";
+    private static final String LINEAGE_START_DATE = "lineageStartDate";
+
+    private final Map<String, String> additionalAttributes;
+    private final FlowFile flowFile;
+    private final Map<String, String> attributes;
+    private final Map<String, String> environment;
+    private final Map<?, ?> systemProperties;
+
+    private Set<Map.Entry<String, String>> entrySet;
+
+    LayeredExpressionMap(final FlowFile flowFile, final Map<String, String> additionalAttributes) {
+        this.flowFile = flowFile;
+        this.attributes = flowFile == null ? Collections.<String, String> emptyMap() : flowFile.getAttributes();
+        this.additionalAttributes = additionalAttributes == null ? Collections.<String, String> emptyMap() : additionalAttributes;
+        this.environment = System.getenv();
+        this.systemProperties = System.getProperties();
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null Keys are not allowed");
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        String value = additionalAttributes.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = attributes.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = getFlowFileProperty((String) key);
+        if (value != null) {
+            return value;
+        }
+
+        value = environment.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        final Object sysPropValue = systemProperties.get(key);
+        return sysPropValue == null ? null : String.valueOf(sysPropValue);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+
+        return additionalAttributes.containsKey(key) || attributes.containsKey(key) || isFlowFileProperty((String) key)
+            || environment.containsKey(key) || systemProperties.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        final int flowFilePropertyCount = flowFile == null ? 0 : 4;
+        return additionalAttributes.size() + attributes.size() + flowFilePropertyCount + environment.size() + systemProperties.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Collections.unmodifiableSet(merge().entrySet());
+        }
+
+        return entrySet;
+    }
+
+    private Map<String, String> merge() {
+        // add the sources in reverse order of precedence so that higher-precedence values replace the others
+        final Map<String, String> merged = new HashMap<>();
+        for (final Map.Entry<?, ?> entry : systemProperties.entrySet()) {
+            merged.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        merged.putAll(environment);
+        if (flowFile != null) {
+            merged.put(FLOWFILE_ID, getFlowFileProperty(FLOWFILE_ID));
+            merged.put(FILE_SIZE, getFlowFileProperty(FILE_SIZE));
+            merged.put(ENTRY_DATE, getFlowFileProperty(ENTRY_DATE));
+            merged.put(LINEAGE_START_DATE, getFlowFileProperty(LINEAGE_START_DATE));
+        }
+        merged.putAll(attributes);
+        merged.putAll(additionalAttributes);
+        return merged;
+    }
+
+    private boolean isFlowFileProperty(final String key) {
+        return flowFile != null && (FLOWFILE_ID.equals(key) || FILE_SIZE.equals(key) || ENTRY_DATE.equals(key) || LINEAGE_START_DATE.equals(key));
+    }
+
+    private String getFlowFileProperty(final String key) {
+        if (flowFile == null) {
+            return null;
+        }
+
+        switch (key) {
+            case FLOWFILE_ID:
+                return String.valueOf(flowFile.getId());
+            case FILE_SIZE:
+                return String.valueOf(flowFile.getSize());
+            case ENTRY_DATE:
+                return String.valueOf(flowFile.getEntryDate());
+            case LINEAGE_START_DATE:
+                return String.valueOf(flowFile.getLineageStartDate());
+            default:
+                return null;
+        }
+    }
+}
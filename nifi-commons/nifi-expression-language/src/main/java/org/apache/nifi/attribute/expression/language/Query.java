@@ -18,13 +18,13 @@ package org.apache.nifi.attribute.expression.language;
 
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionLexer;
@@ -96,6 +96,7 @@ import org.apache.nifi.attribute.expression.language.evaluation.functions.UrlEnc
 import org.apache.nifi.attribute.expression.language.evaluation.functions.UuidEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.literals.BooleanLiteralEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.literals.NumberLiteralEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.literals.StringConstantEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.literals.StringLiteralEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.literals.ToLiteralEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.reduce.CountEvaluator;
@@ -198,6 +199,10 @@ import org.apache.nifi.attribute.expression.language.evaluation.selection.Mappin
  */
 public class Query {
 
+    // Expressions that are embedded in String literals, keyed by the literal's node so that they are parsed only once,
+    // rather than each time that an Evaluator is built for the tree that holds the literal
+    private static final Map<Tree, List<Tree>> embeddedTreeCache = Collections.synchronizedMap(new WeakHashMap<Tree, List<Tree>>());
+
     private final String query;
     private final Tree tree;
     private final Evaluator<?> evaluator;
@@ -361,6 +366,19 @@ public class Query {
 
     static String evaluateExpression(final Tree tree, final String queryText, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
         final Object evaluated = Query.fromTree(tree, queryText).evaluate(expressionMap).getValue();
+        return toEvaluatedString(evaluated, decorator);
+    }
+
+    /**
+     * Evaluates the given Evaluator against the given expression map. The Evaluator must have been
+     * obtained from {@link #buildReusableEvaluator(Tree, boolean)}, as it is not rebuilt or reset between calls.
+     */
+    static String evaluateExpression(final Evaluator<?> evaluator, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
+        final Object evaluated = evaluator.evaluate(expressionMap).getValue();
+        return toEvaluatedString(evaluated, decorator);
+    }
+
+    private static String toEvaluatedString(final Object evaluated, final AttributeValueDecorator decorator) {
         if (evaluated == null) {
             return null;
         }
@@ -423,148 +441,170 @@ public class Query {
     }
 
     static Map<String, String> createExpressionMap(final FlowFile flowFile, final Map<String, String> additionalAttributes) {
-        final Map<String, String> attributeMap = flowFile == null ? Collections.<String, String> emptyMap() : flowFile.getAttributes();
-        final Map<String, String> additionalOrEmpty = additionalAttributes == null ? Collections.<String, String> emptyMap() : additionalAttributes;
-        final Map<String, String> envMap = System.getenv();
-        final Map<?, ?> sysProps = System.getProperties();
-
-        final Map<String, String> flowFileProps = new HashMap<>();
-        if (flowFile != null) {
-            flowFileProps.put("flowFileId", String.valueOf(flowFile.getId()));
-            flowFileProps.put("fileSize", String.valueOf(flowFile.getSize()));
-            flowFileProps.put("entryDate", String.valueOf(flowFile.getEntryDate()));
-            flowFileProps.put("lineageStartDate", String.valueOf(flowFile.getLineageStartDate()));
-        }
+        return new LayeredExpressionMap(flowFile, additionalAttributes);
+    }
 
-        return wrap(additionalOrEmpty, attributeMap, flowFileProps, envMap, sysProps);
+    public static Query fromTree(final Tree tree, final String text) {
+        return new Query(text, tree, buildEvaluator(tree));
     }
 
-    private static Map<String, String> wrap(final Map<String, String> additional, final Map<String, String> attributes, final Map<String, String> flowFileProps,
-        final Map<String, String> env, final Map<?, ?> sysProps) {
-        @SuppressWarnings("rawtypes")
-        final Map[] maps = new Map[] {additional, attributes, flowFileProps, env, sysProps};
-
-        return new Map<String, String>() {
-            @Override
-            public int size() {
-                int size = 0;
-                for (final Map<?, ?> map : maps) {
-                    size += map.size();
-                }
-                return size;
-            }
+    /**
+     * Builds an Evaluator for the given tree that may be evaluated any number of times, concurrently,
+     * without being rebuilt. Evaluators that reference multiple attributes or reduce their results
+     * keep per-evaluation state, so if the tree requires any of these, <code>null</code> is returned
+     * and the caller must instead build a new Query for each evaluation.
+     *
+     * @param tree the tree, as returned by {@link #compileTree(String)}
+     * @param compile whether or not Expressions that are supported by the {@link ExpressionCompiler} should be
+     *            compiled rather than interpreted
+     * @return a reusable Evaluator, or <code>null</code> if the tree cannot be evaluated by a shared Evaluator
+     */
+    static Evaluator<?> buildReusableEvaluator(final Tree tree, final boolean compile) {
+        if (!isStateless(tree)) {
+            return null;
+        }
 
-            @Override
-            public boolean isEmpty() {
-                for (final Map<?, ?> map : maps) {
-                    if (!map.isEmpty()) {
-                        return false;
-                    }
-                }
-                return true;
+        if (compile) {
+            final Evaluator<?> compiled = ExpressionCompiler.compile(tree);
+            if (compiled != null) {
+                return compiled;
             }
+        }
 
-            @Override
-            public boolean containsKey(final Object key) {
-                if (key == null) {
-                    return false;
-                }
-                if (!(key instanceof String)) {
-                    return false;
-                }
+        return buildEvaluator(tree);
+    }
 
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsKey(key)) {
-                        return true;
-                    }
-                }
+    private static boolean isStateless(final Tree tree) {
+        switch (tree.getType()) {
+            case MULTI_ATTRIBUTE_REFERENCE:
+            case COUNT:
+            case JOIN:
+                return false;
+        }
+
+        for (final Tree embedded : getEmbeddedTrees(tree)) {
+            if (!isStateless(embedded)) {
                 return false;
             }
+        }
 
-            @Override
-            public boolean containsValue(final Object value) {
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsValue(value)) {
-                        return true;
-                    }
-                }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (!isStateless(tree.getChild(i))) {
                 return false;
             }
+        }
 
-            @Override
-            @SuppressWarnings("rawtypes")
-            public String get(final Object key) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Null Keys are not allowed");
-                }
-                if (!(key instanceof String)) {
-                    return null;
-                }
+        return true;
+    }
 
-                for (final Map map : maps) {
-                    final Object val = map.get(key);
-                    if (val != null) {
-                        return String.valueOf(val);
-                    }
-                }
-                return null;
-            }
+    /**
+     * Finds the subtrees of the given tree that will always evaluate to the same value, regardless of the attributes
+     * that they are evaluated against and of when they are evaluated. Each node is visited once, after its children.
+     */
+    private static Set<Tree> findConstantTrees(final Tree tree) {
+        final Set<Tree> constantTrees = Collections.newSetFromMap(new IdentityHashMap<Tree, Boolean>());
+        addConstantTrees(tree, constantTrees);
+        return constantTrees;
+    }
 
-            @Override
-            public String put(String key, String value) {
-                throw new UnsupportedOperationException();
+    private static boolean addConstantTrees(final Tree tree, final Set<Tree> constantTrees) {
+        // visit every child, even after finding one that is not constant, so that its constant siblings are found too
+        boolean constant = true;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (!addConstantTrees(tree.getChild(i), constantTrees)) {
+                constant = false;
             }
+        }
 
-            @Override
-            public String remove(final Object key) {
-                throw new UnsupportedOperationException();
-            }
+        switch (tree.getType()) {
+            case ATTRIBUTE_REFERENCE:
+            case MULTI_ATTRIBUTE_REFERENCE:
+            case UUID:
+            case NOW:
+            case NEXT_INT:
+            case IP:
+            case HOSTNAME:
+            case COUNT:
+            case JOIN:
+                constant = false;
+                break;
+        }
 
-            @Override
-            public void putAll(final Map<? extends String, ? extends String> m) {
-                throw new UnsupportedOperationException();
-            }
+        if (constant && hasEmbeddedExpressions(tree)) {
+            constant = false;
+        }
 
-            @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
-            }
+        if (constant) {
+            constantTrees.add(tree);
+        }
+        return constant;
+    }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<String> keySet() {
-                final Set<String> keySet = new HashSet<>();
-                for (final Map map : maps) {
-                    keySet.addAll(map.keySet());
-                }
-                return keySet;
-            }
+    private static boolean hasEmbeddedExpressions(final Tree tree) {
+        final String text = tree.getText();
+        return text != null && text.contains("${") && !extractExpressionRanges(text).isEmpty();
+    }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Collection<String> values() {
-                final Set<String> values = new HashSet<>();
-                for (final Map map : maps) {
-                    values.addAll(map.values());
-                }
-                return values;
-            }
+    /**
+     * String literals and attribute names may themselves contain Expressions, such as ${'${a}'}.
+     * These are not part of the tree but are compiled when the literal's evaluator is built.
+     */
+    private static List<Tree> getEmbeddedTrees(final Tree tree) {
+        if (!hasEmbeddedExpressions(tree)) {
+            return Collections.emptyList();
+        }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<java.util.Map.Entry<String, String>> entrySet() {
-                final Set<java.util.Map.Entry<String, String>> entrySet = new HashSet<>();
-                for (final Map map : maps) {
-                    entrySet.addAll(map.entrySet());
-                }
-                return entrySet;
-            }
+        final List<Tree> cached = embeddedTreeCache.get(tree);
+        if (cached != null) {
+            return cached;
+        }
 
-        };
+        final String text = tree.getText();
+        final List<Tree> embedded = new ArrayList<>();
+        for (final Range range : extractExpressionRanges(text)) {
+            embedded.add(compileTree(text.substring(range.getStart(), range.getEnd() + 1)));
+        }
+
+        final List<Tree> unmodifiable = Collections.unmodifiableList(embedded);
+        embeddedTreeCache.put(tree, unmodifiable);
+        return unmodifiable;
     }
 
-    public static Query fromTree(final Tree tree, final String text) {
-        return new Query(text, tree, buildEvaluator(tree));
+    /**
+     * Evaluates the given constant Evaluator once and replaces it with a literal Evaluator that holds the result.
+     * If the evaluation fails, the original Evaluator is returned so that the failure surfaces when the Expression
+     * is evaluated, as it would without folding.
+     */
+    private static Evaluator<?> foldConstant(final Evaluator<?> evaluator) {
+        final Object value;
+        try {
+            value = evaluator.evaluate(Collections.<String, String> emptyMap()).getValue();
+        } catch (final Exception e) {
+            return evaluator;
+        }
+
+        if (value == null) {
+            return evaluator;
+        }
+
+        final Evaluator<?> folded;
+        switch (evaluator.getResultType()) {
+            case STRING:
+                folded = new StringConstantEvaluator((String) value);
+                break;
+            case NUMBER:
+                folded = new NumberLiteralEvaluator(String.valueOf(value));
+                break;
+            case BOOLEAN:
+                folded = new BooleanLiteralEvaluator((Boolean) value);
+                break;
+            default:
+                // Dates are mutable, so they cannot be shared between evaluations
+                return evaluator;
+        }
+
+        folded.setToken(evaluator.getToken());
+        return folded;
     }
 
     public static Tree compileTree(final String query) throws AttributeExpressionLanguageParsingException {
@@ -723,7 +763,12 @@ public class Query {
         return "Query [" + query + "]";
     }
 
-    private static Evaluator<String> newStringLiteralEvaluator(final String literalValue) {
+    /**
+     * Builds an Evaluator for the text of the given String literal or attribute name node, which may contain
+     * embedded Expressions
+     */
+    private static Evaluator<String> newStringLiteralEvaluator(final Tree literalTree) {
+        final String literalValue = literalTree.getText();
         if (literalValue == null || literalValue.length() < 2) {
             return new StringLiteralEvaluator(literalValue);
         }
@@ -733,23 +778,23 @@ public class Query {
             return new StringLiteralEvaluator(literalValue);
         }
 
+        final List<Tree> embeddedTrees = getEmbeddedTrees(literalTree);
         final List<Evaluator<?>> evaluators = new ArrayList<>();
 
         int lastIndex = 0;
-        for (final Range range : ranges) {
+        for (int i = 0; i < ranges.size(); i++) {
+            final Range range = ranges.get(i);
             if (range.getStart() > lastIndex) {
-                evaluators.add(newStringLiteralEvaluator(literalValue.substring(lastIndex, range.getStart())));
+                evaluators.add(new StringLiteralEvaluator(literalValue.substring(lastIndex, range.getStart())));
             }
 
-            final String treeText = literalValue.substring(range.getStart(), range.getEnd() + 1);
-            evaluators.add(buildEvaluator(compileTree(treeText)));
+            evaluators.add(buildEvaluator(embeddedTrees.get(i)));
             lastIndex = range.getEnd() + 1;
         }
 
         final Range lastRange = ranges.get(ranges.size() - 1);
         if (lastRange.getEnd() + 1 < literalValue.length()) {
-            final String treeText = literalValue.substring(lastRange.getEnd() + 1);
-            evaluators.add(newStringLiteralEvaluator(treeText));
+            evaluators.add(new StringLiteralEvaluator(literalValue.substring(lastRange.getEnd() + 1)));
         }
 
         if (evaluators.size() == 1) {
@@ -765,12 +810,16 @@ public class Query {
     }
 
     private static Evaluator<?> buildEvaluator(final Tree tree) {
+        return buildEvaluator(tree, findConstantTrees(tree));
+    }
+
+    private static Evaluator<?> buildEvaluator(final Tree tree, final Set<Tree> constantTrees) {
         switch (tree.getType()) {
             case EXPRESSION: {
-                return buildExpressionEvaluator(tree);
+                return buildExpressionEvaluator(tree, constantTrees);
             }
             case ATTRIBUTE_REFERENCE: {
-                final Evaluator<?> childEvaluator = buildEvaluator(tree.getChild(0));
+                final Evaluator<?> childEvaluator = buildEvaluator(tree.getChild(0), constantTrees);
                 if (childEvaluator instanceof MultiAttributeEvaluator) {
                     return childEvaluator;
                 }
@@ -781,15 +830,15 @@ public class Query {
                 final Tree functionTypeTree = tree.getChild(0);
                 final int multiAttrType = functionTypeTree.getType();
                 if (multiAttrType == ANY_DELINEATED_VALUE || multiAttrType == ALL_DELINEATED_VALUES) {
-                    final Evaluator<String> delineatedValueEvaluator = toStringEvaluator(buildEvaluator(tree.getChild(1)));
-                    final Evaluator<String> delimiterEvaluator = toStringEvaluator(buildEvaluator(tree.getChild(2)));
+                    final Evaluator<String> delineatedValueEvaluator = toStringEvaluator(buildEvaluator(tree.getChild(1), constantTrees));
+                    final Evaluator<String> delimiterEvaluator = toStringEvaluator(buildEvaluator(tree.getChild(2), constantTrees));
 
                     return new DelineatedAttributeEvaluator(delineatedValueEvaluator, delimiterEvaluator, multiAttrType);
                 }
 
                 final List<String> attributeNames = new ArrayList<>();
                 for (int i = 1; i < tree.getChildCount(); i++) {  // skip the first child because that's the name of the multi-attribute function
-                    attributeNames.add(newStringLiteralEvaluator(tree.getChild(i).getText()).evaluate(null).getValue());
+                    attributeNames.add(newStringLiteralEvaluator(tree.getChild(i)).evaluate(null).getValue());
                 }
 
                 switch (multiAttrType) {
@@ -822,13 +871,13 @@ public class Query {
                 }
             }
             case ATTR_NAME: {
-                return newStringLiteralEvaluator(tree.getChild(0).getText());
+                return newStringLiteralEvaluator(tree.getChild(0));
             }
             case NUMBER: {
                 return new NumberLiteralEvaluator(tree.getText());
             }
             case STRING_LITERAL: {
-                return newStringLiteralEvaluator(tree.getText());
+                return newStringLiteralEvaluator(tree);
             }
             case TRUE:
             case FALSE:
@@ -840,7 +889,7 @@ public class Query {
                 return new NowEvaluator();
             }
             case TO_LITERAL: {
-                final Evaluator<?> argEvaluator = buildEvaluator(tree.getChild(0));
+                final Evaluator<?> argEvaluator = buildEvaluator(tree.getChild(0), constantTrees);
                 return new ToLiteralEvaluator(argEvaluator);
             }
             case IP: {
@@ -899,14 +948,14 @@ public class Query {
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private static Evaluator<?> buildExpressionEvaluator(final Tree tree) {
+    private static Evaluator<?> buildExpressionEvaluator(final Tree tree, final Set<Tree> constantTrees) {
         if (tree.getChildCount() == 0) {
             throw new AttributeExpressionLanguageParsingException("EXPRESSION tree node has no children");
         }
 
         final Evaluator<?> evaluator;
         if (tree.getChildCount() == 1) {
-            evaluator = buildEvaluator(tree.getChild(0));
+            evaluator = buildEvaluator(tree.getChild(0), constantTrees);
         } else {
             // we can chain together functions in the form of:
             // ${x:trim():substring(1,2):trim()}
@@ -914,7 +963,7 @@ public class Query {
             // subject is the function to its left (the first trim()), and its subject is the value of
             // the 'x' attribute. We accomplish this logic by iterating over all of the children of the
             // tree from the right-most child going left-ward.
-            evaluator = buildFunctionExpressionEvaluator(tree, 0);
+            evaluator = buildFunctionExpressionEvaluator(tree, 0, constantTrees);
         }
 
         Evaluator<?> chosenEvaluator = evaluator;
@@ -967,25 +1016,29 @@ public class Query {
             }
         }
 
+        if (constantTrees.contains(tree)) {
+            return foldConstant(chosenEvaluator);
+        }
+
         return chosenEvaluator;
     }
 
-    private static Evaluator<?> buildFunctionExpressionEvaluator(final Tree tree, final int offset) {
+    private static Evaluator<?> buildFunctionExpressionEvaluator(final Tree tree, final int offset, final Set<Tree> constantTrees) {
         if (tree.getChildCount() == 0) {
             throw new AttributeExpressionLanguageParsingException("EXPRESSION tree node has no children");
         }
         final int firstChildIndex = tree.getChildCount() - offset - 1;
         if (firstChildIndex == 0) {
-            return buildEvaluator(tree.getChild(0));
+            return buildEvaluator(tree.getChild(0), constantTrees);
         }
 
         final Tree functionTree = tree.getChild(firstChildIndex);
-        final Evaluator<?> subjectEvaluator = buildFunctionExpressionEvaluator(tree, offset + 1);
+        final Evaluator<?> subjectEvaluator = buildFunctionExpressionEvaluator(tree, offset + 1, constantTrees);
 
         final Tree functionNameTree = functionTree.getChild(0);
         final List<Evaluator<?>> argEvaluators = new ArrayList<>();
         for (int i = 1; i < functionTree.getChildCount(); i++) {
-            argEvaluators.add(buildEvaluator(functionTree.getChild(i)));
+            argEvaluators.add(buildEvaluator(functionTree.getChild(i), constantTrees));
         }
         return buildFunctionEvaluator(functionNameTree, subjectEvaluator, argEvaluators);
     }
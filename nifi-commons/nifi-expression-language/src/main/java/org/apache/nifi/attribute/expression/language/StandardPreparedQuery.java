@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
 import org.apache.nifi.expression.AttributeValueDecorator;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.exception.ProcessException;
@@ -31,10 +32,25 @@ public class StandardPreparedQuery implements PreparedQuery {
 
     private final List<String> queryStrings;
     private final Map<String, Tree> trees;
+    private final Map<String, Evaluator<?>> evaluators;
 
     public StandardPreparedQuery(final List<String> queryStrings, final Map<String, Tree> trees) {
+        this(queryStrings, trees, ExpressionCompiler.isEnabled());
+    }
+
+    StandardPreparedQuery(final List<String> queryStrings, final Map<String, Tree> trees, final boolean compile) {
         this.queryStrings = new ArrayList<>(queryStrings);
         this.trees = new HashMap<>(trees);
+
+        // Build the Evaluators once so that they can be shared by every evaluation. Trees whose
+        // Evaluators keep state between invocations still have to be rebuilt each time.
+        this.evaluators = new HashMap<>();
+        for (final Map.Entry<String, Tree> entry : trees.entrySet()) {
+            final Evaluator<?> evaluator = Query.buildReusableEvaluator(entry.getValue(), compile);
+            if (evaluator != null) {
+                evaluators.put(entry.getKey(), evaluator);
+            }
+        }
     }
 
     @Override
@@ -50,7 +66,14 @@ public class StandardPreparedQuery implements PreparedQuery {
             if (tree == null) {
                 sb.append(val);
             } else {
-                final String evaluated = Query.evaluateExpression(tree, val, attributes, decorator);
+                final Evaluator<?> evaluator = evaluators.get(val);
+                final String evaluated;
+                if (evaluator == null) {
+                    evaluated = Query.evaluateExpression(tree, val, attributes, decorator);
+                } else {
+                    evaluated = Query.evaluateExpression(evaluator, attributes, decorator);
+                }
+
                 if (evaluated != null) {
                     sb.append(evaluated);
                 }
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.evaluation.compiled;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A flattened form of an Expression that references a single attribute and applies a chain of String functions
+ * with literal arguments to it, optionally ending in a function that returns a Boolean. For example,
+ * <code>${filename:substringBefore('.'):toUpper():equals('X')}</code>.
+ * </p>
+ *
+ * <p>
+ * Rather than walking a graph of Evaluators, each of which allocates a QueryResult, the functions are stored
+ * as an array of op codes and an array of their arguments, and are applied to the attribute value in a single loop.
+ * Instances are immutable and may be shared across threads.
+ * </p>
+ */
+public final class CompiledExpression {
+
+    public static final int TO_UPPER = 1;
+    public static final int TO_LOWER = 2;
+    public static final int TRIM = 3;
+    public static final int SUBSTRING_BEFORE = 4;
+    public static final int SUBSTRING_BEFORE_LAST = 5;
+    public static final int SUBSTRING_AFTER = 6;
+    public static final int SUBSTRING_AFTER_LAST = 7;
+    public static final int APPEND = 8;
+    public static final int PREPEND = 9;
+
+    public static final int EQUALS = 101;
+    public static final int EQUALS_IGNORE_CASE = 102;
+    public static final int STARTS_WITH = 103;
+    public static final int ENDS_WITH = 104;
+    public static final int CONTAINS = 105;
+    public static final int IS_NULL = 106;
+    public static final int NOT_NULL = 107;
+    public static final int IS_EMPTY = 108;
+
+    private final String attributeName;
+    private final int[] opCodes;
+    private final String[] arguments;
+    private final int predicateOpCode;
+    private final String predicateArgument;
+
+    /**
+     * @param attributeName the name of the attribute that the Expression references
+     * @param opCodes the String functions to apply, in order
+     * @param arguments the argument for each of the String functions, or <code>null</code> for functions that take no argument
+     * @param predicateOpCode the Boolean function that is applied last, or 0 if the Expression returns a String
+     * @param predicateArgument the argument to the Boolean function, if it takes one
+     */
+    public CompiledExpression(final String attributeName, final int[] opCodes, final String[] arguments, final int predicateOpCode, final String predicateArgument) {
+        if (opCodes.length != arguments.length) {
+            throw new IllegalArgumentException("Each op code must have exactly one argument");
+        }
+
+        this.attributeName = attributeName;
+        this.opCodes = opCodes.clone();
+        this.arguments = arguments.clone();
+        this.predicateOpCode = predicateOpCode;
+        this.predicateArgument = predicateArgument;
+    }
+
+    public boolean isPredicate() {
+        return predicateOpCode != 0;
+    }
+
+    public String evaluateString(final Map<String, String> attributes) {
+        String value = attributes.get(attributeName);
+
+        for (int i = 0; i < opCodes.length; i++) {
+            final String argument = arguments[i];
+
+            switch (opCodes[i]) {
+                case TO_UPPER:
+                    value = value == null ? null : value.toUpperCase();
+                    break;
+                case TO_LOWER:
+                    value = value == null ? null : value.toLowerCase();
+                    break;
+                case TRIM:
+                    value = value == null ? null : value.trim();
+                    break;
+                case SUBSTRING_BEFORE: {
+                    if (value == null) {
+                        value = "";
+                    } else if (argument.length() > 0) {
+                        final int index = value.indexOf(argument);
+                        if (index >= 0) {
+                            value = value.substring(0, index);
+                        }
+                    }
+                    break;
+                }
+                case SUBSTRING_BEFORE_LAST: {
+                    if (value == null) {
+                        value = "";
+                    } else {
+                        final int index = value.lastIndexOf(argument);
+                        if (index >= 0) {
+                            value = value.substring(0, index);
+                        }
+                    }
+                    break;
+                }
+                case SUBSTRING_AFTER: {
+                    if (value == null) {
+                        value = "";
+                    } else if (argument.length() > 0) {
+                        final int index = value.indexOf(argument);
+                        if (index >= 0) {
+                            value = value.substring(index + argument.length());
+                        }
+                    }
+                    break;
+                }
+                case SUBSTRING_AFTER_LAST: {
+                    if (value == null) {
+                        value = "";
+                    } else {
+                        final int index = value.lastIndexOf(argument);
+                        if (index >= 0 && index < value.length()) {
+                            value = value.substring(index + argument.length());
+                        }
+                    }
+                    break;
+                }
+                case APPEND:
+                    value = value == null ? argument : value.concat(argument);
+                    break;
+                case PREPEND:
+                    value = value == null ? argument : argument.concat(value);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown op code: " + opCodes[i]);
+            }
+        }
+
+        return value;
+    }
+
+    public boolean evaluateBoolean(final Map<String, String> attributes) {
+        final String value = evaluateString(attributes);
+
+        switch (predicateOpCode) {
+            case EQUALS:
+                return value != null && value.equals(predicateArgument);
+            case EQUALS_IGNORE_CASE:
+                return value != null && value.equalsIgnoreCase(predicateArgument);
+            case STARTS_WITH:
+                return value != null && value.startsWith(predicateArgument);
+            case ENDS_WITH:
+                return value != null && value.endsWith(predicateArgument);
+            case CONTAINS:
+                return value != null && value.contains(predicateArgument);
+            case IS_NULL:
+                return value == null;
+            case NOT_NULL:
+                return value != null;
+            case IS_EMPTY:
+                return value == null || value.trim().isEmpty();
+            default:
+                throw new IllegalStateException("Expression does not return a Boolean");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.runtime.tree.Tree;
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestExpressionCompiler {
+
+    private static final List<String> COMPILED_EXPRESSIONS = Arrays.asList(
+        "${filename}",
+        "${'file name'}",
+        "${filename:toUpper()}",
+        "${filename:toLower():trim()}",
+        "${filename:substringBefore('.')}",
+        "${filename:substringBefore('')}",
+        "${filename:substringBeforeLast('.')}",
+        "${filename:substringAfter('.')}",
+        "${filename:substringAfterLast('.')}",
+        "${filename:substringAfterLast('')}",
+        "${filename:append('.bak'):prepend('old-')}",
+        "${filename:substringBefore('.'):toUpper():equals('X')}",
+        "${filename:equalsIgnoreCase('x.TXT')}",
+        "${filename:startsWith('x')}",
+        "${filename:endsWith('.txt')}",
+        "${filename:contains('.')}",
+        "${filename:isNull()}",
+        "${filename:notNull()}",
+        "${filename:trim():isEmpty()}",
+        "${filename:append('\\t')}");
+
+    private static final List<String> INTERPRETED_EXPRESSIONS = Arrays.asList(
+        "${filename:substring(1)}",
+        "${filename:equals(${other})}",
+        "${filename:append(1)}",
+        "${filename:isNull():not()}",
+        "${${other}:toUpper()}",
+        "${literal('abc'):toUpper()}",
+        "${filename:append('${other}')}");
+
+    @Test
+    public void testCompiledMatchesInterpreted() {
+        final List<Map<String, String>> attributeSets = new ArrayList<>();
+        attributeSets.add(new HashMap<String, String>());
+        attributeSets.add(attributes("x.txt"));
+        attributeSets.add(attributes("X.TXT.gz"));
+        attributeSets.add(attributes(""));
+        attributeSets.add(attributes("   "));
+        attributeSets.add(attributes("no-extension"));
+
+        for (final String expression : COMPILED_EXPRESSIONS) {
+            final Tree tree = Query.compileTree(expression);
+            final Evaluator<?> compiled = ExpressionCompiler.compile(tree);
+            assertNotNull("Expected " + expression + " to be compiled", compiled);
+
+            for (final Map<String, String> attributes : attributeSets) {
+                final Object expected = Query.fromTree(tree, expression).evaluate(attributes).getValue();
+                final Object actual = compiled.evaluate(attributes).getValue();
+                assertEquals(expression + " with attributes " + attributes, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedExpressionsAreInterpreted() {
+        for (final String expression : INTERPRETED_EXPRESSIONS) {
+            assertNull("Expected " + expression + " not to be compiled", ExpressionCompiler.compile(Query.compileTree(expression)));
+        }
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testCompiledVersusInterpreted() {
+        final Map<String, String> attributes = attributes("X.txt");
+        final String expression = "${filename:substringBefore('.'):toUpper():equals('X')}";
+        final Tree tree = Query.compileTree(expression);
+        final Map<String, Tree> trees = new HashMap<>();
+        trees.put(expression, tree);
+
+        final StandardPreparedQuery compiled = new StandardPreparedQuery(Arrays.asList(expression), trees, true);
+        final StandardPreparedQuery interpreted = new StandardPreparedQuery(Arrays.asList(expression), trees, false);
+
+        for (int i = 0; i < 1000000; i++) {
+            compiled.evaluateExpressions(attributes, null);
+            interpreted.evaluateExpressions(attributes, null);
+        }
+
+        final long compiledStart = System.nanoTime();
+        for (int i = 0; i < 10000000; i++) {
+            assertEquals("true", compiled.evaluateExpressions(attributes, null));
+        }
+        final long compiledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compiledStart);
+
+        final long interpretedStart = System.nanoTime();
+        for (int i = 0; i < 10000000; i++) {
+            assertEquals("true", interpreted.evaluateExpressions(attributes, null));
+        }
+        final long interpretedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - interpretedStart);
+
+        System.out.println("Compiled: " + compiledMillis + " millis for 10M evaluations; Interpreted: " + interpretedMillis + " millis");
+    }
+
+    private Map<String, String> attributes(final String filename) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", filename);
+        attributes.put("file name", filename);
+        attributes.put("other", "x.txt");
+        return attributes;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.nifi.flowfile.FlowFile;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestLayeredExpressionMap {
+
+    @Test
+    public void testPrecedence() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("a", "attribute");
+        attributes.put("b", "attribute");
+        attributes.put("fileSize", "attribute");
+
+        final Map<String, String> additional = new HashMap<>();
+        additional.put("a", "additional");
+
+        final Map<String, String> map = new LayeredExpressionMap(createFlowFile(attributes), additional);
+        assertEquals("additional", map.get("a"));
+        assertEquals("attribute", map.get("b"));
+        assertEquals("attribute", map.get("fileSize"));
+        assertEquals("12", map.get("flowFileId"));
+        assertEquals(System.getProperty("java.version"), map.get("java.version"));
+        assertNull(map.get("c"));
+
+
+        final Map<String, String> copy = new HashMap<>(map);
+        assertEquals("additional", copy.get("a"));
+        assertEquals("attribute", copy.get("fileSize"));
+        assertEquals("12", copy.get("flowFileId"));
+    }
+
+    @Test
+    public void testFlowFileIsNotCopied() {
+        final Map<String, String> attributes = new HashMap<>();
+        final FlowFile flowFile = createFlowFile(attributes);
+        final Map<String, String> map = new LayeredExpressionMap(flowFile, null);
+
+        assertFalse(map.containsKey("a"));
+        attributes.put("a", "late");
+        assertTrue(map.containsKey("a"));
+        assertEquals("late", map.get("a"));
+
+        Mockito.verify(flowFile, Mockito.never()).getSize();
+        assertEquals("5", map.get("fileSize"));
+    }
+
+    @Test
+    public void testNoFlowFile() {
+        final Map<String, String> map = new LayeredExpressionMap(null, null);
+        assertFalse(map.containsKey("flowFileId"));
+        assertNull(map.get("flowFileId"));
+        assertEquals(System.getProperty("java.version"), map.get("java.version"));
+    }
+
+    private FlowFile createFlowFile(final Map<String, String> attributes) {
+        final FlowFile flowFile = Mockito.mock(FlowFile.class);
+        Mockito.when(flowFile.getAttributes()).thenReturn(attributes);
+        Mockito.when(flowFile.getId()).thenReturn(12L);
+        Mockito.when(flowFile.getSize()).thenReturn(5L);
+        Mockito.when(flowFile.getEntryDate()).thenReturn(100L);
+        Mockito.when(flowFile.getLineageStartDate()).thenReturn(50L);
+        return flowFile;
+    }
+}
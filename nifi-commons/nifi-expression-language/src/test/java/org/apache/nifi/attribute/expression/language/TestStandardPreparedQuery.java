@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.antlr.runtime.tree.Tree;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -74,6 +75,86 @@ public class TestStandardPreparedQuery {
 
     }
 
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testReusedEvaluatorsVersusRebuiltEvaluators() {
+        final Map<String, String> attrs = new HashMap<>();
+        attrs.put("filename", "X.txt");
+
+        final String query = "${filename:substringBefore('.'):toUpper():equals('X')}";
+        final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare(query);
+        final Tree tree = Query.compileTree(query);
+
+        for (int i = 0; i < 1000000; i++) {
+            prepared.evaluateExpressions(attrs, null);
+            Query.evaluateExpression(tree, query, attrs, null);
+        }
+
+        final long reusedStart = System.nanoTime();
+        for (int i = 0; i < 10000000; i++) {
+            assertEquals("true", prepared.evaluateExpressions(attrs, null));
+        }
+        final long reusedNanos = System.nanoTime() - reusedStart;
+
+        final long rebuiltStart = System.nanoTime();
+        for (int i = 0; i < 10000000; i++) {
+            assertEquals("true", Query.evaluateExpression(tree, query, attrs, null));
+        }
+        final long rebuiltNanos = System.nanoTime() - rebuiltStart;
+
+        System.out.println("Reused Evaluators: " + reusedNanos / 10000000 + " nanos per evaluation");
+        System.out.println("Rebuilt Evaluators: " + rebuiltNanos / 10000000 + " nanos per evaluation");
+    }
+
+    @Test
+    public void testConstantSubExpressions() {
+        final Map<String, String> attrs = new HashMap<>();
+        attrs.put("xx", "world");
+
+        assertEquals("HELLO", evaluate("${literal('hello'):toUpper()}", attrs));
+        assertEquals("7", evaluate("${literal(3):plus(4)}", attrs));
+        assertEquals("world8", evaluate("${xx:append(${literal(4):multiply(2)})}", attrs));
+        assertEquals("true", evaluate("${xx:equals(${literal('WORLD'):toLower()})}", attrs));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testConstantSubExpressionFailsOnEvaluation() {
+        final PreparedQuery prepared = Query.prepare("${literal('abc'):toNumber()}");
+        prepared.evaluateExpressions(new HashMap<String, String>());
+    }
+
+    @Test
+    public void testPreparedQueryEvaluatedRepeatedly() {
+        final Map<String, String> attrs = new HashMap<>();
+        final PreparedQuery singleAttribute = Query.prepare("${xx:toUpper()}");
+        final PreparedQuery multiAttribute = Query.prepare("${allAttributes('xx', 'yy'):join(',')}");
+        final PreparedQuery anyAttribute = Query.prepare("${anyAttribute('xx', 'yy'):equals('b')}");
+
+        for (int i = 0; i < 3; i++) {
+            attrs.put("xx", "a" + i);
+            attrs.put("yy", "b");
+
+            assertEquals("A" + i, singleAttribute.evaluateExpressions(attrs));
+            assertEquals("a" + i + ",b", multiAttribute.evaluateExpressions(attrs));
+            assertEquals("true", anyAttribute.evaluateExpressions(attrs));
+        }
+    }
+
+    @Test
+    public void testEmbeddedExpressionsInRebuiltEvaluators() {
+        // the Evaluators of a reducing function are rebuilt for each evaluation, reusing the parsed embedded Expression
+        final Map<String, String> attrs = new HashMap<>();
+        final PreparedQuery prepared = Query.prepare("${allAttributes('xx', 'yy'):join('${sep}'):append(${literal('!'):toUpper()})}");
+
+        for (int i = 0; i < 3; i++) {
+            attrs.put("xx", "a");
+            attrs.put("yy", "b");
+            attrs.put("sep", String.valueOf(i));
+
+            assertEquals("a" + i + "b!", prepared.evaluateExpressions(attrs));
+        }
+    }
+
     @Test
     public void testSeveralSequentialExpressions() {
         final Map<String, String> attributes = new HashMap<>();
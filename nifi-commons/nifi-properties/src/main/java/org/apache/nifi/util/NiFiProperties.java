@@ -71,6 +71,12 @@ public class NiFiProperties extends Properties {
     public static final String ADMINISTRATIVE_YIELD_DURATION = "nifi.administrative.yield.duration";
     public static final String PERSISTENT_STATE_DIRECTORY = "nifi.persistent.state.directory";
     public static final String BORED_YIELD_DURATION = "nifi.bored.yield.duration";
+    public static final String BORED_YIELD_WAKE_ON_ENQUEUE = "nifi.bored.yield.wake.on.enqueue";
+    public static final String FLOW_ENGINE_WORK_STEALING = "nifi.flow.engine.work.stealing";
+    public static final String BLOCKING_IO_MAX_THREADS = "nifi.blocking.io.max.threads";
+    public static final String BLOCKING_IO_PROCESSORS = "nifi.blocking.io.processors";
+    public static final String ADAPTIVE_RUN_DURATION = "nifi.processor.adaptive.run.duration";
+    public static final String ADAPTIVE_RUN_DURATION_MAX = "nifi.processor.adaptive.run.duration.max";
 
     // content repository properties
     public static final String REPOSITORY_CONTENT_PREFIX = "nifi.content.repository.directory.";
@@ -82,20 +88,28 @@ public class NiFiProperties extends Properties {
     public static final String CONTENT_ARCHIVE_BACK_PRESSURE_PERCENTAGE = "nifi.content.repository.archive.backpressure.percentage";
     public static final String CONTENT_ARCHIVE_ENABLED = "nifi.content.repository.archive.enabled";
     public static final String CONTENT_ARCHIVE_CLEANUP_FREQUENCY = "nifi.content.repository.archive.cleanup.frequency";
+    public static final String CONTENT_READ_CHANNEL_CACHE_SIZE = "nifi.content.repository.read.channel.cache.size";
+    public static final String CONTENT_READ_MEMORY_MAP = "nifi.content.repository.read.memory.map";
+    public static final String CONTENT_SYNC_ON_COMMIT = "nifi.content.repository.sync.on.commit";
     public static final String CONTENT_VIEWER_URL = "nifi.content.viewer.url";
 
     // flowfile repository properties
     public static final String FLOWFILE_REPOSITORY_IMPLEMENTATION = "nifi.flowfile.repository.implementation";
     public static final String FLOWFILE_REPOSITORY_ALWAYS_SYNC = "nifi.flowfile.repository.always.sync";
+    public static final String FLOWFILE_REPOSITORY_GROUP_COMMIT = "nifi.flowfile.repository.group.commit";
+    public static final String FLOWFILE_REPOSITORY_JOURNAL_SEGMENT_SIZE = "nifi.flowfile.repository.journal.segment.size";
     public static final String FLOWFILE_REPOSITORY_DIRECTORY = "nifi.flowfile.repository.directory";
     public static final String FLOWFILE_REPOSITORY_PARTITIONS = "nifi.flowfile.repository.partitions";
     public static final String FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL = "nifi.flowfile.repository.checkpoint.interval";
     public static final String FLOWFILE_SWAP_MANAGER_IMPLEMENTATION = "nifi.swap.manager.implementation";
     public static final String QUEUE_SWAP_THRESHOLD = "nifi.queue.swap.threshold";
+    public static final String QUEUE_PARTITIONS = "nifi.queue.partitions";
+    public static final String QUEUE_PARTITIONS_PREFIX = "nifi.queue.partitions.";
     public static final String SWAP_IN_THREADS = "nifi.swap.in.threads";
     public static final String SWAP_IN_PERIOD = "nifi.swap.in.period";
     public static final String SWAP_OUT_THREADS = "nifi.swap.out.threads";
     public static final String SWAP_OUT_PERIOD = "nifi.swap.out.period";
+    public static final String SWAP_COMPRESS = "nifi.swap.compress";
 
     // provenance properties
     public static final String PROVENANCE_REPO_IMPLEMENTATION_CLASS = "nifi.provenance.repository.implementation";
@@ -111,6 +125,9 @@ public class NiFiProperties extends Properties {
     public static final String PROVENANCE_INDEXED_ATTRIBUTES = "nifi.provenance.repository.indexed.attributes";
     public static final String PROVENANCE_INDEX_SHARD_SIZE = "nifi.provenance.repository.index.shard.size";
     public static final String PROVENANCE_JOURNAL_COUNT = "nifi.provenance.repository.journal.count";
+    public static final String PROVENANCE_JOURNAL_BUFFERED = "nifi.provenance.repository.journal.buffered";
+    public static final String PROVENANCE_COMPACT_RECORD_FORMAT = "nifi.provenance.repository.compact.record.format";
+    public static final String PROVENANCE_SUMMARY_INDEX = "nifi.provenance.repository.summary.index";
 
     // component status repository properties
     public static final String COMPONENT_STATUS_REPOSITORY_IMPLEMENTATION = "nifi.components.status.repository.implementation";
@@ -213,15 +230,19 @@ public class NiFiProperties extends Properties {
     public static final String DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL = "2 min";
     public static final int DEFAULT_MAX_FLOWFILES_PER_CLAIM = 100;
     public static final int DEFAULT_QUEUE_SWAP_THRESHOLD = 20000;
+    public static final int DEFAULT_QUEUE_PARTITIONS = 1;
     public static final String DEFAULT_SWAP_STORAGE_LOCATION = "./flowfile_repository/swap";
     public static final String DEFAULT_SWAP_IN_PERIOD = "1 sec";
     public static final String DEFAULT_SWAP_OUT_PERIOD = "5 sec";
     public static final int DEFAULT_SWAP_IN_THREADS = 4;
+    public static final int DEFAULT_BLOCKING_IO_MAX_THREADS = 0;
+    public static final int DEFAULT_CONTENT_READ_CHANNEL_CACHE_SIZE = 0;
     public static final int DEFAULT_SWAP_OUT_THREADS = 4;
     public static final String DEFAULT_ADMINISTRATIVE_YIELD_DURATION = "30 sec";
     public static final String DEFAULT_PERSISTENT_STATE_DIRECTORY = "./conf/state";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
     public static final String DEFAULT_BORED_YIELD_DURATION = "10 millis";
+    public static final String DEFAULT_ADAPTIVE_RUN_DURATION_MAX = "100 millis";
 
     // cluster common defaults
     public static final String DEFAULT_CLUSTER_PROTOCOL_HEARTBEAT_INTERVAL = "5 sec";
@@ -349,6 +370,21 @@ public class NiFiProperties extends Properties {
         }
     }
 
+    /**
+     * Returns the number of partitions that the FlowFile Queue of the
+     * connection with the given identifier should be split into. A
+     * connection-specific value (nifi.queue.partitions.&lt;connection id&gt;)
+     * takes precedence over the global value (nifi.queue.partitions).
+     *
+     * @param connectionId the identifier of the connection
+     * @return the number of queue partitions, always at least 1
+     */
+    public int getQueuePartitions(final String connectionId) {
+        final int globalPartitions = getIntegerProperty(QUEUE_PARTITIONS, DEFAULT_QUEUE_PARTITIONS);
+        final int partitions = connectionId == null ? globalPartitions : getIntegerProperty(QUEUE_PARTITIONS_PREFIX + connectionId, globalPartitions);
+        return Math.max(1, partitions);
+    }
+
     public Integer getIntegerProperty(final String propertyName, final Integer defaultValue) {
         final String value = getProperty(propertyName);
         if (value == null) {
@@ -362,6 +398,13 @@ public class NiFiProperties extends Properties {
         }
     }
 
+    /**
+     * @return whether or not the FlowFile records in swap files should be compressed
+     */
+    public boolean isSwapCompressed() {
+        return Boolean.parseBoolean(getProperty(SWAP_COMPRESS));
+    }
+
     public int getSwapInThreads() {
         return getIntegerProperty(SWAP_IN_THREADS, DEFAULT_SWAP_IN_THREADS);
     }
@@ -996,6 +1039,53 @@ public class NiFiProperties extends Properties {
         return getProperty(BORED_YIELD_DURATION, DEFAULT_BORED_YIELD_DURATION);
     }
 
+    public boolean isBoredYieldWakeOnEnqueue() {
+        return Boolean.parseBoolean(getProperty(BORED_YIELD_WAKE_ON_ENQUEUE));
+    }
+
+    /**
+     * @return <code>true</code> if Processors that support batching and have no Run Duration configured should have
+     *         their Run Duration chosen at runtime, <code>false</code> otherwise
+     */
+    public boolean isAdaptiveRunDuration() {
+        return Boolean.parseBoolean(getProperty(ADAPTIVE_RUN_DURATION));
+    }
+
+    public String getAdaptiveRunDurationMax() {
+        return getProperty(ADAPTIVE_RUN_DURATION_MAX, DEFAULT_ADAPTIVE_RUN_DURATION_MAX);
+    }
+
+    public boolean isFlowEngineWorkStealing() {
+        return Boolean.parseBoolean(getProperty(FLOW_ENGINE_WORK_STEALING));
+    }
+
+    /**
+     * @return the number of threads available to Timer driven Processors that perform blocking I/O, or 0 if such
+     *         Processors are run by the Timer driven thread pool
+     */
+    public int getBlockingIOMaxThreads() {
+        return getIntegerProperty(BLOCKING_IO_MAX_THREADS, DEFAULT_BLOCKING_IO_MAX_THREADS);
+    }
+
+    /**
+     * @return the fully qualified class names of the Processors that should be treated as performing blocking I/O, in
+     *         addition to those annotated with BlockingIO
+     */
+    public Set<String> getBlockingIOProcessors() {
+        final String rawProcessors = getProperty(BLOCKING_IO_PROCESSORS);
+        if (StringUtils.isEmpty(rawProcessors)) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> processors = new HashSet<>();
+        for (final String processor : rawProcessors.split(",")) {
+            if (!processor.trim().isEmpty()) {
+                processors.add(processor.trim());
+            }
+        }
+        return processors;
+    }
+
     public File getStateManagementConfigFile() {
         return new File(getProperty(STATE_MANAGEMENT_CONFIG_FILE, DEFAULT_STATE_MANAGEMENT_CONFIG_FILE));
     }
@@ -83,6 +83,32 @@ public class NiFiPropertiesTest {
 
     }
 
+    @Test
+    public void testBlockingIODefaults() {
+
+        NiFiProperties properties = loadSpecifiedProperties("/NiFiProperties/conf/nifi.missing.properties");
+
+        assertEquals(NiFiProperties.DEFAULT_BLOCKING_IO_MAX_THREADS, properties.getBlockingIOMaxThreads());
+        assertEquals(0, properties.getBlockingIOProcessors().size());
+
+    }
+
+    @Test
+    public void testBlockingIOProperties() {
+
+        NiFiProperties properties = loadSpecifiedProperties("/NiFiProperties/conf/nifi.missing.properties");
+        properties.setProperty(NiFiProperties.BLOCKING_IO_MAX_THREADS, "25");
+        properties.setProperty(NiFiProperties.BLOCKING_IO_PROCESSORS, " org.example.FetchRemote, ,org.example.PutRemote ");
+
+        assertEquals(25, properties.getBlockingIOMaxThreads());
+
+        Set<String> expectedProcessors = new HashSet<>();
+        expectedProcessors.add("org.example.FetchRemote");
+        expectedProcessors.add("org.example.PutRemote");
+        assertEquals(expectedProcessors, properties.getBlockingIOProcessors());
+
+    }
+
     private NiFiProperties loadSpecifiedProperties(String propertiesFile) {
 
         String filePath;
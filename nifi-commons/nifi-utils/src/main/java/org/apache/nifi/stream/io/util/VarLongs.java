@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.stream.io.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reads and writes longs in a variable-length encoding: 7 bits per byte, least significant group first, with the high
+ * bit of each byte set if more bytes follow. Small values take a single byte, and no value takes more than 10 bytes.
+ * Signed values are zig-zag encoded first, so that small negative values are also written in few bytes.
+ */
+public final class VarLongs {
+
+    private static final int MAX_SHIFT = 63;
+
+    private VarLongs() {
+    }
+
+    /**
+     * Writes the given value, which is treated as unsigned
+     *
+     * @param value the value to write
+     * @param out the stream to write to
+     * @throws IOException if unable to write to the stream
+     */
+    public static void writeVarLong(final long value, final OutputStream out) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Writes the given value zig-zag encoded
+     *
+     * @param value the value to write
+     * @param out the stream to write to
+     * @throws IOException if unable to write to the stream
+     */
+    public static void writeSignedVarLong(final long value, final OutputStream out) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63), out);
+    }
+
+    /**
+     * @param in the stream to read from
+     * @return a value written by {@link #writeVarLong(long, OutputStream)}
+     * @throws EOFException if the stream ends before the value does
+     * @throws IOException if unable to read from the stream or the stream does not hold a valid value
+     */
+    public static long readVarLong(final InputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift <= MAX_SHIFT; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Stream contains a malformed variable-length integer");
+    }
+
+    /**
+     * @param in the stream to read from
+     * @return a value written by {@link #writeSignedVarLong(long, OutputStream)}
+     * @throws EOFException if the stream ends before the value does
+     * @throws IOException if unable to read from the stream or the stream does not hold a valid value
+     */
+    public static long readSignedVarLong(final InputStream in) throws IOException {
+        final long encoded = readVarLong(in);
+        return (encoded >>> 1) ^ -(encoded & 1L);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.stream.io.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestVarLongs {
+
+    private static final long[] VALUES = new long[] {0L, 1L, 127L, 128L, 16383L, 16384L, Integer.MAX_VALUE, Long.MAX_VALUE - 1, Long.MAX_VALUE,
+        -1L, -64L, -65L, Integer.MIN_VALUE, Long.MIN_VALUE};
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (final long value : VALUES) {
+            VarLongs.writeVarLong(value, baos);
+            VarLongs.writeSignedVarLong(value, baos);
+        }
+
+        final ByteArrayInputStream in = new ByteArrayInputStream(baos.toByteArray());
+        for (final long value : VALUES) {
+            assertEquals(value, VarLongs.readVarLong(in));
+            assertEquals(value, VarLongs.readSignedVarLong(in));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testEncodedLength() throws IOException {
+        assertEquals(1, unsignedLength(0L));
+        assertEquals(1, unsignedLength(127L));
+        assertEquals(2, unsignedLength(128L));
+        assertEquals(9, unsignedLength(Long.MAX_VALUE));
+        assertEquals(10, unsignedLength(-1L));
+
+        // small negative values take as few bytes as small positive values
+        assertEquals(1, signedLength(-1L));
+        assertEquals(1, signedLength(-64L));
+        assertEquals(2, signedLength(-65L));
+        assertEquals(10, signedLength(Long.MIN_VALUE));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedValue() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        VarLongs.writeVarLong(300L, baos);
+        final byte[] encoded = baos.toByteArray();
+
+        VarLongs.readVarLong(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedValue() throws IOException {
+        final byte[] encoded = new byte[11];
+        Arrays.fill(encoded, (byte) 0x80);
+
+        VarLongs.readVarLong(new ByteArrayInputStream(encoded));
+    }
+
+    private int unsignedLength(final long value) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        VarLongs.writeVarLong(value, baos);
+        return baos.size();
+    }
+
+    private int signedLength(final long value) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        VarLongs.writeSignedVarLong(value, baos);
+        return baos.size();
+    }
+}
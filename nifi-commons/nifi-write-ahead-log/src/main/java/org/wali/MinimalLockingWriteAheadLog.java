@@ -27,6 +27,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -46,10 +49,18 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -58,9 +69,11 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 import org.apache.nifi.stream.io.BufferedInputStream;
 import org.apache.nifi.stream.io.BufferedOutputStream;
+import org.apache.nifi.stream.io.ByteArrayOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +85,14 @@ import org.slf4j.LoggerFactory;
  * updates for a given Record at any one time.
  * </p>
  *
+ * <p>
+ * By default, each Partition writes its journal through a buffered stream. If a
+ * journal segment size is given, each Partition instead appends its
+ * transactions by position to pre-allocated, memory-mapped journal segments of
+ * that size, and recovery scans the segments of all Partitions in parallel.
+ * Journals written in either mode can be recovered in the other.
+ * </p>
+ *
  * @param <T> type of record this WAL is for
  */
 public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepository<T> {
@@ -101,13 +122,54 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private final Lock readLock = rwLock.readLock(); // required to update a partition
     private final Lock writeLock = rwLock.writeLock(); // required for checkpoint
 
+    // While a checkpoint is serializing the records, this map holds the value that each record had when the checkpoint
+    // began, for every record that has been modified since. Updates copy a record's value into it before changing the
+    // record, so the checkpoint can serialize a consistent snapshot without holding the write lock.
+    private volatile ConcurrentMap<Object, Object> checkpointOverlay = null;
+    private static final Object ABSENT = new Object(); // the record did not exist when the checkpoint began
+    private static final Object CHECKPOINTED = new Object(); // the record has already been serialized to the snapshot
+
+    private final AtomicLong checkpointCount = new AtomicLong(0L);
+    private volatile long lastCheckpointNanos = 0L;
+    private volatile long lastCheckpointBlockedNanos = 0L;
+    private final AtomicLong totalCheckpointNanos = new AtomicLong(0L);
+    private final AtomicLong totalCheckpointBlockedNanos = new AtomicLong(0L);
+
     private volatile boolean updated = false;
     private volatile boolean recovered = false;
 
+    // When group commit is enabled, updates that must be synced are queued here and the thread that holds the
+    // groupCommitLock writes every queued update to a single partition and syncs that partition once for all of them.
+    private final boolean groupCommit;
+    private final Lock groupCommitLock = new ReentrantLock();
+    private final Queue<PendingUpdate<T>> pendingSyncUpdates = new ConcurrentLinkedQueue<>();
+
+    // When greater than 0, partitions append to memory-mapped journal segments of this many bytes rather than to streams
+    private final long journalSegmentSize;
+
     public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
         this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener);
     }
 
+    public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener, final boolean groupCommit)
+            throws IOException {
+        this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener, groupCommit);
+    }
+
+    public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener, final boolean groupCommit,
+            final long journalSegmentSize) throws IOException {
+        this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener, groupCommit, journalSegmentSize);
+    }
+
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+        this(paths, partitionCount, serde, syncListener, false);
+    }
+
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener, final boolean groupCommit)
+            throws IOException {
+        this(paths, partitionCount, serde, syncListener, groupCommit, 0L);
+    }
+
     /**
      *
      * @param paths a sorted set of Paths to use for the partitions/journals and
@@ -118,11 +180,20 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      * expected to update the repository simultaneously
      * @param serde the serializer/deserializer for records
      * @param syncListener the listener
+     * @param groupCommit if <code>true</code>, concurrent updates that request a
+     * sync are written together and share a single sync of the underlying
+     * journal, rather than each update syncing its partition on its own
+     * @param journalSegmentSize if greater than 0, the number of bytes to
+     * pre-allocate for each memory-mapped journal segment; otherwise, journals
+     * are written through streams
      * @throws IOException if unable to initialize due to IO issue
      */
     @SuppressWarnings("unchecked")
-    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener, final boolean groupCommit,
+            final long journalSegmentSize) throws IOException {
         this.syncListener = syncListener;
+        this.groupCommit = groupCommit;
+        this.journalSegmentSize = journalSegmentSize;
 
         requireNonNull(paths);
         requireNonNull(serde);
@@ -130,6 +201,9 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         if (paths.isEmpty()) {
             throw new IllegalArgumentException("Paths must be non-empty");
         }
+        if (journalSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size cannot be larger than " + Integer.MAX_VALUE + " bytes");
+        }
 
         int resolvedPartitionCount = partitionCount;
         int existingPartitions = 0;
@@ -189,7 +263,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             final Path partitionBasePath = pathIterator.next();
 
-            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serde, i, getVersion());
+            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serde, i, getVersion(), journalSegmentSize);
         }
     }
 
@@ -206,77 +280,224 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         updated = true;
         readLock.lock();
         try {
-            while (true) {
-                final int numBlackListed = numberBlackListedPartitions.get();
-                if (numBlackListed >= partitions.length) {
-                    throw new IOException("All Partitions have been blacklisted due to "
-                            + "failures when attempting to update. If the Write-Ahead Log is able to perform a checkpoint, "
-                            + "this issue may resolve itself. Otherwise, manual intervention will be required.");
+            if (forceSync && groupCommit) {
+                return groupCommit(records);
+            }
+
+            final int resolvedIdx = claimPartition();
+            final Partition<T> partition = partitions[resolvedIdx];
+            try {
+                writeTransaction(partition, records, forceSync);
+
+                if (forceSync && syncListener != null) {
+                    syncListener.onSync(resolvedIdx);
                 }
+            } finally {
+                partition.releaseClaim();
+            }
 
-                final long partitionIdx = partitionIndex.getAndIncrement();
-                final int resolvedIdx = (int) (partitionIdx % partitions.length);
-                final Partition<T> partition = partitions[resolvedIdx];
-                if (partition.tryClaim()) {
-                    try {
-                        final long transactionId = transactionIdGenerator.getAndIncrement();
-                        if (logger.isTraceEnabled()) {
-                            for (final T record : records) {
-                                logger.trace("Partition {} performing Transaction {}: {}", new Object[]{partition, transactionId, record});
-                            }
-                        }
+            updateRecordMap(records);
+            return resolvedIdx;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Queues the given records to be written and synced along with any other
+     * updates that are waiting to be synced, and returns once the records are
+     * durable. Whichever waiting thread obtains the group commit lock first
+     * writes every queued update as its own transaction to a single partition
+     * and syncs that partition once; the other waiters then find their updates
+     * already complete. Must be called while holding the read lock.
+     *
+     * @param records the records to update
+     * @return the index of the partition that the records were written to
+     * @throws IOException if unable to write or sync the records
+     */
+    private int groupCommit(final Collection<T> records) throws IOException {
+        final PendingUpdate<T> pendingUpdate = new PendingUpdate<>(records);
+        pendingSyncUpdates.add(pendingUpdate);
+
+        groupCommitLock.lock();
+        try {
+            if (!pendingUpdate.complete) {
+                flushPendingSyncUpdates();
+            }
+        } finally {
+            groupCommitLock.unlock();
+        }
+
+        final Throwable failure = pendingUpdate.failure;
+        if (failure == null) {
+            return pendingUpdate.partitionIndex;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
 
-                        try {
-                            partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
-                        } catch (final Throwable t) {
+    /**
+     * Writes all queued sync updates to a single partition and syncs it. Must
+     * be called while holding the group commit lock.
+     *
+     * If writing one of the updates fails, the updates that were already
+     * written are still synced and completed, because they will be replayed
+     * on recovery regardless; only that update and the ones queued after it
+     * fail. If the sync itself fails, every update in the batch fails, just as
+     * a single update fails if its sync fails.
+     */
+    private void flushPendingSyncUpdates() {
+        final List<PendingUpdate<T>> batch = new ArrayList<>();
+        PendingUpdate<T> pending;
+        while ((pending = pendingSyncUpdates.poll()) != null) {
+            batch.add(pending);
+        }
+
+        int written = 0;
+        try {
+            final int resolvedIdx = claimPartition();
+            final Partition<T> partition = partitions[resolvedIdx];
+            try {
+                Throwable writeFailure = null;
+                try {
+                    for (final PendingUpdate<T> update : batch) {
+                        writeTransaction(partition, update.records, false);
+                        written++;
+                    }
+                } catch (final Throwable t) {
+                    writeFailure = t;
+                    for (final PendingUpdate<T> update : batch.subList(written, batch.size())) {
+                        update.failure = t;
+                    }
+                }
+
+                if (written > 0) {
+                    try {
+                        partition.sync();
+                    } catch (final Throwable t) {
+                        // writeTransaction has already blacklisted the partition if a write failed
+                        if (writeFailure == null) {
                             partition.blackList();
                             numberBlackListedPartitions.incrementAndGet();
-                            throw t;
                         }
-
-                        if (forceSync && syncListener != null) {
-                            syncListener.onSync(resolvedIdx);
-                        }
-                    } finally {
-                        partition.releaseClaim();
+                        throw t;
                     }
 
-                    for (final T record : records) {
-                        final UpdateType updateType = serde.getUpdateType(record);
-                        final Object recordIdentifier = serde.getRecordIdentifier(record);
-
-                        if (updateType == UpdateType.DELETE) {
-                            recordMap.remove(recordIdentifier);
-                        } else if (updateType == UpdateType.SWAP_OUT) {
-                            final String newLocation = serde.getLocation(record);
-                            if (newLocation == null) {
-                                logger.error("Received Record (ID=" + recordIdentifier + ") with UpdateType of SWAP_OUT but "
-                                        + "no indicator of where the Record is to be Swapped Out to; these records may be "
-                                        + "lost when the repository is restored!");
-                            } else {
-                                recordMap.remove(recordIdentifier);
-                                this.externalLocations.add(newLocation);
-                            }
-                        } else if (updateType == UpdateType.SWAP_IN) {
-                            final String newLocation = serde.getLocation(record);
-                            if (newLocation == null) {
-                                logger.error("Received Record (ID=" + recordIdentifier + ") with UpdateType of SWAP_IN but no "
-                                        + "indicator of where the Record is to be Swapped In from; these records may be duplicated "
-                                        + "when the repository is restored!");
-                            } else {
-                                externalLocations.remove(newLocation);
-                            }
-                            recordMap.put(recordIdentifier, record);
-                        } else {
-                            recordMap.put(recordIdentifier, record);
-                        }
+                    if (syncListener != null) {
+                        syncListener.onSync(resolvedIdx);
                     }
+                }
+            } finally {
+                partition.releaseClaim();
+            }
+
+            for (final PendingUpdate<T> update : batch.subList(0, written)) {
+                updateRecordMap(update.records);
+                update.partitionIndex = resolvedIdx;
+            }
 
-                    return resolvedIdx;
+            logger.debug("Group commit wrote {} of {} transactions to {} with a single sync", written, batch.size(), partition);
+        } catch (final Throwable t) {
+            for (final PendingUpdate<T> update : batch) {
+                if (update.failure == null) {
+                    update.failure = t;
                 }
             }
         } finally {
-            readLock.unlock();
+            for (final PendingUpdate<T> update : batch) {
+                update.complete = true;
+            }
+        }
+    }
+
+    /**
+     * Claims a partition that is not blacklisted. The caller is responsible
+     * for releasing the claim.
+     *
+     * @return the index of the claimed partition
+     * @throws IOException if all partitions have been blacklisted
+     */
+    private int claimPartition() throws IOException {
+        while (true) {
+            final int numBlackListed = numberBlackListedPartitions.get();
+            if (numBlackListed >= partitions.length) {
+                throw new IOException("All Partitions have been blacklisted due to "
+                        + "failures when attempting to update. If the Write-Ahead Log is able to perform a checkpoint, "
+                        + "this issue may resolve itself. Otherwise, manual intervention will be required.");
+            }
+
+            final long partitionIdx = partitionIndex.getAndIncrement();
+            final int resolvedIdx = (int) (partitionIdx % partitions.length);
+            if (partitions[resolvedIdx].tryClaim()) {
+                return resolvedIdx;
+            }
+        }
+    }
+
+    private void writeTransaction(final Partition<T> partition, final Collection<T> records, final boolean forceSync) throws IOException {
+        final long transactionId = transactionIdGenerator.getAndIncrement();
+        if (logger.isTraceEnabled()) {
+            for (final T record : records) {
+                logger.trace("Partition {} performing Transaction {}: {}", new Object[]{partition, transactionId, record});
+            }
+        }
+
+        try {
+            partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
+        } catch (final Throwable t) {
+            partition.blackList();
+            numberBlackListedPartitions.incrementAndGet();
+            throw t;
+        }
+    }
+
+    private void updateRecordMap(final Collection<T> records) {
+        final ConcurrentMap<Object, Object> overlay = checkpointOverlay;
+
+        for (final T record : records) {
+            final UpdateType updateType = serde.getUpdateType(record);
+            final Object recordIdentifier = serde.getRecordIdentifier(record);
+
+            if (overlay != null && !overlay.containsKey(recordIdentifier)) {
+                // Only a single thread updates a given record, so the record cannot change between these calls. If the
+                // checkpoint has already serialized the record, it has marked it as CHECKPOINTED and this is a no-op.
+                final T checkpointValue = recordMap.get(recordIdentifier);
+                overlay.putIfAbsent(recordIdentifier, checkpointValue == null ? ABSENT : checkpointValue);
+            }
+
+            if (updateType == UpdateType.DELETE) {
+                recordMap.remove(recordIdentifier);
+            } else if (updateType == UpdateType.SWAP_OUT) {
+                final String newLocation = serde.getLocation(record);
+                if (newLocation == null) {
+                    logger.error("Received Record (ID=" + recordIdentifier + ") with UpdateType of SWAP_OUT but "
+                            + "no indicator of where the Record is to be Swapped Out to; these records may be "
+                            + "lost when the repository is restored!");
+                } else {
+                    recordMap.remove(recordIdentifier);
+                    this.externalLocations.add(newLocation);
+                }
+            } else if (updateType == UpdateType.SWAP_IN) {
+                final String newLocation = serde.getLocation(record);
+                if (newLocation == null) {
+                    logger.error("Received Record (ID=" + recordIdentifier + ") with UpdateType of SWAP_IN but no "
+                            + "indicator of where the Record is to be Swapped In from; these records may be duplicated "
+                            + "when the repository is restored!");
+                } else {
+                    externalLocations.remove(newLocation);
+                }
+                recordMap.put(recordIdentifier, record);
+            } else {
+                recordMap.put(recordIdentifier, record);
+            }
         }
     }
 
@@ -289,7 +510,17 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         final long recoverStart = System.nanoTime();
         writeLock.lock();
         try {
-            Long maxTransactionId = recoverFromSnapshot(recordMap);
+            // scan any memory-mapped journal segments in the background while the snapshot is read
+            final ExecutorService scanExecutor = scanJournalSegments();
+            Long maxTransactionId;
+            try {
+                maxTransactionId = recoverFromSnapshot(recordMap);
+            } finally {
+                if (scanExecutor != null) {
+                    scanExecutor.shutdown();
+                }
+            }
+
             recoverFromEdits(recordMap, maxTransactionId);
 
             for (final Partition<T> partition : partitions) {
@@ -319,6 +550,49 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         return recoveredExternalLocations;
     }
 
+    /**
+     * Starts scanning the memory-mapped journal segments of every Partition
+     * that has any, using one thread per Partition. Scanning maps each segment
+     * into memory and validates its transactions, so that the serial replay of
+     * the transactions does not wait on the disk. A Partition that has not
+     * finished scanning when replay reaches it simply waits for its scan to
+     * complete.
+     *
+     * @return the executor performing the scans, or <code>null</code> if no
+     * Partition has journal segments to recover
+     */
+    private ExecutorService scanJournalSegments() {
+        final List<Partition<T>> partitionsToScan = new ArrayList<>();
+        for (final Partition<T> partition : partitions) {
+            if (partition.hasRecoverySegments()) {
+                partitionsToScan.add(partition);
+            }
+        }
+
+        if (partitionsToScan.isEmpty()) {
+            return null;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(partitionsToScan.size(), new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("Recover Write-Ahead Log Journal Segments-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        for (final Partition<T> partition : partitionsToScan) {
+            partition.scanRecoverySegments(executor);
+        }
+
+        logger.debug("{} scanning journal segments of {} partitions in parallel", this, partitionsToScan.size());
+        return executor;
+    }
+
     private Long recoverFromSnapshot(final Map<Object, T> recordMap) throws IOException {
         final boolean partialExists = Files.exists(partialPath);
         final boolean snapshotExists = Files.exists(snapshotPath);
@@ -477,11 +751,21 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
     }
 
+    /**
+     * Writes a snapshot of the repository and removes the journals that the
+     * snapshot makes obsolete. The write lock is held only long enough to roll
+     * the partitions over to new journals; the records are then serialized
+     * while updates continue. Each update copies the value that a record had
+     * when the checkpoint began before changing the record, so the snapshot
+     * still reflects exactly the transactions up to the rollover.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public synchronized int checkpoint() throws IOException {
-        final Set<T> records;
         final Set<String> swapLocations;
         final long maxTransactionId;
+        final ConcurrentMap<Object, Object> overlay = new ConcurrentHashMap<>();
+        int numRecords = 0;
 
         final long startNanos = System.nanoTime();
 
@@ -494,19 +778,10 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             writeLock.lock();
             try {
                 stopTheWorldStart = System.nanoTime();
-                // stop the world while we make a copy of the records that must
-                // be checkpointed and rollover the partitions.
-                // We copy the records because serializing them is potentially
-                // very expensive, especially when we have hundreds
-                // of thousands or even millions of them. We don't want to
-                // prevent WALI from being used during this time.
-
-                // So the design is to copy all of the records, determine the
-                // last transaction ID that the records represent,
-                // and roll over the partitions to new write-ahead logs.
-                // Then, outside of the write lock, we will serialize the data
-                // to disk, and then remove the old Partition data.
-                records = new HashSet<>(recordMap.values());
+                // stop the world only while we determine the last transaction ID that the snapshot represents
+                // and roll over the partitions to new write-ahead logs. Once the overlay is installed, every update
+                // preserves the value that it replaces, so we can serialize the records outside of the write lock
+                // and then remove the old Partition data.
                 maxTransactionId = transactionIdGenerator.get() - 1;
 
                 swapLocations = new HashSet<>(externalLocations);
@@ -520,6 +795,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                     }
                 }
 
+                checkpointOverlay = overlay;
+
                 // notify global sync with the write lock held. We do this because we don't want the repository to get updated
                 // while the listener is performing its necessary tasks
                 if (syncListener != null) {
@@ -533,24 +810,57 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             // perform checkpoint, writing to .partial file
             fileOut = new FileOutputStream(partialPath.toFile());
-            dataOut = new DataOutputStream(fileOut);
+            dataOut = new DataOutputStream(new BufferedOutputStream(fileOut));
             dataOut.writeUTF(MinimalLockingWriteAheadLog.class.getName());
             dataOut.writeInt(getVersion());
             dataOut.writeUTF(serde.getClass().getName());
             dataOut.writeInt(serde.getVersion());
             dataOut.writeLong(maxTransactionId);
-            dataOut.writeInt(records.size());
+            dataOut.flush();
 
-            for (final T record : records) {
+            // the number of records is not known until they have all been serialized, so it is written afterward
+            final long recordCountPosition = fileOut.getChannel().position();
+            dataOut.writeInt(0);
+
+            // Serialize each record that has not been modified since the checkpoint began, marking it so that an update
+            // will no longer preserve it. The iterator is weakly consistent, but a record that it does not return must
+            // have been removed, so its value as of the checkpoint is already in the overlay.
+            for (final Map.Entry<Object, T> entry : recordMap.entrySet()) {
+                if (overlay.putIfAbsent(entry.getKey(), CHECKPOINTED) != null) {
+                    continue;
+                }
+
+                final T record = entry.getValue();
                 logger.trace("Checkpointing {}", record);
                 serde.serializeRecord(record, dataOut);
+                numRecords++;
+            }
+
+            // Serialize the values that were preserved for records modified since the checkpoint began
+            for (final Object value : overlay.values()) {
+                if (value == ABSENT || value == CHECKPOINTED) {
+                    continue;
+                }
+
+                final T record = (T) value;
+                logger.trace("Checkpointing {}", record);
+                serde.serializeRecord(record, dataOut);
+                numRecords++;
             }
 
             dataOut.writeInt(swapLocations.size());
             for (final String swapLocation : swapLocations) {
                 dataOut.writeUTF(swapLocation);
             }
+            dataOut.flush();
+
+            final ByteBuffer recordCount = ByteBuffer.allocate(4);
+            recordCount.putInt(numRecords);
+            recordCount.flip();
+            fileOut.getChannel().write(recordCount, recordCountPosition);
         } finally {
+            checkpointOverlay = null;
+
             if (dataOut != null) {
                 try {
                     dataOut.flush();
@@ -588,11 +898,56 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         final long partitionMillis = TimeUnit.MILLISECONDS.convert(partitionEnd - partitionStart, TimeUnit.NANOSECONDS);
         final long stopTheWorldMillis = TimeUnit.NANOSECONDS.toMillis(stopTheWorldNanos);
 
+        checkpointCount.incrementAndGet();
+        lastCheckpointNanos = endNanos - startNanos;
+        lastCheckpointBlockedNanos = stopTheWorldNanos;
+        totalCheckpointNanos.addAndGet(endNanos - startNanos);
+        totalCheckpointBlockedNanos.addAndGet(stopTheWorldNanos);
+
         logger.info("{} checkpointed with {} Records and {} Swap Files in {} milliseconds (Stop-the-world "
                 + "time = {} milliseconds, Clear Edit Logs time = {} millis), max Transaction ID {}",
-                new Object[]{this, records.size(), swapLocations.size(), millis, stopTheWorldMillis, partitionMillis, maxTransactionId});
+                new Object[]{this, numRecords, swapLocations.size(), millis, stopTheWorldMillis, partitionMillis, maxTransactionId});
+
+        return numRecords;
+    }
+
+    /**
+     * @return the number of checkpoints that have completed successfully
+     */
+    public long getCheckpointCount() {
+        return checkpointCount.get();
+    }
+
+    /**
+     * @return the number of milliseconds that the most recent successful
+     * checkpoint took, or 0 if no checkpoint has completed
+     */
+    public long getLastCheckpointMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastCheckpointNanos);
+    }
 
-        return records.size();
+    /**
+     * @return the number of milliseconds during which the most recent
+     * successful checkpoint blocked updates to the repository, or 0 if no
+     * checkpoint has completed
+     */
+    public long getLastCheckpointBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastCheckpointBlockedNanos);
+    }
+
+    /**
+     * @return the total number of milliseconds spent performing checkpoints
+     */
+    public long getTotalCheckpointMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalCheckpointNanos.get());
+    }
+
+    /**
+     * @return the total number of milliseconds during which checkpoints have
+     * blocked updates to the repository
+     */
+    public long getTotalCheckpointBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalCheckpointBlockedNanos.get());
     }
 
     @Override
@@ -612,6 +967,26 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         return 1;
     }
 
+    /**
+     * An update that is waiting to be written and synced as part of a group
+     * commit. The fields are written by the thread performing the group commit
+     * while it holds the group commit lock and are read by the waiting thread
+     * only after it has obtained that same lock.
+     *
+     * @param <S> type of record being updated
+     */
+    private static class PendingUpdate<S> {
+
+        private final Collection<S> records;
+        private boolean complete = false;
+        private int partitionIndex = -1;
+        private Throwable failure;
+
+        public PendingUpdate(final Collection<S> records) {
+            this.records = records;
+        }
+    }
+
     /**
      * Represents a partition of this repository, which maps directly to a
      * .journal file.
@@ -625,7 +1000,12 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private static class Partition<S> {
 
         public static final String JOURNAL_EXTENSION = ".journal";
-        private static final Pattern JOURNAL_FILENAME_PATTERN = Pattern.compile("\\d+\\.journal");
+        public static final String SEGMENT_EXTENSION = ".segment";
+        private static final Pattern JOURNAL_FILENAME_PATTERN = Pattern.compile("\\d+\\.(journal|segment)");
+
+        // each transaction in a journal segment is preceded by its length, its transaction id and the CRC-32 of its bytes.
+        // The unused remainder of a segment is zero-filled, so a length of 0 marks the end of the segment's transactions.
+        private static final int SEGMENT_ENTRY_HEADER_LENGTH = 16;
 
         private final SerDe<S> serde;
 
@@ -639,7 +1019,16 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         private boolean closed = false;
         private DataInputStream recoveryIn;
         private int recoveryVersion;
-        private String currentJournalFilename = "";
+        private volatile long firstRetainedJournalIndex = 0L;
+
+        private final long segmentSize;
+        private FileChannel segmentChannel = null;
+        private MappedByteBuffer segment = null;
+        private final ByteArrayOutputStream transactionBuffer;
+        private final DataOutputStream transactionOut;
+        private final CRC32 checksum = new CRC32();
+        private final Map<Path, Future<RecoverySegment>> segmentScans = new HashMap<>();
+        private RecoverySegment recoverySegment;
 
         private static final byte TRANSACTION_CONTINUE = 1;
         private static final byte TRANSACTION_COMMIT = 2;
@@ -650,9 +1039,18 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         private final Queue<Path> recoveryFiles;
 
-        public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion) throws IOException {
+        public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion, final long segmentSize) throws IOException {
             this.editDirectory = path;
             this.serde = serde;
+            this.segmentSize = segmentSize;
+
+            if (segmentSize > 0) {
+                transactionBuffer = new ByteArrayOutputStream();
+                transactionOut = new DataOutputStream(transactionBuffer);
+            } else {
+                transactionBuffer = null;
+                transactionOut = null;
+            }
 
             final File file = path.toFile();
             if (!file.exists() && !file.mkdirs()) {
@@ -694,10 +1092,16 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 try {
                     out.close();
                 } catch (final Exception e) {
-
+                    logger.warn("Failed to close journal for {} due to {}", this, e.toString(), e);
                 }
             }
 
+            try {
+                closeSegment();
+            } catch (final Exception e) {
+                logger.warn("Failed to close journal segment for {} due to {}", this, e.toString(), e);
+            }
+
             this.closed = true;
             this.dataOut = null;
         }
@@ -721,6 +1125,22 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         public void rollover() throws IOException {
             lock.lock();
             try {
+                if (segmentSize > 0) {
+                    final Path segmentPath;
+                    try {
+                        segmentPath = createSegment(0);
+                    } catch (final IOException ioe) {
+                        blackList();
+                        throw ioe;
+                    }
+
+                    // Only the rollover performed for a checkpoint moves this index. A segment that is created because
+                    // the current one is full holds transactions that the checkpoint's snapshot may not include.
+                    firstRetainedJournalIndex = getJournalIndex(segmentPath.toFile());
+                    blackListed = false;
+                    return;
+                }
+
                 // Note that here we are closing fileOut and NOT dataOut.
                 // This is very much intentional, not an oversight. This is done because of
                 // the way that the OutputStreams are structured. dataOut wraps a BufferedOutputStream,
@@ -760,14 +1180,11 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                     }
                 }
 
-                final Path editPath = getNewEditPath();
+                final Path editPath = getNewEditPath(JOURNAL_EXTENSION);
                 final FileOutputStream fos = new FileOutputStream(editPath.toFile());
                 try {
                     final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
-                    outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
-                    outStream.writeInt(writeAheadLogVersion);
-                    outStream.writeUTF(serde.getClass().getName());
-                    outStream.writeInt(serde.getVersion());
+                    writeHeader(outStream);
                     outStream.flush();
                     dataOut = outStream;
                     fileOut = fos;
@@ -785,7 +1202,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                     throw ioe;
                 }
 
-                currentJournalFilename = editPath.toFile().getName();
+                firstRetainedJournalIndex = getJournalIndex(editPath.toFile());
 
                 blackListed = false;
             } finally {
@@ -800,7 +1217,108 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             return Long.parseLong(number);
         }
 
-        private Path getNewEditPath() {
+        private void writeHeader(final DataOutputStream out) throws IOException {
+            out.writeUTF(MinimalLockingWriteAheadLog.class.getName());
+            out.writeInt(writeAheadLogVersion);
+            out.writeUTF(serde.getClass().getName());
+            out.writeInt(serde.getVersion());
+        }
+
+        /**
+         * Closes the current journal segment, if any, and begins appending to a
+         * new, pre-allocated segment that has room for at least the given
+         * number of bytes of transactions.
+         *
+         * @param minimumDataLength the number of bytes that must fit in the new
+         * segment after its header
+         * @return the path of the new segment
+         * @throws IOException if unable to create the segment
+         */
+        private Path createSegment(final int minimumDataLength) throws IOException {
+            closeSegment();
+
+            final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            final DataOutputStream headerOut = new DataOutputStream(headerBytes);
+            writeHeader(headerOut);
+            headerOut.flush();
+
+            final long size = Math.max(segmentSize, (long) headerBytes.size() + minimumDataLength);
+            final Path segmentPath = getNewEditPath(SEGMENT_EXTENSION);
+            final RandomAccessFile segmentFile = new RandomAccessFile(segmentPath.toFile(), "rw");
+            try {
+                final FileChannel channel = segmentFile.getChannel();
+
+                // Write the zeros rather than just setting the length of the file. A sparse file could fail to allocate
+                // a block when a page of the mapping is written back, and that failure cannot be reported to the writer.
+                final ByteBuffer zeros = ByteBuffer.allocate(64 * 1024);
+                long position = 0L;
+                while (position < size) {
+                    zeros.clear();
+                    if (size - position < zeros.capacity()) {
+                        zeros.limit((int) (size - position));
+                    }
+                    position += channel.write(zeros, position);
+                }
+
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+                mapped.put(headerBytes.getUnderlyingBuffer(), 0, headerBytes.size());
+
+                segmentChannel = channel;
+                segment = mapped;
+            } catch (final IOException ioe) {
+                try {
+                    segmentFile.close();
+                } catch (final IOException innerIOE) {
+                }
+
+                throw ioe;
+            }
+
+            logger.debug("{} appending to new journal segment {}", this, segmentPath);
+            return segmentPath;
+        }
+
+        private void closeSegment() throws IOException {
+            final FileChannel channel = segmentChannel;
+            final MappedByteBuffer mapped = segment;
+            segmentChannel = null;
+            segment = null;
+
+            // A sync forces only the current segment, so force this one before moving on from it. Otherwise, transactions
+            // written to it since the last sync (such as the earlier updates of a group commit) would not be durable when
+            // the sync that follows them returns.
+            if (mapped != null) {
+                mapped.force();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        private void appendToSegment(final long transactionId) throws IOException {
+            final MappedByteBuffer buffer = segment;
+            if (buffer == null) {
+                throw new IOException(this + " has no journal segment to append to");
+            }
+
+            final int length = transactionBuffer.size();
+            final int entryLength = SEGMENT_ENTRY_HEADER_LENGTH + length;
+            if (buffer.remaining() < entryLength) {
+                createSegment(entryLength);
+            }
+
+            final byte[] transactionBytes = transactionBuffer.getUnderlyingBuffer();
+            checksum.reset();
+            checksum.update(transactionBytes, 0, length);
+
+            final MappedByteBuffer out = segment;
+            out.putInt(length);
+            out.putLong(transactionId);
+            out.putInt((int) checksum.getValue());
+            out.put(transactionBytes, 0, length);
+        }
+
+        private Path getNewEditPath(final String extension) {
             final List<Path> recoveryPaths = getRecoveryPaths();
             final long newIndex;
             if (recoveryPaths == null || recoveryPaths.isEmpty()) {
@@ -810,7 +1328,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 newIndex = lastFileIndex + 1;
             }
 
-            return editDirectory.resolve(newIndex + JOURNAL_EXTENSION);
+            return editDirectory.resolve(newIndex + extension);
         }
 
         private List<Path> getRecoveryPaths() {
@@ -869,9 +1387,12 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         void clearOld() {
             final List<Path> oldRecoveryFiles = getRecoveryPaths();
 
+            // Journals created since the last rollover must be kept. Only the newest journal is kept when writing
+            // through streams, but a Partition may have appended to several journal segments since the rollover.
+            final long retainedIndex = firstRetainedJournalIndex;
             for (final Path path : oldRecoveryFiles) {
                 final File file = path.toFile();
-                if (file.getName().equals(currentJournalFilename)) {
+                if (getJournalIndex(file) >= retainedIndex) {
                     continue;
                 }
                 if (file.exists()) {
@@ -904,8 +1425,16 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 throw new IllegalStateException("Partition is closed");
             }
 
-            final DataOutputStream out = dataOut;
-            out.writeLong(transactionId);
+            final boolean appendToSegment = segmentSize > 0;
+            final DataOutputStream out;
+            if (appendToSegment) {
+                // the transaction is serialized in memory so that its length and checksum can precede it in the segment
+                transactionBuffer.reset();
+                out = transactionOut;
+            } else {
+                out = dataOut;
+                out.writeLong(transactionId);
+            }
 
             final int numEditsToSerialize = records.size();
             int editsSerialized = 0;
@@ -923,15 +1452,188 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             out.flush();
 
+            if (appendToSegment) {
+                appendToSegment(transactionId);
+                if (forceSync) {
+                    segment.force();
+                }
+                return;
+            }
+
             if (forceSync) {
                 fileOut.getFD().sync();
             }
         }
 
+        public void sync() throws IOException {
+            if (this.closed) {
+                throw new IllegalStateException("Partition is closed");
+            }
+
+            if (segmentSize > 0) {
+                // if there is no current segment, the previous one was forced when it was closed
+                final MappedByteBuffer mapped = segment;
+                if (mapped != null) {
+                    mapped.force();
+                }
+            } else {
+                fileOut.getFD().sync();
+            }
+        }
+
+        private static boolean isSegment(final Path path) {
+            return path.toFile().getName().endsWith(SEGMENT_EXTENSION);
+        }
+
+        public boolean hasRecoverySegments() {
+            for (final Path path : recoveryFiles) {
+                if (isSegment(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Submits a single task to the given executor that scans each of this
+         * Partition's journal segments in order. Replay of a segment waits only
+         * for that segment's scan, not for the scan of the whole Partition.
+         *
+         * @param executor the executor to scan the segments with
+         */
+        public void scanRecoverySegments(final ExecutorService executor) {
+            final List<FutureTask<RecoverySegment>> scans = new ArrayList<>();
+            for (final Path path : recoveryFiles) {
+                if (!isSegment(path)) {
+                    continue;
+                }
+
+                final FutureTask<RecoverySegment> scan = new FutureTask<>(new Callable<RecoverySegment>() {
+                    @Override
+                    public RecoverySegment call() throws IOException {
+                        return scanSegment(path);
+                    }
+                });
+                segmentScans.put(path, scan);
+                scans.add(scan);
+            }
+
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (final FutureTask<RecoverySegment> scan : scans) {
+                        scan.run();
+                    }
+                }
+            });
+        }
+
+        private RecoverySegment getRecoverySegment(final Path path) throws IOException {
+            final Future<RecoverySegment> scan = segmentScans.remove(path);
+            if (scan == null) {
+                return scanSegment(path);
+            }
+
+            try {
+                return scan.get();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for journal segment " + path + " to be scanned", ie);
+            } catch (final ExecutionException ee) {
+                final Throwable cause = ee.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to scan journal segment " + path, cause);
+            }
+        }
+
+        /**
+         * Maps the given journal segment into memory, reads its header and
+         * verifies the checksum of each of its transactions, which also brings
+         * the segment's pages into memory. Scanning stops at the first
+         * transaction that was not completely written, just as recovery from a
+         * stream stops at an unexpected End-of-File.
+         *
+         * @param path the journal segment to scan
+         * @return the scanned segment, positioned at its first transaction
+         * @throws IOException if unable to read the segment
+         */
+        private RecoverySegment scanSegment(final Path path) throws IOException {
+            final MappedByteBuffer buffer;
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            }
+
+            final DataInputStream headerIn = new DataInputStream(new ByteBufferInputStream(buffer));
+            final String waliImplementationClass = headerIn.readUTF();
+            if (!MinimalLockingWriteAheadLog.class.getName().equals(waliImplementationClass)) {
+                throw new IOException("Cannot recover from file " + path + " because it was written using the " + waliImplementationClass + " class");
+            }
+
+            final int waliVersion = headerIn.readInt();
+            if (waliVersion > writeAheadLogVersion) {
+                throw new IOException("Cannot recovery from file " + path + " because it was written using "
+                        + "WALI version " + waliVersion + ", but the version used to restore it is only " + writeAheadLogVersion);
+            }
+
+            headerIn.readUTF(); // ignore serde class name
+            final int serdeVersion = headerIn.readInt();
+            final int dataStart = buffer.position();
+
+            final CRC32 scanChecksum = new CRC32();
+            final byte[] chunk = new byte[8192];
+            int numTransactions = 0;
+            while (buffer.remaining() >= SEGMENT_ENTRY_HEADER_LENGTH) {
+                final int entryStart = buffer.position();
+                final int length = buffer.getInt();
+                if (length <= 0) {
+                    buffer.position(entryStart);
+                    break;
+                }
+
+                buffer.getLong();
+                final int expectedChecksum = buffer.getInt();
+                if (length > buffer.remaining()) {
+                    logger.warn("{} found a truncated transaction in {}; assuming crash and ignoring the remainder of the segment", this, path);
+                    buffer.position(entryStart);
+                    break;
+                }
+
+                scanChecksum.reset();
+                int remaining = length;
+                while (remaining > 0) {
+                    final int chunkLength = Math.min(remaining, chunk.length);
+                    buffer.get(chunk, 0, chunkLength);
+                    scanChecksum.update(chunk, 0, chunkLength);
+                    remaining -= chunkLength;
+                }
+
+                if ((int) scanChecksum.getValue() != expectedChecksum) {
+                    logger.warn("{} found a partially written transaction in {}; assuming crash and ignoring the remainder of the segment", this, path);
+                    buffer.position(entryStart);
+                    break;
+                }
+
+                numTransactions++;
+            }
+
+            final int dataEnd = buffer.position();
+            buffer.position(dataStart);
+            logger.debug("{} scanned {} transactions in journal segment {}", new Object[] {this, numTransactions, path});
+            return new RecoverySegment(buffer, dataEnd, serdeVersion);
+        }
+
         private DataInputStream createDataInputStream(final Path path) throws IOException {
             return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
         }
 
+        /**
+         * Returns the stream to recover the next transaction from. If the next
+         * recovery file is a journal segment, it becomes the current recovery
+         * segment and <code>null</code> is returned, just as when there are no
+         * more recovery files.
+         */
         private DataInputStream getRecoveryStream() throws IOException {
             if (recoveryIn != null && hasMoreData(recoveryIn)) {
                 return recoveryIn;
@@ -944,6 +1646,17 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 }
 
                 logger.debug("{} recovering from {}", this, nextRecoveryPath);
+                if (isSegment(nextRecoveryPath)) {
+                    if (recoveryIn != null) {
+                        recoveryIn.close();
+                        recoveryIn = null;
+                    }
+
+                    recoverySegment = getRecoverySegment(nextRecoveryPath);
+                    recoveryVersion = recoverySegment.getSerdeVersion();
+                    return null;
+                }
+
                 recoveryIn = createDataInputStream(nextRecoveryPath);
                 if (hasMoreData(recoveryIn)) {
                     final String waliImplementationClass = recoveryIn.readUTF();
@@ -970,8 +1683,23 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         public Long getNextRecoverableTransactionId() throws IOException {
             while (true) {
+                if (recoverySegment != null) {
+                    final Long transactionId = recoverySegment.nextTransactionId();
+                    if (transactionId != null) {
+                        recoveryIn = recoverySegment.getTransactionStream();
+                        this.maxTransactionId.set(transactionId);
+                        return transactionId;
+                    }
+
+                    recoverySegment = null;
+                    recoveryIn = null;
+                }
+
                 DataInputStream recoveryStream = getRecoveryStream();
                 if (recoveryStream == null) {
+                    if (recoverySegment != null) {
+                        continue;
+                    }
                     return null;
                 }
 
@@ -1005,14 +1733,19 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         + "in directory " + editDirectory);
             }
 
-            final Path newEditPath = getNewEditPath();
+            recoverySegment = null;
+            segmentScans.clear();
+
+            if (segmentSize > 0) {
+                createSegment(0);
+                return;
+            }
+
+            final Path newEditPath = getNewEditPath(JOURNAL_EXTENSION);
 
             final FileOutputStream fos = new FileOutputStream(newEditPath.toFile());
             final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
-            outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
-            outStream.writeInt(writeAheadLogVersion);
-            outStream.writeUTF(serde.getClass().getName());
-            outStream.writeInt(serde.getVersion());
+            writeHeader(outStream);
             outStream.flush();
             dataOut = outStream;
             fileOut = fos;
@@ -1076,4 +1809,81 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             return description;
         }
     }
+
+    /**
+     * A journal segment that has been scanned and is being replayed during
+     * recovery.
+     */
+    private static class RecoverySegment {
+
+        private final ByteBuffer buffer;
+        private final int dataEnd;
+        private final int serdeVersion;
+        private ByteBuffer transaction;
+
+        public RecoverySegment(final ByteBuffer buffer, final int dataEnd, final int serdeVersion) {
+            this.buffer = buffer;
+            this.dataEnd = dataEnd;
+            this.serdeVersion = serdeVersion;
+        }
+
+        public int getSerdeVersion() {
+            return serdeVersion;
+        }
+
+        public Long nextTransactionId() {
+            if (buffer.position() >= dataEnd) {
+                return null;
+            }
+
+            final int length = buffer.getInt();
+            final long transactionId = buffer.getLong();
+            buffer.getInt(); // checksum was verified when the segment was scanned
+
+            transaction = buffer.slice();
+            transaction.limit(length);
+            buffer.position(buffer.position() + length);
+            return transactionId;
+        }
+
+        public DataInputStream getTransactionStream() {
+            return new DataInputStream(new ByteBufferInputStream(transaction));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            final int bytesToRead = Math.min(len, buffer.remaining());
+            buffer.get(b, off, bytesToRead);
+            return bytesToRead;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
@@ -27,15 +27,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
@@ -244,6 +249,400 @@ public class TestMinimalLockingWriteAheadLog {
         }
     }
 
+    @Test
+    public void testGroupCommit() throws IOException, InterruptedException {
+        final int numPartitions = 4;
+
+        final Path path = Paths.get("target/minimal-locking-repo-group-commit");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        final int numThreads = 8;
+        final CountDownLatch threadsStarted = new CountDownLatch(numThreads);
+        final AtomicInteger syncCount = new AtomicInteger(0);
+        final SyncListener syncListener = new SyncListener() {
+            @Override
+            public void onSync(final int partitionIndex) {
+                // hold up the first sync until every thread is running so that the others queue their updates behind it
+                if (syncCount.incrementAndGet() == 1) {
+                    try {
+                        threadsStarted.await(5, TimeUnit.SECONDS);
+                        Thread.sleep(100L);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void onGlobalSync() {
+            }
+        };
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, syncListener, true);
+        final Collection<DummyRecord> initialRecs = repo.recoverRecords();
+        assertTrue(initialRecs.isEmpty());
+
+        final int updatesPerThread = 200;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final int startIndex = i * updatesPerThread;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    threadsStarted.countDown();
+                    try {
+                        for (int j = 0; j < updatesPerThread; j++) {
+                            final DummyRecord record = new DummyRecord(String.valueOf(startIndex + j), UpdateType.CREATE);
+                            record.setProperty("A", "B");
+                            final int partitionIndex = repo.update(Collections.singleton(record), true);
+                            assertTrue(partitionIndex >= 0 && partitionIndex < numPartitions);
+                        }
+                    } catch (final Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        // every update is synced, but concurrent updates share a sync
+        assertTrue(syncCount.get() > 0);
+        assertTrue(syncCount.get() < numThreads * updatesPerThread);
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(numThreads * updatesPerThread, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals("B", record.getProperties().get("A"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testGroupCommitFailsOnlyUnwrittenUpdates() throws IOException, InterruptedException {
+        final Path path = Paths.get("target/minimal-locking-repo-group-commit-failure");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        // the first sync is held up until the other updates are queued behind it, so that they are written as a single batch
+        final CountDownLatch firstSyncStarted = new CountDownLatch(1);
+        final CountDownLatch batchQueued = new CountDownLatch(1);
+        final AtomicInteger syncCount = new AtomicInteger(0);
+        final SyncListener syncListener = new SyncListener() {
+            @Override
+            public void onSync(final int partitionIndex) {
+                if (syncCount.incrementAndGet() == 1) {
+                    firstSyncStarted.countDown();
+                    try {
+                        batchQueued.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void onGlobalSync() {
+            }
+        };
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, 4, serde, syncListener, true);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // the first two transactions are written; writing the third fails, so it and the fourth are never written
+        serde.setThrowIOEAfterNSerializeEdits(2);
+
+        final String[] ids = new String[] {"A", "B", "C", "D"};
+        final Throwable[] failures = new Throwable[ids.length];
+        final Thread[] threads = new Thread[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        repo.update(Collections.singleton(new DummyRecord(ids[index], UpdateType.CREATE)), true);
+                    } catch (final Throwable t) {
+                        failures[index] = t;
+                    }
+                }
+            });
+        }
+
+        threads[0].start();
+        assertTrue(firstSyncStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < threads.length; i++) {
+            threads[i].start();
+            Thread.sleep(100L);
+        }
+        batchQueued.countDown();
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(null, failures[0]);
+        assertEquals(null, failures[1]);
+        assertTrue(failures[2] instanceof IOException);
+        assertTrue(failures[3] instanceof IOException);
+        repo.shutdown();
+
+        serde.setThrowIOEAfterNSerializeEdits(-1);
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, 4, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        final Set<String> recoveredIds = new HashSet<>();
+        for (final DummyRecord record : recoveredRecords) {
+            recoveredIds.add(record.getId());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("A", "B")), recoveredIds);
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testCheckpointWhileUpdating() throws IOException, InterruptedException {
+        final int numPartitions = 4;
+        final Path path = Paths.get("target/minimal-locking-repo-concurrent-checkpoint");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // each thread owns its own records: it creates them, updates them and deletes every third one
+        final int numThreads = 4;
+        final int recordsPerThread = 5000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final int startIndex = i * recordsPerThread;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < recordsPerThread; j++) {
+                            final String id = String.valueOf(startIndex + j);
+                            final DummyRecord created = new DummyRecord(id, UpdateType.CREATE);
+                            created.setProperty("A", "B");
+                            repo.update(Collections.singleton(created), false);
+
+                            final DummyRecord updated = new DummyRecord(id, UpdateType.UPDATE);
+                            updated.setProperty("A", "C");
+                            repo.update(Collections.singleton(updated), false);
+
+                            if (j % 3 == 0) {
+                                repo.update(Collections.singleton(new DummyRecord(id, UpdateType.DELETE)), false);
+                            }
+                        }
+                    } catch (final Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        final long checkpointsBefore = repo.getCheckpointCount();
+        boolean running = true;
+        while (running) {
+            repo.checkpoint();
+
+            running = false;
+            for (final Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        assertTrue(repo.getCheckpointCount() > checkpointsBefore);
+        assertTrue(repo.getLastCheckpointBlockedMillis() <= repo.getLastCheckpointMillis());
+        assertTrue(repo.getTotalCheckpointBlockedMillis() <= repo.getTotalCheckpointMillis());
+        repo.shutdown();
+
+        final int expectedRecords = numThreads * (recordsPerThread - (recordsPerThread + 2) / 3);
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(expectedRecords, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals("C", record.getProperty("A"));
+        }
+
+        // the snapshot alone must also hold exactly the recovered records
+        assertEquals(expectedRecords, recoverRepo.checkpoint());
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testCheckpointWhileAppendingToSegments() throws IOException, InterruptedException {
+        final int numPartitions = 4;
+        final Path path = Paths.get("target/minimal-locking-repo-concurrent-checkpoint-segments");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        // use tiny segments so that partitions move to new segments while each checkpoint serializes its snapshot
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null, false, 4096L);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // keep updating until after the last checkpoint has completed, so that it never includes every update
+        final int numThreads = 4;
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicInteger recordsCreated = new AtomicInteger(0);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final String prefix = i + "-";
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; !stopped.get(); j++) {
+                            final DummyRecord created = new DummyRecord(prefix + j, UpdateType.CREATE);
+                            created.setProperty("A", "B");
+                            repo.update(Collections.singleton(created), false);
+                            recordsCreated.incrementAndGet();
+                        }
+                    } catch (final Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(10L);
+            repo.checkpoint();
+        }
+        stopped.set(true);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null, false, 4096L);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(recordsCreated.get(), recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals("B", record.getProperty("A"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testMappedJournalSegments() throws IOException {
+        final int numPartitions = 4;
+        final Path path = Paths.get("target/minimal-locking-repo-mapped-segments");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+
+        // start with stream journals so that switching to journal segments must recover them
+        final WriteAheadRepository<DummyRecord> streamRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertTrue(streamRepo.recoverRecords().isEmpty());
+        new InsertThread(100, 0, streamRepo).run();
+        streamRepo.shutdown();
+
+        // use tiny segments so that each partition must append to many of them
+        final WriteAheadRepository<DummyRecord> segmentRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null, false, 4096L);
+        assertEquals(100, segmentRepo.recoverRecords().size());
+        new InsertThread(5000, 100, segmentRepo).run();
+        for (int i = 0; i < 50; i++) {
+            segmentRepo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.DELETE)), false);
+        }
+        final DummyRecord updated = new DummyRecord("60", UpdateType.UPDATE);
+        updated.setProperty("A", "C");
+        segmentRepo.update(Collections.singleton(updated), true);
+        segmentRepo.shutdown();
+
+        final File[] segments = path.resolve("partition-0").toFile().listFiles();
+        assertTrue(segments.length > 1);
+        for (final File segment : segments) {
+            assertTrue(segment.getName().endsWith(".segment"));
+        }
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null, false, 4096L);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(5050, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals(record.getId().equals("60") ? "C" : "B", record.getProperty("A"));
+        }
+
+        // segments appended to after the checkpoint's rollover must survive the checkpoint
+        new InsertThread(3000, 10000, recoverRepo).run();
+        recoverRepo.checkpoint();
+        new InsertThread(1000, 20000, recoverRepo).run();
+        recoverRepo.shutdown();
+
+        // and switching back to stream journals must recover the segments
+        final WriteAheadRepository<DummyRecord> streamRecoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertEquals(9050, streamRecoverRepo.recoverRecords().size());
+        streamRecoverRepo.shutdown();
+    }
+
+    @Test
+    public void testRecoverFromPartiallyWrittenSegment() throws IOException {
+        final Path path = Paths.get("target/minimal-locking-repo-partial-segment");
+        deleteRecursively(path.toFile());
+        assertTrue(path.toFile().mkdirs());
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final WriteAheadRepository<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, 1, serde, null, false, 1024 * 1024L);
+        assertTrue(repo.recoverRecords().isEmpty());
+        new InsertThread(10, 0, repo).run();
+        repo.shutdown();
+
+        // corrupt the last byte of the last transaction, as if the crash happened before its page was written back
+        File lastSegment = null;
+        for (final File segment : path.resolve("partition-0").toFile().listFiles()) {
+            if (lastSegment == null || segment.getName().compareTo(lastSegment.getName()) > 0) {
+                lastSegment = segment;
+            }
+        }
+        final byte[] segmentBytes = Files.readAllBytes(lastSegment.toPath());
+        int end = segmentBytes.length;
+        while (segmentBytes[end - 1] == 0) {
+            end--;
+        }
+        segmentBytes[end - 1] ^= 0x5A;
+        Files.write(lastSegment.toPath(), segmentBytes);
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, 1, serde, null, false, 1024 * 1024L);
+        assertEquals(9, recoverRepo.recoverRecords().size());
+        recoverRepo.shutdown();
+    }
+
     @Test
     public void testRecoverAfterIOException() throws IOException {
         final int numPartitions = 5;
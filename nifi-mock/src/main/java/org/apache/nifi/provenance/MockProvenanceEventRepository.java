@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
 
@@ -81,6 +82,11 @@ public class MockProvenanceEventRepository implements ProvenanceEventRepository
         throw new UnsupportedOperationException("MockProvenanceEventRepository does not support querying");
     }
 
+    @Override
+    public QueryPage getQueryPage(Query query, String continuationToken, int pageSize) {
+        throw new UnsupportedOperationException("MockProvenanceEventRepository does not support querying");
+    }
+
     @Override
     public ComputeLineageSubmission submitLineageComputation(String flowFileUuid) {
         throw new UnsupportedOperationException("MockProvenanceEventRepository does not support Lineage Computation");
@@ -22,6 +22,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -204,6 +208,29 @@ public class MockProcessSession implements ProcessSession {
         }
     }
 
+    @Override
+    public void exportTo(final FlowFile flowFile, final WritableByteChannel channel) {
+        validateState(flowFile);
+        if (flowFile == null || channel == null) {
+            throw new IllegalArgumentException("arguments cannot be null");
+        }
+
+        if (!(flowFile instanceof MockFlowFile)) {
+            throw new IllegalArgumentException("Cannot export a flow file that I did not create");
+        }
+
+        final MockFlowFile mock = (MockFlowFile) flowFile;
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(mock.getData());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (final IOException e) {
+            throw new FlowFileAccessException(e.toString(), e);
+        }
+    }
+
     @Override
     public void exportTo(final FlowFile flowFile, final Path path, final boolean append) {
         validateState(flowFile);
@@ -309,6 +336,14 @@ public class MockProcessSession implements ProcessSession {
         }
     }
 
+    @Override
+    public MockFlowFile importFrom(final ReadableByteChannel channel, final FlowFile flowFile) {
+        if (channel == null) {
+            throw new IllegalArgumentException("argument cannot be null");
+        }
+        return importFrom(Channels.newInputStream(channel), flowFile);
+    }
+
     @Override
     public MockFlowFile importFrom(final Path path, final boolean keepSourceFile, final FlowFile flowFile) {
         validateState(flowFile);
@@ -36,6 +36,7 @@ public class ProvenanceRequestDTO {
     private String minimumFileSize;
     private String maximumFileSize;
     private Integer maxResults;
+    private String continuationToken;
 
     /**
      * @return the search terms to use for this search
@@ -122,4 +123,18 @@ public class ProvenanceRequestDTO {
     public void setMaxResults(Integer maxResults) {
         this.maxResults = maxResults;
     }
+
+    /**
+     * @return where the page of results begins, when retrieving a page of results
+     */
+    @ApiModelProperty(
+            value = "The continuation token of the previous page of results, or null for the first page. Only used when retrieving a page of results."
+    )
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
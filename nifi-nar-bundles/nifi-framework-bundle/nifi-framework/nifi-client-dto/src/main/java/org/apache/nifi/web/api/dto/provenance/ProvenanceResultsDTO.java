@@ -38,6 +38,8 @@ public class ProvenanceResultsDTO {
     private Date generated;
     private Date oldestEvent;
     private Integer timeOffset;
+    private String continuationToken;
+    private Boolean moreResults;
 
     private Set<String> errors;
 
@@ -141,4 +143,32 @@ public class ProvenanceResultsDTO {
         this.timeOffset = timeOffset;
     }
 
+    /**
+     * @return where the next page of results begins, when a page of results was retrieved
+     */
+    @ApiModelProperty(
+            value = "The continuation token with which to retrieve the next page of results. Only set when a page of results was retrieved."
+    )
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * @return whether the next page may contain more results, when a page of results was retrieved
+     */
+    @ApiModelProperty(
+            value = "Whether the next page of results may contain more events. Only set when a page of results was retrieved."
+    )
+    public Boolean getMoreResults() {
+        return moreResults;
+    }
+
+    public void setMoreResults(Boolean moreResults) {
+        this.moreResults = moreResults;
+    }
+
 }
@@ -33,6 +33,8 @@ public class ConnectionStatusDTO {
     private String queuedSize;
     private String queued;
     private String output;
+    private String swapInDuration;
+    private String swapOutDuration;
 
     private String sourceId;
     private String sourceName;
@@ -208,4 +210,32 @@ public class ConnectionStatusDTO {
         this.output = output;
     }
 
+    /**
+     * @return total time spent reading swap files for this connection
+     */
+    @ApiModelProperty(
+            value = "The total time spent reading swap files for the connection since it was created or NiFi was started."
+    )
+    public String getSwapInDuration() {
+        return swapInDuration;
+    }
+
+    public void setSwapInDuration(String swapInDuration) {
+        this.swapInDuration = swapInDuration;
+    }
+
+    /**
+     * @return total time spent writing swap files for this connection
+     */
+    @ApiModelProperty(
+            value = "The total time spent writing swap files for the connection since it was created or NiFi was started."
+    )
+    public String getSwapOutDuration() {
+        return swapOutDuration;
+    }
+
+    public void setSwapOutDuration(String swapOutDuration) {
+        this.swapOutDuration = swapOutDuration;
+    }
+
 }
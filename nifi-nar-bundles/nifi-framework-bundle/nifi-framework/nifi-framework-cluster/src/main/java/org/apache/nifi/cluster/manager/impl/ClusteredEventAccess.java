@@ -30,6 +30,7 @@ import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventRepository;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.reporting.EventAccess;
@@ -106,6 +107,11 @@ public class ClusteredEventAccess implements EventAccess {
                 return null;
             }
 
+            @Override
+            public QueryPage getQueryPage(final Query query, final String continuationToken, final int pageSize) {
+                return null;
+            }
+
             @Override
             public ComputeLineageSubmission submitExpandChildren(final long eventId) {
                 return null;
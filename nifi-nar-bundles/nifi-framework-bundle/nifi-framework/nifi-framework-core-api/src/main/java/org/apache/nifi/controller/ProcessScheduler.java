@@ -17,6 +17,7 @@
 package org.apache.nifi.controller;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Funnel;
@@ -111,6 +112,15 @@ public interface ProcessScheduler {
      */
     int getActiveThreadCount(Object scheduled);
 
+    /**
+     * @param scheduled scheduled component
+     * @param timeUnit the unit of the returned duration
+     * @return the Run Duration that was most recently chosen at runtime for the
+     * given component, which is meaningful only for a Processor whose Run
+     * Duration is adaptive
+     */
+    long getAdaptiveRunDuration(Object scheduled, TimeUnit timeUnit);
+
     /**
      * @param scheduled component to test
      * @return a boolean indicating whether or not the given object is scheduled
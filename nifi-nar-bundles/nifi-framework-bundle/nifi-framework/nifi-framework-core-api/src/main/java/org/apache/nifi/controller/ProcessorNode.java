@@ -45,6 +45,8 @@ public abstract class ProcessorNode extends AbstractConfiguredComponent implemen
 
     public abstract boolean isTriggeredSerially();
 
+    public abstract boolean isBlockingIO();
+
     public abstract boolean isEventDrivenSupported();
 
     public abstract boolean isHighThroughputSupported();
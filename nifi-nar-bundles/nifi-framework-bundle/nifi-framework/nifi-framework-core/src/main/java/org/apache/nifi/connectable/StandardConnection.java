@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -29,8 +30,10 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.nifi.controller.Heartbeater;
+import org.apache.nifi.controller.LockableFlowFileQueue;
 import org.apache.nifi.controller.ProcessScheduler;
 import org.apache.nifi.controller.StandardFlowFileQueue;
+import org.apache.nifi.controller.StripedFlowFileQueue;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
@@ -55,7 +58,7 @@ public final class StandardConnection implements Connection {
     private final Connectable source;
     private final AtomicReference<Connectable> destination;
     private final AtomicReference<Collection<Relationship>> relationships;
-    private final StandardFlowFileQueue flowFileQueue;
+    private final LockableFlowFileQueue flowFileQueue;
     private final AtomicInteger labelIndex = new AtomicInteger(1);
     private final AtomicLong zIndex = new AtomicLong(0L);
     private final ProcessScheduler scheduler;
@@ -70,8 +73,18 @@ public final class StandardConnection implements Connection {
         destination = new AtomicReference<>(builder.destination);
         relationships = new AtomicReference<>(Collections.unmodifiableCollection(builder.relationships));
         scheduler = builder.scheduler;
-        flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
-            scheduler, builder.swapManager, builder.eventReporter, NiFiProperties.getInstance().getQueueSwapThreshold(), builder.heartbeater);
+
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        final int queuePartitions = properties.getQueuePartitions(id);
+        if (queuePartitions > 1) {
+            flowFileQueue = new StripedFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                scheduler, builder.swapManager, builder.eventReporter, properties.getQueueSwapThreshold(), builder.heartbeater, queuePartitions,
+                builder.swapInExecutor, builder.swapOutExecutor);
+        } else {
+            flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                scheduler, builder.swapManager, builder.eventReporter, properties.getQueueSwapThreshold(), builder.heartbeater,
+                builder.swapInExecutor, builder.swapOutExecutor);
+        }
         hashCode = new HashCodeBuilder(7, 67).append(id).toHashCode();
     }
 
@@ -266,6 +279,8 @@ public final class StandardConnection implements Connection {
         private Connectable destination;
         private Collection<Relationship> relationships;
         private FlowFileSwapManager swapManager;
+        private ExecutorService swapInExecutor;
+        private ExecutorService swapOutExecutor;
         private EventReporter eventReporter;
         private FlowFileRepository flowFileRepository;
         private ProvenanceEventRepository provenanceRepository;
@@ -327,6 +342,12 @@ public final class StandardConnection implements Connection {
             return this;
         }
 
+        public Builder swapExecutors(final ExecutorService swapInExecutor, final ExecutorService swapOutExecutor) {
+            this.swapInExecutor = swapInExecutor;
+            this.swapOutExecutor = swapOutExecutor;
+            return this;
+        }
+
         public Builder eventReporter(final EventReporter eventReporter) {
             this.eventReporter = eventReporter;
             return this;
@@ -16,95 +16,212 @@
  */
 package org.apache.nifi.controller;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.util.Connectables;
 
+/**
+ * <p>
+ * Hands Event-Driven components that have work to do to the threads of the Event-Driven thread pool. A component's
+ * Worker is placed on the ready queue once, when the first event for it arrives, and stays there until it has no more
+ * events; further events only increment its event count. Each event wakes exactly one parked thread.
+ * </p>
+ *
+ * <p>
+ * A Worker that is on the ready queue but cannot run yet, for instance because it is yielded or its destinations are
+ * full, is set aside. Workers that were set aside are returned to the ready queue whenever a thread wakes up, so that
+ * they are checked again when any event occurs or, at the latest, after {@link #DEFERRED_RETRY_NANOS}, even if no
+ * thread ever runs out of work.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
 public class EventDrivenWorkerQueue implements WorkerQueue {
 
-    private final Object workMonitor = new Object();
+    private static final long DEFERRED_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
 
-    private final Map<Connectable, Worker> workerMap = new HashMap<>();   // protected by synchronizing on workMonitor
-    private final WorkerReadyQueue workerQueue;
+    private final ConcurrentMap<Connectable, Worker> workerMap = new ConcurrentHashMap<>();
+    private final Queue<Worker> readyQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Worker> deferredQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> parkedThreads = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextDeferredRetryNanos = new AtomicLong(System.nanoTime());
+    private final ProcessScheduler scheduler;
+
+    private volatile boolean clustered;
+    private volatile boolean primary;
 
     public EventDrivenWorkerQueue(final boolean clustered, final boolean primary, final ProcessScheduler scheduler) {
-        workerQueue = new WorkerReadyQueue(scheduler);
-        workerQueue.setClustered(clustered);
-        workerQueue.setPrimary(primary);
+        this.scheduler = scheduler;
+        this.clustered = clustered;
+        this.primary = primary;
     }
 
     @Override
     public void setClustered(final boolean clustered) {
-        workerQueue.setClustered(clustered);
+        this.clustered = clustered;
     }
 
     @Override
     public void setPrimary(final boolean primary) {
-        workerQueue.setPrimary(primary);
+        this.primary = primary;
     }
 
     @Override
     public Worker poll(final long timeout, final TimeUnit timeUnit) {
-        final long maxTime = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-        while (System.currentTimeMillis() < maxTime) {
-            synchronized (workMonitor) {
-                final Worker worker = workerQueue.poll();
-                if (worker == null) {
-                    // nothing to do. wait until we have something to do.
-                    final long timeLeft = maxTime - System.currentTimeMillis();
-                    if (timeLeft <= 0) {
-                        return null;
-                    }
-
-                    try {
-                        workMonitor.wait(timeLeft);
-                    } catch (final InterruptedException ignored) {
-                    }
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        final Thread currentThread = Thread.currentThread();
+
+        while (true) {
+            retryDeferredIfDue();
+
+            final Worker worker = pollReady();
+            if (worker != null) {
+                // Decrement the amount of work there is to do for this worker. If there is more, leave it on the ready
+                // queue so that another thread can work on it concurrently.
+                final int workLeft = worker.decrementEventCount();
+                if (workLeft > 0) {
+                    readyQueue.offer(worker);
+                    signal();
                 } else {
-                    // Decrement the amount of work there is to do for this worker.
-                    final int workLeft = worker.decrementEventCount();
-                    if (workLeft > 0) {
-                        workerQueue.offer(worker);
-                    }
+                    unqueue(worker);
+                }
 
-                    return worker;
+                return worker;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                return null;
+            }
+
+            // Register as parked before checking the ready queue one last time, so that an event that arrives after
+            // the check will wake this thread.
+            parkedThreads.offer(currentThread);
+            if (!readyQueue.isEmpty()) {
+                // If this thread has already been signalled, the signal may be meant for a Worker other than the one
+                // this thread is about to take, so pass it on to another parked thread.
+                if (!parkedThreads.remove(currentThread)) {
+                    signal();
                 }
+                continue;
             }
+
+            final long parkNanos = deferredQueue.isEmpty() ? remaining : Math.min(remaining, DEFERRED_RETRY_NANOS);
+            LockSupport.parkNanos(this, parkNanos);
+            parkedThreads.remove(currentThread);
+
+            // Check again whether the Workers that were set aside are now able to run.
+            retryDeferred();
         }
+    }
 
-        return null;
+    /**
+     * Returns the Workers that were set aside to the ready queue if they have not been checked for a while, so that
+     * they are not starved when the threads are kept busy by other Workers and never park
+     */
+    private void retryDeferredIfDue() {
+        final long nextRetry = nextDeferredRetryNanos.get();
+        if (System.nanoTime() - nextRetry >= 0L && nextDeferredRetryNanos.compareAndSet(nextRetry, System.nanoTime() + DEFERRED_RETRY_NANOS)) {
+            retryDeferred();
+        }
     }
 
-    @Override
-    public void offer(final Connectable connectable) {
-        synchronized (workMonitor) {
-            Worker worker = workerMap.get(connectable);
-            if (worker == null) {
-                // if worker is null, then it has not been scheduled to run; ignore the event.
-                return;
+    private void retryDeferred() {
+        Worker deferred;
+        while ((deferred = deferredQueue.poll()) != null) {
+            readyQueue.offer(deferred);
+        }
+    }
+
+    /**
+     * @return the next Worker on the ready queue that is able to run, or <code>null</code> if there is none
+     */
+    private Worker pollReady() {
+        Worker worker;
+        while ((worker = readyQueue.poll()) != null) {
+            if (workerMap.get(worker.getConnectable()) != worker) {
+                // the component's work has been suspended since the Worker was queued
+                continue;
             }
 
-            final int countBefore = worker.incrementEventCount();
-            if (countBefore < 0) {
-                worker.setWorkCount(1);
+            final DelayProcessingReason reason = getDelayReason(worker);
+            if (reason == null) {
+                return worker;
             }
-            if (countBefore <= 0) {
-                // If countBefore > 0 then it's already on the queue, so just incrementing its counter is sufficient.
-                workerQueue.offer(worker);
+
+            switch (reason) {
+                case YIELDED:
+                case ISOLATED:
+                case DESTINATION_FULL:
+                case ALL_WORK_PENALIZED:
+                case NO_WORK:
+                case TOO_MANY_THREADS:
+                    // there will not be an event that triggers this to happen, so we set the worker aside to be checked again later.
+                    deferredQueue.offer(worker);
+                    break;
+                default:
+                case NOT_RUNNING:
+                    // There's no need to check if this worker is available again until a another event
+                    // occurs. Therefore, we keep him off of the queue and reset his work count
+                    worker.resetWorkCount();
+                    unqueue(worker);
+                    break;
             }
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks the Worker as no longer being on the ready queue, unless an event arrived for it in the meantime, in which
+     * case it is put back on the queue
+     */
+    private void unqueue(final Worker worker) {
+        worker.queued.set(false);
+        if (worker.workCount.get() > 0 && worker.queued.compareAndSet(false, true)) {
+            readyQueue.offer(worker);
+            signal();
+        }
+    }
+
+    private void signal() {
+        final Thread parked = parkedThreads.poll();
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    @Override
+    public void offer(final Connectable connectable) {
+        final Worker worker = workerMap.get(connectable);
+        if (worker == null) {
+            // if worker is null, then it has not been scheduled to run; ignore the event.
+            return;
+        }
 
-            workMonitor.notify();
+        final int countBefore = worker.incrementEventCount();
+        if (countBefore < 0) {
+            worker.setWorkCount(1);
         }
+
+        // If the worker is already on the ready queue, incrementing its counter is sufficient.
+        if (worker.queued.compareAndSet(false, true)) {
+            readyQueue.offer(worker);
+        }
+
+        signal();
     }
 
     private int getWorkCount(final Connectable connectable) {
@@ -117,36 +234,34 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
 
     @Override
     public void resumeWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final int workCount = getWorkCount(connectable);
-            final Worker worker = new Worker(connectable);
-            workerMap.put(connectable, worker);
-
-            if (workCount > 0) {
-                worker.setWorkCount(workCount);
-                workerQueue.offer(worker);
-                workMonitor.notify();
-            }
+        final int workCount = getWorkCount(connectable);
+        final Worker worker = new Worker(connectable);
+        workerMap.put(connectable, worker);
+
+        if (workCount > 0) {
+            worker.setWorkCount(workCount);
+            worker.queued.set(true);
+            readyQueue.offer(worker);
+            signal();
         }
     }
 
     @Override
     public void suspendWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final Worker worker = this.workerMap.remove(connectable);
-            if (worker == null) {
-                return;
-            }
-
-            worker.resetWorkCount();
-            workerQueue.remove(worker);
+        final Worker worker = workerMap.remove(connectable);
+        if (worker == null) {
+            return;
         }
+
+        // the Worker is discarded when it is next polled from the ready queue
+        worker.resetWorkCount();
     }
 
     public static class Worker implements EventBasedWorker {
 
         private final Connectable connectable;
         private final AtomicInteger workCount = new AtomicInteger(0);
+        private final AtomicBoolean queued = new AtomicBoolean(false);
 
         public Worker(final Connectable connectable) {
             this.connectable = connectable;
@@ -176,144 +291,83 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
         }
     }
 
-    @SuppressWarnings("serial")
-    private static class WorkerReadyQueue extends LinkedList<Worker> {
-
-        private final ProcessScheduler scheduler;
+    private DelayProcessingReason getDelayReason(final Worker worker) {
+        final Connectable connectable = worker.getConnectable();
 
-        private volatile boolean clustered = false;
-        private volatile boolean primary = false;
-
-        public WorkerReadyQueue(final ProcessScheduler scheduler) {
-            this.scheduler = scheduler;
+        if (ScheduledState.RUNNING != connectable.getScheduledState()) {
+            return DelayProcessingReason.NOT_RUNNING;
         }
 
-        public void setClustered(final boolean clustered) {
-            this.clustered = clustered;
+        if (connectable.getYieldExpiration() > System.currentTimeMillis()) {
+            return DelayProcessingReason.YIELDED;
         }
 
-        public void setPrimary(final boolean primary) {
-            this.primary = primary;
-        }
+        // For Remote Output Ports,
+        int availableRelationshipCount = 0;
+        if (!connectable.getRelationships().isEmpty()) {
+            availableRelationshipCount = getAvailableRelationshipCount(connectable);
 
-        @Override
-        public Worker poll() {
-            final List<Worker> putBack = new ArrayList<>();
-
-            Worker worker;
-            try {
-                while ((worker = super.poll()) != null) {
-                    final DelayProcessingReason reason = getDelayReason(worker);
-                    if (reason == null) {
-                        return worker;
-                    } else {
-                        // Worker is not ready. We may want to add him back to the queue, depending on the reason that he is unready.
-                        switch (reason) {
-                            case YIELDED:
-                            case ISOLATED:
-                            case DESTINATION_FULL:
-                            case ALL_WORK_PENALIZED:
-                            case NO_WORK:
-                            case TOO_MANY_THREADS:
-                                // there will not be an event that triggers this to happen, so we add this worker back to the queue.
-                                putBack.add(worker);
-                                break;
-                            default:
-                            case NOT_RUNNING:
-                                // There's no need to check if this worker is available again until a another event
-                                // occurs. Therefore, we keep him off of the queue and reset his work count
-                                worker.resetWorkCount();
-                                break;
-                        }
-                    }
-                }
-            } finally {
-                if (!putBack.isEmpty()) {
-                    super.addAll(putBack);
-                }
+            if (availableRelationshipCount == 0) {
+                return DelayProcessingReason.DESTINATION_FULL;
             }
-
-            return null;
         }
 
-        private DelayProcessingReason getDelayReason(final Worker worker) {
-            final Connectable connectable = worker.getConnectable();
-
-            if (ScheduledState.RUNNING != connectable.getScheduledState()) {
-                return DelayProcessingReason.NOT_RUNNING;
-            }
-
-            if (connectable.getYieldExpiration() > System.currentTimeMillis()) {
-                return DelayProcessingReason.YIELDED;
-            }
+        if (connectable.hasIncomingConnection() && !Connectables.flowFilesQueued(connectable)) {
+            return DelayProcessingReason.NO_WORK;
+        }
 
-            // For Remote Output Ports,
-            int availableRelationshipCount = 0;
-            if (!connectable.getRelationships().isEmpty()) {
-                availableRelationshipCount = getAvailableRelationshipCount(connectable);
+        final int activeThreadCount = scheduler.getActiveThreadCount(worker.getConnectable());
+        final int maxThreadCount = worker.getConnectable().getMaxConcurrentTasks();
+        if (maxThreadCount > 0 && activeThreadCount >= maxThreadCount) {
+            return DelayProcessingReason.TOO_MANY_THREADS;
+        }
 
-                if (availableRelationshipCount == 0) {
-                    return DelayProcessingReason.DESTINATION_FULL;
-                }
+        if (connectable instanceof ProcessorNode) {
+            final ProcessorNode procNode = (ProcessorNode) connectable;
+            if (procNode.isIsolated() && clustered && !primary) {
+                return DelayProcessingReason.ISOLATED;
             }
 
-            if (connectable.hasIncomingConnection() && !Connectables.flowFilesQueued(connectable)) {
-                return DelayProcessingReason.NO_WORK;
+            final boolean triggerWhenAnyAvailable = procNode.isTriggerWhenAnyDestinationAvailable();
+            final boolean allDestinationsAvailable = availableRelationshipCount == procNode.getRelationships().size();
+            if (!triggerWhenAnyAvailable && !allDestinationsAvailable) {
+                return DelayProcessingReason.DESTINATION_FULL;
             }
+        }
 
-            final int activeThreadCount = scheduler.getActiveThreadCount(worker.getConnectable());
-            final int maxThreadCount = worker.getConnectable().getMaxConcurrentTasks();
-            if (maxThreadCount > 0 && activeThreadCount >= maxThreadCount) {
-                return DelayProcessingReason.TOO_MANY_THREADS;
-            }
+        return null;
+    }
 
-            if (connectable instanceof ProcessorNode) {
-                final ProcessorNode procNode = (ProcessorNode) connectable;
-                if (procNode.isIsolated() && clustered && !primary) {
-                    return DelayProcessingReason.ISOLATED;
-                }
+    private int getAvailableRelationshipCount(final Connectable connectable) {
+        int count = 0;
+        for (final Relationship relationship : connectable.getRelationships()) {
+            final Collection<Connection> connections = connectable.getConnections(relationship);
 
-                final boolean triggerWhenAnyAvailable = procNode.isTriggerWhenAnyDestinationAvailable();
-                final boolean allDestinationsAvailable = availableRelationshipCount == procNode.getRelationships().size();
-                if (!triggerWhenAnyAvailable && !allDestinationsAvailable) {
-                    return DelayProcessingReason.DESTINATION_FULL;
+            if (connections == null || connections.isEmpty()) {
+                if (connectable.isAutoTerminated(relationship)) {
+                    // If the relationship is auto-terminated, consider it available.
+                    count++;
                 }
-            }
-
-            return null;
-        }
-
-        private int getAvailableRelationshipCount(final Connectable connectable) {
-            int count = 0;
-            for (final Relationship relationship : connectable.getRelationships()) {
-                final Collection<Connection> connections = connectable.getConnections(relationship);
-
-                if (connections == null || connections.isEmpty()) {
-                    if (connectable.isAutoTerminated(relationship)) {
-                        // If the relationship is auto-terminated, consider it available.
-                        count++;
-                    }
-                } else {
-                    boolean available = true;
-                    for (final Connection connection : connections) {
-                        if (connection.getSource() == connection.getDestination()) {
-                            // don't count self-loops
-                            continue;
-                        }
-
-                        if (connection.getFlowFileQueue().isFull()) {
-                            available = false;
-                        }
+            } else {
+                boolean available = true;
+                for (final Connection connection : connections) {
+                    if (connection.getSource() == connection.getDestination()) {
+                        // don't count self-loops
+                        continue;
                     }
 
-                    if (available) {
-                        count++;
+                    if (connection.getFlowFileQueue().isFull()) {
+                        available = false;
                     }
                 }
-            }
 
-            return count;
+                if (available) {
+                    count++;
+                }
+            }
         }
+
+        return count;
     }
 
     private static enum DelayProcessingReason {
@@ -33,12 +33,17 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.QueueSize;
@@ -54,6 +59,8 @@ import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.reporting.Severity;
 import org.apache.nifi.stream.io.BufferedOutputStream;
+import org.apache.nifi.stream.io.NonCloseableOutputStream;
+import org.apache.nifi.stream.io.util.VarLongs;
 import org.apache.nifi.util.NiFiProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,11 +76,16 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
     private static final Pattern SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap");
     private static final Pattern TEMP_SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap\\.part");
 
-    public static final int SWAP_ENCODING_VERSION = 8;
+    public static final int SWAP_ENCODING_VERSION = 9;
+
+    // Codecs that may be used to compress the FlowFile records of a swap file, as of swap encoding version 9
+    private static final int CODEC_NONE = 0;
+    private static final int CODEC_DEFLATE = 1;
     public static final String EVENT_CATEGORY = "Swap FlowFiles";
     private static final Logger logger = LoggerFactory.getLogger(FileSystemSwapManager.class);
 
     private final File storageDirectory;
+    private final boolean compress;
 
     // effectively final
     private FlowFileRepository flowFileRepository;
@@ -85,6 +97,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         final Path flowFileRepoPath = properties.getFlowFileRepositoryPath();
 
         this.storageDirectory = flowFileRepoPath.resolve("swap").toFile();
+        this.compress = properties.isSwapCompressed();
         if (!storageDirectory.exists() && !storageDirectory.mkdirs()) {
             throw new RuntimeException("Cannot create Swap Storage directory " + storageDirectory.getAbsolutePath());
         }
@@ -109,7 +122,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         final String swapLocation = swapFile.getAbsolutePath();
 
         try (final FileOutputStream fos = new FileOutputStream(swapTempFile)) {
-            serializeFlowFiles(toSwap, flowFileQueue, swapLocation, fos);
+            serializeFlowFiles(toSwap, flowFileQueue, swapLocation, fos, compress);
             fos.getFD().sync();
         } catch (final IOException ioe) {
             // we failed to write out the entire swap file. Delete the temporary file, if we can.
@@ -310,6 +323,11 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
 
 
     public static int serializeFlowFiles(final List<FlowFileRecord> toSwap, final FlowFileQueue queue, final String swapLocation, final OutputStream destination) throws IOException {
+        return serializeFlowFiles(toSwap, queue, swapLocation, destination, false);
+    }
+
+    public static int serializeFlowFiles(final List<FlowFileRecord> toSwap, final FlowFileQueue queue, final String swapLocation, final OutputStream destination,
+        final boolean compress) throws IOException {
         if (toSwap == null || toSwap.isEmpty()) {
             return 0;
         }
@@ -338,41 +356,21 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
 
             out.writeLong(maxRecordId);
 
-            for (final FlowFileRecord flowFile : toSwap) {
-                out.writeLong(flowFile.getId());
-                out.writeLong(flowFile.getEntryDate());
-
-                final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
-                out.writeInt(lineageIdentifiers.size());
-                for (final String lineageId : lineageIdentifiers) {
-                    out.writeUTF(lineageId);
-                }
-
-                out.writeLong(flowFile.getLineageStartDate());
-                out.writeLong(flowFile.getLastQueueDate());
-                out.writeLong(flowFile.getSize());
-
-                final ContentClaim claim = flowFile.getContentClaim();
-                if (claim == null) {
-                    out.writeBoolean(false);
-                } else {
-                    out.writeBoolean(true);
-                    final ResourceClaim resourceClaim = claim.getResourceClaim();
-                    out.writeUTF(resourceClaim.getId());
-                    out.writeUTF(resourceClaim.getContainer());
-                    out.writeUTF(resourceClaim.getSection());
-                    out.writeLong(claim.getOffset());
-                    out.writeLong(claim.getLength());
-                    out.writeLong(flowFile.getContentClaimOffset());
-                    out.writeBoolean(resourceClaim.isLossTolerant());
-                }
-
-                final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
-                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
+            // The header above is never compressed, so that the size and max record id can be read cheaply on restart
+            out.write(compress ? CODEC_DEFLATE : CODEC_NONE);
+            if (compress) {
+                final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    final DeflaterOutputStream deflaterOut = new DeflaterOutputStream(new NonCloseableOutputStream(out), deflater, 65536);
+                    final DataOutputStream compressedOut = new DataOutputStream(deflaterOut);
+                    serializeCompactFlowFiles(toSwap, compressedOut);
+                    compressedOut.flush();
+                    deflaterOut.finish();
+                } finally {
+                    deflater.end();
                 }
+            } else {
+                serializeCompactFlowFiles(toSwap, out);
             }
         } finally {
             out.flush();
@@ -383,23 +381,72 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         return toSwap.size();
     }
 
-    private static void writeString(final String toWrite, final OutputStream out) throws IOException {
-        final byte[] bytes = toWrite.getBytes(StandardCharsets.UTF_8);
-        final int utflen = bytes.length;
+    /**
+     * Writes the FlowFile records using the compact encoding that was introduced in swap encoding version 9. Numbers are
+     * written as variable-length integers, timestamps as deltas, and every String (attribute keys and values, lineage
+     * identifiers, and resource claim coordinates) is written only the first time that it is encountered in the swap file.
+     * After that, it is referenced by its index into the dictionary of Strings that the reader builds up as it goes.
+     */
+    private static void serializeCompactFlowFiles(final List<FlowFileRecord> toSwap, final DataOutputStream out) throws IOException {
+        final Map<String, Integer> dictionary = new HashMap<>();
+
+        long previousId = 0L;
+        long previousEntryDate = 0L;
+        for (final FlowFileRecord flowFile : toSwap) {
+            VarLongs.writeSignedVarLong(flowFile.getId() - previousId, out);
+            previousId = flowFile.getId();
+
+            final long entryDate = flowFile.getEntryDate();
+            VarLongs.writeSignedVarLong(entryDate - previousEntryDate, out);
+            previousEntryDate = entryDate;
+
+            final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
+            VarLongs.writeVarLong(lineageIdentifiers.size(), out);
+            for (final String lineageId : lineageIdentifiers) {
+                writeDictionaryString(lineageId, dictionary, out);
+            }
 
-        if (utflen < 65535) {
-            out.write(utflen >>> 8);
-            out.write(utflen);
-            out.write(bytes);
-        } else {
-            out.write(255);
-            out.write(255);
-            out.write(utflen >>> 24);
-            out.write(utflen >>> 16);
-            out.write(utflen >>> 8);
-            out.write(utflen);
-            out.write(bytes);
+            VarLongs.writeSignedVarLong(flowFile.getLineageStartDate() - entryDate, out);
+            VarLongs.writeSignedVarLong(flowFile.getLastQueueDate() - entryDate, out);
+            VarLongs.writeVarLong(flowFile.getSize(), out);
+
+            final ContentClaim claim = flowFile.getContentClaim();
+            if (claim == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                final ResourceClaim resourceClaim = claim.getResourceClaim();
+                writeDictionaryString(resourceClaim.getId(), dictionary, out);
+                writeDictionaryString(resourceClaim.getContainer(), dictionary, out);
+                writeDictionaryString(resourceClaim.getSection(), dictionary, out);
+                VarLongs.writeVarLong(claim.getOffset(), out);
+                VarLongs.writeSignedVarLong(claim.getLength(), out);
+                VarLongs.writeVarLong(flowFile.getContentClaimOffset(), out);
+                out.writeBoolean(resourceClaim.isLossTolerant());
+            }
+
+            final Map<String, String> attributes = flowFile.getAttributes();
+            VarLongs.writeVarLong(attributes.size(), out);
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                writeDictionaryString(entry.getKey(), dictionary, out);
+                writeDictionaryString(entry.getValue(), dictionary, out);
+            }
+        }
+    }
+
+    private static void writeDictionaryString(final String value, final Map<String, Integer> dictionary, final DataOutputStream out) throws IOException {
+        final Integer index = dictionary.get(value);
+        if (index != null) {
+            VarLongs.writeVarLong(index.longValue() + 1, out);
+            return;
         }
+
+        // a reference of 0 indicates a String that has not yet been written to this swap file
+        VarLongs.writeVarLong(0L, out);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarLongs.writeVarLong(bytes.length, out);
+        out.write(bytes);
+        dictionary.put(value, dictionary.size());
     }
 
     static List<FlowFileRecord> deserializeFlowFiles(final DataInputStream in, final String swapLocation, final FlowFileQueue queue, final ResourceClaimManager claimManager) throws IOException {
@@ -426,6 +473,25 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
 
     private static List<FlowFileRecord> deserializeFlowFiles(final DataInputStream in, final int numFlowFiles,
         final int serializationVersion, final boolean incrementContentClaims, final ResourceClaimManager claimManager) throws IOException {
+        if (serializationVersion > 8) {
+            final int codec = in.read();
+            switch (codec) {
+                case CODEC_NONE:
+                    return deserializeCompactFlowFiles(in, numFlowFiles, incrementContentClaims, claimManager);
+                case CODEC_DEFLATE: {
+                    final Inflater inflater = new Inflater();
+                    try {
+                        final DataInputStream inflatedIn = new DataInputStream(new InflaterInputStream(in, inflater, 65536));
+                        return deserializeCompactFlowFiles(inflatedIn, numFlowFiles, incrementContentClaims, claimManager);
+                    } finally {
+                        inflater.end();
+                    }
+                }
+                default:
+                    throw new IOException("Swap File uses an unknown compression codec: " + codec);
+            }
+        }
+
         final List<FlowFileRecord> flowFiles = new ArrayList<>();
         for (int i = 0; i < numFlowFiles; i++) {
             // legacy encoding had an "action" because it used to be couple with FlowFile Repository code
@@ -526,6 +592,87 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         return flowFiles;
     }
 
+    private static List<FlowFileRecord> deserializeCompactFlowFiles(final DataInputStream in, final int numFlowFiles, final boolean incrementContentClaims,
+        final ResourceClaimManager claimManager) throws IOException {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>(numFlowFiles);
+        final List<String> dictionary = new ArrayList<>();
+
+        long previousId = 0L;
+        long previousEntryDate = 0L;
+        for (int i = 0; i < numFlowFiles; i++) {
+            final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
+
+            final long id = previousId + VarLongs.readSignedVarLong(in);
+            ffBuilder.id(id);
+            previousId = id;
+
+            final long entryDate = previousEntryDate + VarLongs.readSignedVarLong(in);
+            ffBuilder.entryDate(entryDate);
+            previousEntryDate = entryDate;
+
+            final int numLineageIdentifiers = (int) VarLongs.readVarLong(in);
+            final Set<String> lineageIdentifiers = new HashSet<>(numLineageIdentifiers);
+            for (int lineageIdIdx = 0; lineageIdIdx < numLineageIdentifiers; lineageIdIdx++) {
+                lineageIdentifiers.add(readDictionaryString(in, dictionary));
+            }
+            ffBuilder.lineageIdentifiers(lineageIdentifiers);
+            ffBuilder.lineageStartDate(entryDate + VarLongs.readSignedVarLong(in));
+            ffBuilder.lastQueueDate(entryDate + VarLongs.readSignedVarLong(in));
+            ffBuilder.size(VarLongs.readVarLong(in));
+
+            final boolean hasClaim = in.readBoolean();
+            if (hasClaim) {
+                final String claimId = readDictionaryString(in, dictionary);
+                final String container = readDictionaryString(in, dictionary);
+                final String section = readDictionaryString(in, dictionary);
+                final long resourceOffset = VarLongs.readVarLong(in);
+                final long resourceLength = VarLongs.readSignedVarLong(in);
+                final long claimOffset = VarLongs.readVarLong(in);
+                final boolean lossTolerant = in.readBoolean();
+
+                final ResourceClaim resourceClaim = claimManager.newResourceClaim(container, section, claimId, lossTolerant);
+                final StandardContentClaim claim = new StandardContentClaim(resourceClaim, resourceOffset);
+                claim.setLength(resourceLength);
+
+                if (incrementContentClaims) {
+                    claimManager.incrementClaimantCount(resourceClaim);
+                }
+
+                ffBuilder.contentClaim(claim);
+                ffBuilder.contentClaimOffset(claimOffset);
+            }
+
+            final int numAttributes = (int) VarLongs.readVarLong(in);
+            for (int j = 0; j < numAttributes; j++) {
+                // Strings that are repeated within the swap file are read only once, so the swapped-in FlowFiles share the same instances.
+                final String key = readDictionaryString(in, dictionary);
+                final String value = readDictionaryString(in, dictionary);
+                ffBuilder.addAttribute(key, value);
+            }
+
+            flowFiles.add(ffBuilder.build());
+        }
+
+        return flowFiles;
+    }
+
+    private static String readDictionaryString(final DataInputStream in, final List<String> dictionary) throws IOException {
+        final long reference = VarLongs.readVarLong(in);
+        if (reference > 0L) {
+            if (reference > dictionary.size()) {
+                throw new IOException("Swap File references String " + reference + " but only " + dictionary.size() + " Strings have been defined");
+            }
+            return dictionary.get((int) reference - 1);
+        }
+
+        final int numBytes = (int) VarLongs.readVarLong(in);
+        final byte[] bytes = new byte[numBytes];
+        in.readFully(bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        dictionary.add(value);
+        return value;
+    }
+
     private static String readString(final InputStream in) throws IOException {
         final Integer numBytes = readFieldLength(in);
         if (numBytes == null) {
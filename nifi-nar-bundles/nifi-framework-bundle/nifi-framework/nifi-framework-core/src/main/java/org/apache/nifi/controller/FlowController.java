@@ -81,6 +81,7 @@ import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.controller.repository.io.LimitedInputStream;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration;
 import org.apache.nifi.controller.scheduling.EventDrivenSchedulingAgent;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.QuartzSchedulingAgent;
@@ -236,6 +237,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
     private final AtomicInteger maxEventDrivenThreads;
     private final AtomicReference<FlowEngine> timerDrivenEngineRef;
     private final AtomicReference<FlowEngine> eventDrivenEngineRef;
+    private final FlowEngine blockingIOEngine; // null if Processors that perform blocking I/O share the Timer-Driven engine
 
     private final ContentRepository contentRepository;
     private final FlowFileRepository flowFileRepository;
@@ -299,6 +301,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
     private final NodeProtocolSender protocolSender;
 
     private final ScheduledExecutorService clusterTaskExecutor = new FlowEngine(3, "Clustering Tasks");
+    private final ScheduledExecutorService swapInExecutor;
+    private final ScheduledExecutorService swapOutExecutor;
     private final ResourceClaimManager resourceClaimManager = new StandardResourceClaimManager();
 
     // guarded by rwLock
@@ -408,8 +412,11 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         sslContext = SslContextFactory.createSslContext(properties, false);
         extensionManager = new ExtensionManager();
 
-        timerDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process"));
+        timerDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process", false, properties.isFlowEngineWorkStealing()));
         eventDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxEventDrivenThreads.get(), "Event-Driven Process"));
+        blockingIOEngine = createBlockingIOEngine(properties);
+        swapInExecutor = new FlowEngine(properties.getSwapInThreads(), "Swap In FlowFiles", true);
+        swapOutExecutor = new FlowEngine(properties.getSwapOutThreads(), "Swap Out FlowFiles", true);
 
         final FlowFileRepository flowFileRepo = createFlowFileRepository(properties, resourceClaimManager);
         flowFileRepository = flowFileRepo;
@@ -443,7 +450,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             eventDrivenEngineRef.get(), this, stateManagerProvider, eventDrivenWorkerQueue, contextFactory, maxEventDrivenThreads.get(), encryptor));
 
         final QuartzSchedulingAgent quartzSchedulingAgent = new QuartzSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
-        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
+        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), blockingIOEngine, contextFactory, encryptor);
         processScheduler.setSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.PRIMARY_NODE_ONLY, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.CRON_DRIVEN, quartzSchedulingAgent);
@@ -564,6 +571,15 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         }
     }
 
+    /**
+     * @return the engine that runs Timer driven Processors that perform blocking I/O, or <code>null</code> if no threads are
+     *         set aside for them, in which case they are run by the Timer driven engine
+     */
+    static FlowEngine createBlockingIOEngine(final NiFiProperties properties) {
+        final int blockingIOThreads = properties.getBlockingIOMaxThreads();
+        return blockingIOThreads > 0 ? new FlowEngine(blockingIOThreads, "Blocking I/O Process") : null;
+    }
+
     private static EventReporter createEventReporter(final BulletinRepository bulletinRepository) {
         return new EventReporter() {
             private static final long serialVersionUID = 1L;
@@ -819,6 +835,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             .source(requireNonNull(source))
             .destination(destination)
             .swapManager(swapManager)
+            .swapExecutors(swapInExecutor, swapOutExecutor)
             .eventReporter(eventReporter)
             .resourceClaimManager(resourceClaimManager)
             .flowFileRepository(flowFileRepository)
@@ -1160,14 +1177,22 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             if (kill) {
                 this.timerDrivenEngineRef.get().shutdownNow();
                 this.eventDrivenEngineRef.get().shutdownNow();
+                if (blockingIOEngine != null) {
+                    blockingIOEngine.shutdownNow();
+                }
                 LOG.info("Initiated immediate shutdown of flow controller...");
             } else {
                 this.timerDrivenEngineRef.get().shutdown();
                 this.eventDrivenEngineRef.get().shutdown();
+                if (blockingIOEngine != null) {
+                    blockingIOEngine.shutdown();
+                }
                 LOG.info("Initiated graceful shutdown of flow controller...waiting up to " + gracefulShutdownSeconds + " seconds");
             }
 
             clusterTaskExecutor.shutdown();
+            swapInExecutor.shutdown();
+            swapOutExecutor.shutdown();
 
             if (zooKeeperStateServer != null) {
                 zooKeeperStateServer.shutdown();
@@ -1197,6 +1222,9 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             try {
                 this.timerDrivenEngineRef.get().awaitTermination(gracefulShutdownSeconds / 2, TimeUnit.SECONDS);
                 this.eventDrivenEngineRef.get().awaitTermination(gracefulShutdownSeconds / 2, TimeUnit.SECONDS);
+                if (blockingIOEngine != null) {
+                    blockingIOEngine.awaitTermination(gracefulShutdownSeconds / 2, TimeUnit.SECONDS);
+                }
             } catch (final InterruptedException ie) {
                 LOG.info("Interrupted while waiting for controller termination.");
             }
@@ -1207,7 +1235,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
                 LOG.warn("Unable to shut down FlowFileRepository due to {}", new Object[] {t});
             }
 
-            if (this.timerDrivenEngineRef.get().isTerminated() && eventDrivenEngineRef.get().isTerminated()) {
+            if (this.timerDrivenEngineRef.get().isTerminated() && eventDrivenEngineRef.get().isTerminated()
+                && (blockingIOEngine == null || blockingIOEngine.isTerminated())) {
                 LOG.info("Controller has been terminated successfully.");
             } else {
                 LOG.warn("Controller hasn't terminated properly.  There exists an uninterruptable thread that "
@@ -2223,6 +2252,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
                 connStatus.setQueuedBytes(connectionQueuedBytes);
                 connStatus.setQueuedCount(connectionQueuedCount);
             }
+            connStatus.setSwapInMillis(conn.getFlowFileQueue().getSwapInTime(TimeUnit.MILLISECONDS));
+            connStatus.setSwapOutMillis(conn.getFlowFileQueue().getSwapOutTime(TimeUnit.MILLISECONDS));
             connectionStatusCollection.add(connStatus);
             queuedCount += connectionQueuedCount;
             queuedContentSize += connectionQueuedBytes;
@@ -2526,6 +2557,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
         status.setActiveThreadCount(processScheduler.getActiveThreadCount(procNode));
 
+        if (AdaptiveRunDuration.isAdaptive(procNode, properties.isAdaptiveRunDuration())) {
+            status.setRunDurationNanos(processScheduler.getAdaptiveRunDuration(procNode, TimeUnit.NANOSECONDS));
+        } else {
+            status.setRunDurationNanos(procNode.getRunDuration(TimeUnit.NANOSECONDS));
+        }
+
         return status;
     }
 
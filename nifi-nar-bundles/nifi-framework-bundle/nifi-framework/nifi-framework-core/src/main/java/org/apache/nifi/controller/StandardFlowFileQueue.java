@@ -31,10 +31,15 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.controller.queue.DropFlowFileState;
 import org.apache.nifi.controller.queue.DropFlowFileStatus;
@@ -75,7 +80,7 @@ import org.slf4j.LoggerFactory;
  * processing. Must be thread safe.
  *
  */
-public final class StandardFlowFileQueue implements FlowFileQueue {
+public final class StandardFlowFileQueue implements LockableFlowFileQueue {
 
     public static final int MAX_EXPIRED_RECORDS_PER_ITERATION = 100000;
     public static final int SWAP_RECORD_POLL_SIZE = 10000;
@@ -101,6 +106,21 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
     private final int swapThreshold;
     private final FlowFileSwapManager swapManager;
     private final List<String> swapLocations = new ArrayList<>();
+
+    // If non-null, Swap Files are written and read by these executors rather than by the thread that holds the write lock.
+    private final ExecutorService swapInExecutor;
+    private final ExecutorService swapOutExecutor;
+
+    // FlowFiles that have been chosen to be swapped out but not yet written to a Swap File, oldest first. guarded by lock
+    private final List<SwapOutBatch> pendingSwapOuts = new ArrayList<>();
+    private boolean swapInScheduled = false; // guarded by lock
+    private boolean swapOutScheduled = false; // guarded by lock
+    private boolean swapIoSuspended = false; // guarded by lock
+    private int swapIoInFlight = 0; // guarded by lock
+    private final Condition swapIoComplete = lock.writeLock().newCondition(); // signaled when swapIoInFlight drops to 0
+
+    private final AtomicLong swapInNanos = new AtomicLong(0L);
+    private final AtomicLong swapOutNanos = new AtomicLong(0L);
     private final TimedLock readLock;
     private final TimedLock writeLock;
     private final String identifier;
@@ -118,6 +138,17 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
     public StandardFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
         final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold,
         final Heartbeater heartbeater) {
+        this(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, swapThreshold, heartbeater, null, null);
+    }
+
+    /**
+     * Creates a FlowFileQueue that writes and reads Swap Files using the given executors, so that a thread putting FlowFiles
+     * onto or polling FlowFiles from the queue does not hold the queue's lock while Swap File I/O is performed. If either
+     * executor is <code>null</code>, that type of swapping is instead performed synchronously.
+     */
+    public StandardFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold,
+        final Heartbeater heartbeater, final ExecutorService swapInExecutor, final ExecutorService swapOutExecutor) {
         activeQueue = new PriorityQueue<>(20, new Prioritizer(new ArrayList<FlowFilePrioritizer>()));
         priorities = new ArrayList<>();
         swapQueue = new ArrayList<>();
@@ -132,6 +163,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
         this.scheduler = scheduler;
         this.connection = connection;
         this.heartbeater = heartbeater;
+        this.swapInExecutor = swapInExecutor;
+        this.swapOutExecutor = swapOutExecutor;
 
         readLock = new TimedLock(this.lock.readLock(), identifier + " Read Lock", 100);
         writeLock = new TimedLock(this.lock.writeLock(), identifier + " Write Lock", 100);
@@ -284,9 +317,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("put(FlowFileRecord)");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(connection.getDestination());
-        }
+        notifyDestination();
     }
 
     @Override
@@ -312,8 +343,18 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("putAll");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(connection.getDestination());
+        notifyDestination();
+    }
+
+    /**
+     * Notifies the scheduler that data is available for the destination of this queue. Event driven components are
+     * triggered by the notification, and Timer driven components that are waiting out the bored yield may be woken by it.
+     */
+    private void notifyDestination() {
+        final Connectable destination = connection.getDestination();
+        final SchedulingStrategy schedulingStrategy = destination.getSchedulingStrategy();
+        if (schedulingStrategy == SchedulingStrategy.EVENT_DRIVEN || schedulingStrategy == SchedulingStrategy.TIMER_DRIVEN) {
+            scheduler.registerEvent(destination);
         }
     }
 
@@ -363,6 +404,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
 
         migrateSwapToActive();
 
+        // the set may already hold FlowFiles expired by another queue (such as another partition of a StripedFlowFileQueue)
+        final int originalExpiredCount = expiredRecords.size();
         long expiredBytes = 0L;
         do {
             flowFile = this.activeQueue.poll();
@@ -387,8 +430,9 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             }
         } while (isExpired);
 
-        if (!expiredRecords.isEmpty()) {
-            incrementActiveQueueSize(-expiredRecords.size(), -expiredBytes);
+        final int expiredCount = expiredRecords.size() - originalExpiredCount;
+        if (expiredCount > 0) {
+            incrementActiveQueueSize(-expiredCount, -expiredBytes);
         }
 
         return flowFile;
@@ -397,29 +441,127 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
     @Override
     public List<FlowFileRecord> poll(int maxResults, final Set<FlowFileRecord> expiredRecords) {
         final List<FlowFileRecord> records = new ArrayList<>(Math.min(1024, maxResults));
+        poll(maxResults, expiredRecords, records);
+        return records;
+    }
+
+    @Override
+    public int poll(final int maxResults, final Set<FlowFileRecord> expiredRecords, final List<FlowFileRecord> destination) {
+        final int originalSize = destination.size();
+        Comparator<? super FlowFileRecord> drainedOrder = null;
 
-        // First check if we have any records Pre-Fetched.
         writeLock.lock();
         try {
-            doPoll(records, maxResults, expiredRecords);
+            migrateSwapToActive();
+
+            if (mayReachExpiredLimit(expiredRecords)) {
+                doPoll(destination, originalSize + maxResults, expiredRecords);
+            } else if (drainActiveQueue(destination, maxResults, expiredRecords)) {
+                drainedOrder = activeQueue.comparator();
+            }
         } finally {
-            writeLock.unlock("poll(int, Set)");
+            writeLock.unlock("poll(int, Set, List)");
         }
-        return records;
+
+        // When every FlowFile that could be pulled was taken, the FlowFiles were taken in heap order rather than priority order.
+        // Sort them now that the lock has been released so that the caller still receives them in priority order.
+        if (drainedOrder != null) {
+            Collections.sort(destination.subList(originalSize, destination.size()), drainedOrder);
+        }
+
+        return destination.size() - originalSize;
     }
 
     private void doPoll(final List<FlowFileRecord> records, int maxResults, final Set<FlowFileRecord> expiredRecords) {
-        migrateSwapToActive();
-
+        final int originalCount = records.size();
+        final int originalExpiredCount = expiredRecords.size();
         final long bytesDrained = drainQueue(activeQueue, records, maxResults, expiredRecords);
 
+        long bytesPolled = 0L;
+        for (int i = originalCount; i < records.size(); i++) {
+            bytesPolled += records.get(i).getSize();
+        }
+
+        final int recordsPolled = records.size() - originalCount;
+        final int recordsExpired = expiredRecords.size() - originalExpiredCount;
+        incrementActiveQueueSize(-(recordsExpired + recordsPolled), -bytesDrained);
+        incrementUnacknowledgedQueueSize(recordsPolled, bytesPolled);
+    }
+
+    /**
+     * @return <code>true</code> if draining the entire active queue could expire more than MAX_EXPIRED_RECORDS_PER_ITERATION
+     *         FlowFiles, in which case the queue must be polled one FlowFile at a time so that polling stops at that limit
+     */
+    private boolean mayReachExpiredLimit(final Set<FlowFileRecord> expiredRecords) {
+        return expirationPeriod.get().getMillis() > 0 && expiredRecords.size() + activeQueue.size() > MAX_EXPIRED_RECORDS_PER_ITERATION;
+    }
+
+    /**
+     * Pulls up to the given number of FlowFiles from the active queue in a single pass, rather than polling them one at a time
+     * and re-heapifying the queue after each one. Every expired FlowFile is removed in the same pass, and penalized FlowFiles are
+     * placed back on the queue. If there are more FlowFiles that could be pulled than are wanted, they are sorted so that those
+     * with the highest priority are pulled, and the rest are placed back on the queue in priority order, which does not require
+     * the queue to move any of them. Must not be called if {@link #mayReachExpiredLimit(Set)} is true, as every expired FlowFile
+     * in the queue is taken.
+     *
+     * This method MUST be called with the writeLock held.
+     *
+     * @return <code>true</code> if every FlowFile that could be pulled was added to the destination, in no particular order;
+     *         <code>false</code> if the FlowFiles that were added to the destination, if any, are already in priority order
+     */
+    private boolean drainActiveQueue(final List<FlowFileRecord> destination, final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = expirationPeriod.get().getMillis();
+
+        // Penalized FlowFiles are always ordered last, so if the head of the queue is penalized there is nothing
+        // to pull unless it has expired. In that case, avoid copying and rebuilding the queue.
+        final FlowFileRecord head = activeQueue.peek();
+        if (maxResults <= 0 || head == null || (head.isPenalized() && !isLaterThan(getExpirationDate(head, expirationMillis)))) {
+            return false;
+        }
+
+        final FlowFileRecord[] drained = activeQueue.toArray(new FlowFileRecord[activeQueue.size()]);
+        activeQueue.clear();
+
+        final List<FlowFileRecord> available = new ArrayList<>(drained.length);
+        final List<FlowFileRecord> penalized = new ArrayList<>();
+        int expiredCount = 0;
         long expiredBytes = 0L;
-        for (final FlowFileRecord record : expiredRecords) {
-            expiredBytes += record.getSize();
+        for (final FlowFileRecord flowFile : drained) {
+            if (isLaterThan(getExpirationDate(flowFile, expirationMillis))) {
+                expiredRecords.add(flowFile);
+                expiredCount++;
+                expiredBytes += flowFile.getSize();
+            } else if (flowFile.isPenalized()) {
+                penalized.add(flowFile);
+            } else {
+                available.add(flowFile);
+            }
+        }
+
+        final boolean pulledAll = available.size() <= maxResults;
+        final List<FlowFileRecord> pulled;
+        if (pulledAll) {
+            pulled = available;
+        } else {
+            Collections.sort(available, activeQueue.comparator());
+            pulled = available.subList(0, maxResults);
+            activeQueue.addAll(available.subList(maxResults, available.size()));
+        }
+
+        if (!penalized.isEmpty()) {
+            activeQueue.addAll(penalized);
+        }
+
+        long pulledBytes = 0L;
+        for (final FlowFileRecord flowFile : pulled) {
+            pulledBytes += flowFile.getSize();
         }
+        final int pulledCount = pulled.size();
+        destination.addAll(pulled);
 
-        incrementActiveQueueSize(-(expiredRecords.size() + records.size()), -bytesDrained);
-        incrementUnacknowledgedQueueSize(records.size(), bytesDrained - expiredBytes);
+        incrementActiveQueueSize(-(expiredCount + pulledCount), -(expiredBytes + pulledBytes));
+        incrementUnacknowledgedQueueSize(pulledCount, pulledBytes);
+        return pulledAll;
     }
 
     /**
@@ -442,8 +584,10 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
         // Calling this method when records are polled prevents this condition by migrating FlowFiles from the
         // Swap Queue to the Active Queue. However, we don't do this if there are FlowFiles already swapped out
         // to disk, because we want them to be swapped back in in the same order that they were swapped out.
+        // A queue whose swap threshold is smaller than a swap file (such as a partition of a StripedFlowFileQueue)
+        // swaps in only once its active queue is empty, so it never holds more than one swap file's worth of FlowFiles.
 
-        if (activeQueue.size() > swapThreshold - SWAP_RECORD_POLL_SIZE) {
+        if (activeQueue.size() > Math.max(0, swapThreshold - SWAP_RECORD_POLL_SIZE)) {
             return;
         }
 
@@ -453,32 +597,29 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
         // keep up with queue), we will end up always processing the new FlowFiles first instead of the FlowFiles that arrived
         // first.
         if (!swapLocations.isEmpty()) {
-            final String swapLocation = swapLocations.remove(0);
-            try {
-                final List<FlowFileRecord> swappedIn = swapManager.swapIn(swapLocation, this);
-                long swapSize = 0L;
-                for (final FlowFileRecord flowFile : swappedIn) {
-                    swapSize += flowFile.getSize();
-                }
-                incrementSwapQueueSize(-swappedIn.size(), -swapSize, -1);
-                incrementActiveQueueSize(swappedIn.size(), swapSize);
-                activeQueue.addAll(swappedIn);
-                return;
-            } catch (final FileNotFoundException fnfe) {
-                logger.error("Failed to swap in FlowFiles from Swap File {} because the Swap File can no longer be found", swapLocation);
-                if (eventReporter != null) {
-                    eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the Swap File can no longer be found");
-                }
-                return;
-            } catch (final IOException ioe) {
-                logger.error("Failed to swap in FlowFiles from Swap File {}; Swap File appears to be corrupt!", swapLocation);
-                logger.error("", ioe);
-                if (eventReporter != null) {
-                    eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " +
-                        swapLocation + "; Swap File appears to be corrupt! Some FlowFiles in the queue may not be accessible. See logs for more information.");
-                }
+            if (swapInExecutor != null) {
+                // read the next Swap File in the background; the FlowFiles will be added to the active queue when it completes.
+                scheduleSwapIn();
                 return;
             }
+
+            final String swapLocation = swapLocations.remove(0);
+            final List<FlowFileRecord> swappedIn = readSwapFile(swapLocation);
+            if (swappedIn != null) {
+                addSwappedIn(swappedIn);
+            }
+            return;
+        }
+
+        // FlowFiles that are waiting to be written to a Swap File are newer than those already on disk but older than those on the
+        // swap queue. If the oldest batch has not yet started to be written, there is no need to write it at all.
+        if (!pendingSwapOuts.isEmpty()) {
+            final SwapOutBatch batch = pendingSwapOuts.get(0);
+            if (!batch.writing) {
+                pendingSwapOuts.remove(0);
+                addSwappedIn(batch.flowFiles);
+            }
+            return;
         }
 
         // this is the most common condition (nothing is swapped out), so do the check first and avoid the expense
@@ -549,10 +690,21 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
                 flowFilesSwappedOut++;
             }
 
+            Collections.reverse(toSwap); // currently ordered in reverse priority order based on the ordering of the temp queue.
+            if (swapOutExecutor != null) {
+                // the FlowFiles remain accounted for as swapped out while they wait to be written in the background
+                pendingSwapOuts.add(new SwapOutBatch(toSwap));
+                continue;
+            }
+
             try {
-                Collections.reverse(toSwap); // currently ordered in reverse priority order based on the ordering of the temp queue.
-                final String swapLocation = swapManager.swapOut(toSwap, this);
-                swapLocations.add(swapLocation);
+                final long swapStart = System.nanoTime();
+                try {
+                    final String swapLocation = swapManager.swapOut(toSwap, this);
+                    swapLocations.add(swapLocation);
+                } finally {
+                    swapOutNanos.addAndGet(System.nanoTime() - swapStart);
+                }
             } catch (final IOException ioe) {
                 tempQueue.addAll(toSwap); // if we failed, we must add the FlowFiles back to the queue.
                 logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
@@ -605,6 +757,253 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
         }
 
         this.swapLocations.addAll(swapLocations);
+        scheduleSwapOut();
+    }
+
+    /**
+     * Reads the FlowFiles from the given Swap File. This method does not require the lock to be held.
+     *
+     * @return the FlowFiles that were swapped in, or <code>null</code> if the Swap File could not be read
+     */
+    private List<FlowFileRecord> readSwapFile(final String swapLocation) {
+        final long swapStart = System.nanoTime();
+        try {
+            return swapManager.swapIn(swapLocation, this);
+        } catch (final FileNotFoundException fnfe) {
+            logger.error("Failed to swap in FlowFiles from Swap File {} because the Swap File can no longer be found", swapLocation);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the Swap File can no longer be found");
+            }
+            return null;
+        } catch (final IOException ioe) {
+            logger.error("Failed to swap in FlowFiles from Swap File {}; Swap File appears to be corrupt!", swapLocation);
+            logger.error("", ioe);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " +
+                    swapLocation + "; Swap File appears to be corrupt! Some FlowFiles in the queue may not be accessible. See logs for more information.");
+            }
+            return null;
+        } finally {
+            swapInNanos.addAndGet(System.nanoTime() - swapStart);
+        }
+    }
+
+    /**
+     * Moves FlowFiles that were swapped out back onto the active queue.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void addSwappedIn(final List<FlowFileRecord> swappedIn) {
+        long swapSize = 0L;
+        for (final FlowFileRecord flowFile : swappedIn) {
+            swapSize += flowFile.getSize();
+        }
+        incrementSwapQueueSize(-swappedIn.size(), -swapSize, -1);
+        incrementActiveQueueSize(swappedIn.size(), swapSize);
+        activeQueue.addAll(swappedIn);
+    }
+
+    /**
+     * Submits a task to read the oldest Swap File, unless one is already scheduled.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void scheduleSwapIn() {
+        if (swapInScheduled || swapIoSuspended || swapLocations.isEmpty()) {
+            return;
+        }
+
+        try {
+            swapInExecutor.submit(new SwapInTask());
+            swapInScheduled = true;
+        } catch (final RejectedExecutionException ree) {
+            logger.warn("{} Unable to schedule FlowFiles to be swapped in due to {}", this, ree.toString());
+        }
+    }
+
+    /**
+     * Submits a task to write any FlowFiles that are waiting to be swapped out, unless one is already scheduled.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void scheduleSwapOut() {
+        if (swapOutScheduled || swapIoSuspended || pendingSwapOuts.isEmpty()) {
+            return;
+        }
+
+        try {
+            swapOutExecutor.submit(new SwapOutTask());
+            swapOutScheduled = true;
+        } catch (final RejectedExecutionException ree) {
+            logger.warn("{} Unable to schedule FlowFiles to be swapped out due to {}; they will remain in memory", this, ree.toString());
+        }
+    }
+
+    /**
+     * Prevents any new Swap File I/O from starting and waits for any that is in progress to complete. The write lock
+     * is released while waiting.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void suspendSwapIo() {
+        swapIoSuspended = true;
+        while (swapIoInFlight > 0) {
+            swapIoComplete.awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Records that a Swap File has been written or read, waking any thread that is waiting in {@link #suspendSwapIo()}.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void swapIoFinished() {
+        if (--swapIoInFlight == 0) {
+            swapIoComplete.signalAll();
+        }
+    }
+
+    /**
+     * This method MUST be called with the write lock held.
+     */
+    private void resumeSwapIo() {
+        swapIoSuspended = false;
+        if (swapOutExecutor != null) {
+            scheduleSwapOut();
+        }
+    }
+
+    private static final class SwapOutBatch {
+        private final List<FlowFileRecord> flowFiles;
+        private boolean writing = false; // guarded by lock
+
+        private SwapOutBatch(final List<FlowFileRecord> flowFiles) {
+            this.flowFiles = flowFiles;
+        }
+    }
+
+    /**
+     * Writes the batches of FlowFiles that are waiting to be swapped out, oldest first, without holding the lock while writing.
+     */
+    private final class SwapOutTask implements Runnable {
+        @Override
+        public void run() {
+            boolean swappedOut = false;
+            while (true) {
+                SwapOutBatch batch = null;
+                writeLock.lock();
+                try {
+                    if (swapIoSuspended || pendingSwapOuts.isEmpty()) {
+                        swapOutScheduled = false;
+                    } else {
+                        batch = pendingSwapOuts.get(0);
+                        batch.writing = true;
+                        swapIoInFlight++;
+                    }
+                } finally {
+                    writeLock.unlock("Swap Out");
+                }
+
+                if (batch == null) {
+                    // A consumer may have found the queue empty while the batch was being written; it can now be swapped back in.
+                    if (swappedOut) {
+                        notifyDestination();
+                    }
+                    return;
+                }
+
+                String swapLocation = null;
+                IOException failure = null;
+                final long swapStart = System.nanoTime();
+                try {
+                    swapLocation = swapManager.swapOut(batch.flowFiles, StandardFlowFileQueue.this);
+                } catch (final IOException ioe) {
+                    failure = ioe;
+                } finally {
+                    swapOutNanos.addAndGet(System.nanoTime() - swapStart);
+                }
+
+                writeLock.lock();
+                try {
+                    swapIoFinished();
+                    pendingSwapOuts.remove(batch);
+
+                    if (failure == null) {
+                        swapLocations.add(swapLocation);
+                        swappedOut = true;
+                        continue;
+                    }
+
+                    // keep the FlowFiles in memory; they will be swapped out again the next time that the swap queue fills
+                    swapQueue.addAll(batch.flowFiles);
+                    incrementSwapQueueSize(0, 0L, -1);
+                    swapOutScheduled = false;
+                } finally {
+                    writeLock.unlock("Swap Out");
+                }
+
+                logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
+                    + "the Java heap space but failed to write information to disk due to {}", getIdentifier(), getQueueSize().getObjectCount(), failure.toString());
+                logger.error("", failure);
+                if (eventReporter != null) {
+                    eventReporter.reportEvent(Severity.ERROR, "Failed to Overflow to Disk", "Flowfile Queue with identifier " + getIdentifier() + " has " + getQueueSize().getObjectCount() +
+                        " queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting the Java heap space but failed to write information to disk. "
+                        + "See logs for more information.");
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the oldest Swap File without holding the lock and then adds its FlowFiles to the active queue. This is triggered as soon
+     * as the active queue has room for another Swap File, so that the FlowFiles are generally available before the active queue is empty.
+     */
+    private final class SwapInTask implements Runnable {
+        @Override
+        public void run() {
+            final String swapLocation;
+            writeLock.lock();
+            try {
+                if (swapIoSuspended || swapLocations.isEmpty()) {
+                    swapInScheduled = false;
+                    return;
+                }
+
+                swapLocation = swapLocations.get(0);
+                swapIoInFlight++;
+            } finally {
+                writeLock.unlock("Swap In");
+            }
+
+            final List<FlowFileRecord> swappedIn = readSwapFile(swapLocation);
+
+            writeLock.lock();
+            try {
+                swapIoFinished();
+                swapInScheduled = false;
+                swapLocations.remove(swapLocation);
+                if (swappedIn != null) {
+                    addSwappedIn(swappedIn);
+                }
+            } finally {
+                writeLock.unlock("Swap In");
+            }
+
+            if (swappedIn != null && !swappedIn.isEmpty()) {
+                notifyDestination();
+            }
+        }
+    }
+
+    @Override
+    public long getSwapInTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(swapInNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getSwapOutTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(swapOutNanos.get(), TimeUnit.NANOSECONDS);
     }
 
 
@@ -618,6 +1017,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             if (isLaterThan(getExpirationDate(pulled, expirationMillis))) {
                 expiredRecords.add(pulled);
                 if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    drainedSize += pulled.getSize();
                     break;
                 }
             } else {
@@ -917,7 +1317,34 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
         return listRequest;
     }
 
-    private FlowFileSummary summarize(final FlowFile flowFile, final int position) {
+    /**
+     * Creates a shallow copy of the FlowFiles that are currently held in the active queue, in no
+     * particular order. The read lock is held only long enough to copy the queue.
+     *
+     * @return a copy of the active queue
+     */
+    List<FlowFileRecord> copyActiveQueue() {
+        readLock.lock();
+        try {
+            return new ArrayList<>(activeQueue);
+        } finally {
+            readLock.unlock("copyActiveQueue");
+        }
+    }
+
+    /**
+     * @return a Comparator that orders FlowFiles in the same way that this queue currently prioritizes them
+     */
+    Comparator<FlowFileRecord> createPrioritizer() {
+        readLock.lock();
+        try {
+            return new Prioritizer(priorities);
+        } finally {
+            readLock.unlock("createPrioritizer");
+        }
+    }
+
+    static FlowFileSummary summarize(final FlowFile flowFile, final int position) {
         // extract all of the information that we care about into new variables rather than just
         // wrapping the FlowFile object with a FlowFileSummary object. We do this because we want to
         // be able to hold many FlowFileSummary objects in memory and if we just wrap the FlowFile object,
@@ -1048,6 +1475,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             public void run() {
                 writeLock.lock();
                 try {
+                    // wait for any Swap File that is being written or read in the background, so that we account for all FlowFiles
+                    suspendSwapIo();
                     dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
                     logger.debug("For DropFlowFileRequest {}, original size is {}", requestIdentifier, getQueueSize());
 
@@ -1101,6 +1530,26 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
                         incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), 0);
                         logger.debug("For DropFlowFileRequest {}, dropped {} from Swap Queue", requestIdentifier, droppedSize);
 
+                        final Iterator<SwapOutBatch> pendingItr = pendingSwapOuts.iterator();
+                        while (pendingItr.hasNext()) {
+                            final SwapOutBatch batch = pendingItr.next();
+                            try {
+                                droppedSize = drop(batch.flowFiles, requestor);
+                            } catch (final IOException ioe) {
+                                logger.error("Failed to drop the FlowFiles from queue {} due to {}", StandardFlowFileQueue.this.getIdentifier(), ioe.toString());
+                                logger.error("", ioe);
+
+                                dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
+                                return;
+                            }
+
+                            pendingItr.remove();
+                            dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                            incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), -1);
+                            dropRequest.setCurrentSize(getQueueSize());
+                            logger.debug("For DropFlowFileRequest {}, dropped {} FlowFiles that were waiting to be swapped out", requestIdentifier, droppedSize);
+                        }
+
                         final int swapFileCount = swapLocations.size();
                         final Iterator<String> swapLocationItr = swapLocations.iterator();
                         while (swapLocationItr.hasNext()) {
@@ -1149,6 +1598,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
                         dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.toString());
                     }
                 } finally {
+                    resumeSwapIo();
                     writeLock.unlock("Drop FlowFiles");
                 }
             }
@@ -1286,6 +1736,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
      * Lock the queue so that other threads are unable to interact with the
      * queue
      */
+    @Override
     public void lock() {
         writeLock.lock();
     }
@@ -1293,6 +1744,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
     /**
      * Unlock the queue
      */
+    @Override
     public void unlock() {
         writeLock.unlock("external unlock");
     }
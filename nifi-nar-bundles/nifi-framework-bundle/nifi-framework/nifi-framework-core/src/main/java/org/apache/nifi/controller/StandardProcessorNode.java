@@ -37,6 +37,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.nifi.annotation.behavior.BlockingIO;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.InputRequirement.Requirement;
@@ -105,6 +106,7 @@ public class StandardProcessorNode extends ProcessorNode implements Connectable
     private final boolean triggerWhenEmpty;
     private final boolean sideEffectFree;
     private final boolean triggeredSerially;
+    private final boolean blockingIO;
     private final boolean triggerWhenAnyDestinationAvailable;
     private final boolean eventDrivenSupported;
     private final boolean batchSupported;
@@ -151,6 +153,7 @@ public class StandardProcessorNode extends ProcessorNode implements Connectable
         sideEffectFree = procClass.isAnnotationPresent(SideEffectFree.class) || procClass.isAnnotationPresent(org.apache.nifi.processor.annotation.SideEffectFree.class);
         batchSupported = procClass.isAnnotationPresent(SupportsBatching.class) || procClass.isAnnotationPresent(org.apache.nifi.processor.annotation.SupportsBatching.class);
         triggeredSerially = procClass.isAnnotationPresent(TriggerSerially.class) || procClass.isAnnotationPresent(org.apache.nifi.processor.annotation.TriggerSerially.class);
+        blockingIO = procClass.isAnnotationPresent(BlockingIO.class);
         triggerWhenAnyDestinationAvailable = procClass.isAnnotationPresent(TriggerWhenAnyDestinationAvailable.class)
             || procClass.isAnnotationPresent(org.apache.nifi.processor.annotation.TriggerWhenAnyDestinationAvailable.class);
         this.validationContextFactory = validationContextFactory;
@@ -609,6 +612,11 @@ public class StandardProcessorNode extends ProcessorNode implements Connectable
         return triggeredSerially;
     }
 
+    @Override
+    public boolean isBlockingIO() {
+        return blockingIO;
+    }
+
     /**
      * @return the number of tasks that may execute concurrently for this processor
      */
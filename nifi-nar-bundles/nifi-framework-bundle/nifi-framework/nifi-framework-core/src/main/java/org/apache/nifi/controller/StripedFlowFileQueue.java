@@ -0,0 +1,1187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.FlowFileSummary;
+import org.apache.nifi.controller.queue.ListFlowFileRequest;
+import org.apache.nifi.controller.queue.ListFlowFileState;
+import org.apache.nifi.controller.queue.ListFlowFileStatus;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.scheduling.SchedulingStrategy;
+import org.apache.nifi.util.FormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A FlowFileQueue that many concurrent tasks can put to and poll from without all contending for a single
+ * queue lock. How it does so depends on whether the connection has prioritizers.
+ * </p>
+ *
+ * <p>
+ * While the connection has no prioritizers, FlowFiles are held in a lock-free first-in, first-out queue and
+ * are handed out in the order that they were queued. A FlowFile that is put back before its poll is
+ * acknowledged (for instance, when a session is rolled back) returns to the head of the queue. Once the FIFO
+ * queue holds as many FlowFiles as the swap threshold, further FlowFiles go to an overflow queue, which is a
+ * {@link StandardFlowFileQueue} and so may swap them to disk, until it has been emptied back into the FIFO
+ * queue. Penalized FlowFiles are not held in the FIFO queue but in the partitions described below.
+ * </p>
+ *
+ * <p>
+ * While the connection has prioritizers, the queue is split into several independently locked partitions,
+ * each of which is a {@link StandardFlowFileQueue}. FlowFiles are assigned to a partition based on their ID,
+ * and consumers start polling at a rotating partition. Because each partition maintains its own ordering,
+ * prioritizers are honored only within a partition; FlowFiles in different partitions are not ordered
+ * relative to one another. The swap threshold is split between the partitions, so that they hold about as
+ * many FlowFiles on the heap as a StandardFlowFileQueue would. Must be thread safe.
+ * </p>
+ */
+public final class StripedFlowFileQueue implements LockableFlowFileQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedFlowFileQueue.class);
+    private static final long DROP_STATUS_CHECK_MILLIS = 100L;
+
+    private final String identifier;
+    private final Connection connection;
+    private final ProcessScheduler scheduler;
+    private final StandardFlowFileQueue[] partitions;
+    private final AtomicInteger pollIndex = new AtomicInteger(0);
+
+    // FIFO path, used while the connection has no prioritizers. The counts include FlowFiles that are being added to or
+    // removed from the deque, so they may briefly differ from its contents.
+    private final ConcurrentLinkedDeque<FlowFileRecord> fifo = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger fifoCount = new AtomicInteger(0);
+    private final AtomicLong fifoBytes = new AtomicLong(0L);
+    private final AtomicInteger fifoUnacknowledgedCount = new AtomicInteger(0);
+    private final AtomicLong fifoUnacknowledgedBytes = new AtomicLong(0L);
+    private final int fifoCapacity;
+
+    // The number of unacknowledged polls of each FlowFile that was polled from the FIFO queue, keyed by FlowFile ID
+    private final ConcurrentMap<Long, Integer> fifoPolled = new ConcurrentHashMap<>();
+
+    // FlowFiles that arrived while the FIFO queue was full. While overflowing, every FlowFile is added to the overflow
+    // queue, so that none is handed out ahead of those that arrived before it.
+    private final StandardFlowFileQueue overflow;
+    private final ReentrantLock overflowLock = new ReentrantLock();
+    private volatile boolean overflowing = false; // changed only while holding overflowLock
+
+    private volatile boolean fifoMode = true;
+    private volatile long expirationMillis = 0L;
+
+    // FlowFiles that were polled from a partition other than the one that their ID maps to (which happens only when FlowFiles are
+    // recovered from swap files on restart, as all swap files are recovered into the first partition). These must be acknowledged
+    // against the partition that they were polled from, and while any of them is unacknowledged, a FlowFile that is put back (for
+    // instance, when a session is rolled back) returns to that same partition, so that each poll is acknowledged where it happened.
+    // Modified only while synchronized on the map.
+    private final ConcurrentMap<Long, ForeignOwner> foreignOwners = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, DropFlowFileRequest> dropRequestMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListFlowFileRequest> listRequestMap = new ConcurrentHashMap<>();
+
+    private volatile long maxCount = 0L;
+    private volatile long maxBytes = 0L;
+    private volatile String maxDataSize = "0 MB";
+
+    public StripedFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold,
+        final Heartbeater heartbeater, final int numPartitions) {
+        this(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, swapThreshold, heartbeater, numPartitions, null, null);
+    }
+
+    public StripedFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold,
+        final Heartbeater heartbeater, final int numPartitions, final ExecutorService swapInExecutor, final ExecutorService swapOutExecutor) {
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be at least 1 but was " + numPartitions);
+        }
+
+        this.identifier = identifier;
+        this.connection = connection;
+        this.scheduler = scheduler;
+        this.fifoCapacity = Math.max(1, swapThreshold);
+
+        // split the swap threshold between the partitions so that striping does not raise the number of FlowFiles held on the heap
+        partitions = new StandardFlowFileQueue[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            final int partitionSwapThreshold = Math.max(1, swapThreshold / numPartitions + (i < swapThreshold % numPartitions ? 1 : 0));
+            partitions[i] = new StandardFlowFileQueue(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager,
+                eventReporter, partitionSwapThreshold, heartbeater, swapInExecutor, swapOutExecutor);
+        }
+
+        overflow = new StandardFlowFileQueue(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager,
+            eventReporter, Math.max(1, swapThreshold / numPartitions), heartbeater, swapInExecutor, swapOutExecutor);
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the number of partitions that this queue is split into
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    private int getPartitionIndex(final FlowFileRecord flowFile) {
+        return (int) ((flowFile.getId() & Long.MAX_VALUE) % partitions.length);
+    }
+
+    private int nextPollIndex() {
+        return (pollIndex.getAndIncrement() & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    private void recordOwner(final FlowFileRecord flowFile, final int partitionIndex) {
+        if (getPartitionIndex(flowFile) == partitionIndex) {
+            return;
+        }
+
+        synchronized (foreignOwners) {
+            final ForeignOwner owner = foreignOwners.get(flowFile.getId());
+            if (owner == null) {
+                foreignOwners.put(flowFile.getId(), new ForeignOwner(partitionIndex));
+            } else {
+                // the FlowFile was put back to the owning partition and polled from it again before the first poll was acknowledged
+                owner.unacknowledged++;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the partition that the given FlowFile should be put to, which is the partition that it was polled
+     *         from if that poll is not yet acknowledged
+     */
+    private int getPutIndex(final FlowFileRecord flowFile) {
+        if (!foreignOwners.isEmpty()) {
+            synchronized (foreignOwners) {
+                final ForeignOwner owner = foreignOwners.get(flowFile.getId());
+                if (owner != null) {
+                    return owner.partitionIndex;
+                }
+            }
+        }
+
+        return getPartitionIndex(flowFile);
+    }
+
+    /**
+     * @return the index of the partition that the given FlowFile was polled from, releasing the record of that poll
+     */
+    private int getAcknowledgeIndex(final FlowFileRecord flowFile) {
+        if (!foreignOwners.isEmpty()) {
+            synchronized (foreignOwners) {
+                final ForeignOwner owner = foreignOwners.get(flowFile.getId());
+                if (owner != null) {
+                    if (--owner.unacknowledged == 0) {
+                        foreignOwners.remove(flowFile.getId());
+                    }
+                    return owner.partitionIndex;
+                }
+            }
+        }
+
+        return getPartitionIndex(flowFile);
+    }
+
+    /**
+     * Records a poll of the given FlowFile from the FIFO queue, so that its acknowledgement is applied to the FIFO queue
+     */
+    private void recordFifoPoll(final FlowFileRecord flowFile) {
+        final Long id = flowFile.getId();
+        while (true) {
+            final Integer count = fifoPolled.putIfAbsent(id, 1);
+            if (count == null || fifoPolled.replace(id, count, count + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the given FlowFile has a poll from the FIFO queue that is not yet acknowledged
+     */
+    private boolean isFifoPolled(final FlowFileRecord flowFile) {
+        return !fifoPolled.isEmpty() && fifoPolled.containsKey(flowFile.getId());
+    }
+
+    /**
+     * Releases the record of one poll of the given FlowFile from the FIFO queue
+     *
+     * @return <code>true</code> if the FlowFile had been polled from the FIFO queue, <code>false</code> if it was polled from a partition
+     */
+    private boolean releaseFifoPoll(final FlowFileRecord flowFile) {
+        if (fifoPolled.isEmpty()) {
+            return false;
+        }
+
+        final Long id = flowFile.getId();
+        while (true) {
+            final Integer count = fifoPolled.get(id);
+            if (count == null) {
+                return false;
+            }
+
+            if (count == 1 ? fifoPolled.remove(id, count) : fifoPolled.replace(id, count, count - 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public List<FlowFilePrioritizer> getPriorities() {
+        return partitions[0].getPriorities();
+    }
+
+    @Override
+    public void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
+        overflowLock.lock();
+        try {
+            for (final StandardFlowFileQueue partition : partitions) {
+                partition.setPriorities(newPriorities);
+            }
+
+            fifoMode = newPriorities.isEmpty();
+            if (!fifoMode) {
+                // Move the FIFO queue into the partitions so that its FlowFiles are ordered by the new prioritizers. Any FlowFiles in the
+                // overflow queue are left there and handed out once the partitions are empty, as are those swapped out by a partition.
+                final List<FlowFileRecord> flowFiles = new ArrayList<>();
+                FlowFileRecord flowFile;
+                long bytes = 0L;
+                while ((flowFile = fifo.pollFirst()) != null) {
+                    flowFiles.add(flowFile);
+                    bytes += flowFile.getSize();
+                }
+
+                if (!flowFiles.isEmpty()) {
+                    putToPartitions(flowFiles);
+                    fifoCount.addAndGet(-flowFiles.size());
+                    fifoBytes.addAndGet(-bytes);
+                }
+            }
+        } finally {
+            overflowLock.unlock();
+        }
+    }
+
+    @Override
+    public Long recoverSwappedFlowFiles() {
+        // every partition shares the same identifier, so the first partition is responsible for all swap files of this queue
+        return partitions[0].recoverSwappedFlowFiles();
+    }
+
+    @Override
+    public void purgeSwapFiles() {
+        partitions[0].purgeSwapFiles();
+    }
+
+    @Override
+    public long getSwapInTime(final TimeUnit timeUnit) {
+        long total = overflow.getSwapInTime(timeUnit);
+        for (final StandardFlowFileQueue partition : partitions) {
+            total += partition.getSwapInTime(timeUnit);
+        }
+        return total;
+    }
+
+    @Override
+    public long getSwapOutTime(final TimeUnit timeUnit) {
+        long total = overflow.getSwapOutTime(timeUnit);
+        for (final StandardFlowFileQueue partition : partitions) {
+            total += partition.getSwapOutTime(timeUnit);
+        }
+        return total;
+    }
+
+    @Override
+    public void setBackPressureObjectThreshold(final long maxQueueSize) {
+        this.maxCount = maxQueueSize;
+    }
+
+    @Override
+    public long getBackPressureObjectThreshold() {
+        return maxCount;
+    }
+
+    @Override
+    public synchronized void setBackPressureDataSizeThreshold(final String maxDataSize) {
+        this.maxBytes = DataUnit.parseDataSize(maxDataSize, DataUnit.B).longValue();
+        this.maxDataSize = maxDataSize;
+    }
+
+    @Override
+    public String getBackPressureDataSizeThreshold() {
+        return maxDataSize;
+    }
+
+    @Override
+    public QueueSize size() {
+        QueueSize total = new QueueSize(fifoCount.get() + fifoUnacknowledgedCount.get(), fifoBytes.get() + fifoUnacknowledgedBytes.get());
+        total = total.add(overflow.size());
+        for (final StandardFlowFileQueue partition : partitions) {
+            total = total.add(partition.size());
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (fifoCount.get() != 0 || fifoUnacknowledgedCount.get() != 0 || !overflow.isEmpty()) {
+            return false;
+        }
+
+        for (final StandardFlowFileQueue partition : partitions) {
+            if (!partition.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isActiveQueueEmpty() {
+        if (fifoCount.get() != 0 || !overflow.isActiveQueueEmpty()) {
+            return false;
+        }
+
+        for (final StandardFlowFileQueue partition : partitions) {
+            if (!partition.isActiveQueueEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public QueueSize getUnacknowledgedQueueSize() {
+        QueueSize total = new QueueSize(fifoUnacknowledgedCount.get(), fifoUnacknowledgedBytes.get());
+        total = total.add(overflow.getUnacknowledgedQueueSize());
+        for (final StandardFlowFileQueue partition : partitions) {
+            total = total.add(partition.getUnacknowledgedQueueSize());
+        }
+        return total;
+    }
+
+    @Override
+    public void acknowledge(final FlowFileRecord flowFile) {
+        if (releaseFifoPoll(flowFile)) {
+            fifoUnacknowledgedCount.decrementAndGet();
+            fifoUnacknowledgedBytes.addAndGet(-flowFile.getSize());
+            notifySource();
+            return;
+        }
+
+        partitions[getAcknowledgeIndex(flowFile)].acknowledge(flowFile);
+    }
+
+    @Override
+    public void acknowledge(final Collection<FlowFileRecord> flowFiles) {
+        final List<FlowFileRecord> partitionFlowFiles = new ArrayList<>();
+        int fifoAcknowledged = 0;
+        long fifoAcknowledgedBytes = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            if (releaseFifoPoll(flowFile)) {
+                fifoAcknowledged++;
+                fifoAcknowledgedBytes += flowFile.getSize();
+            } else {
+                partitionFlowFiles.add(flowFile);
+            }
+        }
+
+        if (fifoAcknowledged > 0) {
+            fifoUnacknowledgedCount.addAndGet(-fifoAcknowledged);
+            fifoUnacknowledgedBytes.addAndGet(-fifoAcknowledgedBytes);
+            if (partitionFlowFiles.isEmpty()) {
+                notifySource();
+                return;
+            }
+        }
+
+        final List<List<FlowFileRecord>> byPartition = groupByPartition(partitionFlowFiles, true);
+        for (int i = 0; i < partitions.length; i++) {
+            final List<FlowFileRecord> acknowledged = byPartition.get(i);
+            if (!acknowledged.isEmpty()) {
+                partitions[i].acknowledge(acknowledged);
+            }
+        }
+    }
+
+    private List<List<FlowFileRecord>> groupByPartition(final Collection<FlowFileRecord> flowFiles, final boolean acknowledging) {
+        final List<List<FlowFileRecord>> byPartition = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            byPartition.add(new ArrayList<FlowFileRecord>());
+        }
+
+        for (final FlowFileRecord flowFile : flowFiles) {
+            final int index = acknowledging ? getAcknowledgeIndex(flowFile) : getPutIndex(flowFile);
+            byPartition.get(index).add(flowFile);
+        }
+
+        return byPartition;
+    }
+
+    @Override
+    public boolean isFull() {
+        final long maxCount = this.maxCount;
+        final long maxBytes = this.maxBytes;
+
+        // Check if max size is set
+        if (maxBytes <= 0 && maxCount <= 0) {
+            return false;
+        }
+
+        final QueueSize queueSize = size();
+        if (maxCount > 0 && queueSize.getObjectCount() >= maxCount) {
+            return true;
+        }
+
+        if (maxBytes > 0 && queueSize.getByteCount() >= maxBytes) {
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Notifies the scheduler that data is available for the destination of this queue, as a StandardFlowFileQueue does when a FlowFile is put to it
+     */
+    private void notifyDestination() {
+        final Connectable destination = connection.getDestination();
+        final SchedulingStrategy schedulingStrategy = destination.getSchedulingStrategy();
+        if (schedulingStrategy == SchedulingStrategy.EVENT_DRIVEN || schedulingStrategy == SchedulingStrategy.TIMER_DRIVEN) {
+            scheduler.registerEvent(destination);
+        }
+    }
+
+    /**
+     * Notifies the scheduler that an event driven source may be able to run again, as it may have been held back by this queue
+     */
+    private void notifySource() {
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+            scheduler.registerEvent(connection.getSource());
+        }
+    }
+
+    @Override
+    public void put(final FlowFileRecord file) {
+        if (!fifoMode || file.isPenalized()) {
+            partitions[getPutIndex(file)].put(file);
+            return;
+        }
+
+        if (isFifoPolled(file)) {
+            addFirst(Collections.singletonList(file));
+        } else {
+            addLast(Collections.singletonList(file));
+        }
+
+        notifyDestination();
+    }
+
+    @Override
+    public void putAll(final Collection<FlowFileRecord> files) {
+        if (!fifoMode) {
+            putToPartitions(files);
+            return;
+        }
+
+        final List<FlowFileRecord> penalized = new ArrayList<>();
+        final List<FlowFileRecord> returned = new ArrayList<>();
+        final List<FlowFileRecord> queued = new ArrayList<>(files.size());
+        for (final FlowFileRecord flowFile : files) {
+            if (flowFile.isPenalized()) {
+                penalized.add(flowFile);
+            } else if (isFifoPolled(flowFile)) {
+                returned.add(flowFile);
+            } else {
+                queued.add(flowFile);
+            }
+        }
+
+        if (!penalized.isEmpty()) {
+            putToPartitions(penalized);
+        }
+        if (!returned.isEmpty()) {
+            addFirst(returned);
+        }
+        if (!queued.isEmpty()) {
+            addLast(queued);
+        }
+        if (!returned.isEmpty() || !queued.isEmpty()) {
+            notifyDestination();
+        }
+    }
+
+    private void putToPartitions(final Collection<FlowFileRecord> files) {
+        if (partitions.length == 1) {
+            partitions[0].putAll(files);
+            return;
+        }
+
+        final List<List<FlowFileRecord>> byPartition = groupByPartition(files, false);
+        for (int i = 0; i < partitions.length; i++) {
+            final List<FlowFileRecord> partitionFlowFiles = byPartition.get(i);
+            if (!partitionFlowFiles.isEmpty()) {
+                partitions[i].putAll(partitionFlowFiles);
+            }
+        }
+    }
+
+    /**
+     * Returns FlowFiles whose polls are not yet acknowledged to the head of the FIFO queue, in the given order
+     */
+    private void addFirst(final List<FlowFileRecord> flowFiles) {
+        long bytes = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            bytes += flowFile.getSize();
+        }
+
+        fifoCount.addAndGet(flowFiles.size());
+        fifoBytes.addAndGet(bytes);
+        for (int i = flowFiles.size() - 1; i >= 0; i--) {
+            fifo.offerFirst(flowFiles.get(i));
+        }
+    }
+
+    /**
+     * Adds FlowFiles to the tail of the FIFO queue or, if it is full or is already overflowing, to the overflow queue
+     */
+    private void addLast(final List<FlowFileRecord> flowFiles) {
+        long bytes = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            bytes += flowFile.getSize();
+        }
+
+        if (!overflowing && fifoCount.get() < fifoCapacity) {
+            fifoCount.addAndGet(flowFiles.size());
+            fifoBytes.addAndGet(bytes);
+            fifo.addAll(flowFiles);
+            return;
+        }
+
+        overflowLock.lock();
+        try {
+            if (!overflowing && fifoCount.get() < fifoCapacity) {
+                fifoCount.addAndGet(flowFiles.size());
+                fifoBytes.addAndGet(bytes);
+                fifo.addAll(flowFiles);
+            } else {
+                overflowing = true;
+                overflow.putAll(flowFiles);
+            }
+        } finally {
+            overflowLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the FlowFiles that are next in line in the overflow queue to the FIFO queue, once the FIFO queue is empty
+     *
+     * @return <code>true</code> if the FIFO queue may now have FlowFiles to poll
+     */
+    private boolean refillFifo(final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> refill = new ArrayList<>();
+        overflowLock.lock();
+        try {
+            if (!fifo.isEmpty()) {
+                return true; // refilled by another thread
+            }
+            if (!overflowing) {
+                return false;
+            }
+
+            overflow.poll(fifoCapacity, expiredRecords, refill);
+
+            long bytes = 0L;
+            for (final FlowFileRecord flowFile : refill) {
+                bytes += flowFile.getSize();
+            }
+            fifoCount.addAndGet(refill.size());
+            fifoBytes.addAndGet(bytes);
+            fifo.addAll(refill);
+
+            if (overflow.isActiveQueueEmpty()) {
+                overflowing = false;
+            }
+        } finally {
+            overflowLock.unlock();
+        }
+
+        // the FlowFiles now belong to the FIFO queue; acknowledge them outside of the lock, as doing so may notify the scheduler
+        if (!refill.isEmpty()) {
+            overflow.acknowledge(refill);
+        }
+        return !refill.isEmpty();
+    }
+
+    /**
+     * Polls up to the given number of FlowFiles from the head of the FIFO queue, refilling it from the overflow queue as needed.
+     * If a filter is given, FlowFiles that it rejects are returned to the head of the queue.
+     *
+     * @return <code>true</code> if the filter indicated that polling should stop
+     */
+    private boolean pollFifo(final int maxResults, final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords, final List<FlowFileRecord> destination) {
+        final long expirationMillis = this.expirationMillis;
+        final long now = System.currentTimeMillis();
+        final List<FlowFileRecord> rejected = new ArrayList<>();
+
+        int removedCount = 0;
+        long removedBytes = 0L;
+        int polledCount = 0;
+        long polledBytes = 0L;
+        boolean terminated = false;
+        try {
+            while (polledCount < maxResults && expiredRecords.size() < StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                final FlowFileRecord flowFile = fifo.pollFirst();
+                if (flowFile == null) {
+                    if (overflowing && refillFifo(expiredRecords)) {
+                        continue;
+                    }
+                    break;
+                }
+
+                removedCount++;
+                removedBytes += flowFile.getSize();
+
+                if (expirationMillis > 0 && flowFile.getEntryDate() + expirationMillis < now) {
+                    expiredRecords.add(flowFile);
+                    continue;
+                }
+
+                if (filter != null) {
+                    final FlowFileFilter.FlowFileFilterResult result = filter.filter(flowFile);
+                    if (!result.isAccept()) {
+                        rejected.add(flowFile);
+                        if (!result.isContinue()) {
+                            terminated = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    terminated = !result.isContinue();
+                }
+
+                recordFifoPoll(flowFile);
+                destination.add(flowFile);
+                polledCount++;
+                polledBytes += flowFile.getSize();
+
+                if (terminated) {
+                    break;
+                }
+            }
+        } finally {
+            fifoUnacknowledgedCount.addAndGet(polledCount);
+            fifoUnacknowledgedBytes.addAndGet(polledBytes);
+            fifoCount.addAndGet(-removedCount);
+            fifoBytes.addAndGet(-removedBytes);
+            if (!rejected.isEmpty()) {
+                addFirst(rejected);
+            }
+        }
+
+        return terminated;
+    }
+
+    private boolean isFifoEmpty() {
+        return fifoCount.get() == 0 && !overflowing;
+    }
+
+    @Override
+    public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> polled = new ArrayList<>(1);
+        poll(1, expiredRecords, polled);
+        return polled.isEmpty() ? null : polled.get(0);
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> records = new ArrayList<>(Math.min(1024, maxResults));
+        poll(maxResults, expiredRecords, records);
+        return records;
+    }
+
+    @Override
+    public int poll(final int maxResults, final Set<FlowFileRecord> expiredRecords, final List<FlowFileRecord> destination) {
+        final int originalSize = destination.size();
+
+        if (fifoMode) {
+            // Penalized FlowFiles, and any that were queued while the connection had prioritizers, are held in the partitions. Check one
+            // partition on each poll, so that they are not held back for as long as the FIFO queue has FlowFiles, and then the FIFO queue.
+            final int index = nextPollIndex();
+            if (!partitions[index].isActiveQueueEmpty()) {
+                pollPartition(index, maxResults, expiredRecords, destination);
+            }
+
+            final int remaining = maxResults - (destination.size() - originalSize);
+            if (remaining > 0 && !isFifoEmpty() && !isExpiredLimitReached(expiredRecords)) {
+                pollFifo(remaining, null, expiredRecords, destination);
+            }
+
+            pollPartitions(originalSize + maxResults, expiredRecords, destination);
+        } else {
+            pollPartitions(originalSize + maxResults, expiredRecords, destination);
+
+            // FlowFiles that were queued before the connection had prioritizers are handed out once the partitions are empty
+            final int remaining = maxResults - (destination.size() - originalSize);
+            if (remaining > 0 && !isFifoEmpty() && !isExpiredLimitReached(expiredRecords)) {
+                pollFifo(remaining, null, expiredRecords, destination);
+            }
+        }
+
+        return destination.size() - originalSize;
+    }
+
+    private static boolean isExpiredLimitReached(final Set<FlowFileRecord> expiredRecords) {
+        return expiredRecords.size() >= StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION;
+    }
+
+    private void pollPartition(final int index, final int maxResults, final Set<FlowFileRecord> expiredRecords, final List<FlowFileRecord> destination) {
+        final int previousSize = destination.size();
+        partitions[index].poll(maxResults, expiredRecords, destination);
+        for (int j = previousSize; j < destination.size(); j++) {
+            recordOwner(destination.get(j), index);
+        }
+    }
+
+    /**
+     * Polls the partitions, starting at a rotating partition, until the destination holds the given number of FlowFiles
+     */
+    private void pollPartitions(final int targetSize, final Set<FlowFileRecord> expiredRecords, final List<FlowFileRecord> destination) {
+        final int start = nextPollIndex();
+        for (int i = 0; i < partitions.length; i++) {
+            final int remaining = targetSize - destination.size();
+            if (remaining <= 0 || isExpiredLimitReached(expiredRecords)) {
+                break;
+            }
+
+            final int index = (start + i) % partitions.length;
+            if (!partitions[index].isActiveQueueEmpty()) {
+                pollPartition(index, remaining, expiredRecords, destination);
+            }
+        }
+    }
+
+    /**
+     * Drains the given source queue and then, while there is room in the destination, this queue, so that the FlowFiles of every
+     * partition are drained rather than only those of one. FlowFiles that are drained from this queue are accounted for as though
+     * they had been polled, and so must be acknowledged.
+     */
+    @Override
+    public long drainQueue(final Queue<FlowFileRecord> sourceQueue, final List<FlowFileRecord> destination, final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        // every partition has the same expiration period, so any of them can drain the source queue
+        long drainedSize = partitions[0].drainQueue(sourceQueue, destination, maxResults, expiredRecords);
+        if (destination.size() >= maxResults || expiredRecords.size() >= StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION) {
+            return drainedSize;
+        }
+
+        final int previousSize = destination.size();
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        poll(maxResults - previousSize, expired, destination);
+
+        for (int i = previousSize; i < destination.size(); i++) {
+            drainedSize += destination.get(i).getSize();
+        }
+        for (final FlowFileRecord flowFile : expired) {
+            drainedSize += flowFile.getSize();
+        }
+        expiredRecords.addAll(expired);
+
+        return drainedSize;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords) {
+        final AtomicBoolean terminated = new AtomicBoolean(false);
+        final FlowFileFilter trackingFilter = new FlowFileFilter() {
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                final FlowFileFilterResult result = filter.filter(flowFile);
+                if (!result.isContinue()) {
+                    terminated.set(true);
+                }
+                return result;
+            }
+        };
+
+        final List<FlowFileRecord> records = new ArrayList<>();
+        if (fifoMode && !isFifoEmpty()) {
+            pollFifo(Integer.MAX_VALUE, trackingFilter, expiredRecords, records);
+        }
+
+        final int start = nextPollIndex();
+        for (int i = 0; i < partitions.length && !terminated.get(); i++) {
+            final int index = (start + i) % partitions.length;
+            final List<FlowFileRecord> polled = partitions[index].poll(trackingFilter, expiredRecords);
+            for (final FlowFileRecord flowFile : polled) {
+                recordOwner(flowFile, index);
+            }
+            records.addAll(polled);
+        }
+
+        if (!fifoMode && !terminated.get() && !isFifoEmpty()) {
+            pollFifo(Integer.MAX_VALUE, trackingFilter, expiredRecords, records);
+        }
+
+        return records;
+    }
+
+    @Override
+    public String getFlowFileExpiration() {
+        return partitions[0].getFlowFileExpiration();
+    }
+
+    @Override
+    public int getFlowFileExpiration(final TimeUnit timeUnit) {
+        return partitions[0].getFlowFileExpiration(timeUnit);
+    }
+
+    @Override
+    public void setFlowFileExpiration(final String flowExpirationPeriod) {
+        for (final StandardFlowFileQueue partition : partitions) {
+            partition.setFlowFileExpiration(flowExpirationPeriod);
+        }
+        overflow.setFlowFileExpiration(flowExpirationPeriod);
+        expirationMillis = FormatUtils.getTimeDuration(flowExpirationPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Locks the overflow queue and every partition, always in the same order so that two threads locking the queue cannot deadlock.
+     * The FIFO queue is not locked, so FlowFiles may still be put to and polled from it.
+     */
+    @Override
+    public void lock() {
+        overflowLock.lock();
+        overflow.lock();
+        for (final StandardFlowFileQueue partition : partitions) {
+            partition.lock();
+        }
+    }
+
+    /**
+     * Unlocks every partition and the overflow queue, in the reverse order that they were locked
+     */
+    @Override
+    public void unlock() {
+        for (int i = partitions.length - 1; i >= 0; i--) {
+            partitions[i].unlock();
+        }
+        overflow.unlock();
+        overflowLock.unlock();
+    }
+
+    @Override
+    public String toString() {
+        return "FlowFileQueue[id=" + identifier + ", partitions=" + partitions.length + "]";
+    }
+
+    @Override
+    public DropFlowFileStatus dropFlowFiles(final String requestIdentifier, final String requestor) {
+        logger.info("Initiating drop of FlowFiles from {} on behalf of {} (request identifier={})", this, requestor, requestIdentifier);
+
+        // purge any old requests from the map just to keep it clean. But if there are very requests, which is usually the case, then don't bother
+        if (dropRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, DropFlowFileRequest> entry : dropRequestMap.entrySet()) {
+                final DropFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == DropFlowFileState.COMPLETE || request.getState() == DropFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                dropRequestMap.remove(requestId);
+            }
+        }
+
+        final DropFlowFileRequest dropRequest = new DropFlowFileRequest(requestIdentifier);
+        final QueueSize originalSize = size();
+        dropRequest.setCurrentSize(originalSize);
+        dropRequest.setOriginalSize(originalSize);
+        if (originalSize.getObjectCount() == 0) {
+            dropRequest.setDroppedSize(originalSize);
+            dropRequest.setState(DropFlowFileState.COMPLETE);
+            dropRequestMap.put(requestIdentifier, dropRequest);
+            return dropRequest;
+        }
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
+
+                try {
+                    // The FIFO queue is moved to the overflow queue so that its FlowFiles are dropped along with those of the overflow queue.
+                    // Then drop the overflow queue and the partitions one at a time, so that the others remain available while each is emptied.
+                    moveFifoToOverflow();
+
+                    final List<StandardFlowFileQueue> queues = new ArrayList<>(partitions.length + 1);
+                    queues.add(overflow);
+                    Collections.addAll(queues, partitions);
+                    for (int i = 0; i < queues.size(); i++) {
+                        final String partitionRequestId = requestIdentifier + "-" + i;
+                        final StandardFlowFileQueue partition = queues.get(i);
+                        DropFlowFileStatus partitionStatus = partition.dropFlowFiles(partitionRequestId, requestor);
+
+                        try {
+                            while (!isFinished(partitionStatus.getState())) {
+                                if (dropRequest.getState() == DropFlowFileState.CANCELED) {
+                                    logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
+                                    partition.cancelDropFlowFileRequest(partitionRequestId);
+                                    return;
+                                }
+
+                                Thread.sleep(DROP_STATUS_CHECK_MILLIS);
+                                partitionStatus = partition.getDropFlowFileStatus(partitionRequestId);
+                            }
+                        } finally {
+                            partition.cancelDropFlowFileRequest(partitionRequestId);
+                        }
+
+                        dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(partitionStatus.getDroppedSize()));
+                        dropRequest.setCurrentSize(size());
+
+                        if (partitionStatus.getState() != DropFlowFileState.COMPLETE) {
+                            dropRequest.setState(DropFlowFileState.FAILURE, partitionStatus.getFailureReason());
+                            return;
+                        }
+                    }
+
+                    logger.info("Successfully dropped {} FlowFiles ({} bytes) from Connection with ID {} on behalf of {}",
+                        dropRequest.getDroppedSize().getObjectCount(), dropRequest.getDroppedSize().getByteCount(), identifier, requestor);
+                    dropRequest.setState(DropFlowFileState.COMPLETE);
+                } catch (final Exception e) {
+                    logger.error("Failed to drop FlowFiles from Connection with ID {} due to {}", identifier, e.toString());
+                    logger.error("", e);
+                    dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.toString());
+                }
+            }
+        }, "Drop FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        dropRequestMap.put(requestIdentifier, dropRequest);
+        return dropRequest;
+    }
+
+    private void moveFifoToOverflow() {
+        overflowLock.lock();
+        try {
+            final List<FlowFileRecord> flowFiles = new ArrayList<>();
+            FlowFileRecord flowFile;
+            long bytes = 0L;
+            while ((flowFile = fifo.pollFirst()) != null) {
+                flowFiles.add(flowFile);
+                bytes += flowFile.getSize();
+            }
+
+            if (!flowFiles.isEmpty()) {
+                overflowing = true;
+                overflow.putAll(flowFiles);
+                fifoCount.addAndGet(-flowFiles.size());
+                fifoBytes.addAndGet(-bytes);
+            }
+        } finally {
+            overflowLock.unlock();
+        }
+    }
+
+    private static boolean isFinished(final DropFlowFileState state) {
+        return state == DropFlowFileState.COMPLETE || state == DropFlowFileState.FAILURE || state == DropFlowFileState.CANCELED;
+    }
+
+    @Override
+    public DropFlowFileStatus getDropFlowFileStatus(final String requestIdentifier) {
+        return dropRequestMap.get(requestIdentifier);
+    }
+
+    @Override
+    public DropFlowFileStatus cancelDropFlowFileRequest(final String requestIdentifier) {
+        final DropFlowFileRequest request = dropRequestMap.remove(requestIdentifier);
+        if (request == null) {
+            return null;
+        }
+
+        request.cancel();
+        return request;
+    }
+
+    @Override
+    public ListFlowFileStatus listFlowFiles(final String requestIdentifier, final int maxResults) {
+        // purge any old requests from the map just to keep it clean. But if there are very few requests, which is usually the case, then don't bother
+        if (listRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, ListFlowFileRequest> entry : listRequestMap.entrySet()) {
+                final ListFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == ListFlowFileState.COMPLETE || request.getState() == ListFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                listRequestMap.remove(requestId);
+            }
+        }
+
+        final ListFlowFileRequest listRequest = new ListFlowFileRequest(requestIdentifier, maxResults, size());
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // copy each queue, holding each partition's lock only while it is being copied
+                final List<FlowFileRecord> fifoFlowFiles = new ArrayList<>(fifo);
+                final List<FlowFileRecord> overflowFlowFiles = overflow.copyActiveQueue();
+                final List<FlowFileRecord> partitionFlowFiles = new ArrayList<>();
+                for (final StandardFlowFileQueue partition : partitions) {
+                    partitionFlowFiles.addAll(partition.copyActiveQueue());
+                }
+
+                listRequest.setState(ListFlowFileState.CALCULATING_LIST);
+
+                // every partition has the same prioritizers, so the merged listing is ordered the same way as each partition.
+                // List the FlowFiles in the order that the queues are polled: the FIFO queue and its overflow first unless there are prioritizers.
+                Collections.sort(overflowFlowFiles, overflow.createPrioritizer());
+                Collections.sort(partitionFlowFiles, partitions[0].createPrioritizer());
+                final List<FlowFileRecord> allFlowFiles = new ArrayList<>();
+                if (fifoMode) {
+                    allFlowFiles.addAll(fifoFlowFiles);
+                    allFlowFiles.addAll(overflowFlowFiles);
+                    allFlowFiles.addAll(partitionFlowFiles);
+                } else {
+                    allFlowFiles.addAll(partitionFlowFiles);
+                    allFlowFiles.addAll(fifoFlowFiles);
+                    allFlowFiles.addAll(overflowFlowFiles);
+                }
+
+                int position = 0;
+                final List<FlowFileSummary> summaries = new ArrayList<>();
+                for (final FlowFileRecord flowFile : allFlowFiles) {
+                    summaries.add(StandardFlowFileQueue.summarize(flowFile, ++position));
+                    if (summaries.size() >= maxResults) {
+                        break;
+                    }
+                }
+
+                logger.debug("{} Finished listing FlowFiles for active queue with a total of {} results", StripedFlowFileQueue.this, summaries.size());
+                listRequest.setFlowFileSummaries(summaries);
+                listRequest.setState(ListFlowFileState.COMPLETE);
+            }
+        }, "List FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        listRequestMap.put(requestIdentifier, listRequest);
+        return listRequest;
+    }
+
+    @Override
+    public ListFlowFileStatus getListFlowFileStatus(final String requestIdentifier) {
+        return listRequestMap.get(requestIdentifier);
+    }
+
+    @Override
+    public ListFlowFileStatus cancelListFlowFileRequest(final String requestIdentifier) {
+        logger.info("Canceling ListFlowFile Request with ID {}", requestIdentifier);
+        final ListFlowFileRequest request = listRequestMap.remove(requestIdentifier);
+        if (request != null) {
+            request.cancel();
+        }
+
+        return request;
+    }
+
+    @Override
+    public FlowFileRecord getFlowFile(final String flowFileUuid) throws IOException {
+        if (flowFileUuid == null) {
+            return null;
+        }
+
+        for (final FlowFileRecord flowFile : fifo) {
+            if (flowFileUuid.equals(flowFile.getAttribute(CoreAttributes.UUID.key()))) {
+                return flowFile;
+            }
+        }
+
+        final FlowFileRecord overflowFlowFile = overflow.getFlowFile(flowFileUuid);
+        if (overflowFlowFile != null) {
+            return overflowFlowFile;
+        }
+
+        for (final StandardFlowFileQueue partition : partitions) {
+            final FlowFileRecord flowFile = partition.getFlowFile(flowFileUuid);
+            if (flowFile != null) {
+                return flowFile;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void verifyCanList() throws IllegalStateException {
+    }
+
+    /**
+     * The partition that a FlowFile was polled from, when it is not the partition that the FlowFile's ID maps to, along with the
+     * number of times that the FlowFile was polled from it without being acknowledged
+     */
+    private static class ForeignOwner {
+        private final int partitionIndex;
+        private int unacknowledged = 1;
+
+        public ForeignOwner(final int partitionIndex) {
+            this.partitionIndex = partitionIndex;
+        }
+    }
+}
@@ -18,6 +18,8 @@ package org.apache.nifi.controller.repository;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
@@ -227,6 +229,11 @@ public class BatchingSessionFactory implements ProcessSessionFactory {
             return session.importFrom(source, destination);
         }
 
+        @Override
+        public FlowFile importFrom(ReadableByteChannel source, FlowFile destination) {
+            return session.importFrom(source, destination);
+        }
+
         @Override
         public void exportTo(FlowFile flowFile, Path destination, boolean append) {
             session.exportTo(flowFile, destination, append);
@@ -237,6 +244,11 @@ public class BatchingSessionFactory implements ProcessSessionFactory {
             session.exportTo(flowFile, destination);
         }
 
+        @Override
+        public void exportTo(FlowFile flowFile, WritableByteChannel destination) {
+            session.exportTo(flowFile, destination);
+        }
+
         @Override
         public ProvenanceReporter getProvenanceReporter() {
             return session.getProvenanceReporter();
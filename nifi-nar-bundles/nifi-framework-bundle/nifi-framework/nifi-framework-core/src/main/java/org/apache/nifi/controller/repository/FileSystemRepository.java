@@ -17,12 +17,19 @@
 package org.apache.nifi.controller.repository;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -88,6 +95,8 @@ public class FileSystemRepository implements ContentRepository {
     public static final String ARCHIVE_DIR_NAME = "archive";
     public static final Pattern MAX_ARCHIVE_SIZE_PATTERN = Pattern.compile("\\d{1,2}%");
     private static final Logger LOG = LoggerFactory.getLogger(FileSystemRepository.class);
+    // size of the buffer used to import content from a channel that cannot be transferred from directly
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
 
     private final Logger archiveExpirationLog = LoggerFactory.getLogger(FileSystemRepository.class.getName() + ".archive.expiration");
 
@@ -120,6 +129,14 @@ public class FileSystemRepository implements ContentRepository {
     private final boolean alwaysSync;
     private final ScheduledExecutorService containerCleanupExecutor;
 
+    // If true, content is synced to disk when a session that references it is committed, rather than when it is written.
+    // The files that are open for writing and may hold content that is not yet on disk are kept in the map.
+    private final boolean syncOnCommit;
+    private final ConcurrentMap<ResourceClaim, PendingSync> pendingSyncs = new ConcurrentHashMap<>();
+
+    // Cache of the files that are open for reading, or null if each read opens its own file.
+    private final ReadChannelCache readChannelCache;
+
     private ResourceClaimManager resourceClaimManager; // effectively final
 
     // Map of contianer to archived files that should be deleted next.
@@ -208,7 +225,18 @@ public class FileSystemRepository implements ContentRepository {
         }
 
         this.alwaysSync = Boolean.parseBoolean(properties.getProperty("nifi.content.repository.always.sync"));
-        LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+        this.syncOnCommit = alwaysSync && Boolean.parseBoolean(properties.getProperty(NiFiProperties.CONTENT_SYNC_ON_COMMIT));
+        LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {} and 'Sync on Commit' set to {}", alwaysSync, syncOnCommit);
+
+        final int readChannelCacheSize = properties.getIntegerProperty(NiFiProperties.CONTENT_READ_CHANNEL_CACHE_SIZE, NiFiProperties.DEFAULT_CONTENT_READ_CHANNEL_CACHE_SIZE);
+        final boolean memoryMapReads = Boolean.parseBoolean(properties.getProperty(NiFiProperties.CONTENT_READ_MEMORY_MAP));
+        if (readChannelCacheSize > 0) {
+            readChannelCache = new ReadChannelCache(readChannelCacheSize, memoryMapReads);
+            LOG.info("FileSystemRepository will keep up to {} files open for reading, with 'Memory Map' set to {}", readChannelCacheSize, memoryMapReads);
+        } else {
+            readChannelCache = null;
+        }
+
         initializeRepository();
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container", true);
@@ -227,6 +255,10 @@ public class FileSystemRepository implements ContentRepository {
             executor.scheduleWithFixedDelay(new ArchiveOrDestroyDestructableClaims(), 1, 1, TimeUnit.SECONDS);
         }
 
+        if (readChannelCache != null) {
+            executor.scheduleWithFixedDelay(new LogReadChannelStatistics(), 5, 5, TimeUnit.MINUTES);
+        }
+
         final long cleanupMillis = this.determineCleanupInterval(properties);
 
         for (final Map.Entry<String, Path> containerEntry : containers.entrySet()) {
@@ -242,6 +274,10 @@ public class FileSystemRepository implements ContentRepository {
         executor.shutdown();
         containerCleanupExecutor.shutdown();
 
+        if (readChannelCache != null) {
+            readChannelCache.invalidateAll();
+        }
+
         // Close any of the writable claim streams that are currently open.
         // Other threads may be writing to these streams, and that's okay.
         // If that happens, we will simply close the stream, resulting in an
@@ -249,9 +285,9 @@ public class FileSystemRepository implements ContentRepository {
         // only on shutdown of the application, we don't have to worry about
         // partially written files - on restart, we will simply start writing
         // to new files and leave those trailing bytes alone.
-        for (final OutputStream out : writableClaimStreams.values()) {
+        for (final Map.Entry<ResourceClaim, ByteCountingOutputStream> entry : writableClaimStreams.entrySet()) {
             try {
-                out.close();
+                closeClaimStream(entry.getKey(), entry.getValue());
             } catch (final IOException ioe) {
             }
         }
@@ -619,6 +655,12 @@ public class FileSystemRepository implements ContentRepository {
         } catch (final ContentNotFoundException cnfe) {
         }
 
+        // close any file that is open for reading before deleting it. If the file was memory mapped, its space is not
+        // reclaimed until the mapping has been garbage collected.
+        if (readChannelCache != null && path != null) {
+            readChannelCache.invalidate(path);
+        }
+
         final File file = path.toFile();
         if (!file.delete() && file.exists()) {
             LOG.warn("Unable to delete {} at path {}", new Object[] {claim, path});
@@ -679,7 +721,7 @@ public class FileSystemRepository implements ContentRepository {
 
     @Override
     public long importFrom(final Path content, final ContentClaim claim) throws IOException {
-        try (final InputStream in = Files.newInputStream(content, StandardOpenOption.READ)) {
+        try (final FileChannel in = FileChannel.open(content, StandardOpenOption.READ)) {
             return importFrom(in, claim);
         }
     }
@@ -691,6 +733,13 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    @Override
+    public long importFrom(final ReadableByteChannel content, final ContentClaim claim) throws IOException {
+        try (final ClaimOutputStream out = write(claim, false)) {
+            return out.transferFrom(content);
+        }
+    }
+
     @Override
     public long exportTo(final ContentClaim claim, final Path destination, final boolean append) throws IOException {
         if (claim == null) {
@@ -701,11 +750,11 @@ public class FileSystemRepository implements ContentRepository {
             return 0L;
         }
 
-        try (final InputStream in = read(claim);
-            final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            final long copied = StreamUtils.copy(in, fos);
+        try (final FileChannel in = FileChannel.open(getPath(claim, true), StandardOpenOption.READ);
+            final FileChannel out = openForExport(destination, append)) {
+            final long copied = transfer(in, claim.getOffset(), size(claim), out);
             if (alwaysSync) {
-                fos.getFD().sync();
+                out.force(true);
             }
             return copied;
         }
@@ -730,19 +779,77 @@ public class FileSystemRepository implements ContentRepository {
 
         }
 
-        try (final InputStream in = read(claim);
-            final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            if (offset > 0) {
-                StreamUtils.skip(in, offset);
+        try (final FileChannel in = FileChannel.open(getPath(claim, true), StandardOpenOption.READ);
+            final FileChannel out = openForExport(destination, append)) {
+            final long copied = transfer(in, claim.getOffset() + offset, Math.min(length, claimSize - offset), out);
+            if (copied < length) {
+                throw new EOFException("Attempted to copy " + length + " bytes but only " + copied + " bytes were available");
             }
-            StreamUtils.copy(in, fos, length);
             if (alwaysSync) {
-                fos.getFD().sync();
+                out.force(true);
             }
             return length;
         }
     }
 
+    @Override
+    public long exportTo(final ContentClaim claim, final WritableByteChannel destination, final long offset, final long length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        if (claim == null) {
+            if (offset > 0) {
+                throw new IllegalArgumentException("Cannot specify an offset of " + offset + " for a null claim");
+            }
+            return 0L;
+        }
+
+        final long claimSize = size(claim);
+        if (offset > claimSize) {
+            throw new IllegalArgumentException("offset of " + offset + " exceeds claim size of " + claimSize);
+        }
+
+        try (final FileChannel in = FileChannel.open(getPath(claim, true), StandardOpenOption.READ)) {
+            return transfer(in, claim.getOffset() + offset, Math.min(length, claimSize - offset), destination);
+        }
+    }
+
+    private static FileChannel openForExport(final Path destination, final boolean append) throws IOException {
+        if (append) {
+            return FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Copies up to <code>count</code> bytes of the given file, starting at the given position, to the destination. The
+     * operating system is asked to move the bytes itself, so that they do not have to be copied into the Java heap.
+     *
+     * @return the number of bytes copied, which is less than <code>count</code> only if the end of the file was reached
+     * @throws IllegalBlockingModeException if the destination is a selectable channel in non-blocking mode
+     * @throws IOException if the destination stops accepting bytes before all of them have been copied
+     */
+    private static long transfer(final FileChannel source, final long position, final long count, final WritableByteChannel destination) throws IOException {
+        // a non-blocking channel may accept only some of the bytes, or none at all, so it cannot be given a full copy
+        if (destination instanceof SelectableChannel && !((SelectableChannel) destination).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+
+        long transferred = 0L;
+        while (transferred < count) {
+            final long len = source.transferTo(position + transferred, count - transferred, destination);
+            if (len <= 0) {
+                if (position + transferred >= source.size()) {
+                    break;
+                }
+
+                throw new IOException("Destination accepted only " + transferred + " of " + count + " bytes");
+            }
+            transferred += len;
+        }
+        return transferred;
+    }
+
     @Override
     public long exportTo(final ContentClaim claim, final OutputStream destination) throws IOException {
         if (claim == null) {
@@ -798,7 +905,24 @@ public class FileSystemRepository implements ContentRepository {
         if (claim == null) {
             return new ByteArrayInputStream(new byte[0]);
         }
+
+        if (readChannelCache != null) {
+            final Path cachedPath = getPath(claim);
+            if (cachedPath != null) {
+                final InputStream cachedStream = readChannelCache.getCachedStream(cachedPath, claim.getOffset(), claim.getLength());
+                if (cachedStream != null) {
+                    return cachedStream;
+                }
+            }
+        }
+
         final Path path = getPath(claim, true);
+
+        // Archived files are read rarely and are deleted when they expire, so they are not kept open.
+        if (readChannelCache != null && !ARCHIVE_DIR_NAME.equals(path.getParent().toFile().getName())) {
+            return readChannelCache.openStream(path, claim.getOffset(), claim.getLength());
+        }
+
         final FileInputStream fis = new FileInputStream(path.toFile());
         if (claim.getOffset() > 0L) {
             try {
@@ -823,7 +947,7 @@ public class FileSystemRepository implements ContentRepository {
         return write(claim, false);
     }
 
-    private OutputStream write(final ContentClaim claim, final boolean append) throws IOException {
+    private ClaimOutputStream write(final ContentClaim claim, final boolean append) throws IOException {
         if (claim == null) {
             throw new NullPointerException("ContentClaim cannot be null");
         }
@@ -863,7 +987,7 @@ public class FileSystemRepository implements ContentRepository {
 
         activeResourceClaims.add(resourceClaim);
         final ByteCountingOutputStream bcos = claimStream;
-        final OutputStream out = new OutputStream() {
+        final ClaimOutputStream out = new ClaimOutputStream() {
             private long bytesWritten = 0L;
             private boolean recycle = true;
             private boolean closed = false;
@@ -924,6 +1048,46 @@ public class FileSystemRepository implements ContentRepository {
                 scc.setLength(bytesWritten + initialLength);
             }
 
+            @Override
+            public synchronized long transferFrom(final ReadableByteChannel source) throws IOException {
+                if (closed) {
+                    throw new IOException("Stream is closed");
+                }
+
+                // write directly to the file's channel, holding the lock of the synchronized stream so that
+                // the bytes cannot be interleaved with writes made through the stream
+                final FileChannel fileChannel = ((FileOutputStream) bcos.getWrappedStream()).getChannel();
+                final long start = bytesWritten;
+                try {
+                    synchronized (bcos) {
+                        if (source instanceof FileChannel) {
+                            final FileChannel sourceFile = (FileChannel) source;
+                            final long position = sourceFile.position();
+                            final long transferred = transfer(sourceFile, position, sourceFile.size() - position, fileChannel);
+                            sourceFile.position(position + transferred);
+                            bytesWritten += transferred;
+                        } else {
+                            final ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+                            while (source.read(buffer) >= 0) {
+                                buffer.flip();
+                                while (buffer.hasRemaining()) {
+                                    bytesWritten += fileChannel.write(buffer);
+                                }
+                                buffer.clear();
+                                scc.setLength(bytesWritten + initialLength);
+                            }
+                        }
+                    }
+                } catch (final IOException ioe) {
+                    recycle = false;
+                    throw new IOException("Failed to write to " + this, ioe);
+                } finally {
+                    scc.setLength(bytesWritten + initialLength);
+                }
+
+                return bytesWritten - start;
+            }
+
             @Override
             public synchronized void flush() throws IOException {
                 if (closed) {
@@ -938,7 +1102,7 @@ public class FileSystemRepository implements ContentRepository {
                 closed = true;
                 activeResourceClaims.remove(resourceClaim);
 
-                if (alwaysSync) {
+                if (alwaysSync && !syncOnCommit) {
                     ((FileOutputStream) bcos.getWrappedStream()).getFD().sync();
                 }
 
@@ -947,6 +1111,11 @@ public class FileSystemRepository implements ContentRepository {
                     scc.setLength(0L);
                 }
 
+                if (syncOnCommit) {
+                    // the content will be synced when the session is committed, or when the file is closed below
+                    getPendingSync(scc.getResourceClaim(), bcos).setWrittenLength(scc.getOffset() + scc.getLength());
+                }
+
                 // if we've not yet hit the threshold for appending to a resource claim, add the claim
                 // to the writableClaimQueue so that the Resource Claim can be used again when create()
                 // is called. In this case, we don't have to actually close the file stream. Instead, we
@@ -966,7 +1135,7 @@ public class FileSystemRepository implements ContentRepository {
                         writableClaimStreams.put(scc.getResourceClaim(), bcos);
                         LOG.debug("Claim length less than max; Adding {} back to writableClaimStreams", this);
                     } else {
-                        bcos.close();
+                        closeClaimStream(scc.getResourceClaim(), bcos);
 
                         LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
                         if (LOG.isTraceEnabled()) {
@@ -979,7 +1148,7 @@ public class FileSystemRepository implements ContentRepository {
 
                     // ensure that the claim is no longer on the queue
                     writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
-                    bcos.close();
+                    closeClaimStream(scc.getResourceClaim(), bcos);
                     LOG.debug("Claim lenth >= max; Closing {}", this);
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
@@ -996,9 +1165,56 @@ public class FileSystemRepository implements ContentRepository {
         return out;
     }
 
+    private PendingSync getPendingSync(final ResourceClaim resourceClaim, final ByteCountingOutputStream claimStream) {
+        final PendingSync pendingSync = pendingSyncs.get(resourceClaim);
+        if (pendingSync != null) {
+            return pendingSync;
+        }
+
+        final PendingSync newPendingSync = new PendingSync((FileOutputStream) claimStream.getWrappedStream());
+        final PendingSync existing = pendingSyncs.putIfAbsent(resourceClaim, newPendingSync);
+        return existing == null ? newPendingSync : existing;
+    }
+
+    private void closeClaimStream(final ResourceClaim resourceClaim, final ByteCountingOutputStream claimStream) throws IOException {
+        try {
+            // once the file is closed it can no longer be synced, so any content that is waiting for a commit is synced now
+            final PendingSync pendingSync = pendingSyncs.get(resourceClaim);
+            if (pendingSync != null) {
+                pendingSync.close();
+                pendingSyncs.remove(resourceClaim, pendingSync);
+            }
+        } finally {
+            claimStream.close();
+        }
+    }
+
+    @Override
+    public void sync(final Collection<ContentClaim> claims) throws IOException {
+        if (!syncOnCommit) {
+            // content is either synced as it is written or not at all
+            return;
+        }
+
+        for (final ContentClaim claim : claims) {
+            if (claim == null) {
+                continue;
+            }
+
+            final PendingSync pendingSync = pendingSyncs.get(claim.getResourceClaim());
+            if (pendingSync != null) {
+                pendingSync.syncTo(claim.getOffset() + claim.getLength());
+            }
+        }
+    }
+
 
     @Override
     public void purge() {
+        if (readChannelCache != null) {
+            readChannelCache.invalidateAll();
+        }
+
         // delete all content from repositories
         for (final Path path : containers.values()) {
             FileUtils.deleteFilesInDir(path.toFile(), null, LOG, true);
@@ -1031,6 +1247,30 @@ public class FileSystemRepository implements ContentRepository {
         resourceClaimManager.purge();
     }
 
+    /**
+     * @return the cache of files that are open for reading, or <code>null</code> if files are not kept open
+     */
+    ReadChannelCache getReadChannelCache() {
+        return readChannelCache;
+    }
+
+    /**
+     * @return the number of files that are open for writing and whose content is synced when sessions are committed
+     */
+    int getPendingSyncCount() {
+        return pendingSyncs.size();
+    }
+
+    private class LogReadChannelStatistics implements Runnable {
+
+        @Override
+        public void run() {
+            LOG.info("FileSystemRepository has {} files open for reading, of which {} are memory mapped; {} reads used a file that was already open, "
+                + "{} reads opened a file and {} files were closed to make room for others", new Object[] {readChannelCache.getOpenChannelCount(),
+                readChannelCache.getMappedFileCount(), readChannelCache.getHitCount(), readChannelCache.getMissCount(), readChannelCache.getEvictionCount()});
+        }
+    }
+
     private class BinDestructableClaims implements Runnable {
 
         @Override
@@ -1137,6 +1377,12 @@ public class FileSystemRepository implements ContentRepository {
             return false;
         }
 
+        // the archive is cleaned up by deleting files without regard to the claims that they hold, so make sure that
+        // the file is not left open for reading once it has been moved
+        if (readChannelCache != null) {
+            readChannelCache.invalidate(curPath);
+        }
+
         try {
             Files.move(curPath, archivePath);
             return true;
@@ -1645,6 +1891,74 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    /**
+     * An OutputStream to a Content Claim that can also be written to directly from a channel
+     */
+    private abstract static class ClaimOutputStream extends OutputStream {
+        /**
+         * Writes all of the remaining bytes of the given channel to the Content Claim. If the channel is a FileChannel,
+         * the bytes are transferred by the operating system rather than being copied into the Java heap.
+         *
+         * @param source the channel to read from
+         * @return the number of bytes written
+         * @throws IOException if unable to read from the channel or write to the Content Claim
+         */
+        public abstract long transferFrom(ReadableByteChannel source) throws IOException;
+    }
+
+    /**
+     * Tracks how much of a file that is open for writing has been synced to disk. Sessions that are committed at the same
+     * time and reference content in the same file share a single sync, as a sync covers everything written before it
+     * started.
+     */
+    private static class PendingSync {
+        private final FileOutputStream out;
+        private volatile long writtenLength = 0L;
+        private long syncedLength = 0L;
+        private boolean closed = false;
+        private IOException failure;
+
+        public PendingSync(final FileOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Only one thread writes to a file at a time, so this does not need to be synchronized
+         */
+        public void setWrittenLength(final long length) {
+            writtenLength = length;
+        }
+
+        /**
+         * Ensures that at least the first <code>length</code> bytes of the file are on disk
+         */
+        public synchronized void syncTo(final long length) throws IOException {
+            if (failure != null) {
+                // the state of the file on disk is unknown once a sync has failed, so it must not be considered durable
+                throw new IOException("Content could not be synced to disk", failure);
+            }
+            if (closed || syncedLength >= length) {
+                return;
+            }
+
+            final long lengthToSync = writtenLength;
+            try {
+                out.getFD().sync();
+            } catch (final IOException ioe) {
+                failure = ioe;
+                throw ioe;
+            }
+            syncedLength = lengthToSync;
+        }
+
+        /**
+         * Syncs the content that has been written to the file, if necessary, before it is closed
+         */
+        public synchronized void close() throws IOException {
+            syncTo(writtenLength);
+            closed = true;
+        }
+    }
 
     private static class ClaimLengthPair {
         private final ResourceClaim claim;
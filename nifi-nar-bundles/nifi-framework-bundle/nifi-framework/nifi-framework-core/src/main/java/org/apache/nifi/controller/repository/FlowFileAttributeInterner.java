@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+
+/**
+ * <p>
+ * A bounded dictionary of FlowFile attribute keys and of the values of those keys that take on only a few distinct
+ * values, such as <code>mime.type</code> or <code>kafka.topic</code>. Every FlowFile record that is built, recovered
+ * from the FlowFile Repository or swapped in shares the dictionary's instance of each such String rather than holding
+ * its own copy.
+ * </p>
+ *
+ * <p>
+ * A key's values are interned only until the key has been seen with more than a fixed number of distinct values; after
+ * that, the key is considered to have high cardinality and its values are no longer tracked. The number of keys, the
+ * total number of values and the length of an interned value are also bounded, so the dictionary cannot grow without
+ * limit.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+public final class FlowFileAttributeInterner {
+
+    static final int DEFAULT_MAX_KEYS = 4096;
+    static final int DEFAULT_MAX_VALUES = 65536;
+    static final int DEFAULT_MAX_VALUES_PER_KEY = 256;
+    static final int DEFAULT_MAX_VALUE_LENGTH = 256;
+
+    // approximate size of a String object and its character array, beyond the characters themselves
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private static final FlowFileAttributeInterner INSTANCE = new FlowFileAttributeInterner(DEFAULT_MAX_KEYS, DEFAULT_MAX_VALUES, DEFAULT_MAX_VALUES_PER_KEY, DEFAULT_MAX_VALUE_LENGTH);
+
+    private final int maxKeys;
+    private final int maxValues;
+    private final int maxValuesPerKey;
+    private final int maxValueLength;
+
+    private final ConcurrentMap<String, KeyValues> keys = new ConcurrentHashMap<>();
+    private final AtomicInteger keyCount = new AtomicInteger(0);
+    private final AtomicInteger valueCount = new AtomicInteger(0);
+    private final AtomicLong internedBytes = new AtomicLong(0L);
+    private final StripedCounter stringsDeduplicated = new StripedCounter();
+
+    FlowFileAttributeInterner(final int maxKeys, final int maxValues, final int maxValuesPerKey, final int maxValueLength) {
+        this.maxKeys = maxKeys;
+        this.maxValues = maxValues;
+        this.maxValuesPerKey = maxValuesPerKey;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * @return the dictionary shared by all FlowFile records
+     */
+    public static FlowFileAttributeInterner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param key an attribute key
+     * @return the dictionary's instance of the key, or the given key if the dictionary is full
+     */
+    public String internKey(final String key) {
+        final KeyValues keyValues = getKeyValues(key);
+        return keyValues == null ? key : deduplicated(key, keyValues.key);
+    }
+
+    /**
+     * @param key the attribute key, which should already have been interned via {@link #internKey(String)}
+     * @param value the attribute value
+     * @return the dictionary's instance of the value, or the given value if the key's values are not being interned
+     */
+    public String internValue(final String key, final String value) {
+        if (value == null || value.length() > maxValueLength) {
+            return value;
+        }
+
+        final KeyValues keyValues = keys.get(key);
+        if (keyValues == null) {
+            return value;
+        }
+
+        final ConcurrentMap<String, String> values = keyValues.values.get();
+        if (values == null) {
+            return value;
+        }
+
+        final String existing = values.get(value);
+        if (existing != null) {
+            return deduplicated(value, existing);
+        }
+
+        final int distinctValues = keyValues.distinctValues.incrementAndGet();
+        if (distinctValues > maxValuesPerKey) {
+            if (distinctValues == maxValuesPerKey + 1) {
+                // too many distinct values for this key to be worth interning; stop tracking them
+                retire(keyValues);
+            }
+            return value;
+        }
+
+        if (valueCount.incrementAndGet() > maxValues) {
+            valueCount.decrementAndGet();
+            keyValues.distinctValues.decrementAndGet();
+            return value;
+        }
+
+        final String raced = values.putIfAbsent(value, value);
+        if (raced != null) {
+            valueCount.decrementAndGet();
+            keyValues.distinctValues.decrementAndGet();
+            return deduplicated(value, raced);
+        }
+        internedBytes.addAndGet(sizeOf(value));
+
+        // If the key's values were retired while this value was being added, the thread that retired them may not have
+        // seen it. Whichever thread removes the value from the map is the one that stops counting it.
+        if (keyValues.values.get() != values && values.remove(value) != null) {
+            valueCount.decrementAndGet();
+            internedBytes.addAndGet(-sizeOf(value));
+        }
+
+        return value;
+    }
+
+    private void retire(final KeyValues keyValues) {
+        final ConcurrentMap<String, String> values = keyValues.values.getAndSet(null);
+        if (values == null) {
+            return;
+        }
+
+        for (final String value : values.keySet()) {
+            if (values.remove(value) != null) {
+                valueCount.decrementAndGet();
+                internedBytes.addAndGet(-sizeOf(value));
+            }
+        }
+    }
+
+    private KeyValues getKeyValues(final String key) {
+        final KeyValues existing = keys.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (keyCount.incrementAndGet() > maxKeys) {
+            keyCount.decrementAndGet();
+            return null;
+        }
+
+        // the UUID of each FlowFile is unique, so there is no point in tracking its values
+        final KeyValues created = new KeyValues(key, !CoreAttributes.UUID.key().equals(key));
+        final KeyValues raced = keys.putIfAbsent(key, created);
+        if (raced != null) {
+            keyCount.decrementAndGet();
+            return raced;
+        }
+
+        internedBytes.addAndGet(sizeOf(key));
+        return created;
+    }
+
+    private String deduplicated(final String given, final String interned) {
+        if (given != interned) {
+            stringsDeduplicated.increment();
+        }
+        return interned;
+    }
+
+    private static long sizeOf(final String value) {
+        return STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+
+    /**
+     * @return the number of attribute keys in the dictionary
+     */
+    public int getKeyCount() {
+        return keyCount.get();
+    }
+
+    /**
+     * @return the number of attribute values in the dictionary
+     */
+    public int getValueCount() {
+        return valueCount.get();
+    }
+
+    /**
+     * @return an estimate of the number of bytes of heap held by the keys and values that are currently in the dictionary
+     */
+    public long getInternedBytes() {
+        return internedBytes.get();
+    }
+
+    /**
+     * @return the number of times since startup that a copy of a String was replaced by the dictionary's instance
+     */
+    public long getStringsDeduplicated() {
+        return stringsDeduplicated.sum();
+    }
+
+    /**
+     * A counter that is spread over several cells, chosen by thread, so that threads that increment it at the same time
+     * seldom update the same cell. Each cell is padded to its own cache line.
+     */
+    private static final class StripedCounter {
+        private static final int CELLS = 16;
+        private static final int PADDING = 8;
+
+        private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+        private void increment() {
+            final int cell = (int) (Thread.currentThread().getId() % CELLS);
+            cells.incrementAndGet(cell * PADDING);
+        }
+
+        private long sum() {
+            long total = 0L;
+            for (int i = 0; i < CELLS; i++) {
+                total += cells.get(i * PADDING);
+            }
+            return total;
+        }
+    }
+
+    private static final class KeyValues {
+        private final String key;
+        private final AtomicInteger distinctValues = new AtomicInteger(0);
+        private final AtomicReference<ConcurrentMap<String, String>> values;
+
+        private KeyValues(final String key, final boolean internValues) {
+            this.key = key;
+            this.values = new AtomicReference<ConcurrentMap<String, String>>(internValues ? new ConcurrentHashMap<String, String>() : null);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * An immutable map of FlowFile attributes, implemented as a hash array mapped trie. Adding or removing an attribute
+ * returns a new map that shares all but the O(log n) nodes along the path to the changed attribute with this one, so
+ * the many versions of a FlowFile's attributes that are created as it moves through a flow share most of their
+ * memory.
+ * </p>
+ *
+ * <p>
+ * Null keys and values are not supported. Any attempt to modify the map through the {@link Map} interface throws an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * <b>Immutable - Thread Safe</b>
+ */
+public final class PersistentAttributeMap extends AbstractMap<String, String> {
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    private static final PersistentAttributeMap EMPTY = new PersistentAttributeMap(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+    private Set<Map.Entry<String, String>> entrySet;
+
+    private PersistentAttributeMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static PersistentAttributeMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param attributes the attributes to copy
+     * @return a map containing the given attributes; if the given map is already a PersistentAttributeMap, it is
+     *         returned as-is
+     */
+    public static PersistentAttributeMap copyOf(final Map<String, String> attributes) {
+        if (attributes instanceof PersistentAttributeMap) {
+            return (PersistentAttributeMap) attributes;
+        }
+
+        return EMPTY.plusAll(attributes);
+    }
+
+    /**
+     * @param key the attribute name
+     * @param value the attribute value
+     * @return a map that contains the given attribute in addition to those of this map, replacing any existing value
+     *         for the key; this map is returned if it already contains the given attribute
+     */
+    public PersistentAttributeMap plus(final String key, final String value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Attribute keys and values cannot be null");
+        }
+
+        final boolean[] added = new boolean[1];
+        final Node updatedRoot = root.put(key, value, hash(key), 0, added);
+        if (updatedRoot == root) {
+            return this;
+        }
+
+        return new PersistentAttributeMap(updatedRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @param attributes the attributes to add; entries with a null key or value are ignored
+     * @return a map that contains the given attributes in addition to those of this map
+     */
+    public PersistentAttributeMap plusAll(final Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return this;
+        }
+
+        Node updatedRoot = root;
+        int updatedSize = size;
+        final boolean[] added = new boolean[1];
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            final String key = entry.getKey();
+            final String value = entry.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+
+            added[0] = false;
+            updatedRoot = updatedRoot.put(key, value, hash(key), 0, added);
+            if (added[0]) {
+                updatedSize++;
+            }
+        }
+
+        if (updatedRoot == root) {
+            return this;
+        }
+
+        return new PersistentAttributeMap(updatedRoot, updatedSize);
+    }
+
+    /**
+     * @param key the attribute name
+     * @return a map that contains all of the attributes of this map except for the given one; this map is returned if
+     *         it does not contain the key
+     */
+    public PersistentAttributeMap minus(final String key) {
+        if (key == null) {
+            return this;
+        }
+
+        final Node updatedRoot = root.remove(key, hash(key), 0);
+        if (updatedRoot == root) {
+            return this;
+        }
+
+        return new PersistentAttributeMap(updatedRoot == null ? BitmapNode.EMPTY : updatedRoot, size - 1);
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        final String attributeName = (String) key;
+        return root.get(attributeName, hash(attributeName), 0);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        Set<Map.Entry<String, String>> entries = entrySet;
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new EntryIterator(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = entries;
+        }
+
+        return entries;
+    }
+
+    private static int hash(final String key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A node of the trie. Its array holds key/value pairs: a pair whose key is <code>null</code> holds a child node in
+     * place of the value.
+     */
+    private abstract static class Node {
+
+        protected final Object[] array;
+
+        protected Node(final Object[] array) {
+            this.array = array;
+        }
+
+        abstract String get(String key, int hash, int shift);
+
+        abstract Node put(String key, String value, int hash, int shift, boolean[] added);
+
+        /**
+         * @return the updated node, this node if it does not contain the key, or <code>null</code> if removing the key
+         *         leaves the node empty
+         */
+        abstract Node remove(String key, int hash, int shift);
+
+        boolean isSingleEntry() {
+            return array.length == 2 && array[0] != null;
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        private BitmapNode(final int bitmap, final Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bit(final int hash, final int shift) {
+            return 1 << ((hash >>> shift) & LEVEL_MASK);
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        String get(final String key, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            final int index = index(bit);
+            final Object existingKey = array[2 * index];
+            final Object existingValue = array[2 * index + 1];
+            if (existingKey == null) {
+                return ((Node) existingValue).get(key, hash, shift + BITS_PER_LEVEL);
+            }
+
+            return key.equals(existingKey) ? (String) existingValue : null;
+        }
+
+        @Override
+        Node put(final String key, final String value, final int hash, final int shift, final boolean[] added) {
+            final int bit = bit(hash, shift);
+            final int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                final Object[] updated = new Object[array.length + 2];
+                System.arraycopy(array, 0, updated, 0, 2 * index);
+                updated[2 * index] = key;
+                updated[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, updated, 2 * index + 2, array.length - 2 * index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, updated);
+            }
+
+            final Object existingKey = array[2 * index];
+            final Object existingValue = array[2 * index + 1];
+            if (existingKey == null) {
+                final Node child = (Node) existingValue;
+                final Node updatedChild = child.put(key, value, hash, shift + BITS_PER_LEVEL, added);
+                return updatedChild == child ? this : replace(index, null, updatedChild);
+            }
+
+            if (key.equals(existingKey)) {
+                return value.equals(existingValue) ? this : replace(index, existingKey, value);
+            }
+
+            // two different keys share this slot, so push both of them down into a new child
+            added[0] = true;
+            final Node child = createNode((String) existingKey, (String) existingValue, key, value, hash, shift + BITS_PER_LEVEL);
+            return replace(index, null, child);
+        }
+
+        @Override
+        Node remove(final String key, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            final int index = index(bit);
+            final Object existingKey = array[2 * index];
+            final Object existingValue = array[2 * index + 1];
+            if (existingKey == null) {
+                final Node child = (Node) existingValue;
+                final Node updatedChild = child.remove(key, hash, shift + BITS_PER_LEVEL);
+                if (updatedChild == child) {
+                    return this;
+                }
+                if (updatedChild == null) {
+                    return removeSlot(bit, index);
+                }
+                if (updatedChild.isSingleEntry()) {
+                    // pull a lone remaining entry back up so that the trie stays as shallow as possible
+                    return replace(index, updatedChild.array[0], updatedChild.array[1]);
+                }
+                return replace(index, null, updatedChild);
+            }
+
+            if (key.equals(existingKey)) {
+                return removeSlot(bit, index);
+            }
+
+            return this;
+        }
+
+        private BitmapNode replace(final int index, final Object key, final Object value) {
+            final Object[] updated = array.clone();
+            updated[2 * index] = key;
+            updated[2 * index + 1] = value;
+            return new BitmapNode(bitmap, updated);
+        }
+
+        private BitmapNode removeSlot(final int bit, final int index) {
+            if (bitmap == bit) {
+                return null;
+            }
+
+            final Object[] updated = new Object[array.length - 2];
+            System.arraycopy(array, 0, updated, 0, 2 * index);
+            System.arraycopy(array, 2 * index + 2, updated, 2 * index, updated.length - 2 * index);
+            return new BitmapNode(bitmap ^ bit, updated);
+        }
+
+        private static Node createNode(final String key1, final String value1, final String key2, final String value2, final int hash2, final int shift) {
+            final int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+
+            final boolean[] added = new boolean[1];
+            return EMPTY.put(key1, value1, hash1, shift, added).put(key2, value2, hash2, shift, added);
+        }
+    }
+
+    /**
+     * Holds the entries whose keys have exactly the same hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        private CollisionNode(final int hash, final Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(final String key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        String get(final String key, final int hash, final int shift) {
+            final int index = indexOf(key);
+            return index < 0 ? null : (String) array[index + 1];
+        }
+
+        @Override
+        Node put(final String key, final String value, final int hash, final int shift, final boolean[] added) {
+            if (hash != this.hash) {
+                // nest this node beneath a bitmap node that separates it from the new key
+                final Node nested = new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[] {null, this});
+                return nested.put(key, value, hash, shift, added);
+            }
+
+            final int index = indexOf(key);
+            if (index >= 0) {
+                if (value.equals(array[index + 1])) {
+                    return this;
+                }
+
+                final Object[] updated = array.clone();
+                updated[index + 1] = value;
+                return new CollisionNode(hash, updated);
+            }
+
+            final Object[] updated = new Object[array.length + 2];
+            System.arraycopy(array, 0, updated, 0, array.length);
+            updated[array.length] = key;
+            updated[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, updated);
+        }
+
+        @Override
+        Node remove(final String key, final int hash, final int shift) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+
+            final Object[] updated = new Object[array.length - 2];
+            System.arraycopy(array, 0, updated, 0, index);
+            System.arraycopy(array, index + 2, updated, index, updated.length - index);
+            return new CollisionNode(hash, updated);
+        }
+    }
+
+    /**
+     * Iterates over the entries of the trie depth-first, keeping the path from the root to the current node on a
+     * stack. The trie is at most 7 levels deep.
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = 0;
+        private Map.Entry<String, String> next;
+
+        private EntryIterator(final Node root) {
+            arrays[0] = root.array;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                final Object[] array = arrays[depth];
+                final int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+
+                positions[depth] = position + 2;
+                final Object key = array[position];
+                if (key == null) {
+                    depth++;
+                    arrays[depth] = ((Node) array[position + 1]).array;
+                    positions[depth] = 0;
+                    continue;
+                }
+
+                next = new AbstractMap.SimpleImmutableEntry<>((String) key, (String) array[position + 1]);
+                return;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            final Map.Entry<String, String> entry = next;
+            if (entry == null) {
+                throw new NoSuchElementException();
+            }
+
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
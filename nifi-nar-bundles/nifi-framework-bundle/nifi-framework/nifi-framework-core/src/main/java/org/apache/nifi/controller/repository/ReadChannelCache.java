@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A bounded cache of the FileChannels that are open for reading the files of the {@link FileSystemRepository}. Many
+ * small FlowFiles share a single file, so reading each of them through its own FileInputStream costs an open and a
+ * close of the same file for every read. Instead, readers share the file's cached channel and read from it with
+ * positional reads, which do not move the channel's position and so can be performed by many threads at once.
+ * </p>
+ *
+ * <p>
+ * Each channel is reference counted. When the cache is full, the least recently used channel is removed from the
+ * cache, and it is closed as soon as the last stream that reads from it is closed. A file that is about to be deleted
+ * or moved must be {@link #invalidate(Path) invalidated} so that its channel does not keep it open.
+ * </p>
+ *
+ * <p>
+ * If memory mapping is enabled, a file that has been read many times is mapped into memory, and reads within the
+ * mapped region are copied from the mapping rather than read from the channel. Because the files of the repository
+ * are only ever appended to, the mapped region never becomes stale; reads beyond it use the channel. A file that is
+ * still being written to is mapped again only once it has grown to at least twice the size of its mapping, so that a
+ * file that is read as it grows is not mapped again on every read. A mapping is released only when it is garbage
+ * collected, which may be some time after it has been replaced or its channel has been closed.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+final class ReadChannelCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadChannelCache.class);
+
+    // the number of times that a file must be read before it is memory mapped
+    static final int MAP_THRESHOLD = 16;
+
+    // files larger than this are never memory mapped
+    static final long MAX_MAPPED_BYTES = 16L * 1024L * 1024L;
+
+    private final int maxOpenChannels;
+    private final boolean memoryMap;
+
+    // guarded by itself; iterates from the least recently used channel to the most recently used
+    private final LinkedHashMap<Path, CachedChannel> channels = new LinkedHashMap<>(16, 0.75F, true);
+
+    // incremented, while holding the lock on channels, whenever a file is invalidated, so that a channel that was opened
+    // concurrently with the invalidation of its file is not added to the cache
+    private long invalidations = 0L;
+
+    private final AtomicInteger openChannelCount = new AtomicInteger(0);
+    private final AtomicInteger mappedFileCount = new AtomicInteger(0);
+    private final AtomicLong mapCount = new AtomicLong(0L);
+    private final AtomicLong hitCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+    private final AtomicLong evictionCount = new AtomicLong(0L);
+
+    /**
+     * @param maxOpenChannels the maximum number of channels to keep in the cache
+     * @param memoryMap whether or not files that are read often should be memory mapped
+     */
+    ReadChannelCache(final int maxOpenChannels, final boolean memoryMap) {
+        this.maxOpenChannels = maxOpenChannels;
+        this.memoryMap = memoryMap;
+    }
+
+    /**
+     * @param path the file to read
+     * @param offset the offset into the file at which to start reading
+     * @param length the number of bytes to read, or -1 to read to the end of the file
+     * @return a stream that reads the given range of the file from its cached channel, or <code>null</code> if there is
+     *         no channel cached for the file
+     */
+    InputStream getCachedStream(final Path path, final long offset, final long length) {
+        final CachedChannel cached;
+        synchronized (channels) {
+            cached = channels.get(path);
+            if (cached == null) {
+                return null;
+            }
+            cached.references++;
+        }
+
+        hitCount.incrementAndGet();
+        return createStream(cached, offset, length);
+    }
+
+    /**
+     * Opens a channel for the given file, adding it to the cache if the cache does not already hold one
+     *
+     * @param path the file to read
+     * @param offset the offset into the file at which to start reading
+     * @param length the number of bytes to read, or -1 to read to the end of the file
+     * @return a stream that reads the given range of the file
+     * @throws IOException if unable to open the file
+     */
+    InputStream openStream(final Path path, final long offset, final long length) throws IOException {
+        final CachedChannel cached = open(path);
+        return createStream(cached, offset, length);
+    }
+
+    private CachedChannel open(final Path path) throws IOException {
+        final long invalidationsBeforeOpen;
+        synchronized (channels) {
+            final CachedChannel cached = channels.get(path);
+            if (cached != null) {
+                cached.references++;
+                hitCount.incrementAndGet();
+                return cached;
+            }
+            invalidationsBeforeOpen = invalidations;
+        }
+
+        missCount.incrementAndGet();
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        openChannelCount.incrementAndGet();
+        final CachedChannel opened = new CachedChannel(path, channel);
+        opened.references = 1;
+
+        final List<CachedChannel> toClose = new ArrayList<>();
+        CachedChannel result = opened;
+        synchronized (channels) {
+            final CachedChannel raced = channels.get(path);
+            if (raced != null) {
+                // another thread opened the same file; use its channel rather than ours
+                raced.references++;
+                result = raced;
+                opened.references = 0;
+                toClose.add(opened);
+            } else if (invalidations == invalidationsBeforeOpen) {
+                opened.cached = true;
+                channels.put(path, opened);
+                evict(toClose);
+            }
+            // otherwise, a file was invalidated while we were opening this one, and it may have been this one, so the
+            // channel is not cached; it is closed when the stream that reads from it is closed
+        }
+
+        closeAll(toClose);
+        return result;
+    }
+
+    // must be called while holding the lock on channels
+    private void evict(final List<CachedChannel> toClose) {
+        final Iterator<CachedChannel> itr = channels.values().iterator();
+        while (channels.size() > maxOpenChannels && itr.hasNext()) {
+            final CachedChannel eldest = itr.next();
+            itr.remove();
+            eldest.cached = false;
+            evictionCount.incrementAndGet();
+            if (eldest.references == 0) {
+                toClose.add(eldest);
+            }
+        }
+    }
+
+    /**
+     * Removes the channel for the given file from the cache, closing it once no stream is reading from it. This must be
+     * called before the file is deleted or moved.
+     *
+     * @param path the file
+     */
+    void invalidate(final Path path) {
+        final CachedChannel removed;
+        synchronized (channels) {
+            invalidations++;
+            removed = channels.remove(path);
+            if (removed == null) {
+                return;
+            }
+            removed.cached = false;
+            if (removed.references > 0) {
+                return;
+            }
+        }
+
+        close(removed);
+    }
+
+    /**
+     * Removes all channels from the cache, closing each of them once no stream is reading from it
+     */
+    void invalidateAll() {
+        final List<CachedChannel> toClose = new ArrayList<>();
+        synchronized (channels) {
+            invalidations++;
+            for (final CachedChannel cached : channels.values()) {
+                cached.cached = false;
+                if (cached.references == 0) {
+                    toClose.add(cached);
+                }
+            }
+            channels.clear();
+        }
+
+        closeAll(toClose);
+    }
+
+    private void release(final CachedChannel cached) {
+        synchronized (channels) {
+            cached.references--;
+            if (cached.cached || cached.references > 0) {
+                return;
+            }
+        }
+
+        close(cached);
+    }
+
+    private void closeAll(final List<CachedChannel> toClose) {
+        for (final CachedChannel cached : toClose) {
+            close(cached);
+        }
+    }
+
+    private void close(final CachedChannel cached) {
+        synchronized (cached) {
+            if (cached.mapped != null) {
+                cached.mapped = null;
+                mappedFileCount.decrementAndGet();
+            }
+        }
+
+        try {
+            cached.channel.close();
+        } catch (final IOException ioe) {
+            logger.warn("Failed to close {} due to {}", cached.path, ioe.toString());
+        }
+        openChannelCount.decrementAndGet();
+    }
+
+    private InputStream createStream(final CachedChannel cached, final long offset, final long length) {
+        if (memoryMap && length >= 0L && cached.reads.incrementAndGet() >= MAP_THRESHOLD) {
+            final ByteBuffer mapped = cached.mapped;
+            if (mapped == null || offset + length >= 2L * mapped.capacity()) {
+                map(cached);
+            }
+        }
+
+        return new ChannelInputStream(cached, offset, length);
+    }
+
+    private void map(final CachedChannel cached) {
+        synchronized (cached) {
+            try {
+                // A file that is still being appended to is mapped again only once it has doubled in size, which
+                // bounds the number of mappings of a file that is read as it grows.
+                final long size = cached.channel.size();
+                if (size == 0L || size > MAX_MAPPED_BYTES || (cached.mapped != null && size < 2L * cached.mapped.capacity())) {
+                    return;
+                }
+
+                final boolean alreadyMapped = cached.mapped != null;
+                cached.mapped = cached.channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+                mapCount.incrementAndGet();
+                if (!alreadyMapped) {
+                    mappedFileCount.incrementAndGet();
+                }
+            } catch (final IOException ioe) {
+                // reads will continue to use the channel
+                logger.debug("Failed to memory map {} due to {}", cached.path, ioe.toString());
+            }
+        }
+    }
+
+    /**
+     * @return the number of channels that are currently open, including channels that have been removed from the cache
+     *         but are still being read
+     */
+    int getOpenChannelCount() {
+        return openChannelCount.get();
+    }
+
+    /**
+     * @return the number of files that are currently memory mapped
+     */
+    int getMappedFileCount() {
+        return mappedFileCount.get();
+    }
+
+    /**
+     * @return the number of times that a file has been memory mapped, including files that were mapped again after
+     *         they had grown
+     */
+    long getMapCount() {
+        return mapCount.get();
+    }
+
+    /**
+     * @return the number of reads that used a channel that was already open
+     */
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of reads that had to open a channel
+     */
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of channels that were removed from the cache because the cache was full
+     */
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private static final class CachedChannel {
+        private final Path path;
+        private final FileChannel channel;
+        private final AtomicInteger reads = new AtomicInteger(0);
+
+        // guarded by the lock on the cache's map of channels
+        private int references = 0;
+        private boolean cached = false;
+
+        // guarded by this when written
+        private volatile ByteBuffer mapped;
+
+        private CachedChannel(final Path path, final FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Reads a range of a file through positional reads of its channel, releasing the channel when closed
+     */
+    private final class ChannelInputStream extends InputStream {
+        private CachedChannel cached;
+        private long position;
+        private final long end;
+        private final byte[] singleByte = new byte[1];
+        private boolean closed = false;
+
+        private ChannelInputStream(final CachedChannel cached, final long offset, final long length) {
+            this.cached = cached;
+            this.position = offset;
+            this.end = length < 0L ? -1L : offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int len = read(singleByte, 0, 1);
+            return len < 1 ? -1 : singleByte[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            int toRead = len;
+            if (end >= 0L) {
+                final long remaining = end - position;
+                if (remaining <= 0L) {
+                    return -1;
+                }
+                toRead = (int) Math.min(len, remaining);
+            }
+
+            final ByteBuffer mapped = cached.mapped;
+            if (mapped != null && position + toRead <= mapped.capacity()) {
+                final ByteBuffer view = mapped.duplicate();
+                view.position((int) position);
+                view.get(b, off, toRead);
+                position += toRead;
+                return toRead;
+            }
+
+            final int bytesRead = readFromChannel(ByteBuffer.wrap(b, off, toRead));
+            if (bytesRead > 0) {
+                position += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        private int readFromChannel(final ByteBuffer buffer) throws IOException {
+            try {
+                return cached.channel.read(buffer, position);
+            } catch (final ClosedChannelException cce) {
+                // A thread that is interrupted while reading from a FileChannel closes the channel, so if another thread
+                // was interrupted while reading from this shared channel, reopen the file and try again.
+                if (Thread.currentThread().isInterrupted()) {
+                    throw cce;
+                }
+
+                final CachedChannel closedChannel = cached;
+                synchronized (channels) {
+                    if (channels.get(closedChannel.path) == closedChannel) {
+                        channels.remove(closedChannel.path);
+                        closedChannel.cached = false;
+                    }
+                }
+                release(closedChannel);
+
+                cached = open(closedChannel.path);
+                return cached.channel.read(buffer, position);
+            }
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+            if (n <= 0L) {
+                return 0L;
+            }
+
+            final long limit = end >= 0L ? end : cached.channel.size();
+            final long skipped = Math.max(0L, Math.min(n, limit - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            long available = cached.channel.size() - position;
+            if (end >= 0L) {
+                available = Math.min(available, end - position);
+            }
+            return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, available));
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(cached);
+        }
+
+        @Override
+        public String toString() {
+            return "FileSystemRepository Channel Stream [" + cached.path + "]";
+        }
+    }
+
+    @Override
+    public String toString() {
+        final int cachedChannels;
+        synchronized (channels) {
+            cachedChannels = channels.size();
+        }
+        return "ReadChannelCache[cached=" + cachedChannels + ", open=" + openChannelCount.get() + ", mapped=" + mappedFileCount.get() + "]";
+    }
+}
@@ -18,9 +18,7 @@ package org.apache.nifi.controller.repository;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -39,6 +37,12 @@ import org.apache.nifi.flowfile.attributes.CoreAttributes;
  * A flow file is a logical notion of an item in a flow with its associated attributes and identity which can be used as a reference for its actual content.
  * </p>
  *
+ * <p>
+ * The attributes are held in a {@link PersistentAttributeMap}. A Builder created from an existing record starts with that record's map, and each attribute that it adds or removes
+ * copies only a small part of the map, so successive versions of a FlowFile share most of their attributes. The keys, and the values of keys that take on few distinct values,
+ * are also replaced with the instances held by the {@link FlowFileAttributeInterner}, so that FlowFiles share the Strings themselves.
+ * </p>
+ *
  * <b>Immutable - Thread Safe</b>
  *
  */
@@ -51,7 +55,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
     private final Set<String> lineageIdentifiers;
     private final long size;
     private final long penaltyExpirationMs;
-    private final Map<String, String> attributes;
+    private final PersistentAttributeMap attributes;
     private final ContentClaim claim;
     private final long claimOffset;
     private final long lastQueueDate;
@@ -111,7 +115,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(this.attributes);
+        return this.attributes;
     }
 
     @Override
@@ -164,13 +168,15 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     public static final class Builder {
 
+        private static final FlowFileAttributeInterner INTERNER = FlowFileAttributeInterner.getInstance();
+
         private long bId;
         private long bEntryDate = System.currentTimeMillis();
         private long bLineageStartDate = bEntryDate;
         private final Set<String> bLineageIdentifiers = new HashSet<>();
         private long bPenaltyExpirationMs = -1L;
         private long bSize = 0L;
-        private final Map<String, String> bAttributes = new HashMap<>();
+        private PersistentAttributeMap bAttributes = PersistentAttributeMap.empty();
         private ContentClaim bClaim = null;
         private long bClaimOffset = 0L;
         private long bLastQueueDate = System.currentTimeMillis();
@@ -223,23 +229,32 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder addAttribute(final String key, final String value) {
             if (key != null && value != null) {
-                bAttributes.put(FlowFile.KeyValidator.validateKey(key), value);
+                putAttribute(FlowFile.KeyValidator.validateKey(key), value);
             }
             return this;
         }
 
+        private void putAttribute(final String key, final String value) {
+            final String internedKey = INTERNER.internKey(key);
+            bAttributes = bAttributes.plus(internedKey, INTERNER.internValue(internedKey, value));
+        }
+
+        private void putAttributes(final Map<String, String> attributes) {
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                final String key = entry.getKey();
+                final String value = entry.getValue();
+                if (key != null && value != null) {
+                    putAttribute(key, value);
+                }
+            }
+        }
+
         public Builder addAttributes(final Map<String, String> attributes) {
             if (null != attributes) {
                 for (final String key : attributes.keySet()) {
                     FlowFile.KeyValidator.validateKey(key);
                 }
-                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    final String key = entry.getKey();
-                    final String value = entry.getValue();
-                    if (key != null && value != null) {
-                        bAttributes.put(key, value);
-                    }
-                }
+                putAttributes(attributes);
             }
             return this;
         }
@@ -251,7 +266,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    bAttributes.remove(key);
+                    bAttributes = bAttributes.minus(key);
                 }
             }
             return this;
@@ -264,7 +279,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    bAttributes.remove(key);
+                    bAttributes = bAttributes.minus(key);
                 }
             }
             return this;
@@ -272,16 +287,14 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder removeAttributes(final Pattern keyPattern) {
             if (keyPattern != null) {
-                final Iterator<String> iterator = bAttributes.keySet().iterator();
-                while (iterator.hasNext()) {
-                    final String key = iterator.next();
-
+                // the map is immutable, so it is safe to iterate over it while removing keys
+                for (final String key : bAttributes.keySet()) {
                     if (CoreAttributes.UUID.key().equals(key)) {
                         continue;
                     }
 
                     if (keyPattern.matcher(key).matches()) {
-                        iterator.remove();
+                        bAttributes = bAttributes.minus(key);
                     }
                 }
             }
@@ -314,7 +327,12 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             bLineageIdentifiers.addAll(specFlowFile.getLineageIdentifiers());
             bPenaltyExpirationMs = specFlowFile.getPenaltyExpirationMillis();
             bSize = specFlowFile.getSize();
-            bAttributes.putAll(specFlowFile.getAttributes());
+            if (bAttributes.isEmpty() && specFlowFile instanceof StandardFlowFileRecord) {
+                // share the existing record's attributes rather than copying them
+                bAttributes = ((StandardFlowFileRecord) specFlowFile).attributes;
+            } else {
+                putAttributes(specFlowFile.getAttributes());
+            }
             bClaim = specFlowFile.getContentClaim();
             bClaimOffset = specFlowFile.getContentClaimOffset();
 
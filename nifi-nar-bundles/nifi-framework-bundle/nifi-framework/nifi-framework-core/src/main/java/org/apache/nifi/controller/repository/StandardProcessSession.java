@@ -21,6 +21,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -334,6 +336,22 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             final long claimRemovalFinishNanos = System.nanoTime();
             final long claimRemovalNanos = claimRemovalFinishNanos - claimRemovalStart;
 
+            // Ensure that the content written in this session is on disk before the FlowFile Repository references it
+            final List<ContentClaim> writtenClaims = new ArrayList<>();
+            for (final StandardRepositoryRecord record : checkpoint.records.values()) {
+                if (!record.isMarkedForDelete() && record.isWorking() && record.getWorkingClaim() != null && record.getWorkingClaim() != record.getOriginalClaim()) {
+                    writtenClaims.add(record.getWorkingClaim());
+                }
+            }
+            if (!writtenClaims.isEmpty()) {
+                try {
+                    context.getContentRepository().sync(writtenClaims);
+                } catch (final IOException ioe) {
+                    rollback(false, true);
+                    throw new ProcessException("Content Repository failed to sync", ioe);
+                }
+            }
+
             // Update the FlowFile Repository
             try {
                 final Collection<StandardRepositoryRecord> repoRecords = checkpoint.records.values();
@@ -1205,18 +1223,8 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         return get(new QueuePoller() {
             @Override
             public List<FlowFileRecord> poll(final FlowFileQueue queue, final Set<FlowFileRecord> expiredRecords) {
-                return queue.poll(new FlowFileFilter() {
-                    int polled = 0;
-
-                    @Override
-                    public FlowFileFilterResult filter(final FlowFile flowFile) {
-                        if (++polled < maxResults) {
-                            return FlowFileFilterResult.ACCEPT_AND_CONTINUE;
-                        } else {
-                            return FlowFileFilterResult.ACCEPT_AND_TERMINATE;
-                        }
-                    }
-                }, expiredRecords);
+                // no filter is needed to limit the number of results, so let the queue drain them in bulk
+                return queue.poll(maxResults, expiredRecords);
             }
         }, false);
     }
@@ -2286,6 +2294,38 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         return newFile;
     }
 
+    @Override
+    public FlowFile importFrom(final ReadableByteChannel source, final FlowFile destination) {
+        validateRecordState(destination);
+        final StandardRepositoryRecord record = records.get(destination);
+        ContentClaim newClaim = null;
+        final long claimOffset = 0L;
+
+        final long newSize;
+        try {
+            try {
+                newClaim = context.getContentRepository().create(context.getConnectable().isLossTolerant());
+                claimLog.debug("Creating ContentClaim {} for 'importFrom' for {}", newClaim, destination);
+
+                newSize = context.getContentRepository().importFrom(source, newClaim);
+                bytesWritten.increment(newSize);
+            } catch (final IOException e) {
+                throw new FlowFileAccessException("Unable to create ContentClaim due to " + e.toString(), e);
+            }
+        } catch (final Throwable t) {
+            if (newClaim != null) {
+                destroyContent(newClaim);
+            }
+
+            throw new FlowFileAccessException("Failed to import data from " + source + " for " + destination + " due to " + t.toString(), t);
+        }
+
+        removeTemporaryClaim(record);
+        final FlowFileRecord newFile = new StandardFlowFileRecord.Builder().fromFlowFile(record.getCurrent()).contentClaim(newClaim).contentClaimOffset(claimOffset).size(newSize).build();
+        record.setWorking(newFile);
+        return newFile;
+    }
+
     @Override
     public void exportTo(final FlowFile source, final Path destination, final boolean append) {
         validateRecordState(source);
@@ -2322,6 +2362,28 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         }
     }
 
+    @Override
+    public void exportTo(final FlowFile source, final WritableByteChannel destination) {
+        validateRecordState(source);
+        final StandardRepositoryRecord record = records.get(source);
+        try {
+            if (record.getCurrentClaim() == null) {
+                return;
+            }
+
+            ensureNotAppending(record.getCurrentClaim());
+            final long size = context.getContentRepository().exportTo(record.getCurrentClaim(), destination, record.getCurrentClaimOffset(), source.getSize());
+            bytesRead.increment(size);
+            if (size != source.getSize()) {
+                throw new EOFException("Exported only " + size + " of the " + source.getSize() + " bytes of content");
+            }
+        } catch (final ContentNotFoundException nfe) {
+            handleContentNotFound(nfe, record);
+        } catch (final Throwable t) {
+            throw new FlowFileAccessException("Failed to export " + source + " to " + destination + " due to " + t.toString(), t);
+        }
+    }
+
     private void handleContentNotFound(final ContentNotFoundException nfe, final Collection<StandardRepositoryRecord> suspectRecords) {
         for (final StandardRepositoryRecord record : suspectRecords) {
             handleContentNotFound(nfe, record);
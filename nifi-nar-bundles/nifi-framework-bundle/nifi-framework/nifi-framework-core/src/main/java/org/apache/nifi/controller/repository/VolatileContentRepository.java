@@ -21,6 +21,9 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -371,6 +374,17 @@ public class VolatileContentRepository implements ContentRepository {
         }
     }
 
+    @Override
+    public long importFrom(final ReadableByteChannel in, final ContentClaim claim) throws IOException {
+        final ContentClaim backupClaim = getBackupClaim(claim);
+        if (backupClaim == null) {
+            // content is held in memory, so there is nothing to gain from a channel transfer
+            return importFrom(Channels.newInputStream(in), claim);
+        } else {
+            return getBackupRepository().importFrom(in, backupClaim);
+        }
+    }
+
     @Override
     public long exportTo(final ContentClaim claim, final Path destination, final boolean append) throws IOException {
         return exportTo(claim, destination, append, 0L, size(claim));
@@ -421,6 +435,21 @@ public class VolatileContentRepository implements ContentRepository {
         return length;
     }
 
+    @Override
+    public long exportTo(final ContentClaim claim, final WritableByteChannel destination, final long offset, final long length) throws IOException {
+        if (claim == null) {
+            return 0L;
+        }
+
+        final ContentClaim backupClaim = getBackupClaim(claim);
+        if (backupClaim != null) {
+            return getBackupRepository().exportTo(backupClaim, destination, offset, length);
+        }
+
+        final long bytesToCopy = Math.min(length, size(claim) - offset);
+        return exportTo(claim, Channels.newOutputStream(destination), offset, bytesToCopy);
+    }
+
     private ContentBlock getContent(final ContentClaim claim) throws ContentNotFoundException {
         final ContentBlock content = claimMap.get(claim);
         if (content == null) {
@@ -456,6 +485,22 @@ public class VolatileContentRepository implements ContentRepository {
         return backupClaim == null ? getContent(claim).write() : getBackupRepository().write(backupClaim);
     }
 
+    @Override
+    public void sync(final Collection<ContentClaim> claims) throws IOException {
+        // content that is held in memory cannot be synced, but content that has spilled over to the backup repository can be
+        final List<ContentClaim> backupClaims = new ArrayList<>();
+        for (final ContentClaim claim : claims) {
+            final ContentClaim backupClaim = getBackupClaim(claim);
+            if (backupClaim != null) {
+                backupClaims.add(backupClaim);
+            }
+        }
+
+        if (!backupClaims.isEmpty()) {
+            getBackupRepository().sync(backupClaims);
+        }
+    }
+
     @Override
     public void purge() {
         for (final ContentClaim claim : claimMap.keySet()) {
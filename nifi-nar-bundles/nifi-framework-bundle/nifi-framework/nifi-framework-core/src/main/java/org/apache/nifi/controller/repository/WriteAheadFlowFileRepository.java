@@ -47,6 +47,7 @@ import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.slf4j.Logger;
@@ -55,7 +56,6 @@ import org.wali.MinimalLockingWriteAheadLog;
 import org.wali.SerDe;
 import org.wali.SyncListener;
 import org.wali.UpdateType;
-import org.wali.WriteAheadRepository;
 
 /**
  * <p>
@@ -70,11 +70,24 @@ import org.wali.WriteAheadRepository;
  * the Operating System will flush the data to disk. Additionally, most disks on enterprise servers also have battery backups that can power the disks long enough to flush their buffers. For this
  * reason, we choose instead to not sync to disk for every write but instead sync only when we checkpoint.
  * </p>
+ *
+ * <p>
+ * When <code>always.sync</code> is enabled, the <code>nifi.flowfile.repository.group.commit</code> property may also be set to <code>true</code>. In this case, updates from concurrent session
+ * commits are written to the Write-Ahead Log together and a single sync is performed on behalf of all of them, so each commit is still durable when it returns but the cost of the sync is
+ * shared.
+ * </p>
+ *
+ * <p>
+ * If the <code>nifi.flowfile.repository.journal.segment.size</code> property is set, each partition of the Write-Ahead Log appends its updates to pre-allocated, memory-mapped journal
+ * segments of that size instead of writing them through a stream, and on restart the segments of all partitions are scanned in parallel.
+ * </p>
  */
 public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncListener {
 
     private final AtomicLong flowFileSequenceGenerator = new AtomicLong(0L);
     private final boolean alwaysSync;
+    private final boolean groupCommit;
+    private final long journalSegmentSize;
 
     private static final Logger logger = LoggerFactory.getLogger(WriteAheadFlowFileRepository.class);
     private volatile ScheduledFuture<?> checkpointFuture;
@@ -85,7 +98,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     private final ScheduledExecutorService checkpointExecutor;
 
     // effectively final
-    private WriteAheadRepository<RepositoryRecord> wal;
+    private MinimalLockingWriteAheadLog<RepositoryRecord> wal;
     private WriteAheadRecordSerde serde;
     private ResourceClaimManager claimManager;
 
@@ -116,6 +129,14 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         final NiFiProperties properties = NiFiProperties.getInstance();
 
         alwaysSync = Boolean.parseBoolean(properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_ALWAYS_SYNC, "false"));
+        groupCommit = Boolean.parseBoolean(properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_GROUP_COMMIT, "false"));
+
+        final String segmentSize = properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_JOURNAL_SEGMENT_SIZE);
+        if (segmentSize == null || segmentSize.trim().isEmpty()) {
+            journalSegmentSize = 0L;
+        } else {
+            journalSegmentSize = DataUnit.parseDataSize(segmentSize.trim(), DataUnit.B).longValue();
+        }
 
         // determine the database file path and ensure it exists
         flowFileRepositoryPath = properties.getFlowFileRepositoryPath();
@@ -136,7 +157,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         // backup and then the data deleted from the normal location; then can move backup to normal location and
         // delete backup. On restore, if no files exist in partition's directory, would have to check backup directory
         serde = new WriteAheadRecordSerde(claimManager);
-        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this);
+        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this, groupCommit, journalSegmentSize);
     }
 
     @Override
@@ -355,12 +376,16 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             public void run() {
                 try {
                     logger.info("Initiating checkpoint of FlowFile Repository");
-                    final long start = System.nanoTime();
                     final int numRecordsCheckpointed = checkpoint();
-                    final long end = System.nanoTime();
-                    final long millis = TimeUnit.MILLISECONDS.convert(end - start, TimeUnit.NANOSECONDS);
-                    logger.info("Successfully checkpointed FlowFile Repository with {} records in {} milliseconds",
-                            new Object[]{numRecordsCheckpointed, millis});
+                    logger.info("Successfully checkpointed FlowFile Repository with {} records in {} milliseconds, blocking updates for {} milliseconds. "
+                            + "{} checkpoints since startup have taken {} milliseconds in total and blocked updates for {} milliseconds",
+                            new Object[]{numRecordsCheckpointed, wal.getLastCheckpointMillis(), wal.getLastCheckpointBlockedMillis(), wal.getCheckpointCount(),
+                                wal.getTotalCheckpointMillis(), wal.getTotalCheckpointBlockedMillis()});
+
+                    final FlowFileAttributeInterner interner = FlowFileAttributeInterner.getInstance();
+                    logger.info("FlowFile attribute dictionary holds {} keys and {} values, occupying approximately {} KB, and since startup has replaced "
+                            + "{} duplicate Strings", new Object[]{interner.getKeyCount(), interner.getValueCount(), interner.getInternedBytes() / 1024,
+                            interner.getStringsDeduplicated()});
                 } catch (final IOException e) {
                     logger.error("Unable to checkpoint FlowFile Repository due to " + e.toString(), e);
                 }
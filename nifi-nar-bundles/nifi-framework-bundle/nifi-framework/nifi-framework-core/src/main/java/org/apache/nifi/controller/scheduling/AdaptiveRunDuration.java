@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.controller.ProcessorNode;
+
+/**
+ * <p>
+ * Chooses the Run Duration of a Processor at runtime, for a Processor that supports batching but has no Run Duration
+ * configured. The Run Duration is the window of time during which the Processor is triggered repeatedly within a
+ * single session, so that the cost of committing the session is shared by all of those invocations.
+ * </p>
+ *
+ * <p>
+ * After each run, the window is adjusted based on why the run ended:
+ * </p>
+ * <ul>
+ * <li>If the window ran out while the Processor still had work to do, the window is doubled as long as committing
+ * the session took more than a tenth of the run, and is reduced if committing took less than a fiftieth of it.</li>
+ * <li>If the Processor ran out of work or was yielded, traffic is light, so the window is halved to lower the latency
+ * that batching adds.</li>
+ * <li>If the Processor's destinations applied back pressure, holding on to a larger batch does not help, so the window
+ * is halved.</li>
+ * </ul>
+ *
+ * <p>
+ * The window is never larger than the given maximum and drops to 0 once it becomes smaller than a millisecond, at
+ * which point the Processor is triggered once per session.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+public class AdaptiveRunDuration {
+
+    static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    // grow the window while committing takes more than this fraction of a run
+    static final double HIGH_COMMIT_FRACTION = 0.10D;
+
+    // shrink the window while committing takes less than this fraction of a run
+    static final double LOW_COMMIT_FRACTION = 0.02D;
+
+    /**
+     * The reason that a run of a Processor ended
+     */
+    public static enum Outcome {
+        /**
+         * The window ran out while the Processor still had work to do
+         */
+        WINDOW_EXPIRED,
+
+        /**
+         * The Processor had no more work to do
+         */
+        NO_WORK,
+
+        /**
+         * The Processor yielded
+         */
+        YIELDED,
+
+        /**
+         * One or more of the Processor's destinations applied back pressure
+         */
+        BACK_PRESSURE;
+    }
+
+    private final AtomicLong windowNanos = new AtomicLong(0L);
+
+    /**
+     * @param procNode the Processor
+     * @param enabled whether or not adaptive Run Durations are enabled
+     * @return <code>true</code> if the Run Duration of the given Processor should be chosen at runtime
+     */
+    public static boolean isAdaptive(final ProcessorNode procNode, final boolean enabled) {
+        return enabled && procNode.isHighThroughputSupported() && procNode.getRunDuration(TimeUnit.NANOSECONDS) == 0L;
+    }
+
+    /**
+     * @param timeUnit the unit of the returned window
+     * @return the window that the next run of the Processor should batch for
+     */
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(windowNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adjusts the window after a run of the Processor
+     *
+     * @param outcome the reason that the run ended
+     * @param triggerNanos the time spent triggering the Processor during the run
+     * @param commitNanos the time spent committing the session at the end of the run
+     * @param maxWindowNanos the largest window that may be chosen
+     */
+    public void update(final Outcome outcome, final long triggerNanos, final long commitNanos, final long maxWindowNanos) {
+        long current;
+        long next;
+        do {
+            current = windowNanos.get();
+            next = nextWindow(current, outcome, triggerNanos, commitNanos, maxWindowNanos);
+        } while (next != current && !windowNanos.compareAndSet(current, next));
+    }
+
+    static long nextWindow(final long current, final Outcome outcome, final long triggerNanos, final long commitNanos, final long maxWindowNanos) {
+        long next;
+        switch (outcome) {
+            case WINDOW_EXPIRED: {
+                final long runNanos = triggerNanos + commitNanos;
+                final double commitFraction = runNanos <= 0L ? 0D : (double) commitNanos / runNanos;
+                if (commitFraction > HIGH_COMMIT_FRACTION) {
+                    next = Math.max(MIN_WINDOW_NANOS, current * 2);
+                } else if (commitFraction < LOW_COMMIT_FRACTION) {
+                    next = current - current / 4;
+                } else {
+                    next = current;
+                }
+                break;
+            }
+            case NO_WORK:
+            case YIELDED:
+            case BACK_PRESSURE:
+            default:
+                next = current / 2;
+                break;
+        }
+
+        if (next < MIN_WINDOW_NANOS) {
+            return 0L;
+        }
+        return Math.min(next, maxWindowNanos);
+    }
+}
@@ -80,7 +80,7 @@ public class EventDrivenSchedulingAgent implements SchedulingAgent {
 
         for (int i = 0; i < maxThreadCount; i++) {
             final Runnable eventDrivenTask = new EventDrivenTask(workerQueue);
-            flowEngine.scheduleWithFixedDelay(eventDrivenTask, 0L, 30000, TimeUnit.NANOSECONDS);
+            flowEngine.execute(eventDrivenTask);
         }
     }
 
@@ -129,7 +129,7 @@ public class EventDrivenSchedulingAgent implements SchedulingAgent {
             final int tasksToAdd = maxThreadCount - oldMax;
             for (int i = 0; i < tasksToAdd; i++) {
                 final Runnable eventDrivenTask = new EventDrivenTask(workerQueue);
-                flowEngine.scheduleWithFixedDelay(eventDrivenTask, 0L, 30000, TimeUnit.NANOSECONDS);
+                flowEngine.execute(eventDrivenTask);
             }
         }
     }
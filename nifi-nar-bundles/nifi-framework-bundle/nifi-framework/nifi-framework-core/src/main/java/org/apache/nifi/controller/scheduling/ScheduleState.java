@@ -33,6 +33,7 @@ public class ScheduleState {
     private final Set<ScheduledFuture<?>> futures = new HashSet<>();
     private final AtomicBoolean mustCallOnStoppedMethods = new AtomicBoolean(false);
     private volatile long lastStopTime = -1;
+    private final AdaptiveRunDuration adaptiveRunDuration = new AdaptiveRunDuration();
 
     public int incrementActiveThreadCount() {
         return activeThreadCount.incrementAndGet();
@@ -63,6 +64,14 @@ public class ScheduleState {
         return lastStopTime;
     }
 
+    /**
+     * @return the Run Duration that is chosen at runtime for the component, if it is a Processor whose Run Duration is
+     *         adaptive
+     */
+    public AdaptiveRunDuration getAdaptiveRunDuration() {
+        return adaptiveRunDuration;
+    }
+
     /**
      * Maintains an AtomicBoolean so that the first thread to call this method after a Processor is no longer
      * scheduled to run will receive a <code>true</code> and MUST call the methods annotated with
@@ -465,6 +465,11 @@ public final class StandardProcessScheduler implements ProcessScheduler {
         return getScheduleState(scheduled).getActiveThreadCount();
     }
 
+    @Override
+    public long getAdaptiveRunDuration(final Object scheduled, final TimeUnit timeUnit) {
+        return getScheduleState(scheduled).getAdaptiveRunDuration().getRunDuration(timeUnit);
+    }
+
     @Override
     public void startPort(final Port port) {
         if (!port.isValid()) {
@@ -18,8 +18,11 @@ package org.apache.nifi.controller.scheduling;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -46,17 +49,37 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
 
     private static final Logger logger = LoggerFactory.getLogger(TimerDrivenSchedulingAgent.class);
     private final long noWorkYieldNanos;
+    private final boolean wakeOnEnqueue;
 
     private final FlowController flowController;
     private final FlowEngine flowEngine;
+    private final FlowEngine blockingIOEngine;
+    private final Set<String> blockingIOProcessors;
     private final ProcessContextFactory contextFactory;
     private final StringEncryptor encryptor;
 
     private volatile String adminYieldDuration = "1 sec";
 
+    // the tasks of each scheduled component, so that a task waiting out the bored yield can be woken when data is queued for it
+    private final ConcurrentMap<Connectable, WakeableTasks> wakeableTasks = new ConcurrentHashMap<>();
+
     public TimerDrivenSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor encryptor) {
+        this(flowController, flowEngine, null, contextFactory, encryptor);
+    }
+
+    /**
+     * @param flowController the flow controller
+     * @param flowEngine the engine that runs components
+     * @param blockingIOEngine the engine that runs Processors that perform blocking I/O, or <code>null</code> if they should be run by the
+     *            <code>flowEngine</code> like any other component
+     * @param contextFactory the factory for process contexts
+     * @param encryptor the encryptor for sensitive properties
+     */
+    public TimerDrivenSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final FlowEngine blockingIOEngine,
+        final ProcessContextFactory contextFactory, final StringEncryptor encryptor) {
         this.flowController = flowController;
         this.flowEngine = flowEngine;
+        this.blockingIOEngine = blockingIOEngine;
         this.contextFactory = contextFactory;
         this.encryptor = encryptor;
 
@@ -66,6 +89,9 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
         } catch (final IllegalArgumentException e) {
             throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.BORED_YIELD_DURATION + " property is set to an invalid time duration: " + boredYieldDuration);
         }
+
+        wakeOnEnqueue = NiFiProperties.getInstance().isBoredYieldWakeOnEnqueue();
+        blockingIOProcessors = NiFiProperties.getInstance().getBlockingIOProcessors();
     }
 
     private StateManager getStateManager(final String componentId) {
@@ -75,6 +101,25 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
     @Override
     public void shutdown() {
         flowEngine.shutdown();
+        if (blockingIOEngine != null) {
+            blockingIOEngine.shutdown();
+        }
+    }
+
+    /**
+     * @return the engine that should run the given component, which is the blocking I/O engine if there is one and the
+     *         component is a Processor that performs blocking I/O
+     */
+    FlowEngine getEngine(final Connectable connectable) {
+        if (blockingIOEngine == null || connectable.getConnectableType() != ConnectableType.PROCESSOR) {
+            return flowEngine;
+        }
+
+        final ProcessorNode procNode = (ProcessorNode) connectable;
+        if (procNode.isBlockingIO() || blockingIOProcessors.contains(procNode.getProcessor().getClass().getName())) {
+            return blockingIOEngine;
+        }
+        return flowEngine;
     }
 
     @Override
@@ -92,8 +137,10 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
 
     @Override
     public void schedule(final Connectable connectable, final ScheduleState scheduleState) {
+        final FlowEngine engine = getEngine(connectable);
 
         final List<ScheduledFuture<?>> futures = new ArrayList<>();
+        final WakeableTasks wakeables = new WakeableTasks();
         for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
             final Callable<Boolean> continuallyRunTask;
             final ProcessContext processContext;
@@ -113,10 +160,15 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
             }
 
             final AtomicReference<ScheduledFuture<?>> futureRef = new AtomicReference<>();
+            final WakeableTasks.WakeableTask wakeable = wakeables.createTask(connectable, engine, scheduleState, futureRef);
 
             final Runnable yieldDetectionRunnable = new Runnable() {
                 @Override
                 public void run() {
+                    if (wakeOnEnqueue) {
+                        wakeable.unpark();
+                    }
+
                     // Call the continually run task. It will return a boolean indicating whether or not we should yield
                     // based on a lack of work for to do for the component.
                     final boolean shouldYield;
@@ -146,7 +198,7 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
 
                             synchronized (scheduleState) {
                                 if (scheduleState.isScheduled()) {
-                                    final ScheduledFuture<?> newFuture = flowEngine.scheduleWithFixedDelay(this, yieldNanos,
+                                    final ScheduledFuture<?> newFuture = engine.scheduleWithFixedDelay(this, yieldNanos,
                                             connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
                                     scheduleState.replaceFuture(scheduledFuture, newFuture);
@@ -168,11 +220,15 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
                         if (scheduledFuture.cancel(false)) {
                             synchronized (scheduleState) {
                                 if (scheduleState.isScheduled()) {
-                                    final ScheduledFuture<?> newFuture = flowEngine.scheduleWithFixedDelay(this, noWorkYieldNanos,
+                                    final ScheduledFuture<?> newFuture = engine.scheduleWithFixedDelay(this, noWorkYieldNanos,
                                             connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
                                     scheduleState.replaceFuture(scheduledFuture, newFuture);
                                     futureRef.set(newFuture);
+
+                                    if (wakeOnEnqueue) {
+                                        wakeable.park(this);
+                                    }
                                 }
                             }
                         }
@@ -181,7 +237,7 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
             };
 
             // Schedule the task to run
-            final ScheduledFuture<?> future = flowEngine.scheduleWithFixedDelay(yieldDetectionRunnable, 0L,
+            final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(yieldDetectionRunnable, 0L,
                     connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
             // now that we have the future, set the atomic reference so that if the component is yielded we
@@ -193,11 +249,19 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
         }
 
         scheduleState.setFutures(futures);
-        logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+        if (wakeOnEnqueue) {
+            wakeableTasks.put(connectable, wakeables);
+        }
+        if (engine == blockingIOEngine) {
+            logger.info("Scheduled {} to run with {} threads from the blocking I/O thread pool", connectable, connectable.getMaxConcurrentTasks());
+        } else {
+            logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+        }
     }
 
     @Override
     public void unschedule(final Connectable connectable, final ScheduleState scheduleState) {
+        wakeableTasks.remove(connectable);
         for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
             // stop scheduling to run but do not interrupt currently running tasks.
             future.cancel(false);
@@ -233,10 +297,17 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
 
     @Override
     public void onEvent(final Connectable connectable) {
+        if (!wakeOnEnqueue) {
+            return;
+        }
+
+        final WakeableTasks wakeables = wakeableTasks.get(connectable);
+        if (wakeables != null) {
+            wakeables.onEvent();
+        }
     }
 
     @Override
     public void setMaxThreadCount(final int maxThreads) {
     }
-
 }
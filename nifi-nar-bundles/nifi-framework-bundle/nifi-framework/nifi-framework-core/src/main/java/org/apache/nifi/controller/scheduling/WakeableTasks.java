@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.engine.FlowEngine;
+
+/**
+ * <p>
+ * The tasks of a single Timer driven component, any of which may be waiting out the bored yield, so that one of them can
+ * be re-scheduled to run as soon as data is queued for the component. The component's Run Schedule is still honored: a
+ * woken task will not run until the scheduling period has elapsed since it last ran.
+ * </p>
+ *
+ * <p>
+ * Data may be queued after a task has found no work to do but before it has been parked, when there is no parked task for
+ * the event to wake. So that such an event is not lost, every event is recorded as pending until a task next starts to run,
+ * and a task that is parked while an event is pending is woken right away.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+final class WakeableTasks {
+
+    private final List<WakeableTask> tasks = new ArrayList<>();
+    private final AtomicBoolean eventPending = new AtomicBoolean(false);
+
+    /**
+     * Creates a task of the component. Every task must be created before the component's tasks are woken by {@link #onEvent()}.
+     */
+    WakeableTask createTask(final Connectable connectable, final FlowEngine engine, final ScheduleState scheduleState, final AtomicReference<ScheduledFuture<?>> futureRef) {
+        final WakeableTask task = new WakeableTask(connectable, engine, scheduleState, futureRef);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Wakes a single task that is waiting out the bored yield; if it finds more work than it can handle, the other tasks
+     * will be woken by the next event or will find the work when their bored yield expires.
+     *
+     * @return <code>true</code> if a task was woken, <code>false</code> if none was waiting
+     */
+    boolean onEvent() {
+        eventPending.set(true);
+
+        for (final WakeableTask task : tasks) {
+            if (task.wake()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tracks whether or not a single task of the component is waiting out the bored yield
+     */
+    final class WakeableTask {
+        private final Connectable connectable;
+        private final FlowEngine engine;
+        private final ScheduleState scheduleState;
+        private final AtomicReference<ScheduledFuture<?>> futureRef;
+        private final AtomicBoolean parked = new AtomicBoolean(false);
+
+        private volatile Runnable task;
+        private volatile long parkedNanos;
+
+        private WakeableTask(final Connectable connectable, final FlowEngine engine, final ScheduleState scheduleState, final AtomicReference<ScheduledFuture<?>> futureRef) {
+            this.connectable = connectable;
+            this.engine = engine;
+            this.scheduleState = scheduleState;
+            this.futureRef = futureRef;
+        }
+
+        /**
+         * Must be called while holding the lock on the ScheduleState, after the task has been re-scheduled to run once the
+         * bored yield expires. If data was queued since the task last started to run, it is woken right away.
+         */
+        void park(final Runnable task) {
+            this.task = task;
+            this.parkedNanos = System.nanoTime();
+            parked.set(true);
+
+            if (eventPending.get()) {
+                wake();
+            }
+        }
+
+        /**
+         * Must be called when the task starts to run, before it looks for work to do. Any event that is pending will be
+         * seen by the task, so it no longer needs to wake a task.
+         */
+        void unpark() {
+            parked.set(false);
+            eventPending.set(false);
+        }
+
+        /**
+         * @return <code>true</code> if the task was waiting out the bored yield and has been re-scheduled to run,
+         *         <code>false</code> if it was not waiting
+         */
+        boolean wake() {
+            if (!parked.compareAndSet(true, false)) {
+                return false;
+            }
+
+            synchronized (scheduleState) {
+                final ScheduledFuture<?> scheduledFuture = futureRef.get();
+                if (!scheduleState.isScheduled() || scheduledFuture == null || !scheduledFuture.cancel(false)) {
+                    return false;
+                }
+
+                final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+                final long delayNanos = Math.max(0L, schedulingNanos - (System.nanoTime() - parkedNanos));
+                final ScheduledFuture<?> newFuture = engine.scheduleWithFixedDelay(task, delayNanos, schedulingNanos, TimeUnit.NANOSECONDS);
+
+                scheduleState.replaceFuture(scheduledFuture, newFuture);
+                futureRef.set(newFuture);
+            }
+
+            return true;
+        }
+    }
+}
@@ -29,6 +29,8 @@ import org.apache.nifi.controller.repository.ProcessContext;
 import org.apache.nifi.controller.repository.StandardFlowFileEvent;
 import org.apache.nifi.controller.repository.StandardProcessSession;
 import org.apache.nifi.controller.repository.StandardProcessSessionFactory;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration.Outcome;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.ScheduleState;
 import org.apache.nifi.controller.scheduling.SchedulingAgent;
@@ -39,6 +41,8 @@ import org.apache.nifi.processor.SimpleProcessLogger;
 import org.apache.nifi.processor.StandardProcessContext;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.util.Connectables;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
 import org.apache.nifi.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +61,8 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
     private final StandardProcessContext processContext;
     private final FlowController flowController;
     private final int numRelationships;
+    private final boolean adaptiveRunDurationEnabled;
+    private final long maxAdaptiveRunNanos;
 
     public ContinuallyRunProcessorTask(final SchedulingAgent schedulingAgent, final ProcessorNode procNode,
             final FlowController flowController, final ProcessContextFactory contextFactory, final ScheduleState scheduleState,
@@ -70,6 +76,18 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
 
         context = contextFactory.newProcessContext(procNode, new AtomicLong(0L));
         this.processContext = processContext;
+
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        this.adaptiveRunDurationEnabled = properties.isAdaptiveRunDuration();
+        long maxRunNanos;
+        try {
+            maxRunNanos = FormatUtils.getTimeDuration(properties.getAdaptiveRunDurationMax(), TimeUnit.NANOSECONDS);
+        } catch (final IllegalArgumentException e) {
+            logger.warn("The {} property is set to an invalid time duration: {}; will use the default of {}",
+                NiFiProperties.ADAPTIVE_RUN_DURATION_MAX, properties.getAdaptiveRunDurationMax(), NiFiProperties.DEFAULT_ADAPTIVE_RUN_DURATION_MAX);
+            maxRunNanos = FormatUtils.getTimeDuration(NiFiProperties.DEFAULT_ADAPTIVE_RUN_DURATION_MAX, TimeUnit.NANOSECONDS);
+        }
+        this.maxAdaptiveRunNanos = maxRunNanos;
     }
 
     static boolean isRunOnCluster(final ProcessorNode procNode, final boolean isClustered, final boolean isPrimary) {
@@ -113,11 +131,15 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
             }
         }
 
-        final long batchNanos = procNode.getRunDuration(TimeUnit.NANOSECONDS);
+        // If the Run Duration is adaptive, we always use a batching session so that the cost of committing it can be measured,
+        // even if the current window is 0 and the processor will be triggered only once.
+        final boolean adaptive = AdaptiveRunDuration.isAdaptive(procNode, adaptiveRunDurationEnabled);
+        final AdaptiveRunDuration adaptiveRunDuration = scheduleState.getAdaptiveRunDuration();
+        final long batchNanos = adaptive ? adaptiveRunDuration.getRunDuration(TimeUnit.NANOSECONDS) : procNode.getRunDuration(TimeUnit.NANOSECONDS);
         final ProcessSessionFactory sessionFactory;
         final StandardProcessSession rawSession;
         final boolean batch;
-        if (procNode.isHighThroughputSupported() && batchNanos > 0L) {
+        if (procNode.isHighThroughputSupported() && (batchNanos > 0L || adaptive)) {
             rawSession = new StandardProcessSession(context);
             sessionFactory = new BatchingSessionFactory(rawSession);
             batch = true;
@@ -132,6 +154,7 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
         final long startNanos = System.nanoTime();
         final long finishNanos = startNanos + batchNanos;
         int invocationCount = 0;
+        Outcome outcome = null;
         try {
             try (final AutoCloseable ncl = NarCloseable.withNarLoader()) {
                 boolean shouldRun = true;
@@ -143,20 +166,27 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
                         return false;
                     }
 
-                    if (System.nanoTime() > finishNanos) {
-                        return false;
-                    }
-
                     if (!isWorkToDo(procNode)) {
+                        outcome = Outcome.NO_WORK;
                         break;
                     }
                     if (isYielded(procNode)) {
+                        outcome = Outcome.YIELDED;
                         break;
                     }
 
                     if (numRelationships > 0) {
                         final int requiredNumberOfAvailableRelationships = procNode.isTriggerWhenAnyDestinationAvailable() ? 1 : numRelationships;
                         shouldRun = context.isRelationshipAvailabilitySatisfied(requiredNumberOfAvailableRelationships);
+                        if (!shouldRun) {
+                            outcome = Outcome.BACK_PRESSURE;
+                            break;
+                        }
+                    }
+
+                    if (System.nanoTime() > finishNanos) {
+                        outcome = Outcome.WINDOW_EXPIRED;
+                        return false;
                     }
                 }
             } catch (final ProcessException pe) {
@@ -175,8 +205,13 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
         } finally {
             try {
                 if (batch) {
+                    final long commitStartNanos = System.nanoTime();
                     try {
                         rawSession.commit();
+                        if (adaptive && outcome != null) {
+                            final long commitNanos = System.nanoTime() - commitStartNanos;
+                            adaptiveRunDuration.update(outcome, commitStartNanos - startNanos, commitNanos, maxAdaptiveRunNanos);
+                        }
                     } catch (final Exception e) {
                         final ProcessorLog procLog = new SimpleProcessLogger(procNode.getIdentifier(), procNode.getProcessor());
                         procLog.error("Failed to commit session {} due to {}; rolling back", new Object[] { rawSession, e.toString() }, e);
@@ -20,17 +20,24 @@ import org.apache.nifi.nar.NarThreadContextClassLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class FlowEngine extends ScheduledThreadPoolExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(FlowEngine.class);
 
+    // if not null, all tasks are scheduled and run by this back end rather than by the ScheduledThreadPoolExecutor
+    private final WorkStealingScheduler workStealingScheduler;
+
     /**
      * Creates a new instance of FlowEngine
      *
@@ -49,6 +56,19 @@ public final class FlowEngine extends ScheduledThreadPoolExecutor {
      * @param daemon if true, the thread pool will be populated with daemon threads, otherwise the threads will not be marked as daemon.
      */
     public FlowEngine(int corePoolSize, final String threadNamePrefix, final boolean daemon) {
+        this(corePoolSize, threadNamePrefix, daemon, false);
+    }
+
+    /**
+     * Creates a new instance of FlowEngine
+     *
+     * @param corePoolSize the maximum number of threads available to tasks running in the engine.
+     * @param threadNamePrefix for thread naming
+     * @param daemon if true, the thread pool will be populated with daemon threads, otherwise the threads will not be marked as daemon.
+     * @param workStealing if true, tasks are run by a pool of threads that each have their own run queue and steal work from one another,
+     *            and delayed tasks are held in a timer wheel, instead of all threads sharing a single delay queue.
+     */
+    public FlowEngine(int corePoolSize, final String threadNamePrefix, final boolean daemon, final boolean workStealing) {
         super(corePoolSize);
 
         final AtomicInteger threadIndex = new AtomicInteger(0);
@@ -64,6 +84,93 @@ public final class FlowEngine extends ScheduledThreadPoolExecutor {
                 return t;
             }
         });
+
+        workStealingScheduler = workStealing ? new WorkStealingScheduler(this, corePoolSize, getThreadFactory()) : null;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        if (workStealingScheduler == null) {
+            return super.schedule(command, delay, unit);
+        }
+        return workStealingScheduler.schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        if (workStealingScheduler == null) {
+            return super.schedule(callable, delay, unit);
+        }
+        return workStealingScheduler.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+        if (workStealingScheduler == null) {
+            return super.scheduleAtFixedRate(command, initialDelay, period, unit);
+        }
+        return workStealingScheduler.scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+        if (workStealingScheduler == null) {
+            return super.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+        }
+        return workStealingScheduler.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void setCorePoolSize(final int corePoolSize) {
+        super.setCorePoolSize(corePoolSize);
+        if (workStealingScheduler != null) {
+            workStealingScheduler.setThreadCount(corePoolSize);
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        return workStealingScheduler == null ? super.getActiveCount() : workStealingScheduler.getActiveCount();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (workStealingScheduler != null) {
+            workStealingScheduler.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> notRun = super.shutdownNow();
+        if (workStealingScheduler != null) {
+            notRun.addAll(workStealingScheduler.shutdownNow());
+        }
+        return notRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return workStealingScheduler == null ? super.isShutdown() : workStealingScheduler.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return workStealingScheduler == null ? super.isTerminating() : workStealingScheduler.isTerminating();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return workStealingScheduler == null ? super.isTerminated() : workStealingScheduler.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (workStealingScheduler == null) {
+            return super.awaitTermination(timeout, unit);
+        }
+        return workStealingScheduler.awaitTermination(timeout, unit);
     }
 
     /**
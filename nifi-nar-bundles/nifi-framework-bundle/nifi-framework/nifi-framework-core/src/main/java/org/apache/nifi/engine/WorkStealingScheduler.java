@@ -0,0 +1,650 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * The work-stealing back end of a {@link FlowEngine}. Each worker thread has its own run queue. A task that is submitted
+ * by a worker, including a periodic task that is re-scheduled after it runs, goes onto that worker's queue; any other
+ * task is handed to the workers in turn. A worker that runs out of tasks steals from the other workers' queues before it
+ * parks, so a few long-running tasks cannot hold up the short ones queued behind them.
+ * </p>
+ *
+ * <p>
+ * Delayed tasks are held by a hashed timer wheel that is driven by a single timer thread, rather than by a delay queue
+ * that every worker contends on. The wheel has a resolution of one millisecond; a task's delay is rounded up to the
+ * next tick.
+ * </p>
+ *
+ * <p>
+ * As with {@link java.util.concurrent.ScheduledThreadPoolExecutor}, periodic tasks are cancelled when the scheduler is
+ * shut down, while delayed one-shot tasks are still run. The number of worker threads can be changed at any time; a
+ * worker that is removed finishes the task that it is running, hands its queued tasks to the remaining workers and exits.
+ * </p>
+ */
+final class WorkStealingScheduler {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    // an idle worker wakes up this often to look for work that it was not signalled about
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final int TERMINATED = 3;
+
+    private final FlowEngine engine;
+    private final ThreadFactory threadFactory;
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+
+    private volatile Worker[] workers = new Worker[0];
+    // workers that have been removed from the pool but whose threads have not yet exited
+    private final Set<Worker> retiredWorkers = Collections.newSetFromMap(new ConcurrentHashMap<Worker, Boolean>());
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextWorker = new AtomicInteger(0);
+    private final AtomicInteger activeCount = new AtomicInteger(0);
+
+    // the number of tasks that have been scheduled and have not yet completed or been discarded
+    private final AtomicInteger pendingTasks = new AtomicInteger(0);
+
+    private final Object stateLock = new Object();
+    private volatile int state = RUNNING;
+    private int liveThreads = 0;
+
+    private final TimerWheel timerWheel = new TimerWheel();
+    private final Thread timerThread;
+
+    WorkStealingScheduler(final FlowEngine engine, final int threadCount, final ThreadFactory threadFactory) {
+        this.engine = engine;
+        this.threadFactory = threadFactory;
+
+        synchronized (stateLock) {
+            timerThread = threadFactory.newThread(timerWheel);
+            timerThread.setName(timerThread.getName() + " Timer");
+            liveThreads++;
+            addWorkers(Math.max(1, threadCount));
+        }
+        timerThread.start();
+    }
+
+    /**
+     * Changes the number of worker threads to the given count. When the count is reduced, the workers that are removed
+     * stop taking new tasks and exit once they have handed their queued tasks to the remaining workers.
+     *
+     * @param threadCount the number of worker threads
+     * @throws IllegalArgumentException if the count is less than 1
+     */
+    void setThreadCount(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1 but was " + threadCount);
+        }
+
+        synchronized (stateLock) {
+            if (state != RUNNING) {
+                return;
+            }
+
+            if (threadCount > workers.length) {
+                addWorkers(threadCount - workers.length);
+            } else if (threadCount < workers.length) {
+                removeWorkers(workers.length - threadCount);
+            }
+        }
+    }
+
+    int getThreadCount() {
+        return workers.length;
+    }
+
+    int getActiveCount() {
+        return activeCount.get();
+    }
+
+    private void addWorkers(final int count) {
+        final Worker[] current = workers;
+        final Worker[] updated = Arrays.copyOf(current, current.length + count);
+        for (int i = current.length; i < updated.length; i++) {
+            updated[i] = new Worker();
+            updated[i].thread = threadFactory.newThread(updated[i]);
+        }
+
+        workers = updated;
+        liveThreads += count;
+        for (int i = current.length; i < updated.length; i++) {
+            updated[i].thread.start();
+        }
+    }
+
+    private void removeWorkers(final int count) {
+        final Worker[] current = workers;
+        workers = Arrays.copyOf(current, current.length - count);
+        for (int i = current.length - count; i < current.length; i++) {
+            final Worker worker = current[i];
+            retiredWorkers.add(worker);
+            worker.retired = true;
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    <V> RunnableScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        final ScheduledTask<V> task = new ScheduledTask<>(callable, triggerTime(delay, unit), 0L);
+        submit(task);
+        return task;
+    }
+
+    RunnableScheduledFuture<?> schedule(final Runnable runnable, final long delay, final TimeUnit unit) {
+        final ScheduledTask<Void> task = new ScheduledTask<>(Executors.<Void> callable(runnable, null), triggerTime(delay, unit), 0L);
+        submit(task);
+        return task;
+    }
+
+    RunnableScheduledFuture<?> scheduleAtFixedRate(final Runnable runnable, final long initialDelay, final long period, final TimeUnit unit) {
+        if (period <= 0L) {
+            throw new IllegalArgumentException();
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(Executors.<Void> callable(runnable, null), triggerTime(initialDelay, unit), unit.toNanos(period));
+        submit(task);
+        return task;
+    }
+
+    RunnableScheduledFuture<?> scheduleWithFixedDelay(final Runnable runnable, final long initialDelay, final long delay, final TimeUnit unit) {
+        if (delay <= 0L) {
+            throw new IllegalArgumentException();
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(Executors.<Void> callable(runnable, null), triggerTime(initialDelay, unit), -unit.toNanos(delay));
+        submit(task);
+        return task;
+    }
+
+    private static long triggerTime(final long delay, final TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(0L, delay));
+    }
+
+    private void submit(final ScheduledTask<?> task) {
+        if (state != RUNNING) {
+            throw new RejectedExecutionException("Cannot schedule " + task + " because the Flow Engine has been shut down");
+        }
+
+        pendingTasks.incrementAndGet();
+        enqueue(task);
+    }
+
+    /**
+     * Places the task on a run queue if it is due to run now, or in the timer wheel otherwise.
+     */
+    private void enqueue(final ScheduledTask<?> task) {
+        if (task.deadlineNanos - System.nanoTime() > 0L) {
+            timerWheel.add(task);
+        } else {
+            dispatch(task);
+        }
+    }
+
+    /**
+     * Places the task on the current worker's run queue, or on the next worker's queue if called from another thread,
+     * and wakes an idle worker to run it.
+     */
+    private void dispatch(final ScheduledTask<?> task) {
+        Worker worker = currentWorker.get();
+        if (worker == null) {
+            final Worker[] all = workers;
+            worker = all[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % all.length];
+        }
+
+        worker.runQueue.offer(task);
+
+        // A worker that has been removed hands its queued tasks to the others before it exits. If it may already have
+        // done so, take the task back unless the worker has handed it on already.
+        if (worker.retired && worker.runQueue.remove(task)) {
+            dispatchToPool(task);
+            return;
+        }
+
+        signalWork();
+    }
+
+    private void dispatchToPool(final ScheduledTask<?> task) {
+        final Worker[] all = workers;
+        final Worker worker = all[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % all.length];
+        worker.runQueue.offer(task);
+        signalWork();
+    }
+
+    private void signalWork() {
+        final Worker idle = idleWorkers.poll();
+        if (idle != null) {
+            LockSupport.unpark(idle.thread);
+        }
+    }
+
+    /**
+     * Called by a worker after running a task, to re-schedule it if it is periodic and otherwise to account for its
+     * completion
+     */
+    private void afterRun(final ScheduledTask<?> task, final boolean reschedule) {
+        if (reschedule) {
+            if (state == RUNNING) {
+                enqueue(task);
+                return;
+            }
+
+            task.cancel(false);
+        }
+
+        taskCompleted();
+    }
+
+    private void taskCompleted() {
+        if (pendingTasks.decrementAndGet() == 0 && state != RUNNING) {
+            wakeAll();
+        }
+    }
+
+    private void wakeAll() {
+        for (final Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (final Worker worker : retiredWorkers) {
+            LockSupport.unpark(worker.thread);
+        }
+        LockSupport.unpark(timerThread);
+    }
+
+    void shutdown() {
+        synchronized (stateLock) {
+            if (state == RUNNING) {
+                state = SHUTDOWN;
+            }
+        }
+        wakeAll();
+    }
+
+    List<Runnable> shutdownNow() {
+        synchronized (stateLock) {
+            if (state < STOP) {
+                state = STOP;
+            }
+        }
+
+        final List<Runnable> drained = new ArrayList<>();
+        for (final Worker worker : workers) {
+            ScheduledTask<?> task;
+            while ((task = worker.runQueue.poll()) != null) {
+                drained.add(task);
+                pendingTasks.decrementAndGet();
+            }
+            worker.thread.interrupt();
+        }
+        for (final Worker worker : retiredWorkers) {
+            worker.thread.interrupt();
+        }
+
+        wakeAll();
+        return drained;
+    }
+
+    boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    boolean isTerminating() {
+        final int current = state;
+        return current == SHUTDOWN || current == STOP;
+    }
+
+    boolean isTerminated() {
+        return state == TERMINATED;
+    }
+
+    boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (stateLock) {
+            while (state != TERMINATED) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(stateLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the calling thread, which has no more work to do, should exit
+     */
+    private boolean isDone() {
+        final int current = state;
+        return current == STOP || (current == SHUTDOWN && pendingTasks.get() <= 0);
+    }
+
+    private void threadExited() {
+        synchronized (stateLock) {
+            if (--liveThreads == 0 && state != RUNNING) {
+                state = TERMINATED;
+                stateLock.notifyAll();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final Queue<ScheduledTask<?>> runQueue = new ConcurrentLinkedQueue<>();
+        private volatile Thread thread;
+        private volatile boolean retired = false;
+
+        @Override
+        public void run() {
+            currentWorker.set(this);
+            try {
+                while (!retired) {
+                    ScheduledTask<?> task = findTask();
+                    if (task == null) {
+                        if (isDone()) {
+                            return;
+                        }
+
+                        // Register as idle only now that there is no work, and then look for work one last time, so
+                        // that a task that is queued after the first check will signal this worker.
+                        idleWorkers.offer(this);
+                        task = findTask();
+                        if (task == null && !retired) {
+                            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                            Thread.interrupted();
+                        }
+
+                        // If this worker is no longer registered, it has been signalled. Should it have found a task
+                        // on its own, that signal may have been meant for another task, so pass it on to another worker.
+                        if (!idleWorkers.remove(this) && task != null) {
+                            signalWork();
+                        }
+
+                        if (task == null) {
+                            continue;
+                        }
+                    }
+
+                    runTask(task);
+                }
+
+                handOffQueuedTasks();
+            } finally {
+                if (!idleWorkers.remove(this) && retired) {
+                    signalWork();
+                }
+                retiredWorkers.remove(this);
+                threadExited();
+            }
+        }
+
+        /**
+         * Called by a worker that has been removed from the pool to move the tasks on its run queue to the remaining
+         * workers
+         */
+        private void handOffQueuedTasks() {
+            currentWorker.remove();
+
+            ScheduledTask<?> task;
+            while ((task = runQueue.poll()) != null) {
+                dispatchToPool(task);
+            }
+        }
+
+        private ScheduledTask<?> findTask() {
+            final ScheduledTask<?> local = runQueue.poll();
+            if (local != null) {
+                return local;
+            }
+
+            final Worker[] all = workers;
+            final int start = ThreadLocalRandom.current().nextInt(all.length);
+            for (int i = 0; i < all.length; i++) {
+                final Worker victim = all[(start + i) % all.length];
+                if (victim == this) {
+                    continue;
+                }
+
+                final ScheduledTask<?> stolen = victim.runQueue.poll();
+                if (stolen != null) {
+                    // the victim may have more work than it can keep up with; let another idle worker help
+                    if (!victim.runQueue.isEmpty()) {
+                        signalWork();
+                    }
+                    return stolen;
+                }
+            }
+
+            return null;
+        }
+
+        private void runTask(final ScheduledTask<?> task) {
+            activeCount.incrementAndGet();
+            try {
+                engine.beforeExecute(thread, task);
+                Throwable thrown = null;
+                boolean reschedule = false;
+                try {
+                    reschedule = task.runTask();
+                } catch (final RuntimeException | Error e) {
+                    thrown = e;
+                }
+
+                engine.afterExecute(task, thrown);
+                afterRun(task, reschedule);
+            } finally {
+                activeCount.decrementAndGet();
+            }
+        }
+    }
+
+    private class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        // positive for a fixed rate, negative for a fixed delay and zero for a task that runs once
+        private final long period;
+        private volatile long deadlineNanos;
+
+        // maintained only by the timer thread
+        private long remainingRounds;
+
+        private ScheduledTask(final Callable<V> callable, final long deadlineNanos, final long period) {
+            super(callable);
+            this.deadlineNanos = deadlineNanos;
+            this.period = period;
+        }
+
+        /**
+         * @return <code>true</code> if the task is periodic and should be scheduled to run again
+         */
+        private boolean runTask() {
+            if (period == 0L) {
+                run();
+                return false;
+            }
+
+            if (!runAndReset()) {
+                return false;
+            }
+
+            deadlineNanos = period > 0L ? deadlineNanos + period : System.nanoTime() - period;
+            return true;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0L;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            final long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0L ? -1 : diff > 0L ? 1 : 0;
+        }
+    }
+
+    /**
+     * A hashed timer wheel of {@link #WHEEL_SIZE} buckets, each covering one tick. A task whose deadline is more than a
+     * full turn of the wheel away waits in its bucket for the remaining number of turns. Only the timer thread touches
+     * the buckets; other threads hand tasks to it through a queue.
+     */
+    private class TimerWheel implements Runnable {
+        private final Queue<ScheduledTask<?>> added = new ConcurrentLinkedQueue<>();
+        private final List<List<ScheduledTask<?>>> buckets = new ArrayList<>(WHEEL_SIZE);
+        private final long startNanos = System.nanoTime();
+        private volatile boolean sleeping = false;
+
+        private long tick = 0L;
+        private int size = 0;
+        private int purgedState = RUNNING;
+
+        private TimerWheel() {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                buckets.add(new ArrayList<ScheduledTask<?>>());
+            }
+        }
+
+        private void add(final ScheduledTask<?> task) {
+            added.offer(task);
+            if (sleeping) {
+                LockSupport.unpark(timerThread);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final int current = state;
+                    if (current != purgedState) {
+                        purge(current);
+                    }
+                    if (isDone()) {
+                        return;
+                    }
+
+                    transferAdded();
+                    expire(buckets.get((int) (tick & WHEEL_MASK)));
+                    tick++;
+
+                    if (size == 0 && added.isEmpty()) {
+                        sleeping = true;
+                        if (added.isEmpty() && !isDone()) {
+                            LockSupport.park(this);
+                        }
+                        sleeping = false;
+
+                        // nothing is waiting in the wheel, so it is safe to skip ahead to the current tick
+                        tick = Math.max(tick, (System.nanoTime() - startNanos) / TICK_NANOS);
+                        continue;
+                    }
+
+                    long sleepNanos;
+                    while ((sleepNanos = startNanos + tick * TICK_NANOS - System.nanoTime()) > 0L && state == purgedState) {
+                        LockSupport.parkNanos(this, sleepNanos);
+                    }
+                }
+            } finally {
+                threadExited();
+            }
+        }
+
+        private void transferAdded() {
+            ScheduledTask<?> task;
+            while ((task = added.poll()) != null) {
+                final long deadlineTick = (task.deadlineNanos - startNanos + TICK_NANOS - 1L) / TICK_NANOS;
+                final long ticks = Math.max(deadlineTick, tick);
+                task.remainingRounds = (ticks - tick) / WHEEL_SIZE;
+                buckets.get((int) (ticks & WHEEL_MASK)).add(task);
+                size++;
+            }
+        }
+
+        private void expire(final List<ScheduledTask<?>> bucket) {
+            int retained = 0;
+            for (int i = 0; i < bucket.size(); i++) {
+                final ScheduledTask<?> task = bucket.get(i);
+                if (task.isCancelled()) {
+                    size--;
+                    taskCompleted();
+                } else if (task.remainingRounds <= 0L) {
+                    size--;
+                    dispatch(task);
+                } else {
+                    task.remainingRounds--;
+                    bucket.set(retained++, task);
+                }
+            }
+
+            bucket.subList(retained, bucket.size()).clear();
+        }
+
+        /**
+         * Called once the scheduler has been shut down, to discard the periodic and cancelled tasks that would otherwise
+         * hold up termination
+         */
+        private void purge(final int currentState) {
+            purgedState = currentState;
+            transferAdded();
+
+            final boolean discardAll = currentState >= STOP;
+            for (final List<ScheduledTask<?>> bucket : buckets) {
+                int retained = 0;
+                for (int i = 0; i < bucket.size(); i++) {
+                    final ScheduledTask<?> task = bucket.get(i);
+                    if (discardAll || task.isPeriodic() || task.isCancelled()) {
+                        task.cancel(false);
+                        size--;
+                        taskCompleted();
+                    } else {
+                        bucket.set(retained++, task);
+                    }
+                }
+                bucket.subList(retained, bucket.size()).clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.processor.Relationship;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestEventDrivenWorkerQueue {
+
+    private EventDrivenWorkerQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new EventDrivenWorkerQueue(false, false, Mockito.mock(ProcessScheduler.class));
+    }
+
+    private Connectable createConnectable() {
+        final Connectable connectable = Mockito.mock(Connectable.class);
+        Mockito.when(connectable.getScheduledState()).thenReturn(ScheduledState.RUNNING);
+        Mockito.when(connectable.getRelationships()).thenReturn(Collections.<Relationship> emptySet());
+        Mockito.when(connectable.getIncomingConnections()).thenReturn(Collections.<Connection> emptyList());
+        return connectable;
+    }
+
+    @Test(timeout = 20000)
+    public void testEveryEventIsPolledOnce() throws Exception {
+        final List<Connectable> connectables = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final Connectable connectable = createConnectable();
+            queue.resumeWork(connectable);
+            connectables.add(connectable);
+        }
+
+        final int producerCount = 4;
+        final int eventsPerProducer = 5000;
+        final int totalEvents = producerCount * eventsPerProducer;
+        final AtomicInteger polled = new AtomicInteger(0);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            final int producerIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerProducer; j++) {
+                        queue.offer(connectables.get((producerIndex + j) % connectables.size()));
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (polled.get() < totalEvents) {
+                        if (queue.poll(10, TimeUnit.MILLISECONDS) != null) {
+                            polled.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(totalEvents, polled.get());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 60000)
+    public void testEachEventWakesAParkedThread() throws Exception {
+        final int threadCount = 8;
+        final List<Connectable> connectables = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final Connectable connectable = createConnectable();
+            queue.resumeWork(connectable);
+            connectables.add(connectable);
+        }
+
+        // Each thread holds on to the Worker that it polled until every thread has one, so that no thread can run the
+        // Worker that another thread should have been woken for.
+        final CyclicBarrier allPolled = new CyclicBarrier(threadCount + 1);
+        final Set<Connectable> polled = Collections.synchronizedSet(new HashSet<Connectable>());
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            final EventBasedWorker worker = queue.poll(10, TimeUnit.SECONDS);
+                            if (worker != null) {
+                                polled.add(worker.getConnectable());
+                            }
+                            allPolled.await();
+                        }
+                    } catch (final Exception e) {
+                        // the test has finished
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            for (int round = 0; round < 2000; round++) {
+                polled.clear();
+                // spread the events out so that they arrive while the threads are polling, registering and parking
+                for (final Connectable connectable : connectables) {
+                    queue.offer(connectable);
+                    final long spinUntil = System.nanoTime() + ThreadLocalRandom.current().nextLong(5000L);
+                    while (System.nanoTime() < spinUntil) {
+                        Thread.yield();
+                    }
+                }
+
+                allPolled.await(5, TimeUnit.SECONDS);
+                assertEquals(threadCount, polled.size());
+            }
+        } finally {
+            allPolled.reset();
+        }
+    }
+}
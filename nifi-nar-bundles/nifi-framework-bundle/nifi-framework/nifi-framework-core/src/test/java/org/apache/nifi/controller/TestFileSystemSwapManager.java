@@ -17,6 +17,8 @@
 package org.apache.nifi.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
@@ -113,6 +115,58 @@ public class TestFileSystemSwapManager {
         }
     }
 
+    @Test
+    public void testRoundTripCompressed() throws IOException {
+        final List<FlowFileRecord> toSwap = new ArrayList<>(10000);
+        for (int i = 0; i < 10000; i++) {
+            final Map<String, String> attrs = new HashMap<>();
+            attrs.put("filename", "file-" + i);
+            attrs.put("path", "./");
+            attrs.put("mime.type", "application/json");
+            toSwap.add(new TestFlowFile(attrs, i));
+        }
+
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final String uncompressedLocation = "target/testRoundTripUncompressed.swap";
+        final String compressedLocation = "target/testRoundTripCompressed.swap";
+        final File uncompressedFile = new File(uncompressedLocation);
+        final File compressedFile = new File(compressedLocation);
+        Files.deleteIfExists(uncompressedFile.toPath());
+        Files.deleteIfExists(compressedFile.toPath());
+
+        try (final FileOutputStream fos = new FileOutputStream(uncompressedFile)) {
+            FileSystemSwapManager.serializeFlowFiles(toSwap, flowFileQueue, uncompressedLocation, fos, false);
+        }
+        try (final FileOutputStream fos = new FileOutputStream(compressedFile)) {
+            FileSystemSwapManager.serializeFlowFiles(toSwap, flowFileQueue, compressedLocation, fos, true);
+        }
+
+        assertTrue(compressedFile.length() < uncompressedFile.length());
+
+        final List<FlowFileRecord> swappedIn;
+        try (final FileInputStream fis = new FileInputStream(compressedFile);
+            final DataInputStream dis = new DataInputStream(new BufferedInputStream(fis))) {
+            swappedIn = FileSystemSwapManager.deserializeFlowFiles(dis, compressedLocation, flowFileQueue, Mockito.mock(ResourceClaimManager.class));
+        }
+
+        assertEquals(toSwap.size(), swappedIn.size());
+        for (int i = 0; i < toSwap.size(); i++) {
+            final FlowFileRecord pre = toSwap.get(i);
+            final FlowFileRecord post = swappedIn.get(i);
+
+            assertEquals(pre.getId(), post.getId());
+            assertEquals(pre.getSize(), post.getSize());
+            assertEquals(pre.getAttributes(), post.getAttributes());
+            assertEquals(pre.getEntryDate(), post.getEntryDate());
+            assertEquals(pre.getLastQueueDate(), post.getLastQueueDate());
+            assertEquals(pre.getLineageStartDate(), post.getLineageStartDate());
+        }
+
+        // repeated attribute values are read once and shared by all of the swapped-in FlowFiles
+        assertSame(swappedIn.get(0).getAttribute("mime.type"), swappedIn.get(1).getAttribute("mime.type"));
+    }
 
     public class NopResourceClaimManager implements ResourceClaimManager {
 
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFlowController {
+
+    @Before
+    public void setup() {
+        System.setProperty(NiFiProperties.PROPERTIES_FILE_PATH, "src/test/resources/nifi.properties");
+        refreshNiFiProperties();
+    }
+
+    @After
+    public void cleanup() {
+        refreshNiFiProperties();
+    }
+
+    @Test
+    public void testNoBlockingIOEngineByDefault() {
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.remove(NiFiProperties.BLOCKING_IO_MAX_THREADS);
+
+        assertNull(FlowController.createBlockingIOEngine(properties));
+    }
+
+    @Test
+    public void testBlockingIOEngineSizedFromProperties() {
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty(NiFiProperties.BLOCKING_IO_MAX_THREADS, "4");
+
+        final FlowEngine engine = FlowController.createBlockingIOEngine(properties);
+        assertNotNull(engine);
+        try {
+            assertEquals(4, engine.getCorePoolSize());
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    private void refreshNiFiProperties() {
+        try {
+            final Field instanceField = NiFiProperties.class.getDeclaredField("instance");
+            instanceField.setAccessible(true);
+            instanceField.set(null, null);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.nifi.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -28,10 +29,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.nifi.connectable.Connectable;
@@ -58,6 +66,7 @@ import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -66,6 +75,13 @@ import org.mockito.stubbing.Answer;
 public class TestStandardFlowFileQueue {
     private TestSwapManager swapManager = null;
     private StandardFlowFileQueue queue = null;
+    private StripedFlowFileQueue stripedQueue = null;
+
+    private Connection connection = null;
+    private ProcessScheduler scheduler = null;
+    private FlowFileRepository flowFileRepo = null;
+    private ProvenanceEventRepository provRepo = null;
+    private ResourceClaimManager claimManager = null;
 
     private List<ProvenanceEventRecord> provRecords = new ArrayList<>();
 
@@ -79,16 +95,16 @@ public class TestStandardFlowFileQueue {
     public void setup() {
         provRecords.clear();
 
-        final Connection connection = Mockito.mock(Connection.class);
+        connection = Mockito.mock(Connection.class);
         Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
         Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
 
-        final ProcessScheduler scheduler = Mockito.mock(ProcessScheduler.class);
+        scheduler = Mockito.mock(ProcessScheduler.class);
         swapManager = new TestSwapManager();
 
-        final FlowFileRepository flowFileRepo = Mockito.mock(FlowFileRepository.class);
-        final ProvenanceEventRepository provRepo = Mockito.mock(ProvenanceEventRepository.class);
-        final ResourceClaimManager claimManager = Mockito.mock(ResourceClaimManager.class);
+        flowFileRepo = Mockito.mock(FlowFileRepository.class);
+        provRepo = Mockito.mock(ProvenanceEventRepository.class);
+        claimManager = Mockito.mock(ResourceClaimManager.class);
 
         Mockito.when(provRepo.eventBuilder()).thenReturn(new StandardProvenanceEventRecord.Builder());
         Mockito.doAnswer(new Answer<Object>() {
@@ -103,6 +119,7 @@ public class TestStandardFlowFileQueue {
         }).when(provRepo).registerEvents(Mockito.any(Iterable.class));
 
         queue = new StandardFlowFileQueue("id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 10000, null);
+        stripedQueue = new StripedFlowFileQueue("striped-id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 10000, null, 4);
         TestFlowFile.idGenerator.set(0L);
     }
 
@@ -335,6 +352,148 @@ public class TestStandardFlowFileQueue {
         }
     }
 
+    @Test
+    public void testPollIntoReusedContainer() {
+        for (int i = 0; i < 50; i++) {
+            queue.put(new TestFlowFile(i));
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> destination = new ArrayList<>();
+
+        // fewer than the number queued, so only the first FlowFiles are pulled from the active queue
+        assertEquals(20, queue.poll(20, expired, destination));
+        assertEquals(20, destination.size());
+        assertEquals(30, queue.getActiveQueueSize().getObjectCount());
+
+        // more than the number queued, so the entire active queue is drained at once
+        assertEquals(30, queue.poll(100, expired, destination));
+        assertEquals(50, destination.size());
+        assertTrue(expired.isEmpty());
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, destination.get(i).getId());
+        }
+
+        assertEquals(0, queue.getActiveQueueSize().getObjectCount());
+        assertEquals(50, queue.getUnacknowledgedQueueSize().getObjectCount());
+        assertEquals(1225L, queue.getUnacknowledgedQueueSize().getByteCount());
+    }
+
+    @Test
+    public void testBulkPollFewerThanQueued() {
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        queue.setPriorities(prioritizers);
+
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            flowFiles.add(new TestFlowFile(i));
+        }
+        Collections.shuffle(flowFiles);
+        queue.putAll(flowFiles);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> destination = new ArrayList<>();
+        assertEquals(100, queue.poll(100, expired, destination));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, destination.get(i).getSize());
+        }
+        assertEquals(900, queue.getActiveQueueSize().getObjectCount());
+        assertEquals(100, queue.getUnacknowledgedQueueSize().getObjectCount());
+        assertEquals(4950L, queue.getUnacknowledgedQueueSize().getByteCount());
+
+        // the FlowFiles that were placed back are still polled in priority order
+        assertEquals(100L, queue.poll(expired).getSize());
+        destination.clear();
+        assertEquals(899, queue.poll(1000, expired, destination));
+        for (int i = 0; i < 899; i++) {
+            assertEquals(i + 101, destination.get(i).getSize());
+        }
+        assertTrue(expired.isEmpty());
+        assertEquals(0, queue.getActiveQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testBulkPollFewerThanQueuedExpiresFlowFiles() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            queue.put(new TestFlowFile(10L));
+        }
+
+        // make sure that the first FlowFiles have time to expire, but not those queued after them
+        Thread.sleep(200L);
+        for (int i = 0; i < 50; i++) {
+            queue.put(new TestFlowFile(1L));
+        }
+        queue.setFlowFileExpiration("100 ms");
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> destination = new ArrayList<>();
+        assertEquals(10, queue.poll(10, expired, destination));
+        assertEquals(50, expired.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(50 + i, destination.get(i).getId());
+        }
+
+        final QueueSize activeSize = queue.getActiveQueueSize();
+        assertEquals(40, activeSize.getObjectCount());
+        assertEquals(40L, activeSize.getByteCount());
+        assertEquals(10, queue.getUnacknowledgedQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testBulkPollExpiresFlowFiles() {
+        queue.setFlowFileExpiration("1 ms");
+
+        for (int i = 0; i < 100; i++) {
+            queue.put(new TestFlowFile(10L));
+        }
+
+        // just make sure that the flowfiles have time to expire.
+        try {
+            Thread.sleep(100L);
+        } catch (final InterruptedException ie) {
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> destination = new ArrayList<>();
+        assertEquals(0, queue.poll(1000, expired, destination));
+        assertEquals(100, expired.size());
+
+        final QueueSize activeSize = queue.getActiveQueueSize();
+        assertEquals(0, activeSize.getObjectCount());
+        assertEquals(0L, activeSize.getByteCount());
+        assertEquals(0, queue.getUnacknowledgedQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testBulkPollStopsAtExpiredLimit() {
+        queue.setFlowFileExpiration("1 ms");
+
+        for (int i = 0; i < 100; i++) {
+            queue.put(new TestFlowFile(10L));
+        }
+
+        // just make sure that the flowfiles have time to expire.
+        try {
+            Thread.sleep(100L);
+        } catch (final InterruptedException ie) {
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        for (int i = 0; i < StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION - 40; i++) {
+            expired.add(new TestFlowFile(10L));
+        }
+
+        final List<FlowFileRecord> destination = new ArrayList<>();
+        assertEquals(0, queue.poll(1000, expired, destination));
+        assertEquals(StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION, expired.size());
+
+        final QueueSize activeSize = queue.getActiveQueueSize();
+        assertEquals(60, activeSize.getObjectCount());
+        assertEquals(600L, activeSize.getByteCount());
+    }
+
     @Test
     public void testSwapIn() {
         for (int i = 1; i <= 20000; i++) {
@@ -397,6 +556,48 @@ public class TestStandardFlowFileQueue {
     }
 
 
+    @Test(timeout = 10000)
+    public void testBackgroundSwapOutAndIn() throws InterruptedException {
+        final ExecutorService swapInExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService swapOutExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final StandardFlowFileQueue asyncQueue = new StandardFlowFileQueue("async-id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 20000, null,
+                swapInExecutor, swapOutExecutor);
+
+            for (int i = 0; i < 30000; i++) {
+                asyncQueue.put(new TestFlowFile());
+            }
+
+            // the FlowFiles are accounted for as soon as they are chosen to be swapped out, even though they are written in the background
+            assertEquals(20000, asyncQueue.getActiveQueueSize().getObjectCount());
+            assertEquals(30000, asyncQueue.size().getObjectCount());
+
+            while (swapManager.swappedOut.size() < 1) {
+                Thread.sleep(10L);
+            }
+            assertEquals(1, swapManager.swapOutCalledCount);
+
+            final Set<FlowFileRecord> expired = new HashSet<>();
+            assertEquals(20000, asyncQueue.poll(20000, expired).size());
+
+            // polling triggers the Swap File to be read in the background once it has been written. Poll for
+            // zero FlowFiles so that none are taken from the active queue while we wait.
+            while (asyncQueue.getActiveQueueSize().getObjectCount() < 10000) {
+                assertTrue(asyncQueue.poll(0, expired).isEmpty());
+                Thread.sleep(10L);
+            }
+
+            assertEquals(1, swapManager.swapInCalledCount);
+            assertEquals(10000, asyncQueue.poll(20000, expired).size());
+            assertEquals(0, asyncQueue.getActiveQueueSize().getObjectCount());
+            assertTrue(asyncQueue.getSwapOutTime(TimeUnit.NANOSECONDS) > 0L);
+            assertTrue(asyncQueue.getSwapInTime(TimeUnit.NANOSECONDS) > 0L);
+        } finally {
+            swapInExecutor.shutdownNow();
+            swapOutExecutor.shutdownNow();
+        }
+    }
+
     @Test(timeout = 5000)
     public void testListFlowFilesOnlyActiveQueue() throws InterruptedException {
         for (int i = 0; i < 9999; i++) {
@@ -436,11 +637,483 @@ public class TestStandardFlowFileQueue {
         assertNull(status.getFailureReason());
     }
 
+    @Test
+    public void testStripedPollAndAcknowledge() {
+        for (int i = 0; i < 1000; i++) {
+            stripedQueue.put(new TestFlowFile());
+        }
+        assertEquals(1000, stripedQueue.size().getObjectCount());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final Set<Long> polledIds = new HashSet<>();
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        FlowFileRecord flowFile;
+        while ((flowFile = stripedQueue.poll(expired)) != null) {
+            assertTrue(polledIds.add(flowFile.getId()));
+            polled.add(flowFile);
+        }
+
+        assertEquals(1000, polled.size());
+        assertTrue(stripedQueue.isActiveQueueEmpty());
+        assertEquals(1000, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+
+        stripedQueue.acknowledge(polled.subList(0, 500));
+        for (final FlowFileRecord record : polled.subList(500, 1000)) {
+            stripedQueue.acknowledge(record);
+        }
+
+        assertEquals(0, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+        assertTrue(stripedQueue.isEmpty());
+    }
+
+    @Test
+    public void testStripedPollMultipleSpansPartitions() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            flowFiles.add(new TestFlowFile());
+        }
+        stripedQueue.putAll(flowFiles);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = stripedQueue.poll(100, expired);
+        assertEquals(10, polled.size());
+        assertTrue(expired.isEmpty());
+        assertTrue(stripedQueue.isActiveQueueEmpty());
+    }
+
+    @Test
+    public void testStripedPollFilterTerminates() {
+        for (int i = 0; i < 100; i++) {
+            stripedQueue.put(new TestFlowFile());
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = stripedQueue.poll(new FlowFileFilter() {
+            private int count = 0;
+
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                return ++count < 5 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+            }
+        }, expired);
+
+        assertEquals(5, polled.size());
+        stripedQueue.acknowledge(polled);
+        assertEquals(95, stripedQueue.size().getObjectCount());
+    }
+
+    @Test
+    public void testStripedPollExpiresFromEveryPartition() {
+        stripedQueue.setFlowFileExpiration("1 ms");
+
+        for (int i = 0; i < 100; i++) {
+            stripedQueue.put(new TestFlowFile(10L));
+        }
+
+        // just make sure that the flowfiles have time to expire.
+        try {
+            Thread.sleep(100L);
+        } catch (final InterruptedException ie) {
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertNull(stripedQueue.poll(expired));
+        assertEquals(100, expired.size());
+        assertEquals(0, stripedQueue.size().getObjectCount());
+        assertEquals(0L, stripedQueue.size().getByteCount());
+
+        for (int i = 0; i < 100; i++) {
+            stripedQueue.put(new TestFlowFile(10L));
+        }
+        try {
+            Thread.sleep(100L);
+        } catch (final InterruptedException ie) {
+        }
+
+        expired.clear();
+        assertTrue(stripedQueue.poll(10, expired).isEmpty());
+        assertEquals(100, expired.size());
+        assertEquals(0, stripedQueue.size().getObjectCount());
+        assertEquals(0L, stripedQueue.size().getByteCount());
+    }
+
+    @Test
+    public void testStripedBackPressure() {
+        stripedQueue.setBackPressureObjectThreshold(10);
+
+        for (int i = 0; i < 9; i++) {
+            stripedQueue.put(new TestFlowFile());
+            assertFalse(stripedQueue.isFull());
+        }
+
+        stripedQueue.put(new TestFlowFile());
+        assertTrue(stripedQueue.isFull());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final FlowFileRecord polled = stripedQueue.poll(expired);
+        assertNotNull(polled);
+        assertTrue(stripedQueue.isFull());
+
+        stripedQueue.acknowledge(polled);
+        assertFalse(stripedQueue.isFull());
+    }
+
+    @Test(timeout = 10000)
+    public void testStripedDropAndList() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            stripedQueue.put(new TestFlowFile());
+        }
+
+        final ListFlowFileStatus listStatus = stripedQueue.listFlowFiles(UUID.randomUUID().toString(), 1000);
+        while (listStatus.getState() != ListFlowFileState.COMPLETE) {
+            Thread.sleep(100);
+        }
+        assertEquals(100, listStatus.getFlowFileSummaries().size());
+
+        final DropFlowFileStatus dropStatus = stripedQueue.dropFlowFiles("1", "Unit Test");
+        while (dropStatus.getState() != DropFlowFileState.COMPLETE) {
+            assertNotEquals(DropFlowFileState.FAILURE, dropStatus.getState());
+            Thread.sleep(100);
+        }
+
+        assertEquals(100, dropStatus.getDroppedSize().getObjectCount());
+        assertEquals(0, stripedQueue.size().getObjectCount());
+        assertEquals(100, provRecords.size());
+    }
+
+    @Test
+    public void testStripedRollbackOfRecoveredFlowFiles() {
+        // all swap files are recovered into the first partition, so most of these FlowFiles are polled from a partition
+        // other than the one that their IDs map to
+        final List<FlowFileRecord> swapped = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            swapped.add(new TestFlowFile());
+        }
+        swapManager.swappedOut.put("recovered-swap-file", swapped);
+        stripedQueue.recoverSwappedFlowFiles();
+        assertEquals(100, stripedQueue.size().getObjectCount());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> firstPoll = stripedQueue.poll(100, expired);
+        assertEquals(100, firstPoll.size());
+
+        // roll back the first session: the FlowFiles are put back before they are acknowledged
+        for (final FlowFileRecord flowFile : firstPoll) {
+            stripedQueue.put(flowFile);
+        }
+        assertEquals(100, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+
+        // a second session polls the FlowFiles again before the first acknowledges them
+        final List<FlowFileRecord> secondPoll = stripedQueue.poll(100, expired);
+        assertEquals(100, secondPoll.size());
+        stripedQueue.acknowledge(secondPoll);
+        stripedQueue.acknowledge(firstPoll);
+
+        assertEquals(0, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+        assertTrue(stripedQueue.isEmpty());
+
+        // once acknowledged, a FlowFile that is put back returns to its own partition
+        stripedQueue.putAll(firstPoll);
+        final List<FlowFileRecord> thirdPoll = stripedQueue.poll(100, expired);
+        assertEquals(100, thirdPoll.size());
+        stripedQueue.acknowledge(thirdPoll);
+        assertEquals(0, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+        assertTrue(stripedQueue.isEmpty());
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void testStripedDrainQueueDrainsAllPartitions() {
+        for (int i = 0; i < 100; i++) {
+            stripedQueue.put(new TestFlowFile(10L));
+        }
+
+        final Queue<FlowFileRecord> sourceQueue = new LinkedList<>();
+        for (int i = 0; i < 10; i++) {
+            sourceQueue.add(new TestFlowFile(10L));
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> destination = new ArrayList<>();
+        final long drainedSize = stripedQueue.drainQueue(sourceQueue, destination, 1000, expired);
+
+        assertEquals(110, destination.size());
+        assertEquals(1100L, drainedSize);
+        assertTrue(sourceQueue.isEmpty());
+        assertTrue(stripedQueue.isActiveQueueEmpty());
+        assertEquals(100, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testStripedFifoOrderWithoutPrioritizers() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            flowFiles.add(new TestFlowFile());
+        }
+        // FlowFiles are handed out in the order that they were queued, rather than in the order of their IDs
+        Collections.shuffle(flowFiles);
+        for (final FlowFileRecord flowFile : flowFiles.subList(0, 500)) {
+            stripedQueue.put(flowFile);
+        }
+        stripedQueue.putAll(flowFiles.subList(500, 1000));
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        polled.add(stripedQueue.poll(expired));
+        polled.addAll(stripedQueue.poll(499, expired));
+        FlowFileRecord flowFile;
+        while ((flowFile = stripedQueue.poll(expired)) != null) {
+            polled.add(flowFile);
+        }
+
+        assertEquals(flowFiles, polled);
+        stripedQueue.acknowledge(polled);
+        assertTrue(stripedQueue.isEmpty());
+    }
+
+    @Test
+    public void testStripedFifoOverflowKeepsOrder() {
+        final StripedFlowFileQueue smallQueue = new StripedFlowFileQueue("small-id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 100, null, 4);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            smallQueue.put(new TestFlowFile());
+
+            // poll now and then, so that FlowFiles are handed out while the queue is overflowing
+            if (i % 300 == 0) {
+                polled.addAll(smallQueue.poll(50, expired));
+            }
+        }
+        assertEquals(1000, smallQueue.size().getObjectCount());
+
+        List<FlowFileRecord> batch;
+        while (!(batch = smallQueue.poll(70, expired)).isEmpty()) {
+            polled.addAll(batch);
+        }
+
+        assertEquals(1000, polled.size());
+        for (int i = 0; i < polled.size(); i++) {
+            assertEquals(i, polled.get(i).getId());
+        }
+
+        smallQueue.acknowledge(polled);
+        assertTrue(smallQueue.isEmpty());
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void testStripedFifoRollbackReturnsToHead() {
+        for (int i = 0; i < 10; i++) {
+            stripedQueue.put(new TestFlowFile());
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> firstPoll = stripedQueue.poll(3, expired);
+        assertEquals(3, firstPoll.size());
+        assertEquals(3, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+
+        // roll back: the FlowFiles are put back before they are acknowledged, and so return to the head of the queue
+        stripedQueue.putAll(firstPoll);
+        stripedQueue.acknowledge(firstPoll);
+        assertEquals(0, stripedQueue.getUnacknowledgedQueueSize().getObjectCount());
+        assertEquals(10, stripedQueue.size().getObjectCount());
+
+        final List<FlowFileRecord> secondPoll = stripedQueue.poll(10, expired);
+        assertEquals(10, secondPoll.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, secondPoll.get(i).getId());
+        }
+
+        // a single FlowFile that is rolled back also returns to the head of the queue
+        stripedQueue.put(secondPoll.get(9));
+        stripedQueue.acknowledge(secondPoll);
+        stripedQueue.put(new TestFlowFile());
+        assertEquals(9L, stripedQueue.poll(expired).getId());
+    }
+
+    @Test
+    public void testStripedFifoPollFilterKeepsRejectedAtHead() {
+        for (int i = 0; i < 10; i++) {
+            stripedQueue.put(new TestFlowFile());
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = stripedQueue.poll(new FlowFileFilter() {
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                if (flowFile.getId() == 5) {
+                    return FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+                }
+                return flowFile.getId() % 2 == 0 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.REJECT_AND_CONTINUE;
+            }
+        }, expired);
+
+        assertEquals(4, polled.size());
+        assertEquals(0L, polled.get(0).getId());
+        assertEquals(5L, polled.get(3).getId());
+        stripedQueue.acknowledge(polled);
+
+        final List<FlowFileRecord> remaining = stripedQueue.poll(10, expired);
+        final long[] expectedIds = new long[] {1L, 3L, 6L, 7L, 8L, 9L};
+        assertEquals(expectedIds.length, remaining.size());
+        for (int i = 0; i < expectedIds.length; i++) {
+            assertEquals(expectedIds[i], remaining.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testStripedPrioritizersUsePartitions() {
+        // with a single partition, the prioritizers order every FlowFile in the queue
+        final StripedFlowFileQueue singlePartitionQueue = new StripedFlowFileQueue("single-id", connection, flowFileRepo, provRepo, claimManager, scheduler,
+            swapManager, null, 10000, null, 1);
+        for (int i = 0; i < 10; i++) {
+            singlePartitionQueue.put(new TestFlowFile(10L - i));
+        }
+
+        // FlowFiles that were queued before the prioritizers were set are moved to the partitions
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        singlePartitionQueue.setPriorities(prioritizers);
+        singlePartitionQueue.put(new TestFlowFile(0L));
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = singlePartitionQueue.poll(100, expired);
+        assertEquals(11, polled.size());
+        for (int i = 0; i < 11; i++) {
+            assertEquals(i, polled.get(i).getSize());
+        }
+        singlePartitionQueue.acknowledge(polled);
+        assertTrue(singlePartitionQueue.isEmpty());
+
+        // without prioritizers, the FlowFiles are handed out in the order that they were queued once again
+        singlePartitionQueue.setPriorities(new ArrayList<FlowFilePrioritizer>());
+        for (int i = 0; i < 10; i++) {
+            singlePartitionQueue.put(new TestFlowFile(10L - i));
+        }
+        final List<FlowFileRecord> fifoPolled = singlePartitionQueue.poll(100, expired);
+        assertEquals(10, fifoPolled.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(10L - i, fifoPolled.get(i).getSize());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testStripedFifoConcurrentPutAndPoll() throws InterruptedException {
+        final StripedFlowFileQueue smallQueue = new StripedFlowFileQueue("small-id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 100, null, 4);
+        final int threads = 4;
+        final int iterations = 20000;
+        final Set<Long> polledIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final AtomicLong duplicates = new AtomicLong(0L);
+
+        final CountDownLatch doneLatch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Set<FlowFileRecord> expired = new HashSet<>();
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            smallQueue.put(new TestFlowFile());
+                            if (i % 3 == 0) {
+                                continue;
+                            }
+
+                            final List<FlowFileRecord> polled = smallQueue.poll(2, expired);
+                            for (final FlowFileRecord flowFile : polled) {
+                                if (!polledIds.add(flowFile.getId())) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                            smallQueue.acknowledge(polled);
+                        }
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        doneLatch.await();
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        List<FlowFileRecord> remaining;
+        while (!(remaining = smallQueue.poll(1000, expired)).isEmpty()) {
+            for (final FlowFileRecord flowFile : remaining) {
+                if (!polledIds.add(flowFile.getId())) {
+                    duplicates.incrementAndGet();
+                }
+            }
+            smallQueue.acknowledge(remaining);
+        }
+
+        assertEquals(0L, duplicates.get());
+        assertEquals(threads * iterations, polledIds.size());
+        assertTrue(smallQueue.isEmpty());
+        assertEquals(0L, smallQueue.size().getByteCount());
+    }
+
+    @Test
+    @Ignore("For local performance testing only")
+    public void testContendedThroughput() throws InterruptedException {
+        final int threads = 16;
+        final int iterations = 200000;
+
+        for (int i = 0; i < 3; i++) {
+            System.out.println("StandardFlowFileQueue: " + runContended(queue, threads, iterations) + " millis");
+            System.out.println("StripedFlowFileQueue:  " + runContended(stripedQueue, threads, iterations) + " millis");
+        }
+    }
+
+    private long runContended(final FlowFileQueue flowFileQueue, final int threads, final int iterations) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Set<FlowFileRecord> expired = new HashSet<>();
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < iterations; i++) {
+                            flowFileQueue.put(new TestFlowFile());
+                            final FlowFileRecord polled = flowFileQueue.poll(expired);
+                            if (polled != null) {
+                                flowFileQueue.acknowledge(polled);
+                            }
+                        }
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        final long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        final long millis = (System.nanoTime() - start) / 1000000L;
+
+        // empty the queue so that each run starts from the same state
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        List<FlowFileRecord> remaining;
+        while (!(remaining = flowFileQueue.poll(1000, expired)).isEmpty()) {
+            flowFileQueue.acknowledge(remaining);
+        }
+
+        return millis;
+    }
 
     private class TestSwapManager implements FlowFileSwapManager {
-        private final Map<String, List<FlowFileRecord>> swappedOut = new HashMap<>();
-        int swapOutCalledCount = 0;
-        int swapInCalledCount = 0;
+        private final Map<String, List<FlowFileRecord>> swappedOut = new ConcurrentHashMap<>();
+        volatile int swapOutCalledCount = 0;
+        volatile int swapInCalledCount = 0;
 
         @Override
         public void initialize(final SwapManagerInitializationContext initializationContext) {
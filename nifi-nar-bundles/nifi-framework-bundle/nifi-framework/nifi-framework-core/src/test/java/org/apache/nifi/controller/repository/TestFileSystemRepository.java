@@ -21,6 +21,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -29,13 +30,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
@@ -44,6 +57,7 @@ import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
 
@@ -341,6 +355,94 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(doubleExpected, Files.readAllBytes(outPath)));
     }
 
+    @Test
+    public void testImportFromChannel() throws IOException {
+        final byte[] expected = Files.readAllBytes(helloWorldFile.toPath());
+
+        final ContentClaim fileClaim = repository.create(false);
+        try (final FileChannel in = FileChannel.open(helloWorldFile.toPath(), StandardOpenOption.READ)) {
+            assertEquals(expected.length, repository.importFrom(in, fileClaim));
+            assertEquals(expected.length, in.position());
+        }
+
+        final ContentClaim streamClaim = repository.create(false);
+        assertEquals(5L, repository.importFrom(Channels.newChannel(new ByteArrayInputStream("hello".getBytes())), streamClaim));
+
+        // the claims share a file, so each must have been appended at its own offset
+        assertEquals(fileClaim.getResourceClaim(), streamClaim.getResourceClaim());
+        assertEquals(expected.length, fileClaim.getLength());
+        assertEquals(5L, streamClaim.getLength());
+        try (final InputStream in = repository.read(fileClaim)) {
+            assertTrue(Arrays.equals(expected, readFully(in, expected.length)));
+        }
+        try (final InputStream in = repository.read(streamClaim)) {
+            assertTrue(Arrays.equals("hello".getBytes(), readFully(in, 5)));
+        }
+    }
+
+    @Test
+    public void testExportToChannel() throws IOException {
+        final List<ContentClaim> claims = writeClaims(3, 1024);
+        final ContentClaim claim = claims.get(1);
+        final byte[] content = getContent(claim, 1024);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals(1024L, repository.exportTo(claim, Channels.newChannel(baos), 0L, 1024L));
+        assertTrue(Arrays.equals(content, baos.toByteArray()));
+
+        final Path outPath = new File("target/testExportToChannel").toPath();
+        Files.deleteIfExists(outPath);
+        try (final FileChannel out = FileChannel.open(outPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // a length that runs past the end of the claim must not copy the content of the next claim
+            assertEquals(1000L, repository.exportTo(claim, out, 24L, 2048L));
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 24, 1024), Files.readAllBytes(outPath)));
+    }
+
+    @Test
+    public void testExportToChannelFailsIfNotAllBytesAreAccepted() throws IOException {
+        final ContentClaim claim = writeClaims(1, 1024).get(0);
+
+        // a channel that accepts the first 100 bytes and then nothing more, as a non-blocking channel may
+        final WritableByteChannel stalled = new WritableByteChannel() {
+            private int accepted = 0;
+
+            @Override
+            public int write(final ByteBuffer src) {
+                final int len = Math.min(src.remaining(), 100 - accepted);
+                src.position(src.position() + len);
+                accepted += len;
+                return len;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            repository.exportTo(claim, stalled, 0L, 1024L);
+            fail("Expected export to fail when the destination stops accepting bytes");
+        } catch (final IOException expected) {
+        }
+
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            repository.exportTo(claim, pipe.sink(), 0L, 1024L);
+            fail("Expected export to a non-blocking channel to be rejected");
+        } catch (final IllegalBlockingModeException expected) {
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
     @Test
     public void testSize() throws IOException {
         final ContentClaim claim = repository.create(true);
@@ -503,6 +605,242 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(expected, actual));
     }
 
+    @Test
+    public void testReadsShareOpenFile() throws IOException {
+        createRepository(16, false);
+
+        final List<ContentClaim> claims = writeClaims(10, 1024);
+        assertEquals(claims.get(0).getResourceClaim(), claims.get(9).getResourceClaim());
+
+        for (int i = 0; i < 3; i++) {
+            for (final ContentClaim claim : claims) {
+                try (final InputStream in = repository.read(claim)) {
+                    assertTrue(Arrays.equals(getContent(claim, 1024), readFully(in, 1024)));
+                }
+            }
+        }
+
+        final ReadChannelCache cache = repository.getReadChannelCache();
+        assertEquals(1, cache.getOpenChannelCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(29L, cache.getHitCount());
+        assertEquals(0, cache.getMappedFileCount());
+    }
+
+    @Test
+    public void testSkipAndSingleByteReadsOfOpenFile() throws IOException {
+        createRepository(16, false);
+
+        final List<ContentClaim> claims = writeClaims(2, 100);
+        final byte[] expected = getContent(claims.get(1), 100);
+        try (final InputStream in = repository.read(claims.get(1))) {
+            assertEquals(expected[0], (byte) in.read());
+            assertEquals(89L, in.skip(89L));
+            assertEquals(10, in.available());
+            assertEquals(expected[90], (byte) in.read());
+            assertEquals(9L, in.skip(100L));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testRemoveClosesOpenFile() throws IOException {
+        createRepository(16, false);
+
+        final List<ContentClaim> claims = writeClaims(1, 1024 * 1024);
+        final ContentClaim claim = claims.get(0);
+        final Path claimPath = getPath(claim);
+
+        final InputStream in = repository.read(claim);
+        in.read();
+
+        final ReadChannelCache cache = repository.getReadChannelCache();
+        assertEquals(0, repository.decrementClaimantCount(claim));
+        assertTrue(repository.remove(claim));
+        assertFalse(Files.exists(claimPath));
+
+        // the stream that is still reading the file keeps it open until the stream is closed
+        assertEquals(1, cache.getOpenChannelCount());
+        in.close();
+        assertEquals(0, cache.getOpenChannelCount());
+    }
+
+    @Test
+    public void testSyncOnCommit() throws IOException {
+        repository.shutdown();
+
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty("nifi.content.repository.always.sync", "true");
+        properties.setProperty(NiFiProperties.CONTENT_SYNC_ON_COMMIT, "true");
+        try {
+            repository = new FileSystemRepository();
+        } finally {
+            properties.remove("nifi.content.repository.always.sync");
+            properties.remove(NiFiProperties.CONTENT_SYNC_ON_COMMIT);
+        }
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        // the claims share a file that is still open for writing, so syncing them is left until they are committed
+        final List<ContentClaim> claims = writeClaims(3, 1024);
+        assertEquals(claims.get(0).getResourceClaim(), claims.get(2).getResourceClaim());
+        assertEquals(1, repository.getPendingSyncCount());
+        repository.sync(claims);
+        repository.sync(claims);
+
+        // filling the file closes it, which syncs it
+        final ContentClaim lastClaim = writeClaims(1, 1024 * 1024).get(0);
+        assertEquals(claims.get(0).getResourceClaim(), lastClaim.getResourceClaim());
+        assertEquals(0, repository.getPendingSyncCount());
+        repository.sync(Collections.singletonList(lastClaim));
+
+        for (final ContentClaim claim : claims) {
+            try (final InputStream in = repository.read(claim)) {
+                assertTrue(Arrays.equals(getContent(claim, 1024), readFully(in, 1024)));
+            }
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFileIsClosed() throws IOException {
+        createRepository(2, false);
+
+        final List<ContentClaim> claims = writeClaims(3, 1024 * 1024);
+        for (final ContentClaim claim : claims) {
+            try (final InputStream in = repository.read(claim)) {
+                assertEquals(1024 * 1024, readFully(in, 8192).length);
+            }
+        }
+
+        final ReadChannelCache cache = repository.getReadChannelCache();
+        assertEquals(2, cache.getOpenChannelCount());
+        assertEquals(1L, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentlyReadFileIsMemoryMapped() throws IOException {
+        createRepository(16, true);
+
+        final List<ContentClaim> claims = writeClaims(ReadChannelCache.MAP_THRESHOLD * 2, 512);
+        for (final ContentClaim claim : claims) {
+            try (final InputStream in = repository.read(claim)) {
+                assertTrue(Arrays.equals(getContent(claim, 512), readFully(in, 512)));
+            }
+        }
+
+        assertEquals(1, repository.getReadChannelCache().getMappedFileCount());
+    }
+
+    @Test
+    public void testGrowingFileIsNotMappedOnEveryRead() throws IOException {
+        createRepository(16, true);
+
+        // read each FlowFile as soon as it has been written, so that every read is beyond the end of the last mapping
+        for (int i = 0; i < ReadChannelCache.MAP_THRESHOLD * 32; i++) {
+            final ContentClaim claim = writeClaims(1, 512).get(0);
+            try (final InputStream in = repository.read(claim)) {
+                assertTrue(Arrays.equals(getContent(claim, 512), readFully(in, 512)));
+            }
+        }
+
+        final ReadChannelCache cache = repository.getReadChannelCache();
+        assertEquals(1, cache.getMappedFileCount());
+        assertTrue(cache.getMapCount() <= 8L);
+    }
+
+    /**
+     * Reads 1 KB FlowFiles that are packed into shared files from many threads, with and without keeping the files
+     * open, and reports the number of reads per second.
+     */
+    @Test
+    @Ignore("For local performance testing only")
+    public void testReadSmallFlowFilesPerformance() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            runReadBenchmark(0, false);
+            runReadBenchmark(256, false);
+            runReadBenchmark(256, true);
+        }
+    }
+
+    private void runReadBenchmark(final int cacheSize, final boolean memoryMap) throws Exception {
+        createRepository(cacheSize, memoryMap);
+
+        final int flowFiles = 50000;
+        final int readsPerThread = 500000;
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final List<ContentClaim> claims = writeClaims(flowFiles, 1024);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Long>> futures = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            final int offset = i * (flowFiles / threads);
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    final byte[] buffer = new byte[1024];
+                    long bytesRead = 0L;
+                    for (int j = 0; j < readsPerThread; j++) {
+                        try (final InputStream in = repository.read(claims.get((offset + j) % flowFiles))) {
+                            int len;
+                            while ((len = in.read(buffer)) > 0) {
+                                bytesRead += len;
+                            }
+                        }
+                    }
+                    return bytesRead;
+                }
+            }));
+        }
+
+        for (final Future<Long> future : futures) {
+            assertEquals(1024L * readsPerThread, future.get().longValue());
+        }
+        final long nanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        final ReadChannelCache cache = repository.getReadChannelCache();
+        System.out.printf("Cache size %d, memory map %s: %,d reads/sec on %d threads; %d files open, %d memory mapped%n",
+            cacheSize, memoryMap, (long) threads * readsPerThread * TimeUnit.SECONDS.toNanos(1L) / nanos, threads,
+            cache == null ? 0 : cache.getOpenChannelCount(), cache == null ? 0 : cache.getMappedFileCount());
+    }
+
+    private void createRepository(final int readChannelCacheSize, final boolean memoryMap) throws IOException {
+        repository.shutdown();
+
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty(NiFiProperties.CONTENT_READ_CHANNEL_CACHE_SIZE, String.valueOf(readChannelCacheSize));
+        properties.setProperty(NiFiProperties.CONTENT_READ_MEMORY_MAP, String.valueOf(memoryMap));
+        try {
+            repository = new FileSystemRepository();
+        } finally {
+            properties.remove(NiFiProperties.CONTENT_READ_CHANNEL_CACHE_SIZE);
+            properties.remove(NiFiProperties.CONTENT_READ_MEMORY_MAP);
+        }
+
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+    }
+
+    private List<ContentClaim> writeClaims(final int count, final int size) throws IOException {
+        final List<ContentClaim> claims = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(getContent(claim, size));
+            }
+            claims.add(claim);
+        }
+        return Collections.unmodifiableList(claims);
+    }
+
+    private byte[] getContent(final ContentClaim claim, final int size) {
+        final byte[] content = new byte[size];
+        Arrays.fill(content, (byte) claim.getOffset());
+        content[0] = (byte) (claim.getOffset() >> 8);
+        return content;
+    }
+
     private byte[] readFully(final InputStream inStream, final int size) throws IOException {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
         int len;
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.junit.Test;
+
+public class TestFlowFileAttributeInterner {
+
+    @Test
+    public void testKeysAndValuesAreShared() {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(10, 100, 10, 20);
+
+        final String key = interner.internKey(new String("mime.type"));
+        final String value = interner.internValue(key, new String("text/plain"));
+
+        assertSame(key, interner.internKey(new String("mime.type")));
+        assertSame(value, interner.internValue(key, new String("text/plain")));
+        assertEquals(1, interner.getKeyCount());
+        assertEquals(1, interner.getValueCount());
+        assertEquals(2, interner.getStringsDeduplicated());
+        assertTrue(interner.getInternedBytes() > 0);
+    }
+
+    @Test
+    public void testInternedBytesTracksDictionaryContents() {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(10, 100, 3, 20);
+        final String key = interner.internKey("offset");
+        final long keyBytes = interner.getInternedBytes();
+        assertTrue(keyBytes > 0);
+
+        interner.internValue(key, "0");
+        interner.internValue(key, "1");
+        final long withValues = interner.getInternedBytes();
+        assertTrue(withValues > keyBytes);
+
+        // duplicates do not add to the footprint
+        interner.internValue(key, new String("0"));
+        assertEquals(withValues, interner.getInternedBytes());
+
+        // once the key is retired, its values no longer count towards the footprint
+        interner.internValue(key, "2");
+        interner.internValue(key, "3");
+        assertEquals(keyBytes, interner.getInternedBytes());
+    }
+
+    @Test
+    public void testDeduplicatedCountFromManyThreads() throws InterruptedException {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(10, 100, 10, 20);
+        final String key = interner.internKey("mime.type");
+        interner.internValue(key, "text/plain");
+
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        interner.internValue(key, new String("text/plain"));
+                    }
+                }
+            });
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8000, interner.getStringsDeduplicated());
+    }
+
+    @Test
+    public void testHighCardinalityKeyIsNotInterned() {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(10, 100, 3, 20);
+        final String key = interner.internKey("offset");
+
+        for (int i = 0; i < 3; i++) {
+            interner.internValue(key, String.valueOf(i));
+        }
+        assertEquals(3, interner.getValueCount());
+
+        // the fourth distinct value marks the key as high cardinality and releases its values
+        interner.internValue(key, "3");
+        assertEquals(0, interner.getValueCount());
+
+        final String value = new String("0");
+        assertSame(value, interner.internValue(key, value));
+    }
+
+    @Test
+    public void testValueCountAfterConcurrentRetirement() throws InterruptedException {
+        final int numKeys = 2000;
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(numKeys, 1000000, 8, 20);
+
+        // every key sees more distinct values than it may intern, and the threads start on each key together, so that
+        // each key is retired while other threads are adding values to it
+        final Thread[] threads = new Thread[8];
+        final CyclicBarrier barrier = new CyclicBarrier(threads.length);
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int k = 0; k < numKeys; k++) {
+                            final String key = interner.internKey("key-" + k);
+                            barrier.await();
+                            for (int v = 0; v < 4; v++) {
+                                interner.internValue(key, String.valueOf(offset * 4 + v));
+                            }
+                        }
+                    } catch (final InterruptedException | BrokenBarrierException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numKeys, interner.getKeyCount());
+        assertEquals(0, interner.getValueCount());
+    }
+
+    @Test
+    public void testUuidValuesAreNotInterned() {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(10, 100, 10, 100);
+        final String key = interner.internKey(CoreAttributes.UUID.key());
+
+        interner.internValue(key, "a3c8a0f4-0000-4000-8000-000000000000");
+        final String value = new String("a3c8a0f4-0000-4000-8000-000000000000");
+        assertSame(value, interner.internValue(key, value));
+        assertEquals(0, interner.getValueCount());
+    }
+
+    @Test
+    public void testDictionaryIsBounded() {
+        final FlowFileAttributeInterner interner = new FlowFileAttributeInterner(2, 3, 10, 5);
+
+        final String key1 = interner.internKey("a");
+        final String key2 = interner.internKey("b");
+        final String key3 = new String("c");
+        assertSame(key3, interner.internKey(key3));
+        assertEquals(2, interner.getKeyCount());
+
+        // values longer than the maximum length are never interned
+        final String longValue = new String("too long");
+        interner.internValue(key1, "too long");
+        assertSame(longValue, interner.internValue(key1, longValue));
+
+        interner.internValue(key1, "1");
+        interner.internValue(key1, "2");
+        interner.internValue(key2, "3");
+        final String fourth = new String("4");
+        interner.internValue(key2, "4");
+        assertSame(fourth, interner.internValue(key2, fourth));
+        assertEquals(3, interner.getValueCount());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestPersistentAttributeMap {
+
+    @Test
+    public void testPlusAndMinus() {
+        final PersistentAttributeMap empty = PersistentAttributeMap.empty();
+        final PersistentAttributeMap one = empty.plus("filename", "abc.txt");
+        final PersistentAttributeMap two = one.plus("path", "./");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertEquals(2, two.size());
+        assertEquals("abc.txt", two.get("filename"));
+        assertEquals("./", two.get("path"));
+        assertNull(one.get("path"));
+
+        final PersistentAttributeMap replaced = two.plus("filename", "xyz.txt");
+        assertEquals(2, replaced.size());
+        assertEquals("xyz.txt", replaced.get("filename"));
+        assertEquals("abc.txt", two.get("filename"));
+
+        final PersistentAttributeMap removed = replaced.minus("filename");
+        assertEquals(1, removed.size());
+        assertFalse(removed.containsKey("filename"));
+        assertEquals("./", removed.get("path"));
+        assertTrue(removed.minus("path").isEmpty());
+    }
+
+    @Test
+    public void testUnchangedMapIsReturned() {
+        final PersistentAttributeMap map = PersistentAttributeMap.empty().plus("a", "1").plus("b", "2");
+        assertSame(map, map.plus("a", "1"));
+        assertSame(map, map.minus("c"));
+        assertSame(map, PersistentAttributeMap.copyOf(map));
+    }
+
+    @Test
+    public void testEqualToHashMap() {
+        final Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            expected.put("attribute." + i, "value-" + i);
+        }
+
+        final PersistentAttributeMap map = PersistentAttributeMap.copyOf(expected);
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // "Aa" and "BB" have the same hash code, as do all strings made up of them
+        final List<String> collidingKeys = new ArrayList<>();
+        final String[] parts = new String[] {"Aa", "BB"};
+        for (final String first : parts) {
+            for (final String second : parts) {
+                for (final String third : parts) {
+                    collidingKeys.add(first + second + third);
+                }
+            }
+        }
+
+        PersistentAttributeMap map = PersistentAttributeMap.empty().plus("other", "value");
+        for (final String key : collidingKeys) {
+            map = map.plus(key, key.toLowerCase());
+        }
+
+        assertEquals(collidingKeys.size() + 1, map.size());
+        for (final String key : collidingKeys) {
+            assertEquals(key.toLowerCase(), map.get(key));
+        }
+
+        for (final String key : collidingKeys) {
+            map = map.minus(key);
+            assertNull(map.get(key));
+        }
+        assertEquals(1, map.size());
+        assertEquals("value", map.get("other"));
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        final Random random = new Random(42L);
+        final Map<String, String> expected = new HashMap<>();
+        PersistentAttributeMap map = PersistentAttributeMap.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            final String key = "key-" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                final String value = String.valueOf(random.nextInt(10));
+                expected.put(key, value);
+                map = map.plus(key, value);
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(expected, map);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCannotModifyThroughMapInterface() {
+        PersistentAttributeMap.empty().plus("a", "1").put("b", "2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCannotRemoveThroughIterator() {
+        PersistentAttributeMap.empty().plus("a", "1").keySet().clear();
+    }
+}
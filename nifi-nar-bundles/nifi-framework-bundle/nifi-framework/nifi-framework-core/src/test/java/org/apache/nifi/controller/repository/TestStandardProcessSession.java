@@ -31,10 +31,14 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -93,6 +97,7 @@ public class TestStandardProcessSession {
 
     private ProvenanceEventRepository provenanceRepo;
     private MockFlowFileRepository flowFileRepo;
+    private final List<String> repositoryCalls = new ArrayList<>();
 
     @After
     public void cleanup() {
@@ -189,9 +194,9 @@ public class TestStandardProcessSession {
         }).when(connectable).getConnections(Mockito.any(Relationship.class));
         when(connectable.getConnections()).thenReturn(new HashSet<>(connList));
 
-        contentRepo = new MockContentRepository();
+        contentRepo = new MockContentRepository(repositoryCalls);
         contentRepo.initialize(new StandardResourceClaimManager());
-        flowFileRepo = new MockFlowFileRepository();
+        flowFileRepo = new MockFlowFileRepository(repositoryCalls);
 
         context = new ProcessContext(connectable, new AtomicLong(0L), contentRepo, flowFileRepo, flowFileEventRepo, counterRepo, provenanceRepo);
         session = new StandardProcessSession(context);
@@ -985,6 +990,88 @@ public class TestStandardProcessSession {
         assertEquals(0, flowFileQueue.getUnacknowledgedQueueSize().getObjectCount());
     }
 
+    @Test
+    public void testCommitSyncsWrittenContentBeforeUpdatingFlowFileRepo() {
+        final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
+            .addAttribute("uuid", "12345678-1234-1234-1234-123456789012")
+            .entryDate(System.currentTimeMillis())
+            .contentClaim(new StandardContentClaim(new StandardResourceClaim("x", "x", "0", true), 0L))
+            .contentClaimOffset(0L).size(0L).build();
+        flowFileQueue.put(flowFileRecord);
+
+        final FlowFile originalFlowFile = session.get();
+        final FlowFile modified = session.write(originalFlowFile, new OutputStreamCallback() {
+            @Override
+            public void process(OutputStream out) throws IOException {
+                out.write("Hello".getBytes());
+            }
+        });
+        session.transfer(modified);
+        session.commit();
+
+        // the content must be on disk before the FlowFile Repository references it
+        assertEquals(Arrays.asList("sync", "update"), repositoryCalls);
+
+        final FlowFileRecord committed = flowFileQueue.poll(new HashSet<FlowFileRecord>());
+        assertNotNull(committed);
+        assertEquals(Collections.singletonList(committed.getContentClaim()), contentRepo.getSyncedClaims());
+    }
+
+    @Test
+    public void testCommitWithoutWrittenContentDoesNotSync() {
+        final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
+            .addAttribute("uuid", "12345678-1234-1234-1234-123456789012")
+            .entryDate(System.currentTimeMillis())
+            .contentClaim(new StandardContentClaim(new StandardResourceClaim("x", "x", "0", true), 0L))
+            .contentClaimOffset(0L).size(0L).build();
+        flowFileQueue.put(flowFileRecord);
+
+        final FlowFile originalFlowFile = session.get();
+        final FlowFile modified = session.putAttribute(originalFlowFile, "key", "value");
+        session.transfer(modified);
+        session.commit();
+
+        assertEquals(Collections.singletonList("update"), repositoryCalls);
+    }
+
+    @Test
+    public void testSyncFailureRollsBackWithoutUpdatingFlowFileRepo() {
+        final ContentClaim originalClaim = new StandardContentClaim(new StandardResourceClaim("x", "x", "0", true), 0L);
+        final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
+            .addAttribute("uuid", "12345678-1234-1234-1234-123456789012")
+            .entryDate(System.currentTimeMillis())
+            .contentClaim(originalClaim)
+            .contentClaimOffset(0L).size(0L).build();
+        flowFileQueue.put(flowFileRecord);
+
+        final FlowFile originalFlowFile = session.get();
+        final FlowFile modified = session.write(originalFlowFile, new OutputStreamCallback() {
+            @Override
+            public void process(OutputStream out) throws IOException {
+                out.write("Hello".getBytes());
+            }
+        });
+        session.transfer(modified);
+
+        // instruct content repo to throw IOException on sync
+        contentRepo.setFailOnSync(true);
+
+        try {
+            session.commit();
+            Assert.fail("Session commit completed, even though Content Repo failed to sync");
+        } catch (final ProcessException pe) {
+            // expected behavior because Content Repo will throw IOException
+        }
+
+        // the FlowFile Repository must never reference content that may not be on disk
+        assertEquals(Collections.singletonList("sync"), repositoryCalls);
+
+        assertEquals(1, flowFileQueue.size().getObjectCount());
+        assertEquals(0, flowFileQueue.getUnacknowledgedQueueSize().getObjectCount());
+        final FlowFileRecord requeued = flowFileQueue.poll(new HashSet<FlowFileRecord>());
+        assertEquals(originalClaim, requeued.getContentClaim());
+    }
+
     @Test
     public void testRollbackAfterCheckpoint() {
         final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
@@ -1143,6 +1230,11 @@ public class TestStandardProcessSession {
     private static class MockFlowFileRepository implements FlowFileRepository {
         private boolean failOnUpdate = false;
         private final AtomicLong idGenerator = new AtomicLong(0L);
+        private final List<String> repositoryCalls;
+
+        public MockFlowFileRepository(final List<String> repositoryCalls) {
+            this.repositoryCalls = repositoryCalls;
+        }
 
         public void setFailOnUpdate(final boolean fail) {
             this.failOnUpdate = fail;
@@ -1164,6 +1256,7 @@ public class TestStandardProcessSession {
 
         @Override
         public void updateRepository(Collection<RepositoryRecord> records) throws IOException {
+            repositoryCalls.add("update");
             if (failOnUpdate) {
                 throw new IOException("FlowFile Repository told to fail on update for unit test");
             }
@@ -1208,9 +1301,24 @@ public class TestStandardProcessSession {
         private final AtomicLong claimsRemoved = new AtomicLong(0L);
         private ResourceClaimManager claimManager;
         private boolean disableRead = false;
+        private boolean failOnSync = false;
+        private final List<String> repositoryCalls;
+        private final List<ContentClaim> syncedClaims = new ArrayList<>();
 
         private final ConcurrentMap<ContentClaim, AtomicInteger> claimantCounts = new ConcurrentHashMap<>();
 
+        public MockContentRepository(final List<String> repositoryCalls) {
+            this.repositoryCalls = repositoryCalls;
+        }
+
+        public void setFailOnSync(final boolean fail) {
+            this.failOnSync = fail;
+        }
+
+        public List<ContentClaim> getSyncedClaims() {
+            return syncedClaims;
+        }
+
         @Override
         public void shutdown() {
         }
@@ -1338,6 +1446,11 @@ public class TestStandardProcessSession {
             return size;
         }
 
+        @Override
+        public long importFrom(ReadableByteChannel content, ContentClaim claim) throws IOException {
+            return importFrom(Channels.newInputStream(content), claim);
+        }
+
         @Override
         public long exportTo(ContentClaim claim, Path destination, boolean append) throws IOException {
             throw new UnsupportedOperationException();
@@ -1358,6 +1471,20 @@ public class TestStandardProcessSession {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public long exportTo(ContentClaim claim, WritableByteChannel destination, long offset, long length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sync(Collection<ContentClaim> claims) throws IOException {
+            repositoryCalls.add("sync");
+            if (failOnSync) {
+                throw new IOException("Content Repository told to fail on sync for unit test");
+            }
+            syncedClaims.addAll(claims);
+        }
+
         @Override
         public long size(ContentClaim claim) throws IOException {
             return Files.size(getPath(claim));
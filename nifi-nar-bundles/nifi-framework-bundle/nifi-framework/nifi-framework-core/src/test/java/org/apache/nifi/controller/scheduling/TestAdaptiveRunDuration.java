@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration.Outcome;
+import org.junit.Test;
+
+public class TestAdaptiveRunDuration {
+
+    private static final long MAX_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    @Test
+    public void testWindowGrowsWhileCommitIsExpensive() {
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration();
+        assertEquals(0L, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+
+        // committing takes half of the run, so the window should grow until it reaches the maximum
+        runDuration.update(Outcome.WINDOW_EXPIRED, 1000L, 1000L, MAX_NANOS);
+        assertEquals(AdaptiveRunDuration.MIN_WINDOW_NANOS, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+
+        runDuration.update(Outcome.WINDOW_EXPIRED, 1000L, 1000L, MAX_NANOS);
+        assertEquals(2 * AdaptiveRunDuration.MIN_WINDOW_NANOS, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+
+        for (int i = 0; i < 20; i++) {
+            runDuration.update(Outcome.WINDOW_EXPIRED, 1000L, 1000L, MAX_NANOS);
+        }
+        assertEquals(MAX_NANOS, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testWindowIsKeptWhileCommitCostIsModerate() {
+        final long window = TimeUnit.MILLISECONDS.toNanos(8L);
+        assertEquals(window, AdaptiveRunDuration.nextWindow(window, Outcome.WINDOW_EXPIRED, 95L, 5L, MAX_NANOS));
+    }
+
+    @Test
+    public void testWindowShrinksWhenCommitIsCheap() {
+        final long window = TimeUnit.MILLISECONDS.toNanos(8L);
+        final long next = AdaptiveRunDuration.nextWindow(window, Outcome.WINDOW_EXPIRED, 999L, 1L, MAX_NANOS);
+        assertTrue(next < window);
+        assertTrue(next > 0L);
+    }
+
+    @Test
+    public void testWindowShrinksToZeroWhenIdleOrBlocked() {
+        final long window = TimeUnit.MILLISECONDS.toNanos(8L);
+        for (final Outcome outcome : new Outcome[] {Outcome.NO_WORK, Outcome.YIELDED, Outcome.BACK_PRESSURE}) {
+            assertEquals(window / 2, AdaptiveRunDuration.nextWindow(window, outcome, 1000L, 1000L, MAX_NANOS));
+        }
+
+        final AdaptiveRunDuration runDuration = new AdaptiveRunDuration();
+        for (int i = 0; i < 10; i++) {
+            runDuration.update(Outcome.WINDOW_EXPIRED, 1000L, 1000L, MAX_NANOS);
+        }
+        assertTrue(runDuration.getRunDuration(TimeUnit.NANOSECONDS) > 0L);
+
+        for (int i = 0; i < 20; i++) {
+            runDuration.update(Outcome.NO_WORK, 1000L, 1000L, MAX_NANOS);
+        }
+        assertEquals(0L, runDuration.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testWindowIsLimitedToMaximum() {
+        final long window = TimeUnit.MILLISECONDS.toNanos(64L);
+        final long max = TimeUnit.MILLISECONDS.toNanos(10L);
+        assertEquals(max, AdaptiveRunDuration.nextWindow(window, Outcome.WINDOW_EXPIRED, 95L, 5L, max));
+    }
+}
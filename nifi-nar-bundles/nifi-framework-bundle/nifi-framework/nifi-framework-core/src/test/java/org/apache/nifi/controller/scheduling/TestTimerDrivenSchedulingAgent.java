@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+import org.apache.nifi.annotation.behavior.BlockingIO;
+import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.StandardProcessorNode;
+import org.apache.nifi.controller.service.ControllerServiceProvider;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.Processor;
+import org.apache.nifi.processor.StandardValidationContextFactory;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestTimerDrivenSchedulingAgent {
+
+    private FlowEngine flowEngine;
+    private FlowEngine blockingIOEngine;
+
+    @Before
+    public void setup() {
+        System.setProperty(NiFiProperties.PROPERTIES_FILE_PATH, "src/test/resources/nifi.properties");
+        refreshNiFiProperties();
+        NiFiProperties.getInstance().setProperty(NiFiProperties.BLOCKING_IO_PROCESSORS, ListedProcessor.class.getName());
+
+        flowEngine = new FlowEngine(1, "Timer-Driven Process", true);
+        blockingIOEngine = new FlowEngine(1, "Blocking I/O Process", true);
+    }
+
+    @After
+    public void cleanup() {
+        flowEngine.shutdownNow();
+        blockingIOEngine.shutdownNow();
+        refreshNiFiProperties();
+    }
+
+    @Test
+    public void testAnnotatedProcessorRunsOnBlockingIOEngine() {
+        final TimerDrivenSchedulingAgent agent = new TimerDrivenSchedulingAgent(null, flowEngine, blockingIOEngine, null, null);
+        assertSame(blockingIOEngine, agent.getEngine(createProcessorNode(new AnnotatedProcessor())));
+    }
+
+    @Test
+    public void testListedProcessorRunsOnBlockingIOEngine() {
+        final TimerDrivenSchedulingAgent agent = new TimerDrivenSchedulingAgent(null, flowEngine, blockingIOEngine, null, null);
+        assertSame(blockingIOEngine, agent.getEngine(createProcessorNode(new ListedProcessor())));
+    }
+
+    @Test
+    public void testOtherProcessorRunsOnTimerDrivenEngine() {
+        final TimerDrivenSchedulingAgent agent = new TimerDrivenSchedulingAgent(null, flowEngine, blockingIOEngine, null, null);
+        assertSame(flowEngine, agent.getEngine(createProcessorNode(new OtherProcessor())));
+    }
+
+    @Test
+    public void testAllProcessorsRunOnTimerDrivenEngineWithoutBlockingIOEngine() {
+        final TimerDrivenSchedulingAgent agent = new TimerDrivenSchedulingAgent(null, flowEngine, null, null);
+        assertSame(flowEngine, agent.getEngine(createProcessorNode(new AnnotatedProcessor())));
+        assertSame(flowEngine, agent.getEngine(createProcessorNode(new ListedProcessor())));
+        assertSame(flowEngine, agent.getEngine(createProcessorNode(new OtherProcessor())));
+    }
+
+    private ProcessorNode createProcessorNode(final Processor processor) {
+        final ControllerServiceProvider serviceProvider = Mockito.mock(ControllerServiceProvider.class);
+        return new StandardProcessorNode(processor, UUID.randomUUID().toString(), new StandardValidationContextFactory(serviceProvider),
+            Mockito.mock(ProcessScheduler.class), serviceProvider);
+    }
+
+    private void refreshNiFiProperties() {
+        try {
+            final Field instanceField = NiFiProperties.class.getDeclaredField("instance");
+            instanceField.setAccessible(true);
+            instanceField.set(null, null);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @BlockingIO
+    public static class AnnotatedProcessor extends AbstractProcessor {
+        @Override
+        public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        }
+    }
+
+    public static class ListedProcessor extends AbstractProcessor {
+        @Override
+        public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        }
+    }
+
+    public static class OtherProcessor extends AbstractProcessor {
+        @Override
+        public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        }
+    }
+}
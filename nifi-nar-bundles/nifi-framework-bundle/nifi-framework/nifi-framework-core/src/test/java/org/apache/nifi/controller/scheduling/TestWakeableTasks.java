@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.engine.FlowEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestWakeableTasks {
+
+    private FlowEngine engine;
+    private ScheduleState scheduleState;
+    private Connectable connectable;
+    private AtomicReference<ScheduledFuture<?>> futureRef;
+    private CountDownLatch ran;
+
+    @Before
+    public void setup() {
+        engine = new FlowEngine(1, "TestWakeableTasks", true);
+        scheduleState = new ScheduleState();
+        scheduleState.setScheduled(true);
+        connectable = Mockito.mock(Connectable.class);
+        Mockito.when(connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS)).thenReturn(1L);
+        futureRef = new AtomicReference<>();
+        ran = new CountDownLatch(1);
+    }
+
+    @After
+    public void cleanup() {
+        engine.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testParkedTaskIsWokenByEvent() throws InterruptedException {
+        final WakeableTasks wakeables = new WakeableTasks();
+        final WakeableTasks.WakeableTask wakeable = wakeables.createTask(connectable, engine, scheduleState, futureRef);
+        final Runnable task = createTask(wakeable);
+
+        wakeable.unpark();
+        final ScheduledFuture<?> boredFuture = park(wakeable, task);
+
+        assertTrue(wakeables.onEvent());
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(boredFuture.isCancelled());
+    }
+
+    @Test(timeout = 10000)
+    public void testEventBeforeParkIsNotLost() throws InterruptedException {
+        final WakeableTasks wakeables = new WakeableTasks();
+        final WakeableTasks.WakeableTask wakeable = wakeables.createTask(connectable, engine, scheduleState, futureRef);
+        final Runnable task = createTask(wakeable);
+
+        // the task has started to run and found no work; data is queued before it is parked, so there is nothing to wake
+        wakeable.unpark();
+        assertFalse(wakeables.onEvent());
+
+        // parking the task must wake it right away rather than leaving it to wait out the bored yield
+        final ScheduledFuture<?> boredFuture = park(wakeable, task);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(boredFuture.isCancelled());
+    }
+
+    @Test(timeout = 10000)
+    public void testTaskStaysParkedWithoutEvent() throws InterruptedException {
+        final WakeableTasks wakeables = new WakeableTasks();
+        final WakeableTasks.WakeableTask wakeable = wakeables.createTask(connectable, engine, scheduleState, futureRef);
+        final Runnable task = createTask(wakeable);
+
+        // an event that was seen by a running task does not wake the task once it is parked
+        assertFalse(wakeables.onEvent());
+        wakeable.unpark();
+        final ScheduledFuture<?> boredFuture = park(wakeable, task);
+
+        assertFalse(ran.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(boredFuture.isCancelled());
+        assertEquals(1, ran.getCount());
+    }
+
+    private Runnable createTask(final WakeableTasks.WakeableTask wakeable) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                wakeable.unpark();
+                ran.countDown();
+            }
+        };
+    }
+
+    private ScheduledFuture<?> park(final WakeableTasks.WakeableTask wakeable, final Runnable task) {
+        final ScheduledFuture<?> boredFuture = engine.scheduleWithFixedDelay(task, 1L, 1L, TimeUnit.HOURS);
+        synchronized (scheduleState) {
+            scheduleState.setFutures(Collections.<ScheduledFuture<?>> singleton(boredFuture));
+            futureRef.set(boredFuture);
+            wakeable.park(task);
+        }
+        return boredFuture;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestFlowEngine {
+
+    @Test(timeout = 10000)
+    public void testDelayedTask() throws Exception {
+        final FlowEngine engine = new FlowEngine(2, "Test", true, true);
+        try {
+            final long start = System.nanoTime();
+            final ScheduledFuture<Long> future = engine.schedule(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return System.nanoTime();
+                }
+            }, 50L, TimeUnit.MILLISECONDS);
+
+            assertTrue(future.get() - start >= TimeUnit.MILLISECONDS.toNanos(50L));
+            assertTrue(future.isDone());
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedDelayRunsUntilCancelled() throws Exception {
+        final FlowEngine engine = new FlowEngine(2, "Test", true, true);
+        try {
+            final AtomicInteger runs = new AtomicInteger(0);
+            final CountDownLatch latch = new CountDownLatch(5);
+            final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                    latch.countDown();
+                }
+            }, 0L, 5L, TimeUnit.MILLISECONDS);
+
+            latch.await();
+            assertTrue(future.cancel(false));
+
+            final int runsAtCancel = runs.get();
+            Thread.sleep(50L);
+            assertTrue(runs.get() <= runsAtCancel + 1);
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPeriodicTaskStopsOnFailure() throws Exception {
+        final FlowEngine engine = new FlowEngine(1, "Test", true, true);
+        try {
+            final AtomicInteger runs = new AtomicInteger(0);
+            final ScheduledFuture<?> future = engine.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    if (runs.incrementAndGet() == 3) {
+                        throw new IllegalStateException("Intentional failure");
+                    }
+                }
+            }, 0L, 1L, TimeUnit.MILLISECONDS);
+
+            try {
+                future.get();
+                fail("Expected the failure of the task to be reported");
+            } catch (final ExecutionException ee) {
+                assertTrue(ee.getCause() instanceof IllegalStateException);
+            }
+
+            Thread.sleep(20L);
+            assertEquals(3, runs.get());
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleWorkerStealsWork() throws Exception {
+        final FlowEngine engine = new FlowEngine(2, "Test", true, true);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch stolenTaskRan = new CountDownLatch(1);
+
+            // The blocking task queues a second task on its own worker's queue and then waits for it to run, which can
+            // only happen if the other worker steals it.
+            engine.execute(new Runnable() {
+                @Override
+                public void run() {
+                    engine.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            stolenTaskRan.countDown();
+                        }
+                    });
+
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            assertTrue(stolenTaskRan.await(5, TimeUnit.SECONDS));
+            release.countDown();
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCorePoolSizeCanBeIncreased() throws Exception {
+        final FlowEngine engine = new FlowEngine(1, "Test", true, true);
+        try {
+            engine.setCorePoolSize(3);
+            assertEquals(3, engine.getCorePoolSize());
+
+            final CountDownLatch allRunning = new CountDownLatch(3);
+            final CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 3; i++) {
+                engine.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        allRunning.countDown();
+                        try {
+                            release.await();
+                        } catch (final InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+
+            assertTrue(allRunning.await(5, TimeUnit.SECONDS));
+            assertEquals(3, engine.getActiveCount());
+            release.countDown();
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCorePoolSizeCanBeReduced() throws Exception {
+        final FlowEngine engine = new FlowEngine(4, "Reduce Test", true, true);
+        try {
+            final int taskCount = 8;
+            final AtomicInteger[] runs = new AtomicInteger[taskCount];
+            for (int i = 0; i < taskCount; i++) {
+                final AtomicInteger counter = new AtomicInteger(0);
+                runs[i] = counter;
+                engine.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        counter.incrementAndGet();
+                    }
+                }, 0L, 1L, TimeUnit.MILLISECONDS);
+            }
+
+            engine.setCorePoolSize(1);
+            assertEquals(1, engine.getCorePoolSize());
+
+            // the removed workers exit, leaving one worker thread and the timer thread
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (countThreads("Reduce Test") > 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(2, countThreads("Reduce Test"));
+
+            // every periodic task is still being run by the remaining worker
+            final int[] runsAfterReduce = new int[taskCount];
+            for (int i = 0; i < taskCount; i++) {
+                runsAfterReduce[i] = runs[i].get();
+            }
+            for (int i = 0; i < taskCount; i++) {
+                while (runs[i].get() <= runsAfterReduce[i]) {
+                    Thread.sleep(5L);
+                }
+            }
+
+            engine.setCorePoolSize(2);
+            assertEquals(2, engine.getCorePoolSize());
+        } finally {
+            engine.shutdownNow();
+        }
+    }
+
+    private static int countThreads(final String namePrefix) {
+        int count = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(namePrefix) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownRunsDelayedTasksAndCancelsPeriodicTasks() throws Exception {
+        final FlowEngine engine = new FlowEngine(2, "Test", true, true);
+
+        final ScheduledFuture<?> periodic = engine.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 0L, 1L, TimeUnit.HOURS);
+
+        final CountDownLatch delayedRan = new CountDownLatch(1);
+        engine.schedule(new Runnable() {
+            @Override
+            public void run() {
+                delayedRan.countDown();
+            }
+        }, 100L, TimeUnit.MILLISECONDS);
+
+        engine.shutdown();
+        assertTrue(engine.isShutdown());
+
+        try {
+            engine.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("Expected task to be rejected after shutdown");
+        } catch (final RejectedExecutionException ree) {
+            // expected
+        }
+
+        assertTrue(engine.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(engine.isTerminated());
+        assertFalse(engine.isTerminating());
+        assertEquals(0, delayedRan.getCount());
+        assertTrue(periodic.isCancelled());
+    }
+
+    /**
+     * Simulates a large flow of timer-driven processors, most of which are idle and are re-scheduled after a short bored
+     * yield, while a few of them do a small amount of work on every run and a very few block for a while. Reports the
+     * number of runs per second and how late the runs start relative to when they were due, for each back end.
+     */
+    @Test
+    @Ignore("For local performance testing only")
+    public void testSchedulingOverhead() throws Exception {
+        final int processors = 5000;
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final long seconds = 20L;
+
+        for (int i = 0; i < 2; i++) {
+            for (final boolean workStealing : new boolean[] {false, true}) {
+                runSchedulingBenchmark(processors, threads, seconds, workStealing);
+            }
+        }
+    }
+
+    private void runSchedulingBenchmark(final int processors, final int threads, final long seconds, final boolean workStealing) throws Exception {
+        final FlowEngine engine = new FlowEngine(threads, "Benchmark", true, workStealing);
+        final long periodNanos = TimeUnit.MILLISECONDS.toNanos(10L);
+
+        final int maxSamples = 1_000_000;
+        final long[] lateness = new long[maxSamples];
+        final AtomicInteger sampleCount = new AtomicInteger(0);
+        final AtomicLong runs = new AtomicLong(0L);
+
+        final List<ScheduledFuture<?>> futures = new ArrayList<>(processors);
+        for (int i = 0; i < processors; i++) {
+            final int index = i;
+            futures.add(engine.scheduleWithFixedDelay(new Runnable() {
+                private long due = System.nanoTime();
+                private long counter = 0L;
+
+                @Override
+                public void run() {
+                    final long start = System.nanoTime();
+                    final int sample = sampleCount.getAndIncrement();
+                    if (sample < maxSamples) {
+                        lateness[sample] = Math.max(0L, start - due);
+                    }
+                    runs.incrementAndGet();
+
+                    if (index % 1000 == 0) {
+                        // a long-running processor
+                        try {
+                            Thread.sleep(5L);
+                        } catch (final InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                    } else if (index % 10 == 0) {
+                        // a busy processor that does a little work each time it runs
+                        for (int j = 0; j < 1000; j++) {
+                            counter += j ^ counter;
+                        }
+                    }
+
+                    due = System.nanoTime() + periodNanos;
+                }
+            }, 0L, periodNanos, TimeUnit.NANOSECONDS));
+        }
+
+        final long startNanos = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        for (final ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        engine.shutdown();
+        engine.awaitTermination(10, TimeUnit.SECONDS);
+
+        final int samples = Math.min(sampleCount.get(), maxSamples);
+        final long[] sorted = Arrays.copyOf(lateness, samples);
+        Arrays.sort(sorted);
+
+        System.out.printf("%s: %d processors on %d threads, %,d runs/sec; lateness p50=%.2f ms, p99=%.2f ms, p99.9=%.2f ms, max=%.2f ms%n",
+            workStealing ? "Work-stealing" : "ScheduledThreadPoolExecutor", processors, threads,
+            runs.get() * TimeUnit.SECONDS.toNanos(1L) / elapsedNanos,
+            percentile(sorted, 0.50D), percentile(sorted, 0.99D), percentile(sorted, 0.999D), percentile(sorted, 1.0D));
+    }
+
+    private static double percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0D;
+        }
+        final int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000D;
+    }
+}
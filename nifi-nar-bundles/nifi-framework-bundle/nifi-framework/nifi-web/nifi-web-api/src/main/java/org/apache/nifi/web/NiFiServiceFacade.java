@@ -103,6 +103,14 @@ public interface NiFiServiceFacade {
      */
     ProvenanceDTO submitProvenance(ProvenanceDTO query);
 
+    /**
+     * Retrieves a page of the results of a provenance request.
+     *
+     * @param query query, including the continuation token of the previous page
+     * @return results
+     */
+    ProvenanceDTO getProvenancePage(ProvenanceDTO query);
+
     /**
      * Submits a new replay request.
      *
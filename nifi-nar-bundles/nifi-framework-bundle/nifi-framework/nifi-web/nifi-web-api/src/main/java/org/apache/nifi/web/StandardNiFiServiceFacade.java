@@ -2040,6 +2040,11 @@ public class StandardNiFiServiceFacade implements NiFiServiceFacade {
         return controllerFacade.submitProvenance(query);
     }
 
+    @Override
+    public ProvenanceDTO getProvenancePage(ProvenanceDTO query) {
+        return controllerFacade.getProvenancePage(query);
+    }
+
     @Override
     public void deleteProvenance(String queryId) {
         controllerFacade.deleteProvenanceQuery(queryId);
@@ -673,6 +673,110 @@ public class ProvenanceResource extends ApplicationResource {
         return clusterContext(generateCreatedResponse(URI.create(dto.getUri()), entity)).build();
     }
 
+    /**
+     * Retrieves a page of the provenance events that match the specified query criteria. The page is returned once it has been
+     * retrieved, and the continuation token in its results can be specified in the next request to retrieve the next page.
+     *
+     * @param httpServletRequest request
+     * @param provenanceEntity A provenanceEntity
+     * @return A provenanceEntity
+     */
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    @Path("/pages")
+    @PreAuthorize("hasRole('ROLE_PROVENANCE')")
+    @ApiOperation(
+            value = "Gets a page of the results of a provenance query",
+            notes = "The events are returned in the order in which they were recorded. Each page includes a continuation token that "
+                    + "can be included in the next request to retrieve the next page, including any events that are recorded later. "
+                    + "The maximum number of results is the size of the page. When clustered, the page is retrieved from the specified node.",
+            response = ProvenanceEntity.class,
+            authorizations = {
+                @Authorization(value = "Provenance", type = "ROLE_PROVENANCE")
+            }
+    )
+    @ApiResponses(
+            value = {
+                @ApiResponse(code = 400, message = "NiFi was unable to complete the request because it was invalid. The request should not be retried without modification."),
+                @ApiResponse(code = 401, message = "Client could not be authenticated."),
+                @ApiResponse(code = 403, message = "Client is not authorized to make this request."),
+                @ApiResponse(code = 409, message = "The request was valid but NiFi was not in the appropriate state to process it. Retrying the same request later may be successful.")
+            }
+    )
+    public Response getProvenancePage(
+            @Context HttpServletRequest httpServletRequest,
+            @ApiParam(
+                    value = "The provenance query details.",
+                    required = true
+            ) ProvenanceEntity provenanceEntity) {
+
+        // check the request
+        if (provenanceEntity == null || provenanceEntity.getProvenance() == null || provenanceEntity.getProvenance().getRequest() == null) {
+            throw new IllegalArgumentException("Provenance request details must be specified.");
+        }
+
+        // ensure the max results has been specified
+        final ProvenanceDTO provenanceDto = provenanceEntity.getProvenance();
+        final Integer maxResults = provenanceDto.getRequest().getMaxResults();
+        if (maxResults == null) {
+            throw new IllegalArgumentException("Max results must be specified.");
+        } else if (maxResults > MAX_MAX_RESULTS) {
+            throw new IllegalArgumentException("The maximum number of results cannot be greater than " + MAX_MAX_RESULTS);
+        }
+
+        // replicate if cluster manager
+        if (properties.isClusterManager()) {
+            // the continuation token is specific to the provenance repository of a node
+            if (provenanceDto.getClusterNodeId() == null) {
+                throw new IllegalArgumentException("The cluster node identifier must be specified.");
+            }
+
+            // get the target node and ensure it exists
+            final Node targetNode = clusterManager.getNode(provenanceDto.getClusterNodeId());
+            if (targetNode == null) {
+                throw new UnknownNodeException("The specified cluster node does not exist.");
+            }
+
+            final Set<NodeIdentifier> targetNodes = new HashSet<>();
+            targetNodes.add(targetNode.getNodeId());
+
+            // change content type to JSON for serializing entity
+            final Map<String, String> headersToOverride = new HashMap<>();
+            headersToOverride.put("content-type", MediaType.APPLICATION_JSON);
+
+            // replicate the request to the specific node
+            return clusterManager.applyRequest(HttpMethod.POST, getAbsolutePath(), updateClientId(provenanceEntity), getHeaders(headersToOverride), targetNodes).getResponse();
+        }
+
+        // handle expects request (usually from the cluster manager)
+        final String expects = httpServletRequest.getHeader(WebClusterManager.NCM_EXPECTS_HTTP_HEADER);
+        if (expects != null) {
+            return generateContinueResponse().build();
+        }
+
+        // get the page of results
+        provenanceDto.setId(UUID.randomUUID().toString());
+        final ProvenanceDTO dto = serviceFacade.getProvenancePage(provenanceDto);
+        dto.setClusterNodeId(provenanceDto.getClusterNodeId());
+
+        // create the revision
+        final RevisionDTO revision = new RevisionDTO();
+        if (provenanceEntity.getRevision() == null) {
+            revision.setClientId(new ClientIdParameter().getClientId());
+        } else {
+            revision.setClientId(provenanceEntity.getRevision().getClientId());
+        }
+
+        // create the response entity
+        final ProvenanceEntity entity = new ProvenanceEntity();
+        entity.setProvenance(dto);
+        entity.setRevision(revision);
+
+        // generate the response
+        return clusterContext(generateOkResponse(entity)).build();
+    }
+
     /**
      * Gets the provenance with the specified id.
      *
@@ -910,6 +910,9 @@ public final class DtoFactory {
         final long outputBytes = connectionStatus.getOutputBytes();
         connectionStatusDto.setOutput(FormatUtils.formatCount(outputCount) + " / " + FormatUtils.formatDataSize(outputBytes));
 
+        connectionStatusDto.setSwapInDuration(FormatUtils.formatHoursMinutesSeconds(connectionStatus.getSwapInMillis(), TimeUnit.MILLISECONDS));
+        connectionStatusDto.setSwapOutDuration(FormatUtils.formatHoursMinutesSeconds(connectionStatus.getSwapOutMillis(), TimeUnit.MILLISECONDS));
+
         return connectionStatusDto;
     }
 
@@ -54,6 +54,7 @@ import org.apache.nifi.provenance.ProvenanceEventRepository;
 import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerm;
@@ -589,44 +590,7 @@ public class ControllerFacade {
      * @return provenance info
      */
     public ProvenanceDTO submitProvenance(ProvenanceDTO provenanceDto) {
-        final ProvenanceRequestDTO requestDto = provenanceDto.getRequest();
-
-        // create the query
-        final Query query = new Query(provenanceDto.getId());
-
-        // if the request was specified
-        if (requestDto != null) {
-            // add each search term specified
-            final Map<String, String> searchTerms = requestDto.getSearchTerms();
-            if (searchTerms != null) {
-                for (final Map.Entry<String, String> searchTerm : searchTerms.entrySet()) {
-                    SearchableField field;
-
-                    field = SearchableFields.getSearchableField(searchTerm.getKey());
-                    if (field == null) {
-                        field = SearchableFields.newSearchableAttribute(searchTerm.getKey());
-                    }
-                    query.addSearchTerm(SearchTerms.newSearchTerm(field, searchTerm.getValue()));
-                }
-            }
-
-            // specify the start date if specified
-            if (requestDto.getStartDate() != null) {
-                query.setStartDate(requestDto.getStartDate());
-            }
-
-            // ensure an end date is populated
-            if (requestDto.getEndDate() != null) {
-                query.setEndDate(requestDto.getEndDate());
-            }
-
-            // set the min/max file size
-            query.setMinFileSize(requestDto.getMinimumFileSize());
-            query.setMaxFileSize(requestDto.getMaximumFileSize());
-
-            // set the max results desired
-            query.setMaxResults(requestDto.getMaxResults());
-        }
+        final Query query = createQuery(provenanceDto);
 
         // submit the query to the provenance repository
         final ProvenanceEventRepository provenanceRepository = flowController.getProvenanceRepository();
@@ -667,18 +631,7 @@ public class ControllerFacade {
             provenanceDto.setResults(resultsDto);
 
             // convert the original request
-            requestDto.setStartDate(query.getStartDate());
-            requestDto.setEndDate(query.getEndDate());
-            requestDto.setMinimumFileSize(query.getMinFileSize());
-            requestDto.setMaximumFileSize(query.getMaxFileSize());
-            requestDto.setMaxResults(query.getMaxResults());
-            if (query.getSearchTerms() != null) {
-                final Map<String, String> searchTerms = new HashMap<>();
-                for (final SearchTerm searchTerm : query.getSearchTerms()) {
-                    searchTerms.put(searchTerm.getSearchableField().getFriendlyName(), searchTerm.getValue());
-                }
-                requestDto.setSearchTerms(searchTerms);
-            }
+            populateProvenanceRequest(requestDto, query);
 
             // convert the provenance
             provenanceDto.setId(query.getIdentifier());
@@ -721,6 +674,138 @@ public class ControllerFacade {
         }
     }
 
+    /**
+     * Retrieves a page of the events that match a provenance query. Unlike a submitted query, the page is retrieved
+     * while waiting, and the continuation token of its results can be used to retrieve the next page.
+     *
+     * @param provenanceDto dto
+     * @return provenance info with the page of results
+     */
+    public ProvenanceDTO getProvenancePage(final ProvenanceDTO provenanceDto) {
+        final Query query = createQuery(provenanceDto);
+        final String continuationToken = provenanceDto.getRequest() == null ? null : provenanceDto.getRequest().getContinuationToken();
+
+        try {
+            // get the page from the provenance repository
+            final ProvenanceEventRepository provenanceRepository = flowController.getProvenanceRepository();
+            final Date submissionTime = new Date();
+            final QueryPage queryPage = provenanceRepository.getQueryPage(query, continuationToken, query.getMaxResults());
+
+            // build the response
+            final ProvenanceDTO pageDto = new ProvenanceDTO();
+            final ProvenanceRequestDTO requestDto = new ProvenanceRequestDTO();
+            final ProvenanceResultsDTO resultsDto = new ProvenanceResultsDTO();
+
+            // include the original request and results
+            populateProvenanceRequest(requestDto, query);
+            requestDto.setContinuationToken(continuationToken);
+            pageDto.setRequest(requestDto);
+            pageDto.setResults(resultsDto);
+
+            // the page is complete as soon as it has been retrieved
+            pageDto.setId(query.getIdentifier());
+            pageDto.setSubmissionTime(submissionTime);
+            pageDto.setFinished(true);
+            pageDto.setPercentCompleted(100);
+
+            // convert each event
+            final List<ProvenanceEventDTO> events = new ArrayList<>();
+            for (final ProvenanceEventRecord record : queryPage.getMatchingEvents()) {
+                events.add(createProvenanceEventDto(record));
+            }
+            resultsDto.setProvenanceEvents(events);
+            resultsDto.setTotalCount((long) events.size());
+            resultsDto.setTotal(FormatUtils.formatCount(events.size()));
+            resultsDto.setContinuationToken(queryPage.getContinuationToken());
+            resultsDto.setMoreResults(queryPage.hasMoreResults());
+
+            // set the generated timestamp
+            final Date now = new Date();
+            resultsDto.setGenerated(now);
+            resultsDto.setTimeOffset(TimeZone.getDefault().getOffset(now.getTime()));
+
+            // get the oldest available event time
+            final List<ProvenanceEventRecord> firstEvent = provenanceRepository.getEvents(0, 1);
+            if (!firstEvent.isEmpty()) {
+                resultsDto.setOldestEvent(new Date(firstEvent.get(0).getEventTime()));
+            }
+
+            return pageDto;
+        } catch (final IOException ioe) {
+            throw new NiFiCoreException("An error occured while searching the provenance events.", ioe);
+        }
+    }
+
+    /**
+     * Creates a query from the request of the specified provenance.
+     *
+     * @param provenanceDto dto
+     * @return query
+     */
+    private Query createQuery(final ProvenanceDTO provenanceDto) {
+        final ProvenanceRequestDTO requestDto = provenanceDto.getRequest();
+
+        // create the query
+        final Query query = new Query(provenanceDto.getId());
+
+        // if the request was specified
+        if (requestDto != null) {
+            // add each search term specified
+            final Map<String, String> searchTerms = requestDto.getSearchTerms();
+            if (searchTerms != null) {
+                for (final Map.Entry<String, String> searchTerm : searchTerms.entrySet()) {
+                    SearchableField field;
+
+                    field = SearchableFields.getSearchableField(searchTerm.getKey());
+                    if (field == null) {
+                        field = SearchableFields.newSearchableAttribute(searchTerm.getKey());
+                    }
+                    query.addSearchTerm(SearchTerms.newSearchTerm(field, searchTerm.getValue()));
+                }
+            }
+
+            // specify the start date if specified
+            if (requestDto.getStartDate() != null) {
+                query.setStartDate(requestDto.getStartDate());
+            }
+
+            // ensure an end date is populated
+            if (requestDto.getEndDate() != null) {
+                query.setEndDate(requestDto.getEndDate());
+            }
+
+            // set the min/max file size
+            query.setMinFileSize(requestDto.getMinimumFileSize());
+            query.setMaxFileSize(requestDto.getMaximumFileSize());
+
+            // set the max results desired
+            query.setMaxResults(requestDto.getMaxResults());
+        }
+
+        return query;
+    }
+
+    /**
+     * Populates the specified request with the criteria of the specified query.
+     *
+     * @param requestDto request
+     * @param query query
+     */
+    private void populateProvenanceRequest(final ProvenanceRequestDTO requestDto, final Query query) {
+        requestDto.setStartDate(query.getStartDate());
+        requestDto.setEndDate(query.getEndDate());
+        requestDto.setMinimumFileSize(query.getMinFileSize());
+        requestDto.setMaximumFileSize(query.getMaxFileSize());
+        requestDto.setMaxResults(query.getMaxResults());
+        if (query.getSearchTerms() != null) {
+            final Map<String, String> searchTerms = new HashMap<>();
+            for (final SearchTerm searchTerm : query.getSearchTerms()) {
+                searchTerms.put(searchTerm.getSearchableField().getFriendlyName(), searchTerm.getValue());
+            }
+            requestDto.setSearchTerms(searchTerms);
+        }
+    }
+
     /**
      * Submits the specified lineage request.
      *
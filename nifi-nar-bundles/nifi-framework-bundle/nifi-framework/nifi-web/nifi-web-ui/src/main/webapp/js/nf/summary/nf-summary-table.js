@@ -591,8 +591,14 @@ nf.SummaryTable = (function () {
             return '<img src="images/iconDetails.png" title="View Details" class="pointer show-connection-details" style="margin-top: 5px;"/>';
         };
 
+        // formatter for swap i/o
+        var swapFormatter = function (row, cell, value, columnDef, dataContext) {
+            return dataContext.swapInDuration + ' / ' + dataContext.swapOutDuration;
+        };
+
         // define the input, read, written, and output columns (reused between both tables)
         var queueColumn = {id: 'queued', field: 'queued', name: '<span class="queued-title">Queue</span>&nbsp;/&nbsp;<span class="queued-size-title">Size</span>', sortable: true, defaultSortAsc: false, resize: true};
+        var swapColumn = {id: 'swap', field: 'swap', name: '<span class="swap-in-title">Swap In</span>&nbsp;/&nbsp;<span class="swap-out-title">Out</span>', toolTip: 'Total time spent reading / writing swap files', formatter: swapFormatter, sortable: true, defaultSortAsc: false, resizable: true};
 
         // define the column model for the summary table
         var connectionsColumnModel = [
@@ -602,7 +608,8 @@ nf.SummaryTable = (function () {
             {id: 'destinationName', field: 'destinationName', name: 'Destination Name', sortable: true, resizable: true},
             inputColumn,
             queueColumn,
-            outputColumn
+            outputColumn,
+            swapColumn
         ];
 
         // add an action column if appropriate
@@ -758,7 +765,8 @@ nf.SummaryTable = (function () {
             {id: 'node', field: 'node', name: 'Node', sortable: true, resizable: true},
             inputColumn,
             queueColumn,
-            outputColumn
+            outputColumn,
+            swapColumn
         ];
 
         // initialize the options for the cluster processors table
@@ -1908,6 +1916,19 @@ nf.SummaryTable = (function () {
                     var bWriteSize = nf.Common.parseSize(b['written']);
                     return aWriteSize - bWriteSize;
                 }
+            } else if (sortDetails.columnId === 'swap') {
+                var mod = sortState[tableId].count % 4;
+                if (mod < 2) {
+                    $('#' + tableId + ' span.swap-in-title').addClass('sorted');
+                    var aSwapIn = nf.Common.parseDuration(a['swapInDuration']);
+                    var bSwapIn = nf.Common.parseDuration(b['swapInDuration']);
+                    return aSwapIn - bSwapIn;
+                } else {
+                    $('#' + tableId + ' span.swap-out-title').addClass('sorted');
+                    var aSwapOut = nf.Common.parseDuration(a['swapOutDuration']);
+                    var bSwapOut = nf.Common.parseDuration(b['swapOutDuration']);
+                    return aSwapOut - bSwapOut;
+                }
             } else if (sortDetails.columnId === 'tasks') {
                 var mod = sortState[tableId].count % 4;
                 if (mod < 2) {
@@ -1935,6 +1956,8 @@ nf.SummaryTable = (function () {
         $('#' + tableId + ' span.input-size-title').removeClass('sorted');
         $('#' + tableId + ' span.output-title').removeClass('sorted');
         $('#' + tableId + ' span.output-size-title').removeClass('sorted');
+        $('#' + tableId + ' span.swap-in-title').removeClass('sorted');
+        $('#' + tableId + ' span.swap-out-title').removeClass('sorted');
         $('#' + tableId + ' span.read-title').removeClass('sorted');
         $('#' + tableId + ' span.written-title').removeClass('sorted');
         $('#' + tableId + ' span.time-title').removeClass('sorted');
@@ -2253,7 +2276,9 @@ nf.SummaryTable = (function () {
                         queued: nodeConnectionStatus.connectionStatus.queued,
                         queuedCount: nodeConnectionStatus.connectionStatus.queuedCount,
                         queuedSize: nodeConnectionStatus.connectionStatus.queuedSize,
-                        output: nodeConnectionStatus.connectionStatus.output
+                        output: nodeConnectionStatus.connectionStatus.output,
+                        swapInDuration: nodeConnectionStatus.connectionStatus.swapInDuration,
+                        swapOutDuration: nodeConnectionStatus.connectionStatus.swapOutDuration
                     });
                 });
 
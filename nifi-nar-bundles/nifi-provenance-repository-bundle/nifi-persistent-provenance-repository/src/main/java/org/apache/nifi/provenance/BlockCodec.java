@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+
+import org.apache.nifi.stream.io.GZIPOutputStream;
+
+/**
+ * <p>
+ * The codec that compresses each block of a compressed Provenance Event file. Every block is compressed on its own, so
+ * that a reader can start reading at any block listed in the Table of Contents.
+ * </p>
+ *
+ * <p>
+ * Files of serialization version 9 are compressed with LZ4, which compresses and decompresses several times faster than
+ * GZIP at the cost of a somewhat larger file; files of earlier versions are compressed with GZIP. Both are named
+ * <code>.gz</code>, and a reader tells them apart by the magic bytes at the start of each block.
+ * </p>
+ */
+enum BlockCodec {
+
+    GZIP {
+        @Override
+        OutputStream newCompressingStream(final OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 1);
+        }
+
+        @Override
+        InputStream newDecompressingStream(final InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+
+    LZ4 {
+        @Override
+        OutputStream newCompressingStream(final OutputStream out) throws IOException {
+            return new LZ4BlockOutputStream(out);
+        }
+
+        @Override
+        InputStream newDecompressingStream(final InputStream in) throws IOException {
+            return new ConcatenatedLz4InputStream(in);
+        }
+    };
+
+    // the first byte of the magic with which an LZ4 block stream starts; a GZIP stream starts with 0x1f
+    private static final int LZ4_MAGIC_FIRST_BYTE = 'L';
+
+    /**
+     * @param out the stream to write the compressed block to. Closing the returned stream, which is necessary to write
+     *            the end of the block, closes this stream as well
+     * @return a stream that compresses whatever is written to it
+     * @throws IOException if unable to write to the given stream
+     */
+    abstract OutputStream newCompressingStream(OutputStream out) throws IOException;
+
+    /**
+     * @param in the stream to read the compressed block from
+     * @return a stream that decompresses the block
+     * @throws IOException if unable to read from the given stream
+     */
+    abstract InputStream newDecompressingStream(InputStream in) throws IOException;
+
+    /**
+     * Determines the codec with which a block was compressed, by its first byte, and opens it for reading
+     *
+     * @param in the stream to read the compressed block from
+     * @return a stream that decompresses the block
+     * @throws IOException if unable to read from the given stream
+     */
+    static InputStream openBlock(final InputStream in) throws IOException {
+        final PushbackInputStream pushbackIn = new PushbackInputStream(in, 1);
+        final int firstByte = pushbackIn.read();
+        if (firstByte >= 0) {
+            pushbackIn.unread(firstByte);
+        }
+
+        final BlockCodec codec = firstByte == LZ4_MAGIC_FIRST_BYTE ? LZ4 : GZIP;
+        return codec.newDecompressingStream(pushbackIn);
+    }
+
+    /**
+     * Reads LZ4 block streams one after another. Like a GZIPInputStream, which reads concatenated GZIP members, this
+     * lets a file whose blocks are not listed in a Table of Contents be read from start to end as a single stream.
+     */
+    private static final class ConcatenatedLz4InputStream extends InputStream {
+        private final PushbackInputStream in;
+        private LZ4BlockInputStream current;
+
+        private ConcatenatedLz4InputStream(final InputStream in) {
+            this.in = new PushbackInputStream(in, 1);
+        }
+
+        /**
+         * @return <code>false</code> if there is no more data, or else <code>true</code>, having opened the next LZ4
+         *         block stream if the current one has ended
+         */
+        private boolean nextStream() throws IOException {
+            if (current != null) {
+                return true;
+            }
+
+            final int nextByte = in.read();
+            if (nextByte < 0) {
+                return false;
+            }
+
+            in.unread(nextByte);
+            current = new LZ4BlockInputStream(in);
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (nextStream()) {
+                final int value = current.read();
+                if (value >= 0) {
+                    return value;
+                }
+                current = null;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (nextStream()) {
+                final int bytesRead = current.read(b, off, len);
+                if (bytesRead > 0) {
+                    return bytesRead;
+                }
+                current = null;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.stream.io.DataOutputStream;
+import org.apache.nifi.stream.io.util.VarLongs;
+
+/**
+ * <p>
+ * A Record Writer that writes Provenance Events using the compact encoding of serialization version 9. The file layout,
+ * including the blocks that are listed in the Table of Contents, is the same as that of the {@link StandardRecordWriter},
+ * but the blocks are compressed with LZ4 rather than GZIP, and each record is encoded differently:
+ * </p>
+ *
+ * <ul>
+ * <li>Numbers are written as variable-length integers.</li>
+ * <li>The Event ID and Event Time are written as deltas from those of the previous record, and the other dates as
+ * deltas from the Event Time.</li>
+ * <li>Each String (event type, component, UUIDs, attribute keys and values, content claim coordinates, and so on) is
+ * written only the first time that it is encountered. After that, it is referenced by its index into the dictionary of
+ * Strings that the reader builds up as it goes.</li>
+ * </ul>
+ *
+ * <p>
+ * The dictionary and the deltas start over with the first record of each block, so that a reader can start reading at
+ * any block, and whenever the dictionary has grown to {@link #MAX_DICTIONARY_SIZE} Strings. A record that starts over
+ * is marked as such, so a reader does not need the Table of Contents in order to know where that happens.
+ * </p>
+ */
+public class CompactRecordWriter extends StandardRecordWriter {
+
+    public static final int SERIALIZATION_VERSION = 9;
+
+    // the first byte of each record is a set of flags
+    static final int RECORD_FLAG_RESET = 0x01;  // the dictionary and the deltas start over with this record
+
+    // a String is written as one of these references, followed by the String itself for STRING_NEW and STRING_LITERAL
+    static final int STRING_NULL = 0;
+    static final int STRING_NEW = 1;            // the String is added to the dictionary
+    static final int STRING_LITERAL = 2;        // the String is not added to the dictionary
+    static final int FIRST_DICTIONARY_INDEX = 3; // a reference of FIRST_DICTIONARY_INDEX + i refers to the i'th String of the dictionary
+
+    // longer Strings are unlikely to be repeated, so they are not worth keeping in memory
+    static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private boolean resetPending = true;
+    private long previousEventId = 0L;
+    private long previousEventTime = 0L;
+
+    public CompactRecordWriter(final File file, final TocWriter writer, final boolean compressed, final int uncompressedBlockSize) throws IOException {
+        super(file, writer, compressed, uncompressedBlockSize);
+    }
+
+    @Override
+    protected int getSerializationVersion() {
+        return SERIALIZATION_VERSION;
+    }
+
+    @Override
+    BlockCodec getBlockCodec() {
+        return BlockCodec.LZ4;
+    }
+
+    @Override
+    protected void serializeRecord(final ProvenanceEventRecord record, final long recordIdentifier, final DataOutputStream out, final boolean newBlock) throws IOException {
+        if (resetPending || newBlock || dictionary.size() >= MAX_DICTIONARY_SIZE) {
+            dictionary.clear();
+            previousEventId = 0L;
+            previousEventTime = 0L;
+            resetPending = false;
+
+            out.write(RECORD_FLAG_RESET);
+        } else {
+            out.write(0);
+        }
+
+        final ProvenanceEventType recordType = record.getEventType();
+        final long eventTime = record.getEventTime();
+
+        VarLongs.writeSignedVarLong(recordIdentifier - previousEventId, out);
+        previousEventId = recordIdentifier;
+        writeDictionaryString(recordType.name(), out);
+        VarLongs.writeSignedVarLong(eventTime - previousEventTime, out);
+        previousEventTime = eventTime;
+        VarLongs.writeSignedVarLong(eventTime - record.getFlowFileEntryDate(), out);
+        VarLongs.writeSignedVarLong(record.getEventDuration(), out);
+
+        writeDictionaryStrings(record.getLineageIdentifiers(), out);
+        VarLongs.writeSignedVarLong(eventTime - record.getLineageStartDate(), out);
+
+        writeDictionaryString(record.getComponentId(), out);
+        writeDictionaryString(record.getComponentType(), out);
+        writeDictionaryString(record.getFlowFileUuid(), out);
+        writeDictionaryString(record.getDetails(), out);
+
+        writeAttributes(record.getPreviousAttributes(), out);
+        writeAttributes(record.getUpdatedAttributes(), out);
+
+        if (record.getContentClaimSection() != null && record.getContentClaimContainer() != null && record.getContentClaimIdentifier() != null) {
+            out.writeBoolean(true);
+            writeDictionaryString(record.getContentClaimContainer(), out);
+            writeDictionaryString(record.getContentClaimSection(), out);
+            writeDictionaryString(record.getContentClaimIdentifier(), out);
+            VarLongs.writeVarLong(record.getContentClaimOffset() == null ? 0L : record.getContentClaimOffset(), out);
+            VarLongs.writeVarLong(record.getFileSize(), out);
+        } else {
+            out.writeBoolean(false);
+        }
+
+        if (record.getPreviousContentClaimSection() != null && record.getPreviousContentClaimContainer() != null && record.getPreviousContentClaimIdentifier() != null) {
+            out.writeBoolean(true);
+            writeDictionaryString(record.getPreviousContentClaimContainer(), out);
+            writeDictionaryString(record.getPreviousContentClaimSection(), out);
+            writeDictionaryString(record.getPreviousContentClaimIdentifier(), out);
+            VarLongs.writeVarLong(record.getPreviousContentClaimOffset() == null ? 0L : record.getPreviousContentClaimOffset(), out);
+            VarLongs.writeVarLong(record.getPreviousFileSize() == null ? 0L : record.getPreviousFileSize(), out);
+        } else {
+            out.writeBoolean(false);
+        }
+
+        writeDictionaryString(record.getSourceQueueIdentifier(), out);
+
+        // Write type-specific info
+        if (recordType == ProvenanceEventType.FORK || recordType == ProvenanceEventType.JOIN || recordType == ProvenanceEventType.CLONE || recordType == ProvenanceEventType.REPLAY) {
+            writeDictionaryStrings(record.getParentUuids(), out);
+            writeDictionaryStrings(record.getChildUuids(), out);
+        } else if (recordType == ProvenanceEventType.RECEIVE) {
+            writeDictionaryString(record.getTransitUri(), out);
+            writeDictionaryString(record.getSourceSystemFlowFileIdentifier(), out);
+        } else if (recordType == ProvenanceEventType.FETCH) {
+            writeDictionaryString(record.getTransitUri(), out);
+        } else if (recordType == ProvenanceEventType.SEND) {
+            writeDictionaryString(record.getTransitUri(), out);
+        } else if (recordType == ProvenanceEventType.ADDINFO) {
+            writeDictionaryString(record.getAlternateIdentifierUri(), out);
+        } else if (recordType == ProvenanceEventType.ROUTE) {
+            writeDictionaryString(record.getRelationship(), out);
+        }
+    }
+
+    private void writeAttributes(final Map<String, String> attributes, final DataOutputStream out) throws IOException {
+        VarLongs.writeVarLong(attributes.size(), out);
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeDictionaryString(entry.getKey(), out);
+            writeDictionaryString(entry.getValue(), out);
+        }
+    }
+
+    private void writeDictionaryStrings(final Collection<String> values, final DataOutputStream out) throws IOException {
+        if (values == null) {
+            VarLongs.writeVarLong(0L, out);
+            return;
+        }
+
+        VarLongs.writeVarLong(values.size(), out);
+        for (final String value : values) {
+            writeDictionaryString(value, out);
+        }
+    }
+
+    private void writeDictionaryString(final String value, final DataOutputStream out) throws IOException {
+        if (value == null) {
+            VarLongs.writeVarLong(STRING_NULL, out);
+            return;
+        }
+
+        final Integer index = dictionary.get(value);
+        if (index != null) {
+            VarLongs.writeVarLong(FIRST_DICTIONARY_INDEX + index.longValue(), out);
+            return;
+        }
+
+        if (value.length() > MAX_DICTIONARY_STRING_LENGTH || dictionary.size() >= MAX_DICTIONARY_SIZE) {
+            VarLongs.writeVarLong(STRING_LITERAL, out);
+        } else {
+            VarLongs.writeVarLong(STRING_NEW, out);
+            dictionary.put(value, dictionary.size());
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarLongs.writeVarLong(bytes.length, out);
+        out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "CompactRecordWriter[file=" + getFile() + "]";
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.nifi.provenance.lucene.IndexingAction;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.util.Tuple;
+
+/**
+ * <p>
+ * Merges the records of several journal files in order of Event ID and indexes them, as a pipeline of three stages
+ * that are connected by bounded queues:
+ * </p>
+ *
+ * <ol>
+ * <li><b>Merge</b>: a background thread reads the next record from each journal and orders the records by Event ID.</li>
+ * <li><b>Write</b>: the thread that obtains the records from {@link #nextRecord()} writes each one to the merged file,
+ * compressing it if configured to do so, and passes it to {@link #index(StandardProvenanceEventRecord, int)}.</li>
+ * <li><b>Index</b>: one or more background threads build the Lucene Document for each record and add it to the
+ * index.</li>
+ * </ol>
+ *
+ * <p>
+ * Records are passed between stages in batches so that handing them off does not cost more than processing them. The
+ * time that each stage spends working and the time that it spends waiting on the other stages is recorded; a stage that
+ * is rarely waiting is the one limiting how quickly journals can be merged. See {@link #getStatistics()}.
+ * </p>
+ *
+ * <p>
+ * Usage: call {@link #nextRecord()} until it returns <code>null</code>, passing each record to
+ * {@link #index(StandardProvenanceEventRecord, int)} once it has been written, then call {@link #finish()} to wait for
+ * the indexing to complete. The pipeline must always be closed, which stops its threads if the merge did not finish.
+ * </p>
+ */
+class MergePipeline implements Closeable {
+
+    static final int BATCH_SIZE = 100;
+    static final int QUEUE_CAPACITY = 16;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 10L;
+
+    private final SortedMap<StandardProvenanceEventRecord, RecordReader> recordToReaderMap;
+    private final IndexingAction indexingAction;
+    private final IndexWriter indexWriter;
+    private final int indexThreadCount;
+
+    // an empty batch marks the end of the records
+    private final BlockingQueue<List<StandardProvenanceEventRecord>> mergedQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<List<Tuple<StandardProvenanceEventRecord, Integer>>> indexQueue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean closed = false;
+
+    private ExecutorService mergeExecutor;
+    private ExecutorService indexExecutor;
+    private Future<?> mergeFuture;
+    private final List<Future<?>> indexFutures = new ArrayList<>();
+
+    private Iterator<StandardProvenanceEventRecord> currentBatch = Collections.<StandardProvenanceEventRecord> emptyIterator();
+    private List<Tuple<StandardProvenanceEventRecord, Integer>> indexBatch = new ArrayList<>(BATCH_SIZE);
+    private boolean endOfRecords = false;
+
+    private long startNanos;
+    private long finishNanos;
+    private long recordCount = 0L;
+    private final AtomicLong mergeNanos = new AtomicLong(0L);
+    private final AtomicLong mergeWaitNanos = new AtomicLong(0L);
+    private long writeWaitNanos = 0L;
+    private final AtomicLong indexNanos = new AtomicLong(0L);
+    private final AtomicLong indexWaitNanos = new AtomicLong(0L);
+
+    /**
+     * @param recordToReaderMap the first record of each journal, mapped to the reader that it was read from. The
+     *            pipeline takes ownership of this map, but the readers must still be closed by the caller
+     * @param indexingAction the action that indexes each record
+     * @param indexWriter the writer to index the records with
+     * @param indexThreadCount the number of threads to index records on
+     */
+    public MergePipeline(final SortedMap<StandardProvenanceEventRecord, RecordReader> recordToReaderMap, final IndexingAction indexingAction,
+        final IndexWriter indexWriter, final int indexThreadCount) {
+        this.recordToReaderMap = recordToReaderMap;
+        this.indexingAction = indexingAction;
+        this.indexWriter = indexWriter;
+        this.indexThreadCount = indexThreadCount;
+        // room for an end-of-records marker for each indexing thread in addition to the batches, so that close() can
+        // always signal the end of the records once it has cleared the queue
+        this.indexQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY + indexThreadCount);
+    }
+
+    /**
+     * Starts the merging and indexing threads
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+
+        mergeExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Merge Provenance Journals"));
+        mergeFuture = mergeExecutor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    merge();
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    // the end of the records is signaled even if merging failed, so that the failure is reported
+                    final List<StandardProvenanceEventRecord> endOfRecords = Collections.emptyList();
+                    boolean signaled = false;
+                    while (!signaled && !closed) {
+                        signaled = mergedQueue.offer(endOfRecords, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                }
+                return null;
+            }
+        });
+
+        indexExecutor = Executors.newFixedThreadPool(indexThreadCount, new NamedThreadFactory("Index Provenance Events"));
+        for (int i = 0; i < indexThreadCount; i++) {
+            indexFutures.add(indexExecutor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException, InterruptedException {
+                    try {
+                        indexRecords();
+                    } catch (final Throwable t) {
+                        failure.compareAndSet(null, t);
+                        throw t;
+                    }
+                    return null;
+                }
+            }));
+        }
+    }
+
+    private void merge() throws IOException, InterruptedException {
+        List<StandardProvenanceEventRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long batchStartNanos = System.nanoTime();
+
+        while (!recordToReaderMap.isEmpty() && !closed) {
+            final Map.Entry<StandardProvenanceEventRecord, RecordReader> entry = recordToReaderMap.entrySet().iterator().next();
+            final StandardProvenanceEventRecord record = entry.getKey();
+            final RecordReader reader = entry.getValue();
+
+            batch.add(record);
+
+            // Remove this entry from the map
+            recordToReaderMap.remove(record);
+
+            // Get the next entry from this reader and add it to the map
+            StandardProvenanceEventRecord nextRecord = null;
+
+            try {
+                nextRecord = reader.nextRecord();
+            } catch (final EOFException eof) {
+            }
+
+            if (nextRecord != null) {
+                recordToReaderMap.put(nextRecord, reader);
+            }
+
+            if (batch.size() >= BATCH_SIZE) {
+                mergeNanos.addAndGet(System.nanoTime() - batchStartNanos);
+                if (!put(mergedQueue, batch, mergeWaitNanos)) {
+                    return;
+                }
+                batch = new ArrayList<>(BATCH_SIZE);
+                batchStartNanos = System.nanoTime();
+            }
+        }
+
+        mergeNanos.addAndGet(System.nanoTime() - batchStartNanos);
+        if (!batch.isEmpty()) {
+            put(mergedQueue, batch, mergeWaitNanos);
+        }
+    }
+
+    private void indexRecords() throws IOException, InterruptedException {
+        while (true) {
+            final long waitStartNanos = System.nanoTime();
+            List<Tuple<StandardProvenanceEventRecord, Integer>> batch = null;
+            while (batch == null) {
+                batch = indexQueue.poll(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+                // once the pipeline is closed or a stage has failed, the end-of-records marker may never be queued
+                if (batch == null && (closed || failure.get() != null)) {
+                    return;
+                }
+            }
+
+            final long indexStartNanos = System.nanoTime();
+            indexWaitNanos.addAndGet(indexStartNanos - waitStartNanos);
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            for (final Tuple<StandardProvenanceEventRecord, Integer> tuple : batch) {
+                indexingAction.index(tuple.getKey(), indexWriter, tuple.getValue());
+            }
+            indexNanos.addAndGet(System.nanoTime() - indexStartNanos);
+        }
+    }
+
+    /**
+     * Adds the given batch to the queue, waiting for space to become available, unless the pipeline is closed or
+     * a stage has failed, in which case nothing downstream will take it.
+     *
+     * @return <code>true</code> if the batch was added to the queue
+     */
+    private <T> boolean put(final BlockingQueue<T> queue, final T batch, final AtomicLong waitNanos) throws InterruptedException {
+        final long waitStartNanos = System.nanoTime();
+        try {
+            while (!closed && failure.get() == null) {
+                if (queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            waitNanos.addAndGet(System.nanoTime() - waitStartNanos);
+        }
+    }
+
+    /**
+     * @return the record with the next lowest Event ID, or <code>null</code> if all records have been merged
+     * @throws IOException if unable to read a record from a journal, or if indexing a record has failed
+     */
+    public StandardProvenanceEventRecord nextRecord() throws IOException {
+        while (!currentBatch.hasNext()) {
+            if (endOfRecords) {
+                return null;
+            }
+
+            final long waitStartNanos = System.nanoTime();
+            final List<StandardProvenanceEventRecord> batch;
+            try {
+                batch = mergedQueue.take();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for records to be merged");
+            } finally {
+                writeWaitNanos += System.nanoTime() - waitStartNanos;
+            }
+
+            if (batch.isEmpty()) {
+                endOfRecords = true;
+                checkFailure();
+            }
+            currentBatch = batch.iterator();
+        }
+
+        recordCount++;
+        return currentBatch.next();
+    }
+
+    /**
+     * Queues the given record to be indexed
+     *
+     * @param record the record, which has been written to the merged file
+     * @param blockIndex the index of the block of the merged file that the record was written to
+     * @throws IOException if indexing a record has failed
+     */
+    public void index(final StandardProvenanceEventRecord record, final int blockIndex) throws IOException {
+        indexBatch.add(new Tuple<>(record, blockIndex));
+        if (indexBatch.size() >= BATCH_SIZE) {
+            flushIndexBatch();
+        }
+    }
+
+    private void flushIndexBatch() throws IOException {
+        if (indexBatch.isEmpty()) {
+            return;
+        }
+
+        final AtomicLong waitNanos = new AtomicLong(0L);
+        try {
+            put(indexQueue, indexBatch, waitNanos);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for records to be indexed");
+        } finally {
+            writeWaitNanos += waitNanos.get();
+        }
+
+        checkFailure();
+        indexBatch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    /**
+     * Waits for all of the records that have been passed to {@link #index(StandardProvenanceEventRecord, int)} to be
+     * indexed
+     *
+     * @throws IOException if merging or indexing the records failed
+     */
+    public void finish() throws IOException {
+        flushIndexBatch();
+
+        // If a stage fails while the markers are being queued, the indexing threads stop without waiting for them.
+        final List<Tuple<StandardProvenanceEventRecord, Integer>> endOfRecords = Collections.emptyList();
+        final AtomicLong waitNanos = new AtomicLong(0L);
+        try {
+            for (int i = 0; i < indexThreadCount; i++) {
+                if (!put(indexQueue, endOfRecords, waitNanos)) {
+                    break;
+                }
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for records to be indexed");
+        } finally {
+            writeWaitNanos += waitNanos.get();
+        }
+
+        for (final Future<?> future : indexFutures) {
+            try {
+                future.get();
+            } catch (final ExecutionException ee) {
+                final Throwable t = ee.getCause();
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                }
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                }
+
+                throw new RuntimeException(t);
+            } catch (final InterruptedException e) {
+                throw new RuntimeException("Thread interrupted");
+            }
+        }
+
+        finishNanos = System.nanoTime();
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable t = failure.get();
+        if (t == null) {
+            return;
+        }
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * Stops the merging and indexing threads, waiting for any record that is being indexed to be finished so that the
+     * Index Writer may safely be returned. Threads are not interrupted, as an interrupt can close the files that Lucene
+     * has open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (mergeExecutor == null) {
+            return;
+        }
+
+        mergeExecutor.shutdown();
+        mergedQueue.clear();
+
+        indexQueue.clear();
+        for (int i = 0; i < indexThreadCount; i++) {
+            indexQueue.offer(Collections.<Tuple<StandardProvenanceEventRecord, Integer>> emptyList());
+        }
+        indexExecutor.shutdown();
+
+        try {
+            mergeExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            indexExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!mergeFuture.isDone()) {
+            mergeFuture.cancel(true);
+        }
+    }
+
+    /**
+     * @return a description of how many records each stage handled per second of work, and how long it waited on the
+     *         other stages. Only meaningful once {@link #finish()} has returned
+     */
+    public String getStatistics() {
+        final long elapsedNanos = Math.max(0L, finishNanos - startNanos);
+        final long writeNanos = Math.max(0L, elapsedNanos - writeWaitNanos);
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Merge: ").append(describeStage(mergeNanos.get(), mergeWaitNanos.get()));
+        sb.append("; Write: ").append(describeStage(writeNanos, writeWaitNanos));
+        sb.append("; Index (").append(indexThreadCount).append(indexThreadCount == 1 ? " thread" : " threads").append("): ");
+        sb.append(describeStage(indexNanos.get() / indexThreadCount, indexWaitNanos.get() / indexThreadCount));
+        return sb.toString();
+    }
+
+    private String describeStage(final long busyNanos, final long waitNanos) {
+        final long busyMillis = TimeUnit.NANOSECONDS.toMillis(busyNanos);
+        final long recordsPerSecond = busyNanos <= 0L ? recordCount : recordCount * TimeUnit.SECONDS.toNanos(1L) / busyNanos;
+        return recordsPerSecond + " records/sec, busy " + busyMillis + " millis, waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " millis";
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+
+        public NamedThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName(name);
+            return t;
+        }
+    }
+}
@@ -39,15 +39,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -83,6 +84,7 @@ import org.apache.nifi.provenance.lucene.IndexingAction;
 import org.apache.nifi.provenance.lucene.LineageQuery;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
@@ -90,6 +92,9 @@ import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.provenance.serialization.RecordWriter;
 import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.summary.EventFileSummaryWriter;
+import org.apache.nifi.provenance.summary.SummaryIndexSearch;
+import org.apache.nifi.provenance.summary.SummaryUtil;
 import org.apache.nifi.provenance.toc.TocReader;
 import org.apache.nifi.provenance.toc.TocUtil;
 import org.apache.nifi.reporting.Severity;
@@ -98,7 +103,6 @@ import org.apache.nifi.util.NiFiProperties;
 import org.apache.nifi.util.RingBuffer;
 import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
 import org.apache.nifi.util.StopWatch;
-import org.apache.nifi.util.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -115,6 +119,10 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     public static final Pattern LOG_FILENAME_PATTERN = Pattern.compile("(\\d+).*\\.prov");
     public static final int MAX_UNDELETED_QUERY_RESULTS = 10;
 
+    // when journals are buffered, the number of events that may wait in the buffer of a single journal before
+    // threads registering more events have to wait for the repository to catch up
+    static final int MAX_BUFFERED_EVENTS_PER_JOURNAL = 10000;
+
     private static final Logger logger = LoggerFactory.getLogger(PersistentProvenanceRepository.class);
 
     private final long maxPartitionMillis;
@@ -122,6 +130,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
     private final AtomicLong idGenerator = new AtomicLong(0L);
     private final AtomicReference<SortedMap<Long, Path>> idToPathMap = new AtomicReference<>();
+    // the first Event ID of each set of journals that has not yet been merged into an Event File and added to idToPathMap
+    private final ConcurrentSkipListSet<Long> unmergedFirstEventIds = new ConcurrentSkipListSet<>();
     private final AtomicBoolean recoveryFinished = new AtomicBoolean(false);
 
     private final AtomicBoolean closed = new AtomicBoolean(false);
@@ -160,6 +170,11 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
     private final AtomicInteger dirtyWriterCount = new AtomicInteger(0);
 
+    // if journals are buffered, events are queued here, one buffer per journal, until they can be written. See bufferRecords.
+    private final boolean bufferedJournals;
+    private final JournalBuffer[] journalBuffers;
+    private final AtomicBoolean rolloverScheduled = new AtomicBoolean(false);
+
     // we keep the last 1000 records on hand so that when the UI is opened and it asks for the last 1000 records we don't need to
     // read them. Since this is a very cheap operation to keep them, it's worth the tiny expense for the improved user experience.
     private final RingBuffer<ProvenanceEventRecord> latestRecords = new RingBuffer<>(1000);
@@ -195,6 +210,24 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         this.alwaysSync = configuration.isAlwaysSync();
         this.rolloverCheckMillis = rolloverCheckMillis;
 
+        // a buffered event is acknowledged before it is written, so buffering cannot honor a request to sync every update
+        if (configuration.isBufferedJournals() && alwaysSync) {
+            logger.warn("Provenance Repository is configured to buffer journals and to always sync; journals will not be buffered "
+                + "so that each update is synced to disk before it is acknowledged");
+            this.bufferedJournals = false;
+        } else {
+            this.bufferedJournals = configuration.isBufferedJournals();
+        }
+
+        if (bufferedJournals) {
+            journalBuffers = new JournalBuffer[configuration.getJournalCount()];
+            for (int i = 0; i < journalBuffers.length; i++) {
+                journalBuffers[i] = new JournalBuffer();
+            }
+        } else {
+            journalBuffers = null;
+        }
+
         scheduledExecService = Executors.newScheduledThreadPool(3, new NamedThreadFactory("Provenance Maintenance Thread"));
         queryExecService = Executors.newFixedThreadPool(configuration.getQueryThreadPoolSize(), new NamedThreadFactory("Provenance Query Thread"));
 
@@ -219,6 +252,7 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             recover();
 
             if (configuration.isAllowRollover()) {
+                unmergedFirstEventIds.add(idGenerator.get());
                 writers = createWriters(configuration, idGenerator.get());
             }
 
@@ -247,6 +281,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                                 writeLock.unlock();
                             }
                         }
+
+                        flushJournalBuffers();
                     }
                 }, rolloverCheckMillis, rolloverCheckMillis, TimeUnit.MILLISECONDS);
 
@@ -290,6 +326,9 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         final int queryThreads = properties.getIntegerProperty(NiFiProperties.PROVENANCE_QUERY_THREAD_POOL_SIZE, 2);
         final int indexThreads = properties.getIntegerProperty(NiFiProperties.PROVENANCE_INDEX_THREAD_POOL_SIZE, 1);
         final int journalCount = properties.getIntegerProperty(NiFiProperties.PROVENANCE_JOURNAL_COUNT, 16);
+        final boolean bufferedJournals = Boolean.parseBoolean(properties.getProperty(NiFiProperties.PROVENANCE_JOURNAL_BUFFERED, "false"));
+        final boolean compactRecordFormat = Boolean.parseBoolean(properties.getProperty(NiFiProperties.PROVENANCE_COMPACT_RECORD_FORMAT, "false"));
+        final boolean summaryIndex = Boolean.parseBoolean(properties.getProperty(NiFiProperties.PROVENANCE_SUMMARY_INDEX, "false"));
 
         final long storageMillis = FormatUtils.getTimeDuration(storageTime, TimeUnit.MILLISECONDS);
         final long maxStorageBytes = DataUnit.parseDataSize(storageSize, DataUnit.B).longValue();
@@ -339,6 +378,9 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         config.setQueryThreadPoolSize(queryThreads);
         config.setIndexThreadPoolSize(indexThreads);
         config.setJournalCount(journalCount);
+        config.setBufferedJournals(bufferedJournals);
+        config.setCompactRecordFormat(compactRecordFormat);
+        config.setSummaryIndexEnabled(summaryIndex);
         config.setMaxAttributeChars(maxAttrChars);
 
         if (shardSize != null) {
@@ -360,7 +402,7 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             final File journalDirectory = new File(storageDirectory, "journals");
             final File journalFile = new File(journalDirectory, String.valueOf(initialRecordId) + ".journal." + i);
 
-            writers[i] = RecordWriters.newRecordWriter(journalFile, false, false);
+            writers[i] = RecordWriters.newRecordWriter(journalFile, false, false, config.isCompactRecordFormat());
             writers[i].writeHeader(initialRecordId);
         }
 
@@ -383,12 +425,20 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
     @Override
     public void registerEvent(final ProvenanceEventRecord event) {
-        persistRecord(Collections.singleton(event));
+        if (bufferedJournals) {
+            bufferRecords(Collections.singleton(event));
+        } else {
+            persistRecord(Collections.singleton(event));
+        }
     }
 
     @Override
     public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
-        persistRecord(events);
+        if (bufferedJournals) {
+            bufferRecords(events);
+        } else {
+            persistRecord(events);
+        }
     }
 
     @Override
@@ -642,6 +692,9 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
             indexManager.close();
 
+            // write out anything that is still buffered. We hold the write lock, so no other thread can be draining a buffer.
+            flushJournalBuffers();
+
             if ( writers != null ) {
                 for (final RecordWriter writer : writers) {
                     writer.close();
@@ -766,6 +819,182 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         }
     }
 
+    /**
+     * <p>
+     * Queues the given records in the buffer of one of the journals and then writes out whatever that buffer holds,
+     * if the journal is available. Used in place of {@link #persistRecord(Iterable)} when journals are buffered.
+     * </p>
+     *
+     * <p>
+     * The calling thread never waits for a lock. If another thread is already writing to the journal, that thread
+     * writes these records as well before it lets go of the journal. If the repository is rolling over, the records
+     * wait in the buffer and are written once the rollover is complete. Only if the buffer has grown beyond
+     * {@link #MAX_BUFFERED_EVENTS_PER_JOURNAL} events, meaning that the repository is not keeping up, does the thread
+     * wait for a rollover to finish, just as it would have without buffering.
+     * </p>
+     *
+     * <p>
+     * Event IDs are still assigned as the records are written, so each journal holds its events in ascending order
+     * of ID, and all of the events written between two rollovers have IDs in the range that the rollover expects.
+     * </p>
+     *
+     * @param records the records to register
+     */
+    private void bufferRecords(final Iterable<ProvenanceEventRecord> records) {
+        final List<ProvenanceEventRecord> batch = new ArrayList<>();
+        for (final ProvenanceEventRecord record : records) {
+            batch.add(record);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // spread threads across the journals so that a thread generally finds its journal's buffer uncontended
+        final int journalIndex = (int) (Thread.currentThread().getId() % journalBuffers.length);
+        final JournalBuffer buffer = journalBuffers[journalIndex];
+        final int bufferedEvents = buffer.add(batch);
+
+        if (bufferedEvents > MAX_BUFFERED_EVENTS_PER_JOURNAL) {
+            // wait for any rollover that is in progress to finish, so that the rollover's back pressure applies here too.
+            readLock.lock();
+            readLock.unlock();
+        }
+
+        flushJournalBuffer(journalIndex);
+    }
+
+    /**
+     * Writes out the buffers of all journals, if journals are buffered
+     */
+    private void flushJournalBuffers() {
+        if (!bufferedJournals) {
+            return;
+        }
+
+        for (int i = 0; i < journalBuffers.length; i++) {
+            flushJournalBuffer(i);
+        }
+    }
+
+    /**
+     * Writes the records buffered for the journal with the given index to that journal, unless another thread holds
+     * the journal or the repository is rolling over. In either case, that thread writes the records once it is done,
+     * as it flushes the buffers after releasing its lock. Nothing is lost this way, because a record is always queued
+     * before the lock that keeps it from being written is found to be held. Likewise, if a record cannot be written,
+     * it and the records queued after it stay in the buffer until the rollover has replaced the journal.
+     *
+     * @param journalIndex the index of the journal
+     */
+    private void flushJournalBuffer(final int journalIndex) {
+        final JournalBuffer buffer = journalBuffers[journalIndex];
+
+        while (!buffer.isEmpty()) {
+            final long totalJournalSize;
+
+            if (!readLock.tryLock()) {
+                return;
+            }
+
+            try {
+                final RecordWriter[] recordWriters = this.writers;
+                if (recordWriters == null) {
+                    return;
+                }
+
+                // if the writer is dirty, it cannot be locked; the records wait for the rollover that replaces it.
+                final RecordWriter writer = recordWriters[journalIndex];
+                if (!writer.tryLock()) {
+                    return;
+                }
+
+                long bytesWritten = 0L;
+                int batchesWritten = 0;
+                List<ProvenanceEventRecord> batch = null;
+                int recordsWritten = 0;
+                try {
+                    while ((batch = buffer.poll()) != null) {
+                        recordsWritten = 0;
+                        for (final ProvenanceEventRecord nextRecord : batch) {
+                            final long eventId = idGenerator.getAndIncrement();
+                            bytesWritten += writer.writeRecord(nextRecord, eventId);
+                            recordsWritten++;
+                            logger.trace("Wrote record with ID {} to {}", eventId, writer);
+                        }
+                        batchesWritten++;
+                    }
+
+                    totalJournalSize = bytesWrittenSinceRollover.addAndGet(bytesWritten);
+                    recordsWrittenSinceRollover.getAndAdd(batchesWritten);
+                } catch (final Throwable t) {
+                    // As in persistRecord, the journal may now hold part of a record, so it must not be written to again.
+                    writer.markDirty();
+                    dirtyWriterCount.incrementAndGet();
+                    streamStartTime.set(0L);    // force rollover to happen soon.
+
+                    // The records of the batch that were not written, including the one that failed, go back to the head
+                    // of the buffer so that they are written, ahead of any later batch, once the rollover replaces the journal.
+                    if (batch != null) {
+                        buffer.addFirst(new ArrayList<>(batch.subList(recordsWritten, batch.size())));
+                    }
+
+                    logger.error("Failed to persist Provenance Event due to {}.", t.toString());
+                    logger.error("", t);
+                    eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to persist Provenance Event due to " + t.toString());
+
+                    scheduleRollover();
+                    return;
+                } finally {
+                    writer.unlock();
+                }
+            } finally {
+                readLock.unlock();
+            }
+
+            if (totalJournalSize >= configuration.getMaxEventFileCapacity()) {
+                scheduleRollover();
+            }
+        }
+    }
+
+    /**
+     * Rolls over the repository on a background thread, so that the thread that filled the journals or found one of
+     * them unusable does not wait for the rollover, and then writes out the records that were buffered meanwhile.
+     */
+    private void scheduleRollover() {
+        if (closed.get() || !rolloverScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            scheduledExecService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    writeLock.lock();
+                    try {
+                        rolloverScheduled.set(false);
+                        logger.debug("Obtained write lock to perform scheduled rollover");
+
+                        // another thread may have just rolled over
+                        if (bytesWrittenSinceRollover.get() >= configuration.getMaxEventFileCapacity() || dirtyWriterCount.get() > 0) {
+                            rollover(false);
+                        }
+                    } catch (final Exception e) {
+                        logger.error("Failed to Rollover Provenance Event Repository file due to {}", e.toString());
+                        logger.error("", e);
+                        eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to Rollover Provenance Event Log due to " + e.toString());
+                    } finally {
+                        writeLock.unlock();
+                    }
+
+                    flushJournalBuffers();
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            // the repository is being shut down
+            rolloverScheduled.set(false);
+        }
+    }
+
     /**
      * @return all of the Provenance Event Log Files (not the journals, the merged files) available across all storage directories.
      */
@@ -1159,6 +1388,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         } finally {
             writeLock.unlock();
         }
+
+        flushJournalBuffers();
     }
 
     /**
@@ -1247,6 +1478,9 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                                 updated = idToPathMap.compareAndSet(existingPathMap, newIdToPathMap);
                             }
 
+                            // only now that the file is in the map can a query page move past its events
+                            unmergedFirstEventIds.remove(fileFirstEventId);
+
                             logger.info("Successfully Rolled over Provenance Event file containing {} records", recordsWritten);
                             rolloverCompletions.getAndIncrement();
 
@@ -1337,6 +1571,7 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             }
 
             // we've finished rolling over successfully. Create new writers and reset state.
+            unmergedFirstEventIds.add(idGenerator.get());
             writers = createWriters(configuration, idGenerator.get());
             dirtyWriterCount.set(0);
             streamStartTime.set(System.currentTimeMillis());
@@ -1496,6 +1731,12 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                     logger.error("Failed to delete .toc file {}; this may result in not being able to read the Provenance Events from the {} Journal File. "
                         + "This can be corrected by manually deleting the {} file", tocFile, suggestedMergeFile, tocFile);
                 }
+
+                final File summaryFile = SummaryUtil.getSummaryFile(suggestedMergeFile);
+                if ( summaryFile.exists() && !summaryFile.delete() ) {
+                    logger.error("Failed to delete .summary file {}; this may result in queries returning the wrong events from the {} Journal File. "
+                        + "This can be corrected by manually deleting the {} file", summaryFile, suggestedMergeFile, summaryFile);
+                }
             }
         } else {
             logger.warn("Cannot merge journal files {} because expected first file to end with extension '.0' "
@@ -1516,6 +1757,7 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         // Map each journal to a RecordReader
         final List<RecordReader> readers = new ArrayList<>();
         int records = 0;
+        String pipelineStatistics = null;
 
         final boolean isCompress = configuration.isCompressOnRollover();
         final File writerFile = isCompress ? new File(suggestedMergeFile.getParentFile(), suggestedMergeFile.getName() + ".gz") : suggestedMergeFile;
@@ -1594,10 +1836,11 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             // to a temporary RingBuffer and after we finish merging the records will then copy the data to the
             // ringBuffer provided as a method argument.
             final RingBuffer<ProvenanceEventRecord> latestRecords = new RingBuffer<>(1000);
+            final EventFileSummaryWriter summaryWriter = configuration.isSummaryIndexEnabled() ? new EventFileSummaryWriter(SummaryUtil.getSummaryFile(writerFile)) : null;
 
-            // loop over each entry in the map, persisting the records to the merged file in order, and populating the map
-            // with the next entry from the journal file from which the previous record was written.
-            try (final RecordWriter writer = RecordWriters.newRecordWriter(writerFile, configuration.isCompressOnRollover(), true)) {
+            // merge the records in order on a background thread, persisting each one to the merged file on this thread
+            // and handing it off to the indexing threads. See MergePipeline.
+            try (final RecordWriter writer = RecordWriters.newRecordWriter(writerFile, configuration.isCompressOnRollover(), true, configuration.isCompactRecordFormat())) {
                 writer.writeHeader(minEventId);
 
                 final IndexingAction indexingAction = new IndexingAction(this);
@@ -1605,103 +1848,26 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                 final File indexingDirectory = indexConfig.getWritableIndexDirectory(writerFile, earliestTimestamp);
                 long maxId = 0L;
 
-                final BlockingQueue<Tuple<StandardProvenanceEventRecord, Integer>> eventQueue = new LinkedBlockingQueue<>(100);
-                final AtomicBoolean finishedAdding = new AtomicBoolean(false);
-                final List<Future<?>> futures = new ArrayList<>();
-
                 final IndexWriter indexWriter = indexManager.borrowIndexWriter(indexingDirectory);
-                try {
-                    final ExecutorService exec = Executors.newFixedThreadPool(configuration.getIndexThreadPoolSize(), new ThreadFactory() {
-                        @Override
-                        public Thread newThread(final Runnable r) {
-                            final Thread t = Executors.defaultThreadFactory().newThread(r);
-                            t.setName("Index Provenance Events");
-                            return t;
+                try (final MergePipeline pipeline = new MergePipeline(recordToReaderMap, indexingAction, indexWriter, configuration.getIndexThreadPoolSize())) {
+                    pipeline.start();
+
+                    StandardProvenanceEventRecord record;
+                    while ((record = pipeline.nextRecord()) != null) {
+                        writer.writeRecord(record, record.getEventId());
+                        final int blockIndex = writer.getTocWriter().getCurrentBlockIndex();
+                        pipeline.index(record, blockIndex);
+                        if (summaryWriter != null) {
+                            summaryWriter.addEvent(record, record.getEventId(), blockIndex);
                         }
-                    });
-
-                    try {
-                        for (int i = 0; i < configuration.getIndexThreadPoolSize(); i++) {
-                            final Callable<Object> callable = new Callable<Object>() {
-                                @Override
-                                public Object call() throws IOException {
-                                    while (!eventQueue.isEmpty() || !finishedAdding.get()) {
-                                        final Tuple<StandardProvenanceEventRecord, Integer> tuple;
-                                        try {
-                                            tuple = eventQueue.poll(10, TimeUnit.MILLISECONDS);
-                                        } catch (final InterruptedException ie) {
-                                            continue;
-                                        }
-
-                                        if (tuple == null) {
-                                            continue;
-                                        }
-
-                                        indexingAction.index(tuple.getKey(), indexWriter, tuple.getValue());
-                                    }
-
-                                    return null;
-                                }
-                            };
-
-                            final Future<?> future = exec.submit(callable);
-                            futures.add(future);
-                        }
-
-                        while (!recordToReaderMap.isEmpty()) {
-                            final Map.Entry<StandardProvenanceEventRecord, RecordReader> entry = recordToReaderMap.entrySet().iterator().next();
-                            final StandardProvenanceEventRecord record = entry.getKey();
-                            final RecordReader reader = entry.getValue();
-
-                            writer.writeRecord(record, record.getEventId());
-                            final int blockIndex = writer.getTocWriter().getCurrentBlockIndex();
-
-                            boolean accepted = false;
-                            while (!accepted) {
-                                try {
-                                    accepted = eventQueue.offer(new Tuple<>(record, blockIndex), 10, TimeUnit.MILLISECONDS);
-                                } catch (final InterruptedException ie) {
-                                }
-                            }
-                            maxId = record.getEventId();
 
-                            latestRecords.add(truncateAttributes(record));
-                            records++;
-
-                            // Remove this entry from the map
-                            recordToReaderMap.remove(record);
-
-                            // Get the next entry from this reader and add it to the map
-                            StandardProvenanceEventRecord nextRecord = null;
-
-                            try {
-                                nextRecord = reader.nextRecord();
-                            } catch (final EOFException eof) {
-                            }
-
-                            if (nextRecord != null) {
-                                recordToReaderMap.put(nextRecord, reader);
-                            }
-                        }
-                    } finally {
-                        finishedAdding.set(true);
-                        exec.shutdown();
+                        maxId = record.getEventId();
+                        latestRecords.add(truncateAttributes(record));
+                        records++;
                     }
 
-                    for (final Future<?> future : futures) {
-                        try {
-                            future.get();
-                        } catch (final ExecutionException ee) {
-                            final Throwable t = ee.getCause();
-                            if (t instanceof RuntimeException) {
-                                throw (RuntimeException) t;
-                            }
-
-                            throw new RuntimeException(t);
-                        } catch (final InterruptedException e) {
-                            throw new RuntimeException("Thread interrupted");
-                        }
-                    }
+                    pipeline.finish();
+                    pipelineStatistics = pipeline.getStatistics();
                 } finally {
                     indexManager.returnIndexWriter(indexingDirectory, indexWriter);
                 }
@@ -1709,6 +1875,10 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                 indexConfig.setMaxIdIndexed(maxId);
             }
 
+            if (summaryWriter != null && summaryWriter.getEventCount() > 0) {
+                writeSummary(summaryWriter, writerFile, eventReporter);
+            }
+
             // record should now be available in the repository. We can copy the values from latestRecords to ringBuffer.
             final RingBuffer<ProvenanceEventRecord> latestRecordBuffer = this.latestRecords;
             latestRecords.forEach(new ForEachEvaluator<ProvenanceEventRecord>() {
@@ -1757,11 +1927,34 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             final long nanos = System.nanoTime() - startNanos;
             final long millis = TimeUnit.MILLISECONDS.convert(nanos, TimeUnit.NANOSECONDS);
             logger.info("Successfully merged {} journal files ({} records) into single Provenance Log File {} in {} milliseconds", journalFiles.size(), records, suggestedMergeFile, millis);
+            logger.debug("Merge pipeline for {}: {}", suggestedMergeFile, pipelineStatistics);
         }
 
         return writerFile;
     }
 
+    private void writeSummary(final EventFileSummaryWriter summaryWriter, final File eventFile, final EventReporter eventReporter) {
+        final File summaryFile = SummaryUtil.getSummaryFile(eventFile);
+        try {
+            summaryWriter.write();
+        } catch (final IOException ioe) {
+            // without a summary, queries that cover this file will use the Lucene index instead
+            logger.warn("Failed to write Summary for Provenance Event File {} due to {}; queries covering this file will use the index instead",
+                eventFile, ioe.toString());
+            if (logger.isDebugEnabled()) {
+                logger.warn("", ioe);
+            }
+
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.WARNING, EVENT_CATEGORY, "Failed to write Summary for Provenance Event File " + eventFile + " due to " + ioe.toString());
+            }
+
+            if (summaryFile.exists() && !summaryFile.delete()) {
+                logger.warn("Failed to delete partially written Summary file {}; this file should be cleaned up manually", summaryFile);
+            }
+        }
+    }
+
     private StandardProvenanceEventRecord truncateAttributes(final StandardProvenanceEventRecord original) {
         boolean requireTruncation = false;
 
@@ -1872,6 +2065,16 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             return result;
         }
 
+        if (configuration.isSummaryIndexEnabled() && SummaryIndexSearch.isSupported(query)) {
+            final List<File> logFiles = getSortedLogFiles();
+            if (SummaryIndexSearch.hasSummaries(logFiles)) {
+                final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1);
+                querySubmissionMap.put(query.getIdentifier(), result);
+                queryExecService.submit(new SummaryQueryRunnable(query, result, logFiles));
+                return result;
+            }
+        }
+
         final AtomicInteger retrievalCount = new AtomicInteger(0);
         final List<File> indexDirectories = indexConfig.getIndexDirectories(
                 query.getStartDate() == null ? null : query.getStartDate().getTime(),
@@ -2181,6 +2384,35 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         return querySubmissionMap.get(queryIdentifier);
     }
 
+    @Override
+    public QueryPage getQueryPage(final Query query, final String continuationToken, final int pageSize) throws IOException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+
+        if (query.getEndDate() != null && query.getStartDate() != null && query.getStartDate().getTime() > query.getEndDate().getTime()) {
+            throw new IllegalArgumentException("Query End Time cannot be before Query Start Time");
+        }
+
+        final long firstEventId = StandardQueryPage.getFirstEventId(continuationToken);
+
+        // Journals are merged by several threads at once, so the events that are still in journals may have lower IDs than
+        // those in some Event Files. Determine the lowest of them before obtaining the Event Files, so that a file that is
+        // merged in the meantime is either included or beyond the end of the page.
+        final long endEventId = getLowestUnmergedEventId();
+        final QueryPageScanner scanner = new QueryPageScanner(getSortedLogFiles(), getAllLogFiles(), maxAttributeChars, configuration.isSummaryIndexEnabled());
+        return scanner.scan(query, firstEventId, endEventId, pageSize);
+    }
+
+    /**
+     * @return the lowest ID of any event that may not yet have been merged into a Provenance Event Log File, or
+     *         <code>Long.MAX_VALUE</code> if all events have been merged
+     */
+    private long getLowestUnmergedEventId() {
+        final Iterator<Long> itr = unmergedFirstEventIds.iterator();
+        return itr.hasNext() ? itr.next() : Long.MAX_VALUE;
+    }
+
     @Override
     public ProvenanceEventRecord getEvent(final long id) throws IOException {
         final List<ProvenanceEventRecord> records = getEvents(id, 1);
@@ -2351,6 +2583,41 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         }
     }
 
+    private class SummaryQueryRunnable implements Runnable {
+
+        private final Query query;
+        private final AsyncQuerySubmission submission;
+        private final List<File> logFiles;
+
+        public SummaryQueryRunnable(final Query query, final AsyncQuerySubmission submission, final List<File> logFiles) {
+            this.query = query;
+            this.submission = submission;
+            this.logFiles = logFiles;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final SummaryIndexSearch search = new SummaryIndexSearch(logFiles, getAllLogFiles(), maxAttributeChars);
+                final StandardQueryResult queryResult = search.search(query);
+                submission.getResult().update(queryResult.getMatchingEvents(), queryResult.getTotalHitCount());
+                logger.info("Successfully executed Query[{}] against Summaries of {} Event Files; Search took {} milliseconds; Total Hits = {}",
+                        query, logFiles.size(), queryResult.getQueryTime(), queryResult.getTotalHitCount());
+            } catch (final Throwable t) {
+                logger.error("Failed to query Provenance Repository Summaries due to {}", t.toString());
+                if (logger.isDebugEnabled()) {
+                    logger.error("", t);
+                }
+
+                if (t.getMessage() == null) {
+                    submission.getResult().setError(t.toString());
+                } else {
+                    submission.getResult().setError(t.getMessage());
+                }
+            }
+        }
+    }
+
     private class ComputeLineageRunnable implements Runnable {
 
         private final Collection<String> flowFileUuids;
@@ -2443,4 +2710,47 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             return thread;
         }
     }
+
+    /**
+     * The events waiting to be written to a single journal. Any number of threads may add batches of events while
+     * the thread that holds the journal polls them.
+     */
+    private static class JournalBuffer {
+        private final ConcurrentLinkedDeque<List<ProvenanceEventRecord>> batches = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger eventCount = new AtomicInteger(0);
+
+        /**
+         * @param batch the events to add
+         * @return the number of events buffered, including the given batch
+         */
+        public int add(final List<ProvenanceEventRecord> batch) {
+            batches.offer(batch);
+            return eventCount.addAndGet(batch.size());
+        }
+
+        /**
+         * Returns events that were polled but could not be written, so that they are the next to be polled
+         *
+         * @param batch the events to return
+         */
+        public void addFirst(final List<ProvenanceEventRecord> batch) {
+            batches.offerFirst(batch);
+            eventCount.addAndGet(batch.size());
+        }
+
+        /**
+         * @return the oldest batch of events, or <code>null</code> if there are none
+         */
+        public List<ProvenanceEventRecord> poll() {
+            final List<ProvenanceEventRecord> batch = batches.poll();
+            if (batch != null) {
+                eventCount.addAndGet(-batch.size());
+            }
+            return batch;
+        }
+
+        public boolean isEmpty() {
+            return batches.isEmpty();
+        }
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.summary.EventFileSummary;
+import org.apache.nifi.provenance.summary.SummaryIndexSearch;
+import org.apache.nifi.provenance.summary.SummaryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Finds a page of the events that match a Query by reading the Provenance Event Files in order of Event ID and
+ * evaluating the Query against each event with a {@link QueryFilter}. Reading stops as soon as the page is full, and
+ * the Table of Contents of each file is used to start reading at the block that holds the first event of interest.
+ * </p>
+ *
+ * <p>
+ * If every file has an {@link EventFileSummary}, the Summaries are used to skip the files that cannot hold a match,
+ * based on the time range of the Query and on any exact Component ID and Event Type in it, and to start reading each
+ * file at the block that holds its first possible match.
+ * </p>
+ *
+ * <p>
+ * Journals are merged into Event Files concurrently, so a file of higher Event IDs may be available before one of lower
+ * IDs. A page therefore never includes an event at or beyond the lowest Event ID that has not yet been merged, and its
+ * continuation token never points past it, so that resuming from the token does not skip the events that are merged
+ * later.
+ * </p>
+ */
+public class QueryPageScanner {
+    private static final Logger logger = LoggerFactory.getLogger(QueryPageScanner.class);
+
+    private final List<File> eventFiles;
+    private final Collection<Path> allProvenanceLogFiles;
+    private final int maxAttributeChars;
+    private final boolean summaryIndexEnabled;
+
+    /**
+     * @param eventFiles the Provenance Event Files to search, sorted in ascending order by the first Event ID in each file
+     * @param allProvenanceLogFiles all of the Provenance Event Files in the repository
+     * @param maxAttributeChars the maximum number of characters of each attribute to include in the events returned
+     * @param summaryIndexEnabled whether or not the Summaries of the files may be used
+     */
+    public QueryPageScanner(final List<File> eventFiles, final Collection<Path> allProvenanceLogFiles, final int maxAttributeChars, final boolean summaryIndexEnabled) {
+        this.eventFiles = eventFiles;
+        this.allProvenanceLogFiles = allProvenanceLogFiles;
+        this.maxAttributeChars = maxAttributeChars;
+        this.summaryIndexEnabled = summaryIndexEnabled;
+    }
+
+    /**
+     * @param query the query
+     * @param firstEventId the ID of the first event to consider
+     * @param endEventId the ID of the first event not to consider, which is the lowest Event ID that may not yet have
+     *            been merged into an Event File
+     * @param pageSize the maximum number of events to return
+     * @return the page of matching events
+     * @throws IOException if unable to read the Event Files
+     */
+    public StandardQueryPage scan(final Query query, final long firstEventId, final long endEventId, final int pageSize) throws IOException {
+        final QueryFilter filter = new QueryFilter(query);
+        final boolean useSummaries = summaryIndexEnabled && SummaryIndexSearch.hasSummaries(eventFiles);
+        final Long startTime = query.getStartDate() == null ? null : query.getStartDate().getTime();
+        final Long endTime = query.getEndDate() == null ? null : query.getEndDate().getTime();
+
+        final List<ProvenanceEventRecord> matchingEvents = new ArrayList<>(Math.min(pageSize, 1000));
+        long nextEventId = firstEventId;
+        int filesRead = 0;
+
+        for (int i = 0; i < eventFiles.size(); i++) {
+            final File eventFile = eventFiles.get(i);
+            if (getFirstEventId(eventFile) >= endEventId) {
+                break;
+            }
+
+            // if the next file starts at or before the first event of interest, then so do all of the events in this one
+            final Long nextFileFirstEventId = i < eventFiles.size() - 1 ? getFirstEventId(eventFiles.get(i + 1)) : null;
+            if (nextFileFirstEventId != null && nextFileFirstEventId <= firstEventId) {
+                continue;
+            }
+
+            Integer startBlock = null;
+            if (useSummaries) {
+                final EventFileSummary summary;
+                try {
+                    summary = EventFileSummary.read(SummaryUtil.getSummaryFile(eventFile), startTime, endTime);
+                } catch (final FileNotFoundException fnfe) {
+                    logger.debug("Could not find Summary of {}; assuming that the file has expired and continuing without it", eventFile);
+                    continue;
+                }
+
+                // when a file is skipped, the next page can start after it
+                if (summary == null) {
+                    if (nextFileFirstEventId != null) {
+                        nextEventId = Math.max(nextEventId, nextFileFirstEventId);
+                    }
+                    continue;
+                }
+
+                final int firstCandidate = getFirstCandidate(summary, query, firstEventId, startTime, endTime);
+                if (firstCandidate < 0) {
+                    nextEventId = Math.max(nextEventId, summary.getMaxEventId() + 1);
+                    continue;
+                }
+                startBlock = summary.getBlockIndex(firstCandidate);
+            }
+
+            try (final RecordReader reader = RecordReaders.newRecordReader(eventFile, allProvenanceLogFiles, maxAttributeChars)) {
+                filesRead++;
+                if (reader.isBlockIndexAvailable()) {
+                    if (startBlock == null) {
+                        startBlock = reader.getTocReader().getBlockIndexForEventId(firstEventId);
+                    }
+                    if (startBlock != null) {
+                        reader.skipToBlock(startBlock);
+                    }
+                }
+
+                StandardProvenanceEventRecord record;
+                while ((record = reader.nextRecord()) != null) {
+                    final long eventId = record.getEventId();
+                    if (eventId < firstEventId) {
+                        continue;
+                    }
+                    if (eventId >= endEventId) {
+                        break;
+                    }
+
+                    nextEventId = Math.max(nextEventId, eventId + 1);
+                    if (filter.select(record)) {
+                        matchingEvents.add(record);
+                        if (matchingEvents.size() >= pageSize) {
+                            logger.debug("Filled page of {} events for {} after reading from {} Event Files", pageSize, query, filesRead);
+                            return new StandardQueryPage(matchingEvents, nextEventId, true);
+                        }
+                    }
+                }
+            } catch (final FileNotFoundException fnfe) {
+                logger.debug("Could not find Provenance Event File {}; assuming that it has expired and continuing without it", eventFile);
+            }
+        }
+
+        // a skipped file or Summary may have moved the token past events that are not yet merged
+        final long continuationEventId = Math.max(firstEventId, Math.min(nextEventId, endEventId));
+        logger.debug("Found {} events for {} after reading from {} Event Files", matchingEvents.size(), query, filesRead);
+        return new StandardQueryPage(matchingEvents, continuationEventId, false);
+    }
+
+    /**
+     * @return the index within the Summary of the first event that may match the query and whose ID is at least
+     *         <code>firstEventId</code>, or -1 if there is no such event
+     */
+    private int getFirstCandidate(final EventFileSummary summary, final Query query, final long firstEventId, final Long startTime, final Long endTime) {
+        final BitSet candidates = summary.getEventsInTimeRange(startTime, endTime);
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            final String value = searchTerm.getValue();
+            if (value.contains("*") || value.contains("?")) {
+                continue;
+            }
+
+            final SearchableField field = searchTerm.getSearchableField();
+            if (SearchableFields.ComponentID.equals(field)) {
+                candidates.and(summary.getEventsWithComponentId(value));
+            } else if (SearchableFields.EventType.equals(field)) {
+                candidates.and(summary.getEventsWithEventType(value));
+            }
+        }
+
+        for (int event = candidates.nextSetBit(0); event >= 0; event = candidates.nextSetBit(event + 1)) {
+            if (summary.getEventId(event) >= firstEventId) {
+                return event;
+            }
+        }
+        return -1;
+    }
+
+    private static long getFirstEventId(final File eventFile) {
+        final String name = eventFile.getName();
+        final int dotIndex = name.indexOf(".");
+        return Long.parseLong(name.substring(0, dotIndex));
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPageScanner[" + eventFiles.size() + " Event Files]";
+    }
+}
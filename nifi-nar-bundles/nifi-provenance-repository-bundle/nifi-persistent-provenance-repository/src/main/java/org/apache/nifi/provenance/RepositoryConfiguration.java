@@ -40,6 +40,9 @@ public class RepositoryConfiguration {
     private List<SearchableField> searchableAttributes = new ArrayList<>();
     private boolean compress = true;
     private boolean alwaysSync = false;
+    private boolean bufferedJournals = false;
+    private boolean compactRecordFormat = false;
+    private boolean summaryIndexEnabled = false;
     private int queryThreadPoolSize = 2;
     private int indexThreadPoolSize = 1;
     private boolean allowRollover = true;
@@ -294,6 +297,61 @@ public class RepositoryConfiguration {
         this.alwaysSync = alwaysSync;
     }
 
+    /**
+     * @return <code>true</code> if events are queued in a buffer for each journal and written in batches, rather
+     *         than written by each thread that registers them
+     */
+    public boolean isBufferedJournals() {
+        return bufferedJournals;
+    }
+
+    /**
+     * Configures whether or not events should be queued in a buffer for each journal and written in batches.
+     * When they are, a thread registering events does not wait for a journal that another thread is writing
+     * to, or for the journals to roll over, unless the repository falls behind.
+     *
+     * @param bufferedJournals whether or not to buffer events for the journals
+     */
+    public void setBufferedJournals(final boolean bufferedJournals) {
+        this.bufferedJournals = bufferedJournals;
+    }
+
+    /**
+     * @return <code>true</code> if events are written using the compact encoding of the {@link CompactRecordWriter}
+     */
+    public boolean isCompactRecordFormat() {
+        return compactRecordFormat;
+    }
+
+    /**
+     * Configures whether or not events should be written using the compact encoding of the {@link CompactRecordWriter},
+     * which takes less space and less time to write and read. Files written in either encoding can always be read.
+     *
+     * @param compactRecordFormat whether or not to use the compact encoding
+     */
+    public void setCompactRecordFormat(final boolean compactRecordFormat) {
+        this.compactRecordFormat = compactRecordFormat;
+    }
+
+    /**
+     * @return <code>true</code> if a summary of each Provenance Event file is written, which is used to answer
+     *         simple queries without the Lucene index
+     */
+    public boolean isSummaryIndexEnabled() {
+        return summaryIndexEnabled;
+    }
+
+    /**
+     * Configures whether or not a summary of each Provenance Event file should be written when the file is
+     * created. Queries on the Event Time, Component ID, Event Type, and FlowFile UUID are then answered from
+     * the summaries, as long as every file that the query covers has one.
+     *
+     * @param summaryIndexEnabled whether or not to write and use the summaries
+     */
+    public void setSummaryIndexEnabled(final boolean summaryIndexEnabled) {
+        this.summaryIndexEnabled = summaryIndexEnabled;
+    }
+
     /**
      * @return the maximum number of characters to include in any attribute. If an attribute in a Provenance
      *         Event has more than this number of characters, it will be truncated when the event is retrieved.
@@ -21,14 +21,15 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.toc.TocReader;
@@ -36,6 +37,7 @@ import org.apache.nifi.stream.io.BufferedInputStream;
 import org.apache.nifi.stream.io.ByteCountingInputStream;
 import org.apache.nifi.stream.io.LimitingInputStream;
 import org.apache.nifi.stream.io.StreamUtils;
+import org.apache.nifi.stream.io.util.VarLongs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +56,11 @@ public class StandardRecordReader implements RecordReader {
     private DataInputStream dis;
     private ByteCountingInputStream byteCountingIn;
 
+    // state of the compact encoding of serialization version 9. See CompactRecordWriter.
+    private final List<String> dictionary = new ArrayList<>();
+    private long previousEventId = 0L;
+    private long previousEventTime = 0L;
+
     public StandardRecordReader(final InputStream in, final String filename, final int maxAttributeChars) throws IOException {
         this(in, filename, null, maxAttributeChars);
     }
@@ -78,7 +85,7 @@ public class StandardRecordReader implements RecordReader {
 
         final InputStream readableStream;
         if (filename.endsWith(".gz")) {
-            readableStream = new BufferedInputStream(new GZIPInputStream(limitedStream));
+            readableStream = new BufferedInputStream(BlockCodec.openBlock(limitedStream));
             compressed = true;
         } else {
             readableStream = new BufferedInputStream(limitedStream);
@@ -92,8 +99,8 @@ public class StandardRecordReader implements RecordReader {
         final int serializationVersion = dis.readInt();
         headerLength = repoClassName.getBytes(StandardCharsets.UTF_8).length + 2 + 4; // 2 bytes for string length, 4 for integer.
 
-        if (serializationVersion < 1 || serializationVersion > 8) {
-            throw new IllegalArgumentException("Unable to deserialize record because the version is " + serializationVersion + " and supported versions are 1-8");
+        if (serializationVersion < 1 || serializationVersion > 9) {
+            throw new IllegalArgumentException("Unable to deserialize record because the version is " + serializationVersion + " and supported versions are 1-9");
         }
 
         this.serializationVersion = serializationVersion;
@@ -150,7 +157,7 @@ public class StandardRecordReader implements RecordReader {
 
         final InputStream readableStream;
         if (compressed) {
-            readableStream = new BufferedInputStream(new GZIPInputStream(limitedStream));
+            readableStream = new BufferedInputStream(BlockCodec.openBlock(limitedStream));
         } else {
             readableStream = new BufferedInputStream(limitedStream);
         }
@@ -270,6 +277,9 @@ public class StandardRecordReader implements RecordReader {
         if (serializationVersion < 6) {
             return readPreVersion6Record();
         }
+        if (serializationVersion >= CompactRecordWriter.SERIALIZATION_VERSION) {
+            return readCompactRecord();
+        }
 
         final long startOffset = byteCountingIn.getBytesConsumed();
 
@@ -367,6 +377,135 @@ public class StandardRecordReader implements RecordReader {
         return record;
     }
 
+    private StandardProvenanceEventRecord readCompactRecord() throws IOException {
+        final long startOffset = byteCountingIn.getBytesConsumed();
+
+        if (!isData()) {
+            return null;
+        }
+
+        final int flags = dis.readUnsignedByte();
+        if ((flags & CompactRecordWriter.RECORD_FLAG_RESET) != 0) {
+            dictionary.clear();
+            previousEventId = 0L;
+            previousEventTime = 0L;
+        }
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+
+        final long eventId = previousEventId + VarLongs.readSignedVarLong(dis);
+        previousEventId = eventId;
+
+        final ProvenanceEventType eventType = ProvenanceEventType.valueOf(readDictionaryString(dis));
+        builder.setEventType(eventType);
+
+        final long eventTime = previousEventTime + VarLongs.readSignedVarLong(dis);
+        previousEventTime = eventTime;
+        builder.setEventTime(eventTime);
+        builder.setFlowFileEntryDate(eventTime - VarLongs.readSignedVarLong(dis));
+        builder.setEventDuration(VarLongs.readSignedVarLong(dis));
+
+        builder.setLineageIdentifiers(readDictionaryStrings(dis));
+        builder.setLineageStartDate(eventTime - VarLongs.readSignedVarLong(dis));
+
+        builder.setComponentId(readDictionaryString(dis));
+        builder.setComponentType(readDictionaryString(dis));
+        builder.setFlowFileUUID(readDictionaryString(dis));
+        builder.setDetails(readDictionaryString(dis));
+
+        final Map<String, String> previousAttrs = readCompactAttributes(dis);
+        final Map<String, String> attrUpdates = readCompactAttributes(dis);
+        builder.setAttributes(previousAttrs, attrUpdates);
+
+        if (dis.readBoolean()) {
+            builder.setCurrentContentClaim(readDictionaryString(dis), readDictionaryString(dis), readDictionaryString(dis), VarLongs.readVarLong(dis), VarLongs.readVarLong(dis));
+        } else {
+            builder.setCurrentContentClaim(null, null, null, null, 0L);
+        }
+
+        if (dis.readBoolean()) {
+            builder.setPreviousContentClaim(readDictionaryString(dis), readDictionaryString(dis), readDictionaryString(dis), VarLongs.readVarLong(dis), VarLongs.readVarLong(dis));
+        }
+
+        builder.setSourceQueueIdentifier(readDictionaryString(dis));
+
+        // Read Event-Type specific fields.
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.JOIN || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            for (final String parentUuid : readDictionaryStrings(dis)) {
+                builder.addParentUuid(parentUuid);
+            }
+            for (final String childUuid : readDictionaryStrings(dis)) {
+                builder.addChildUuid(childUuid);
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE) {
+            builder.setTransitUri(readDictionaryString(dis));
+            builder.setSourceSystemFlowFileIdentifier(readDictionaryString(dis));
+        } else if (eventType == ProvenanceEventType.FETCH) {
+            builder.setTransitUri(readDictionaryString(dis));
+        } else if (eventType == ProvenanceEventType.SEND) {
+            builder.setTransitUri(readDictionaryString(dis));
+        } else if (eventType == ProvenanceEventType.ADDINFO) {
+            builder.setAlternateIdentifierUri(readDictionaryString(dis));
+        } else if (eventType == ProvenanceEventType.ROUTE) {
+            builder.setRelationship(readDictionaryString(dis));
+        }
+
+        builder.setStorageLocation(filename, startOffset);
+
+        final StandardProvenanceEventRecord record = builder.build();
+        record.setEventId(eventId);
+        return record;
+    }
+
+    private Map<String, String> readCompactAttributes(final DataInputStream dis) throws IOException {
+        final int numAttributes = (int) VarLongs.readVarLong(dis);
+        final Map<String, String> attrs = new HashMap<>();
+        for (int i = 0; i < numAttributes; i++) {
+            final String key = readDictionaryString(dis);
+            final String value = readDictionaryString(dis);
+            if (value != null && value.length() > maxAttributeChars) {
+                attrs.put(key, value.substring(0, maxAttributeChars));
+            } else {
+                attrs.put(key, value);
+            }
+        }
+
+        return attrs;
+    }
+
+    private Set<String> readDictionaryStrings(final DataInputStream dis) throws IOException {
+        final int numStrings = (int) VarLongs.readVarLong(dis);
+        final Set<String> values = new HashSet<>();
+        for (int i = 0; i < numStrings; i++) {
+            values.add(readDictionaryString(dis));
+        }
+        return values;
+    }
+
+    private String readDictionaryString(final DataInputStream dis) throws IOException {
+        final long reference = VarLongs.readVarLong(dis);
+        if (reference == CompactRecordWriter.STRING_NULL) {
+            return null;
+        }
+
+        if (reference >= CompactRecordWriter.FIRST_DICTIONARY_INDEX) {
+            final long index = reference - CompactRecordWriter.FIRST_DICTIONARY_INDEX;
+            if (index >= dictionary.size()) {
+                throw new IOException("Provenance Log " + filename + " references String " + index + " but only " + dictionary.size() + " Strings have been defined");
+            }
+            return dictionary.get((int) index);
+        }
+
+        final int numBytes = (int) VarLongs.readVarLong(dis);
+        final byte[] bytes = new byte[numBytes];
+        dis.readFully(bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        if (reference == CompactRecordWriter.STRING_NEW) {
+            dictionary.add(value);
+        }
+        return value;
+    }
+
     private Map<String, String> readAttributes(final DataInputStream dis, final boolean valueNullable) throws IOException {
         final int numAttributes = dis.readInt();
         final Map<String, String> attrs = new HashMap<>();
@@ -487,6 +626,11 @@ public class StandardRecordReader implements RecordReader {
 
     @Override
     public void skip(final long bytesToSkip) throws IOException {
+        if (serializationVersion >= CompactRecordWriter.SERIALIZATION_VERSION) {
+            skipRecordsTo(byteCountingIn.getBytesConsumed() + bytesToSkip);
+            return;
+        }
+
         StreamUtils.skip(dis, bytesToSkip);
     }
 
@@ -504,6 +648,26 @@ public class StandardRecordReader implements RecordReader {
         }
 
         final long toSkip = position - currentPosition;
+        if (serializationVersion >= CompactRecordWriter.SERIALIZATION_VERSION) {
+            skipRecordsTo(byteCountingIn.getBytesConsumed() + toSkip);
+            return;
+        }
+
         StreamUtils.skip(dis, toSkip);
     }
+
+    /**
+     * Records of the compact encoding refer to Strings and values of the records before them in the same block, so
+     * they cannot be skipped over without being read.
+     *
+     * @param bytesConsumed the number of bytes that will have been consumed once the reader is positioned
+     * @throws IOException if unable to read the records in between
+     */
+    private void skipRecordsTo(final long bytesConsumed) throws IOException {
+        while (byteCountingIn.getBytesConsumed() < bytesConsumed) {
+            if (readCompactRecord() == null) {
+                throw new EOFException("Cannot skip to byte offset " + bytesConsumed + " in Provenance Log " + filename + " because the end of the Log was reached");
+            }
+        }
+    }
 }
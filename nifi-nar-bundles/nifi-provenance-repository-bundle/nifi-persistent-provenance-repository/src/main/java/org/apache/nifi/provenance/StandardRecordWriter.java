@@ -31,7 +31,6 @@ import org.apache.nifi.provenance.toc.TocWriter;
 import org.apache.nifi.stream.io.BufferedOutputStream;
 import org.apache.nifi.stream.io.ByteCountingOutputStream;
 import org.apache.nifi.stream.io.DataOutputStream;
-import org.apache.nifi.stream.io.GZIPOutputStream;
 import org.apache.nifi.stream.io.NonCloseableOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,7 +83,7 @@ public class StandardRecordWriter implements RecordWriter {
             resetWriteStream(firstEventId);
 
             out.writeUTF(PersistentProvenanceRepository.class.getName());
-            out.writeInt(PersistentProvenanceRepository.SERIALIZATION_VERSION);
+            out.writeInt(getSerializationVersion());
             out.flush();
         } catch (final IOException ioe) {
             markDirty();
@@ -93,6 +92,20 @@ public class StandardRecordWriter implements RecordWriter {
     }
 
 
+    /**
+     * @return the serialization version that is written to the header and that determines how the reader decodes each record
+     */
+    protected int getSerializationVersion() {
+        return PersistentProvenanceRepository.SERIALIZATION_VERSION;
+    }
+
+    /**
+     * @return the codec that compresses each block, if the file is compressed
+     */
+    BlockCodec getBlockCodec() {
+        return BlockCodec.GZIP;
+    }
+
     /**
      * Resets the streams to prepare for a new block
      * @param eventId the first id that will be written to the new block
@@ -108,8 +121,8 @@ public class StandardRecordWriter implements RecordWriter {
 
             final OutputStream writableStream;
             if ( compressed ) {
-                // because of the way that GZIPOutputStream works, we need to call close() on it in order for it
-                // to write its trailing bytes. But we don't want to close the underlying OutputStream, so we wrap
+                // because of the way that the compressing streams work, we need to call close() on them in order for
+                // them to write their trailing bytes. But we don't want to close the underlying OutputStream, so we wrap
                 // the underlying OutputStream in a NonCloseableOutputStream
                 // We don't have to check if the writer is dirty because we will have already checked before calling this method.
                 if ( out != null ) {
@@ -120,7 +133,7 @@ public class StandardRecordWriter implements RecordWriter {
                     tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), eventId);
                 }
 
-                writableStream = new BufferedOutputStream(new GZIPOutputStream(new NonCloseableOutputStream(rawOutStream), 1), 65536);
+                writableStream = new BufferedOutputStream(getBlockCodec().newCompressingStream(new NonCloseableOutputStream(rawOutStream)), 65536);
             } else {
                 if ( tocWriter != null ) {
                     tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), eventId);
@@ -145,113 +158,129 @@ public class StandardRecordWriter implements RecordWriter {
         }
 
         try {
-            final ProvenanceEventType recordType = record.getEventType();
             final long startBytes = byteCountingOut.getBytesWritten();
 
             // add a new block to the TOC if needed.
+            boolean newBlock = false;
             if ( tocWriter != null && (startBytes - lastBlockOffset >= uncompressedBlockSize) ) {
                 lastBlockOffset = startBytes;
+                newBlock = true;
 
                 if ( compressed ) {
-                    // because of the way that GZIPOutputStream works, we need to call close() on it in order for it
-                    // to write its trailing bytes. But we don't want to close the underlying OutputStream, so we wrap
-                    // the underlying OutputStream in a NonCloseableOutputStream
+                    // because of the way that the compressing streams work, we need to call close() on them in order for
+                    // them to write their trailing bytes. But we don't want to close the underlying OutputStream, so we
+                    // wrap the underlying OutputStream in a NonCloseableOutputStream
                     resetWriteStream(recordIdentifier);
                 }
             }
 
-            out.writeLong(recordIdentifier);
-            out.writeUTF(record.getEventType().name());
-            out.writeLong(record.getEventTime());
-            out.writeLong(record.getFlowFileEntryDate());
-            out.writeLong(record.getEventDuration());
-
-            writeUUIDs(out, record.getLineageIdentifiers());
-            out.writeLong(record.getLineageStartDate());
-
-            writeNullableString(out, record.getComponentId());
-            writeNullableString(out, record.getComponentType());
-            writeUUID(out, record.getFlowFileUuid());
-            writeNullableString(out, record.getDetails());
-
-            // Write FlowFile attributes
-            final Map<String, String> attrs = record.getPreviousAttributes();
-            out.writeInt(attrs.size());
-            for (final Map.Entry<String, String> entry : attrs.entrySet()) {
-                writeLongString(out, entry.getKey());
-                writeLongString(out, entry.getValue());
-            }
+            serializeRecord(record, recordIdentifier, out, newBlock);
 
-            final Map<String, String> attrUpdates = record.getUpdatedAttributes();
-            out.writeInt(attrUpdates.size());
-            for (final Map.Entry<String, String> entry : attrUpdates.entrySet()) {
-                writeLongString(out, entry.getKey());
-                writeLongNullableString(out, entry.getValue());
-            }
+            out.flush();
+            recordCount++;
+            return byteCountingOut.getBytesWritten() - startBytes;
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
 
-            // If Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
-            if (record.getContentClaimSection() != null && record.getContentClaimContainer() != null && record.getContentClaimIdentifier() != null) {
-                out.writeBoolean(true);
-                out.writeUTF(record.getContentClaimContainer());
-                out.writeUTF(record.getContentClaimSection());
-                out.writeUTF(record.getContentClaimIdentifier());
-                if (record.getContentClaimOffset() == null) {
-                    out.writeLong(0L);
-                } else {
-                    out.writeLong(record.getContentClaimOffset());
-                }
-                out.writeLong(record.getFileSize());
+    /**
+     * Writes the given record to the given stream
+     *
+     * @param record the record to write
+     * @param recordIdentifier the ID of the event
+     * @param out the stream to write to
+     * @param newBlock <code>true</code> if the record is the first one in a new block of the Table of Contents
+     * @throws IOException if unable to write to the stream
+     */
+    protected void serializeRecord(final ProvenanceEventRecord record, final long recordIdentifier, final DataOutputStream out, final boolean newBlock) throws IOException {
+        final ProvenanceEventType recordType = record.getEventType();
+
+        out.writeLong(recordIdentifier);
+        out.writeUTF(record.getEventType().name());
+        out.writeLong(record.getEventTime());
+        out.writeLong(record.getFlowFileEntryDate());
+        out.writeLong(record.getEventDuration());
+
+        writeUUIDs(out, record.getLineageIdentifiers());
+        out.writeLong(record.getLineageStartDate());
+
+        writeNullableString(out, record.getComponentId());
+        writeNullableString(out, record.getComponentType());
+        writeUUID(out, record.getFlowFileUuid());
+        writeNullableString(out, record.getDetails());
+
+        // Write FlowFile attributes
+        final Map<String, String> attrs = record.getPreviousAttributes();
+        out.writeInt(attrs.size());
+        for (final Map.Entry<String, String> entry : attrs.entrySet()) {
+            writeLongString(out, entry.getKey());
+            writeLongString(out, entry.getValue());
+        }
+
+        final Map<String, String> attrUpdates = record.getUpdatedAttributes();
+        out.writeInt(attrUpdates.size());
+        for (final Map.Entry<String, String> entry : attrUpdates.entrySet()) {
+            writeLongString(out, entry.getKey());
+            writeLongNullableString(out, entry.getValue());
+        }
+
+        // If Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
+        if (record.getContentClaimSection() != null && record.getContentClaimContainer() != null && record.getContentClaimIdentifier() != null) {
+            out.writeBoolean(true);
+            out.writeUTF(record.getContentClaimContainer());
+            out.writeUTF(record.getContentClaimSection());
+            out.writeUTF(record.getContentClaimIdentifier());
+            if (record.getContentClaimOffset() == null) {
+                out.writeLong(0L);
             } else {
-                out.writeBoolean(false);
+                out.writeLong(record.getContentClaimOffset());
             }
+            out.writeLong(record.getFileSize());
+        } else {
+            out.writeBoolean(false);
+        }
 
-            // If Previous Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
-            if (record.getPreviousContentClaimSection() != null && record.getPreviousContentClaimContainer() != null && record.getPreviousContentClaimIdentifier() != null) {
-                out.writeBoolean(true);
-                out.writeUTF(record.getPreviousContentClaimContainer());
-                out.writeUTF(record.getPreviousContentClaimSection());
-                out.writeUTF(record.getPreviousContentClaimIdentifier());
-                if (record.getPreviousContentClaimOffset() == null) {
-                    out.writeLong(0L);
-                } else {
-                    out.writeLong(record.getPreviousContentClaimOffset());
-                }
-
-                if (record.getPreviousFileSize() == null) {
-                    out.writeLong(0L);
-                } else {
-                    out.writeLong(record.getPreviousFileSize());
-                }
+        // If Previous Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
+        if (record.getPreviousContentClaimSection() != null && record.getPreviousContentClaimContainer() != null && record.getPreviousContentClaimIdentifier() != null) {
+            out.writeBoolean(true);
+            out.writeUTF(record.getPreviousContentClaimContainer());
+            out.writeUTF(record.getPreviousContentClaimSection());
+            out.writeUTF(record.getPreviousContentClaimIdentifier());
+            if (record.getPreviousContentClaimOffset() == null) {
+                out.writeLong(0L);
             } else {
-                out.writeBoolean(false);
+                out.writeLong(record.getPreviousContentClaimOffset());
             }
 
-            // write out the identifier of the destination queue.
-            writeNullableString(out, record.getSourceQueueIdentifier());
-
-            // Write type-specific info
-            if (recordType == ProvenanceEventType.FORK || recordType == ProvenanceEventType.JOIN || recordType == ProvenanceEventType.CLONE || recordType == ProvenanceEventType.REPLAY) {
-                writeUUIDs(out, record.getParentUuids());
-                writeUUIDs(out, record.getChildUuids());
-            } else if (recordType == ProvenanceEventType.RECEIVE) {
-                writeNullableString(out, record.getTransitUri());
-                writeNullableString(out, record.getSourceSystemFlowFileIdentifier());
-            } else if (recordType == ProvenanceEventType.FETCH) {
-                writeNullableString(out, record.getTransitUri());
-            } else if (recordType == ProvenanceEventType.SEND) {
-                writeNullableString(out, record.getTransitUri());
-            } else if (recordType == ProvenanceEventType.ADDINFO) {
-                writeNullableString(out, record.getAlternateIdentifierUri());
-            } else if (recordType == ProvenanceEventType.ROUTE) {
-                writeNullableString(out, record.getRelationship());
+            if (record.getPreviousFileSize() == null) {
+                out.writeLong(0L);
+            } else {
+                out.writeLong(record.getPreviousFileSize());
             }
+        } else {
+            out.writeBoolean(false);
+        }
 
-            out.flush();
-            recordCount++;
-            return byteCountingOut.getBytesWritten() - startBytes;
-        } catch (final IOException ioe) {
-            markDirty();
-            throw ioe;
+        // write out the identifier of the destination queue.
+        writeNullableString(out, record.getSourceQueueIdentifier());
+
+        // Write type-specific info
+        if (recordType == ProvenanceEventType.FORK || recordType == ProvenanceEventType.JOIN || recordType == ProvenanceEventType.CLONE || recordType == ProvenanceEventType.REPLAY) {
+            writeUUIDs(out, record.getParentUuids());
+            writeUUIDs(out, record.getChildUuids());
+        } else if (recordType == ProvenanceEventType.RECEIVE) {
+            writeNullableString(out, record.getTransitUri());
+            writeNullableString(out, record.getSourceSystemFlowFileIdentifier());
+        } else if (recordType == ProvenanceEventType.FETCH) {
+            writeNullableString(out, record.getTransitUri());
+        } else if (recordType == ProvenanceEventType.SEND) {
+            writeNullableString(out, record.getTransitUri());
+        } else if (recordType == ProvenanceEventType.ADDINFO) {
+            writeNullableString(out, record.getAlternateIdentifierUri());
+        } else if (recordType == ProvenanceEventType.ROUTE) {
+            writeNullableString(out, record.getRelationship());
         }
     }
 
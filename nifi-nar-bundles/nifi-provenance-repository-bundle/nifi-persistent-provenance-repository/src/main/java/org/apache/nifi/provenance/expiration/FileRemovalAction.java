@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.apache.nifi.provenance.lucene.DeleteIndexAction;
+import org.apache.nifi.provenance.summary.SummaryUtil;
 import org.apache.nifi.provenance.toc.TocUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +45,15 @@ public class FileRemovalAction implements ExpirationAction {
             logger.warn("Failed to remove old Provenance Table-of-Contents file {}; this file should be cleaned up manually", expiredFile);
         }
 
+        final File summaryFile = SummaryUtil.getSummaryFile(expiredFile);
+        if (summaryFile.exists()) {
+            if (remove(summaryFile)) {
+                logger.info("Removed expired Provenance Summary file {}", summaryFile);
+            } else {
+                logger.warn("Failed to remove old Provenance Summary file {}; this file should be cleaned up manually", summaryFile);
+            }
+        }
+
         return removed ? null : expiredFile;
     }
 
@@ -19,6 +19,7 @@ package org.apache.nifi.provenance.serialization;
 import java.io.File;
 import java.io.IOException;
 
+import org.apache.nifi.provenance.CompactRecordWriter;
 import org.apache.nifi.provenance.StandardRecordWriter;
 import org.apache.nifi.provenance.toc.StandardTocWriter;
 import org.apache.nifi.provenance.toc.TocUtil;
@@ -32,7 +33,30 @@ public class RecordWriters {
     }
 
     public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final int compressionBlockBytes) throws IOException {
+        return newRecordWriter(file, compressed, createToc, compressionBlockBytes, false);
+    }
+
+    public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final boolean compact) throws IOException {
+        return newRecordWriter(file, compressed, createToc, DEFAULT_COMPRESSION_BLOCK_SIZE, compact);
+    }
+
+    /**
+     * Creates a new Record Writer
+     *
+     * @param file the file to write to
+     * @param compressed whether or not to compress the blocks of the file
+     * @param createToc whether or not to create a Table of Contents for the file
+     * @param compressionBlockBytes the number of uncompressed bytes to write to a block before starting a new one
+     * @param compact whether or not to use the compact encoding of the {@link CompactRecordWriter} rather than that of the {@link StandardRecordWriter}
+     * @return a Record Writer for the given file
+     * @throws IOException if unable to create the file
+     */
+    public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final int compressionBlockBytes, final boolean compact)
+            throws IOException {
         final TocWriter tocWriter = createToc ? new StandardTocWriter(TocUtil.getTocFile(file), false, false) : null;
+        if (compact) {
+            return new CompactRecordWriter(file, tocWriter, compressed, compressionBlockBytes);
+        }
         return new StandardRecordWriter(file, tocWriter, compressed, compressionBlockBytes);
     }
 
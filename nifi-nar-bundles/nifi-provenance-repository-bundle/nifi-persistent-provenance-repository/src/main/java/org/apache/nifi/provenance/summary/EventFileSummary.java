@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.summary;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.nifi.stream.io.util.VarLongs;
+
+/**
+ * <p>
+ * A columnar summary of the events in a Provenance Event File, which is used to answer queries on the Event Time,
+ * Component ID, Event Type, and FlowFile UUID without the Lucene index, and to skip over the Event Files that cannot
+ * contain any matching events. Values are compared without regard to case.
+ * </p>
+ *
+ * Format of .summary file:
+ * byte 0: version
+ * byte 1-4: int: number of events (N)
+ * byte 5-12: long: ID of the first event
+ * byte 13-20: long: ID of the last event
+ * byte 21-28: long: minimum event time
+ * byte 29-36: long: maximum event time
+ * Event ID column: N var-longs, each the difference from the previous event ID
+ * Event Time column: N zig-zag var-longs, each the difference from the previous event time
+ * Block Index column: N var-longs, each the difference from the previous block index
+ * Event Type column: var-long count, followed by that many (UTF name, bitmap of events) pairs
+ * Component ID column: var-long count, followed by that many (UTF ID, bitmap of events) pairs
+ * FlowFile UUID column: var-long count, followed by that many (UTF UUID, var-long event) pairs, sorted by UUID. An event
+ * appears once for each UUID that it is found by, which includes the UUIDs of the children of a FORK, for example.
+ *
+ * Each bitmap is a var-long count followed by that many longs, as returned by {@link BitSet#toLongArray()}.
+ */
+public class EventFileSummary {
+
+    private final int eventCount;
+    private final long minEventId;
+    private final long maxEventId;
+    private final long minEventTime;
+    private final long maxEventTime;
+
+    private final long[] eventIds;
+    private final long[] eventTimes;
+    private final int[] blockIndices;
+    private final Map<String, BitSet> eventTypes;
+    private final Map<String, BitSet> componentIds;
+    private final String[] sortedFlowFileUuids;
+    private final int[] flowFileUuidRows;
+
+    private EventFileSummary(final int eventCount, final long minEventId, final long maxEventId, final long minEventTime, final long maxEventTime,
+            final long[] eventIds, final long[] eventTimes, final int[] blockIndices, final Map<String, BitSet> eventTypes,
+            final Map<String, BitSet> componentIds, final String[] sortedFlowFileUuids, final int[] flowFileUuidRows) {
+        this.eventCount = eventCount;
+        this.minEventId = minEventId;
+        this.maxEventId = maxEventId;
+        this.minEventTime = minEventTime;
+        this.maxEventTime = maxEventTime;
+        this.eventIds = eventIds;
+        this.eventTimes = eventTimes;
+        this.blockIndices = blockIndices;
+        this.eventTypes = eventTypes;
+        this.componentIds = componentIds;
+        this.sortedFlowFileUuids = sortedFlowFileUuids;
+        this.flowFileUuidRows = flowFileUuidRows;
+    }
+
+    /**
+     * Reads the Summary from the given file. If none of the events in the file can fall within the given time range,
+     * only the header of the file is read.
+     *
+     * @param summaryFile the file to read
+     * @param startTime the earliest Event Time of interest, or <code>null</code> if there is no lower bound
+     * @param endTime the latest Event Time of interest, or <code>null</code> if there is no upper bound
+     * @return the Summary, or <code>null</code> if no event in the file falls within the given time range
+     * @throws IOException if unable to read the file
+     */
+    public static EventFileSummary read(final File summaryFile, final Long startTime, final Long endTime) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(summaryFile)))) {
+            final int version = in.read();
+            if (version < 0) {
+                throw new EOFException();
+            }
+            if (version > EventFileSummaryWriter.VERSION) {
+                throw new IOException("Summary file " + summaryFile + " has version " + version + " but this version of NiFi supports only up to version "
+                    + EventFileSummaryWriter.VERSION);
+            }
+
+            final int eventCount = in.readInt();
+            final long minEventId = in.readLong();
+            final long maxEventId = in.readLong();
+            final long minEventTime = in.readLong();
+            final long maxEventTime = in.readLong();
+
+            if (eventCount == 0 || (startTime != null && maxEventTime < startTime) || (endTime != null && minEventTime > endTime)) {
+                return null;
+            }
+
+            final long[] eventIds = new long[eventCount];
+            long previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                previous += VarLongs.readVarLong(in);
+                eventIds[i] = previous;
+            }
+
+            final long[] eventTimes = new long[eventCount];
+            previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                previous += VarLongs.readSignedVarLong(in);
+                eventTimes[i] = previous;
+            }
+
+            final int[] blockIndices = new int[eventCount];
+            previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                previous += VarLongs.readVarLong(in);
+                blockIndices[i] = (int) previous;
+            }
+
+            final Map<String, BitSet> eventTypes = readBitmaps(in);
+            final Map<String, BitSet> componentIds = readBitmaps(in);
+
+            final int flowFileUuidCount = (int) VarLongs.readVarLong(in);
+            final String[] sortedFlowFileUuids = new String[flowFileUuidCount];
+            final int[] flowFileUuidRows = new int[flowFileUuidCount];
+            for (int i = 0; i < flowFileUuidCount; i++) {
+                sortedFlowFileUuids[i] = in.readUTF();
+                flowFileUuidRows[i] = (int) VarLongs.readVarLong(in);
+            }
+
+            return new EventFileSummary(eventCount, minEventId, maxEventId, minEventTime, maxEventTime, eventIds, eventTimes, blockIndices,
+                eventTypes, componentIds, sortedFlowFileUuids, flowFileUuidRows);
+        }
+    }
+
+    private static Map<String, BitSet> readBitmaps(final DataInputStream in) throws IOException {
+        final int count = (int) VarLongs.readVarLong(in);
+        final Map<String, BitSet> bitmaps = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final String value = in.readUTF();
+            final long[] words = new long[(int) VarLongs.readVarLong(in)];
+            for (int j = 0; j < words.length; j++) {
+                words[j] = in.readLong();
+            }
+            bitmaps.put(value, BitSet.valueOf(words));
+        }
+        return bitmaps;
+    }
+
+    /**
+     * @return the number of events in the Event File
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public long getMinEventId() {
+        return minEventId;
+    }
+
+    public long getMaxEventId() {
+        return maxEventId;
+    }
+
+    public long getMinEventTime() {
+        return minEventTime;
+    }
+
+    public long getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    /**
+     * @param event the index of an event within the Event File
+     * @return the ID of the event
+     */
+    public long getEventId(final int event) {
+        return eventIds[event];
+    }
+
+    /**
+     * @param event the index of an event within the Event File
+     * @return the index of the compression block that the event was written to
+     */
+    public int getBlockIndex(final int event) {
+        return blockIndices[event];
+    }
+
+    /**
+     * @param startTime the earliest Event Time to include, or <code>null</code> if there is no lower bound
+     * @param endTime the latest Event Time to include, or <code>null</code> if there is no upper bound
+     * @return the indices of the events whose Event Time falls within the given range
+     */
+    public BitSet getEventsInTimeRange(final Long startTime, final Long endTime) {
+        final BitSet events = new BitSet(eventCount);
+        if ((startTime == null || minEventTime >= startTime) && (endTime == null || maxEventTime <= endTime)) {
+            events.set(0, eventCount);
+            return events;
+        }
+
+        final long start = startTime == null ? Long.MIN_VALUE : startTime;
+        final long end = endTime == null ? Long.MAX_VALUE : endTime;
+        for (int i = 0; i < eventCount; i++) {
+            final long eventTime = eventTimes[i];
+            if (eventTime >= start && eventTime <= end) {
+                events.set(i);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @param eventType the name of an Event Type
+     * @return the indices of the events that have the given Event Type
+     */
+    public BitSet getEventsWithEventType(final String eventType) {
+        return copy(eventTypes.get(EventFileSummaryWriter.normalize(eventType)));
+    }
+
+    /**
+     * @param componentId the ID of a component
+     * @return the indices of the events that were generated by the given component
+     */
+    public BitSet getEventsWithComponentId(final String componentId) {
+        return copy(componentIds.get(EventFileSummaryWriter.normalize(componentId)));
+    }
+
+    /**
+     * @param flowFileUuid the UUID of a FlowFile
+     * @return the indices of the events for the given FlowFile
+     */
+    public BitSet getEventsWithFlowFileUuid(final String flowFileUuid) {
+        final String uuid = EventFileSummaryWriter.normalize(flowFileUuid);
+        final BitSet events = new BitSet();
+
+        int index = Arrays.binarySearch(sortedFlowFileUuids, uuid);
+        if (index < 0) {
+            return events;
+        }
+
+        // binarySearch may find any of the matching entries, so walk back to the first of them
+        while (index > 0 && sortedFlowFileUuids[index - 1].equals(uuid)) {
+            index--;
+        }
+        for (int i = index; i < sortedFlowFileUuids.length && sortedFlowFileUuids[i].equals(uuid); i++) {
+            events.set(flowFileUuidRows[i]);
+        }
+        return events;
+    }
+
+    private static BitSet copy(final BitSet bitmap) {
+        return bitmap == null ? new BitSet() : (BitSet) bitmap.clone();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.summary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.stream.io.util.VarLongs;
+
+/**
+ * Builds up the {@link EventFileSummary} of a Provenance Event File while the events are written to it, and writes
+ * the Summary to its own file once the Event File is complete. See {@link EventFileSummary} for the format of the file.
+ */
+public class EventFileSummaryWriter {
+
+    public static final byte VERSION = 1;
+
+    private final File file;
+
+    private long[] eventIds = new long[1024];
+    private long[] eventTimes = new long[1024];
+    private int[] blockIndices = new int[1024];
+    private int eventCount = 0;
+
+    // each FlowFile UUID that an event is indexed under, along with the event
+    private String[] flowFileUuids = new String[1024];
+    private int[] flowFileUuidRows = new int[1024];
+    private int flowFileUuidCount = 0;
+
+    private final Map<String, BitSet> eventTypes = new TreeMap<>();
+    private final Map<String, BitSet> componentIds = new TreeMap<>();
+
+    /**
+     * Creates an EventFileSummaryWriter that writes to the given file when {@link #write()} is called
+     *
+     * @param file the file to write to
+     */
+    public EventFileSummaryWriter(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Adds the given event to the Summary. Events must be added in the order in which they are written to the Event File.
+     *
+     * @param event the event
+     * @param eventId the ID of the event
+     * @param blockIndex the index of the compression block that the event was written to, or -1 if the Event File has no Table of Contents
+     */
+    public void addEvent(final ProvenanceEventRecord event, final long eventId, final int blockIndex) {
+        if (eventCount == eventIds.length) {
+            final int capacity = eventCount * 2;
+            eventIds = Arrays.copyOf(eventIds, capacity);
+            eventTimes = Arrays.copyOf(eventTimes, capacity);
+            blockIndices = Arrays.copyOf(blockIndices, capacity);
+        }
+
+        final int row = eventCount++;
+        eventIds[row] = eventId;
+        eventTimes[row] = event.getEventTime();
+        blockIndices[row] = Math.max(0, blockIndex);
+
+        addToBitmap(eventTypes, normalize(event.getEventType().name()), row);
+        addToBitmap(componentIds, normalize(event.getComponentId()), row);
+
+        // an event is found by the same FlowFile UUIDs as in the Lucene index; see IndexingAction
+        final String flowFileUuid = event.getFlowFileUuid();
+        addFlowFileUuid(flowFileUuid, row);
+
+        final ProvenanceEventType eventType = event.getEventType();
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            for (final String uuid : event.getChildUuids()) {
+                if (!uuid.equals(flowFileUuid)) {
+                    addFlowFileUuid(uuid, row);
+                }
+            }
+        } else if (eventType == ProvenanceEventType.JOIN) {
+            for (final String uuid : event.getParentUuids()) {
+                if (!uuid.equals(flowFileUuid)) {
+                    addFlowFileUuid(uuid, row);
+                }
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE && event.getSourceSystemFlowFileIdentifier() != null) {
+            final String sourceIdentifier = event.getSourceSystemFlowFileIdentifier();
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                addFlowFileUuid(sourceIdentifier.substring(lastColon + 1), row);
+            }
+        }
+    }
+
+    private void addFlowFileUuid(final String uuid, final int row) {
+        if (flowFileUuidCount == flowFileUuids.length) {
+            final int capacity = flowFileUuidCount * 2;
+            flowFileUuids = Arrays.copyOf(flowFileUuids, capacity);
+            flowFileUuidRows = Arrays.copyOf(flowFileUuidRows, capacity);
+        }
+
+        flowFileUuids[flowFileUuidCount] = normalize(uuid);
+        flowFileUuidRows[flowFileUuidCount] = row;
+        flowFileUuidCount++;
+    }
+
+    private static void addToBitmap(final Map<String, BitSet> bitmaps, final String value, final int row) {
+        BitSet bitmap = bitmaps.get(value);
+        if (bitmap == null) {
+            bitmap = new BitSet();
+            bitmaps.put(value, bitmap);
+        }
+        bitmap.set(row);
+    }
+
+    /**
+     * Values are compared without regard to case, as they are in the Lucene index
+     */
+    static String normalize(final String value) {
+        return value == null ? "" : value.toLowerCase();
+    }
+
+    /**
+     * @return the number of events that have been added
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Writes the Summary to its file, replacing any file that exists
+     *
+     * @throws IOException if unable to write to the file
+     */
+    public void write() throws IOException {
+        final File summaryDir = file.getParentFile();
+        if (!summaryDir.exists()) {
+            Files.createDirectories(summaryDir.toPath());
+        }
+
+        long minEventTime = Long.MAX_VALUE;
+        long maxEventTime = Long.MIN_VALUE;
+        for (int i = 0; i < eventCount; i++) {
+            minEventTime = Math.min(minEventTime, eventTimes[i]);
+            maxEventTime = Math.max(maxEventTime, eventTimes[i]);
+        }
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeByte(VERSION);
+            out.writeInt(eventCount);
+            out.writeLong(eventCount == 0 ? -1L : eventIds[0]);
+            out.writeLong(eventCount == 0 ? -1L : eventIds[eventCount - 1]);
+            out.writeLong(minEventTime);
+            out.writeLong(maxEventTime);
+
+            long previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                VarLongs.writeVarLong(eventIds[i] - previous, out);
+                previous = eventIds[i];
+            }
+
+            previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                VarLongs.writeSignedVarLong(eventTimes[i] - previous, out);
+                previous = eventTimes[i];
+            }
+
+            previous = 0L;
+            for (int i = 0; i < eventCount; i++) {
+                VarLongs.writeVarLong(blockIndices[i] - previous, out);
+                previous = blockIndices[i];
+            }
+
+            writeBitmaps(eventTypes, out);
+            writeBitmaps(componentIds, out);
+
+            // sort by FlowFile UUID so that a reader can find a UUID with a binary search
+            final List<Integer> entries = new ArrayList<>(flowFileUuidCount);
+            for (int i = 0; i < flowFileUuidCount; i++) {
+                entries.add(i);
+            }
+            Collections.sort(entries, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    return flowFileUuids[o1].compareTo(flowFileUuids[o2]);
+                }
+            });
+
+            VarLongs.writeVarLong(flowFileUuidCount, out);
+            for (final Integer entry : entries) {
+                out.writeUTF(flowFileUuids[entry]);
+                VarLongs.writeVarLong(flowFileUuidRows[entry], out);
+            }
+        }
+    }
+
+    private static void writeBitmaps(final Map<String, BitSet> bitmaps, final DataOutputStream out) throws IOException {
+        VarLongs.writeVarLong(bitmaps.size(), out);
+        for (final Map.Entry<String, BitSet> entry : bitmaps.entrySet()) {
+            out.writeUTF(entry.getKey());
+
+            final long[] words = entry.getValue().toLongArray();
+            VarLongs.writeVarLong(words.length, out);
+            for (final long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Summary Writer for " + file;
+    }
+}
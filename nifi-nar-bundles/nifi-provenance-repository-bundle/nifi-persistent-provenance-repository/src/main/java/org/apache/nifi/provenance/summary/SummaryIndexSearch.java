@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.summary;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.StandardQueryResult;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers a Query from the {@link EventFileSummary} of each Provenance Event File rather than from the Lucene index.
+ * Only queries on the Event Time, Component ID, Event Type, and FlowFile UUID can be answered this way; see
+ * {@link #isSupported(Query)}. The most recent matching events are returned.
+ */
+public class SummaryIndexSearch {
+    private final Logger logger = LoggerFactory.getLogger(SummaryIndexSearch.class);
+
+    private final List<File> eventFiles;
+    private final Collection<Path> allProvenanceLogFiles;
+    private final int maxAttributeChars;
+
+    /**
+     * @param eventFiles the Provenance Event Files to search, sorted in ascending order by the first Event ID in each file
+     * @param allProvenanceLogFiles all of the Provenance Event Files in the repository
+     * @param maxAttributeChars the maximum number of characters of each attribute to include in the events returned
+     */
+    public SummaryIndexSearch(final List<File> eventFiles, final Collection<Path> allProvenanceLogFiles, final int maxAttributeChars) {
+        this.eventFiles = eventFiles;
+        this.allProvenanceLogFiles = allProvenanceLogFiles;
+        this.maxAttributeChars = maxAttributeChars;
+    }
+
+    /**
+     * @param query the query
+     * @return <code>true</code> if the given query can be answered from the Summaries, which is the case if it searches
+     *         only for exact values of the Component ID, Event Type, and FlowFile UUID, and not on the File Size
+     */
+    public static boolean isSupported(final Query query) {
+        if (query.getMinFileSize() != null || query.getMaxFileSize() != null) {
+            return false;
+        }
+
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            final String value = searchTerm.getValue();
+            if (value == null || value.contains("*") || value.contains("?")) {
+                return false;
+            }
+
+            final SearchableField field = searchTerm.getSearchableField();
+            if (!isSameField(field, SearchableFields.ComponentID) && !isSameField(field, SearchableFields.EventType) && !isSameField(field, SearchableFields.FlowFileUUID)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSameField(final SearchableField field, final SearchableField other) {
+        return !field.isAttribute() && field.getSearchableFieldName().equals(other.getSearchableFieldName());
+    }
+
+    /**
+     * @param eventFiles the Provenance Event Files
+     * @return <code>true</code> if every one of the given files has a Summary
+     */
+    public static boolean hasSummaries(final Collection<File> eventFiles) {
+        for (final File eventFile : eventFiles) {
+            if (!SummaryUtil.getSummaryFile(eventFile).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public StandardQueryResult search(final Query query) throws IOException {
+        final long start = System.nanoTime();
+        final StandardQueryResult sqr = new StandardQueryResult(query, 1);
+
+        final Long startTime = query.getStartDate() == null ? null : query.getStartDate().getTime();
+        final Long endTime = query.getEndDate() == null ? null : query.getEndDate().getTime();
+
+        // find the matching events, starting with the most recent file, until we have as many as the query asks for;
+        // after that, we still count the hits in the remaining files
+        final List<File> filesToRead = new ArrayList<>();
+        final List<EventFileSummary> summariesToRead = new ArrayList<>();
+        final List<BitSet> eventsToRead = new ArrayList<>();
+        long totalHits = 0L;
+        int eventsSelected = 0;
+        int filesPruned = 0;
+
+        for (int i = eventFiles.size() - 1; i >= 0; i--) {
+            final File eventFile = eventFiles.get(i);
+            final File summaryFile = SummaryUtil.getSummaryFile(eventFile);
+
+            final EventFileSummary summary;
+            try {
+                summary = EventFileSummary.read(summaryFile, startTime, endTime);
+            } catch (final FileNotFoundException fnfe) {
+                logger.debug("Could not find Summary {}; assuming that {} has expired and continuing without it", summaryFile, eventFile);
+                continue;
+            }
+
+            if (summary == null) {
+                filesPruned++;
+                continue;
+            }
+
+            final BitSet matches = getMatchingEvents(summary, query, startTime, endTime);
+            final int hits = matches.cardinality();
+            if (hits == 0) {
+                continue;
+            }
+            totalHits += hits;
+
+            if (eventsSelected < query.getMaxResults()) {
+                // keep only the most recent events that we still need
+                final int needed = query.getMaxResults() - eventsSelected;
+                if (hits > needed) {
+                    int index = summary.getEventCount();
+                    for (int j = 0; j < needed; j++) {
+                        index = matches.previousSetBit(index - 1);
+                    }
+                    matches.clear(0, index);
+                }
+
+                eventsSelected += matches.cardinality();
+                filesToRead.add(eventFile);
+                summariesToRead.add(summary);
+                eventsToRead.add(matches);
+            }
+        }
+
+        final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(eventsSelected);
+        for (int i = 0; i < filesToRead.size(); i++) {
+            readEvents(filesToRead.get(i), summariesToRead.get(i), eventsToRead.get(i), matchingRecords);
+        }
+
+        sqr.update(matchingRecords, totalHits);
+        logger.debug("Searching Summaries of {} Event Files for {} took {} millis; {} files were skipped based on their time range and {} events were read",
+            eventFiles.size(), query, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), filesPruned, matchingRecords.size());
+        return sqr;
+    }
+
+    private BitSet getMatchingEvents(final EventFileSummary summary, final Query query, final Long startTime, final Long endTime) {
+        final BitSet matches = summary.getEventsInTimeRange(startTime, endTime);
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            if (matches.isEmpty()) {
+                break;
+            }
+
+            final SearchableField field = searchTerm.getSearchableField();
+            if (isSameField(field, SearchableFields.ComponentID)) {
+                matches.and(summary.getEventsWithComponentId(searchTerm.getValue()));
+            } else if (isSameField(field, SearchableFields.EventType)) {
+                matches.and(summary.getEventsWithEventType(searchTerm.getValue()));
+            } else if (isSameField(field, SearchableFields.FlowFileUUID)) {
+                matches.and(summary.getEventsWithFlowFileUuid(searchTerm.getValue()));
+            }
+        }
+        return matches;
+    }
+
+    private void readEvents(final File eventFile, final EventFileSummary summary, final BitSet events, final List<ProvenanceEventRecord> matchingRecords) {
+        try (final RecordReader reader = RecordReaders.newRecordReader(eventFile, allProvenanceLogFiles, maxAttributeChars)) {
+            StandardProvenanceEventRecord record = null;
+            for (int event = events.nextSetBit(0); event >= 0; event = events.nextSetBit(event + 1)) {
+                final long eventId = summary.getEventId(event);
+                if (record != null && record.getEventId() >= eventId) {
+                    if (record.getEventId() == eventId) {
+                        matchingRecords.add(record);
+                    }
+                    continue;
+                }
+
+                // skip ahead to the block that holds the event, unless we are already reading it
+                if (reader.isBlockIndexAvailable() && summary.getBlockIndex(event) > reader.getBlockIndex()) {
+                    reader.skipToBlock(summary.getBlockIndex(event));
+                }
+
+                do {
+                    record = reader.nextRecord();
+                } while (record != null && record.getEventId() < eventId);
+
+                if (record == null) {
+                    logger.warn("Failed to read Provenance Event {} from {}. The event file may be missing or corrupted", eventId, eventFile);
+                    return;
+                }
+                if (record.getEventId() == eventId) {
+                    matchingRecords.add(record);
+                }
+            }
+        } catch (final Exception e) {
+            logger.warn("Failed while trying to read Provenance Events. The event file '" + eventFile.getAbsolutePath() + "' may be missing or corrupted.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SummaryIndexSearch[" + eventFiles.size() + " Event Files]";
+    }
+}
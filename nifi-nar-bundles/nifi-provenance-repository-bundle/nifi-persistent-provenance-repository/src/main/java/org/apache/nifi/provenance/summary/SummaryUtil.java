@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.summary;
+
+import java.io.File;
+
+import org.apache.nifi.provenance.lucene.LuceneUtil;
+
+public class SummaryUtil {
+
+    /**
+     * Returns the file that should be used as the Summary for the given Provenance Event File.
+     * Note, if no Summary exists for the given Event File, a File will still be returned but the file
+     * will not actually exist.
+     *
+     * @param eventFile the event file for which to get the Summary
+     * @return the file that represents the Summary for the specified event file.
+     */
+    public static File getSummaryFile(final File eventFile) {
+        final File summaryDir = new File(eventFile.getParentFile(), "summary");
+        final String basename = LuceneUtil.substringBefore(eventFile.getName(), ".");
+        final File summaryFile = new File(summaryDir, basename + ".summary");
+        return summaryFile;
+    }
+
+}
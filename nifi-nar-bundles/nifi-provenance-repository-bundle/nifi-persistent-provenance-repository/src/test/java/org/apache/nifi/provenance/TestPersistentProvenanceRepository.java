@@ -28,7 +28,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -66,6 +68,7 @@ import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.summary.SummaryUtil;
 import org.apache.nifi.reporting.Severity;
 import org.apache.nifi.stream.io.DataOutputStream;
 import org.apache.nifi.util.file.FileUtils;
@@ -1215,6 +1218,187 @@ public class TestPersistentProvenanceRepository {
         assertEquals(10000, counter);
     }
 
+    @Test
+    public void testSummaryIndexOnRolloverAndSubsequentSearch() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        config.setSummaryIndexEnabled(true);
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter());
+
+        final long startTime = System.currentTimeMillis();
+        final Map<String, String> attributes = new HashMap<>();
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 20; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-0000000000" + (10 + i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setEventTime(startTime + i);
+            builder.setEventType(i % 2 == 0 ? ProvenanceEventType.RECEIVE : ProvenanceEventType.SEND);
+            builder.setComponentId(i < 15 ? "1234" : "5678");
+            repo.registerEvent(builder.build());
+        }
+
+        repo.waitForRollover();
+
+        for (final File storageDir : config.getStorageDirectories()) {
+            for (final File file : storageDir.listFiles()) {
+                if (file.isFile()) {
+                    assertTrue(SummaryUtil.getSummaryFile(file).exists());
+                }
+            }
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "receive"));
+        query.setStartDate(new Date(startTime + 5));
+        query.setMaxResults(100);
+
+        final QueryResult result = repo.queryEvents(query);
+        assertEquals(5, result.getTotalHitCount());
+        assertEquals(5, result.getMatchingEvents().size());
+        for (final ProvenanceEventRecord match : result.getMatchingEvents()) {
+            assertEquals("1234", match.getComponentId());
+            assertEquals(ProvenanceEventType.RECEIVE, match.getEventType());
+            assertTrue(match.getEventTime() >= startTime + 5);
+        }
+
+        final Query uuidQuery = new Query(UUID.randomUUID().toString());
+        uuidQuery.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.FlowFileUUID, "00000000-0000-0000-0000-000000000027"));
+
+        final QueryResult uuidResult = repo.queryEvents(uuidQuery);
+        assertEquals(1, uuidResult.getMatchingEvents().size());
+        assertEquals("5678", uuidResult.getMatchingEvents().get(0).getComponentId());
+    }
+
+    @Test(timeout = 60000)
+    public void testBufferedJournalsOnMultipleThreads() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(3, TimeUnit.SECONDS);
+        config.setJournalCount(4);
+        config.setBufferedJournals(true);
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        attributes.put("uuid", "12345678-0000-0000-0000-012345678912");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        final ProvenanceEventRecord record = builder.build();
+
+        // roll over a few times while events are being registered
+        final int eventCount = 10000;
+        final ExecutorService exec = Executors.newFixedThreadPool(10);
+        for (int i = 0; i < eventCount; i++) {
+            if (i % 2500 == 0) {
+                exec.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            repo.rolloverWithLock(false);
+                        } catch (final IOException ioe) {
+                            Assert.fail(ioe.toString());
+                        }
+                    }
+                });
+            }
+
+            exec.submit(new Runnable() {
+                @Override
+                public void run() {
+                    repo.registerEvent(record);
+                }
+            });
+        }
+
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+        repo.rolloverWithLock(false);
+
+        // wait until only the new, empty journals remain
+        while (repo.getJournalCount() > config.getJournalCount()) {
+            Thread.sleep(100L);
+        }
+
+        // every event must end up in exactly one of the merged files, with no gaps in the IDs
+        final File storageDir = config.getStorageDirectories().get(0);
+        final Set<Long> eventIds = new HashSet<>();
+        for (final File file : storageDir.listFiles()) {
+            if (file.isFile()) {
+                try (RecordReader reader = RecordReaders.newRecordReader(file, null, 2048)) {
+                    ProvenanceEventRecord r = null;
+                    while ((r = reader.nextRecord()) != null) {
+                        assertTrue(r.getEventId() < eventCount);
+                        assertTrue(eventIds.add(r.getEventId()));
+                    }
+                }
+            }
+        }
+        assertEquals(eventCount, eventIds.size());
+    }
+
+    @Test
+    public void testMergeJournalsAndIndexOnMultipleThreads() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(3, TimeUnit.SECONDS);
+        config.setIndexThreadPoolSize(4);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentType("dummy processor");
+
+        // enough events to pass through the merge pipeline in many batches
+        final int eventCount = 2500;
+        for (int i = 0; i < eventCount; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-" + String.format("%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setComponentId(i % 2 == 0 ? "even" : "odd");
+            repo.registerEvent(builder.build());
+        }
+
+        repo.waitForRollover();
+
+        final File storageDir = config.getStorageDirectories().get(0);
+        long counter = 0;
+        for (final File file : storageDir.listFiles()) {
+            if (file.isFile()) {
+                try (RecordReader reader = RecordReaders.newRecordReader(file, null, 2048)) {
+                    ProvenanceEventRecord r = null;
+                    while ((r = reader.nextRecord()) != null) {
+                        assertEquals(counter++, r.getEventId());
+                    }
+                }
+            }
+        }
+        assertEquals(eventCount, counter);
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "even"));
+        query.setMaxResults(eventCount);
+
+        final QueryResult result = repo.queryEvents(query);
+        assertEquals(eventCount / 2, result.getTotalHitCount());
+    }
+
     @Test
     public void testTruncateAttributes() throws IOException, InterruptedException {
         final RepositoryConfiguration config = createConfiguration();
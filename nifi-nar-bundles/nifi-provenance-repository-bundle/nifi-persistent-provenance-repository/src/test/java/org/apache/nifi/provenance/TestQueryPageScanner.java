@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import static org.apache.nifi.provenance.TestUtil.createFlowFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerms;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.summary.EventFileSummaryWriter;
+import org.apache.nifi.provenance.summary.SummaryUtil;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestQueryPageScanner {
+
+    private static final long BASE_TIME = 1000000000L;
+    private static final int EVENTS_PER_FILE = 100;
+
+    private File storageDir;
+    private List<File> eventFiles;
+
+    @Before
+    public void setup() throws IOException {
+        storageDir = new File("target/storage/" + UUID.randomUUID().toString());
+        eventFiles = new ArrayList<>();
+        eventFiles.add(writeEventFile(0L));
+        eventFiles.add(writeEventFile(EVENTS_PER_FILE));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteFile(storageDir, true);
+    }
+
+    private ProvenanceEventRecord createEvent(final long eventId) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", eventId + ".txt");
+        attributes.put("uuid", new UUID(0L, eventId).toString());
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(BASE_TIME + eventId * 1000L);
+        builder.setEventType(eventId % 2 == 0 ? ProvenanceEventType.RECEIVE : ProvenanceEventType.CREATE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(eventId, 3000L, attributes));
+        builder.setComponentId("Component-" + (eventId % 3));
+        builder.setComponentType("dummy processor");
+        return builder.build();
+    }
+
+    private File writeEventFile(final long firstEventId) throws IOException {
+        final File eventFile = new File(storageDir, firstEventId + ".prov.gz");
+        final EventFileSummaryWriter summaryWriter = new EventFileSummaryWriter(SummaryUtil.getSummaryFile(eventFile));
+
+        // use small blocks so that the events are spread out over many of them
+        try (final RecordWriter writer = RecordWriters.newRecordWriter(eventFile, true, true, 1024, false)) {
+            writer.writeHeader(firstEventId);
+            for (long eventId = firstEventId; eventId < firstEventId + EVENTS_PER_FILE; eventId++) {
+                final ProvenanceEventRecord event = createEvent(eventId);
+                writer.writeRecord(event, eventId);
+                summaryWriter.addEvent(event, eventId, writer.getTocWriter().getCurrentBlockIndex());
+            }
+        }
+
+        summaryWriter.write();
+        return eventFile;
+    }
+
+    private QueryPageScanner createScanner(final boolean summaryIndexEnabled) {
+        final List<Path> allLogFiles = new ArrayList<>();
+        for (final File eventFile : eventFiles) {
+            allLogFiles.add(eventFile.toPath());
+        }
+        return new QueryPageScanner(eventFiles, allLogFiles, 65536, summaryIndexEnabled);
+    }
+
+    private List<ProvenanceEventRecord> getAllPages(final QueryPageScanner scanner, final Query query, final int pageSize) throws IOException {
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        String continuationToken = null;
+        while (true) {
+            final StandardQueryPage page = scanner.scan(query, StandardQueryPage.getFirstEventId(continuationToken), Long.MAX_VALUE, pageSize);
+            assertTrue(page.getMatchingEvents().size() <= pageSize);
+            events.addAll(page.getMatchingEvents());
+            continuationToken = page.getContinuationToken();
+            if (!page.hasMoreResults()) {
+                return events;
+            }
+        }
+    }
+
+    @Test
+    public void testPageStopsWhenFull() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "RECEIVE"));
+
+        final StandardQueryPage page = createScanner(false).scan(query, 0L, Long.MAX_VALUE, 5);
+        assertTrue(page.hasMoreResults());
+        assertEquals("9", page.getContinuationToken());
+
+        final List<ProvenanceEventRecord> events = page.getMatchingEvents();
+        assertEquals(5, events.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(2L * i, events.get(i).getEventId());
+        }
+
+        // the next page starts after the last event of the previous one, even if that is in the middle of a file
+        final StandardQueryPage nextPage = createScanner(false).scan(query, 150L, Long.MAX_VALUE, 2);
+        assertEquals(150L, nextPage.getMatchingEvents().get(0).getEventId());
+        assertEquals(152L, nextPage.getMatchingEvents().get(1).getEventId());
+    }
+
+    @Test
+    public void testPagesWithAndWithoutSummaries() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "Component-1"));
+
+        for (final boolean summaryIndexEnabled : new boolean[] {false, true}) {
+            final List<ProvenanceEventRecord> events = getAllPages(createScanner(summaryIndexEnabled), query, 10);
+            assertEquals(67, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(3L * i + 1, events.get(i).getEventId());
+                assertEquals("Component-1", events.get(i).getComponentId());
+            }
+        }
+    }
+
+    @Test
+    public void testTimeRange() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "Component-1"));
+        query.setStartDate(new Date(BASE_TIME + 150000L));
+        query.setEndDate(new Date(BASE_TIME + 160000L));
+
+        for (final boolean summaryIndexEnabled : new boolean[] {false, true}) {
+            final List<ProvenanceEventRecord> events = getAllPages(createScanner(summaryIndexEnabled), query, 2);
+            assertEquals(4, events.size());
+            assertEquals(151L, events.get(0).getEventId());
+            assertEquals(154L, events.get(1).getEventId());
+            assertEquals(157L, events.get(2).getEventId());
+            assertEquals(160L, events.get(3).getEventId());
+        }
+    }
+
+    @Test
+    public void testLastPage() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "Component-9"));
+
+        // when there are no more matches, the token points past the last event so that later events can be found
+        final StandardQueryPage page = createScanner(true).scan(query, 0L, Long.MAX_VALUE, 10);
+        assertTrue(page.getMatchingEvents().isEmpty());
+        assertFalse(page.hasMoreResults());
+        assertEquals(2L * EVENTS_PER_FILE, page.getNextEventId());
+
+        final StandardQueryPage laterPage = createScanner(false).scan(query, 500L, Long.MAX_VALUE, 10);
+        assertTrue(laterPage.getMatchingEvents().isEmpty());
+        assertFalse(laterPage.hasMoreResults());
+        assertEquals(500L, laterPage.getNextEventId());
+    }
+
+    @Test
+    public void testEventsNotYetMergedAreNotSkipped() throws IOException {
+        // the journals for events 100 - 199 are still being merged, while those for 200 - 299 have been merged already
+        eventFiles.set(1, writeEventFile(2L * EVENTS_PER_FILE));
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "CREATE"));
+
+        for (final boolean summaryIndexEnabled : new boolean[] {false, true}) {
+            final StandardQueryPage page = createScanner(summaryIndexEnabled).scan(query, 0L, EVENTS_PER_FILE, 1000);
+            assertEquals(EVENTS_PER_FILE / 2, page.getMatchingEvents().size());
+            assertEquals(EVENTS_PER_FILE - 1, page.getMatchingEvents().get(page.getMatchingEvents().size() - 1).getEventId());
+            assertFalse(page.hasMoreResults());
+            assertEquals(EVENTS_PER_FILE, page.getNextEventId());
+        }
+
+        // once they are merged, the next page starts with them
+        eventFiles.add(1, writeEventFile(EVENTS_PER_FILE));
+        final StandardQueryPage nextPage = createScanner(true).scan(query, EVENTS_PER_FILE, Long.MAX_VALUE, 1);
+        assertEquals(EVENTS_PER_FILE + 1, nextPage.getMatchingEvents().get(0).getEventId());
+    }
+
+    @Test
+    public void testMissingSummary() throws IOException {
+        assertTrue(SummaryUtil.getSummaryFile(eventFiles.get(0)).delete());
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "CREATE"));
+
+        final List<ProvenanceEventRecord> events = getAllPages(createScanner(true), query, 30);
+        assertEquals(EVENTS_PER_FILE, events.size());
+        assertEquals(1L, events.get(0).getEventId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidContinuationToken() {
+        StandardQueryPage.getFirstEventId("not a token");
+    }
+}
@@ -20,21 +20,29 @@ import static org.apache.nifi.provenance.TestUtil.createFlowFile;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.provenance.toc.StandardTocReader;
 import org.apache.nifi.provenance.toc.StandardTocWriter;
 import org.apache.nifi.provenance.toc.TocReader;
 import org.apache.nifi.provenance.toc.TocUtil;
 import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.util.file.FileUtils;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class TestStandardRecordReaderWriter {
@@ -186,4 +194,228 @@ public class TestStandardRecordReaderWriter {
 
         FileUtils.deleteFile(journalFile.getParentFile(), true);
     }
+
+
+    private ProvenanceEventRecord createEvent(final int index) {
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("filename", "file-" + index + ".txt");
+        previousAttributes.put("uuid", UUID.randomUUID().toString());
+        previousAttributes.put("mime.type", "text/plain");
+
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("index", String.valueOf(index));
+        updatedAttributes.put("removed", null);
+
+        final ProvenanceEventType eventType = (index % 3 == 0) ? ProvenanceEventType.FORK : (index % 3 == 1) ? ProvenanceEventType.RECEIVE : ProvenanceEventType.ROUTE;
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis() - index);
+        builder.setEventType(eventType);
+        builder.setFlowFileEntryDate(System.currentTimeMillis() - 5000L);
+        builder.setLineageStartDate(System.currentTimeMillis() - 10000L);
+        builder.setEventDuration(index % 2 == 0 ? -1L : index);
+        builder.setLineageIdentifiers(Collections.singleton(previousAttributes.get("uuid")));
+        builder.setComponentId("component-" + (index % 5));
+        builder.setComponentType("dummy processor");
+        builder.setFlowFileUUID(previousAttributes.get("uuid"));
+        builder.setAttributes(previousAttributes, updatedAttributes);
+        builder.setCurrentContentClaim("default", String.valueOf(index % 10), "claim-" + (index / 100), Long.valueOf(index * 100L), 100L);
+        if (index % 2 == 0) {
+            builder.setPreviousContentClaim("default", "1", "claim-0", null, 50L);
+        }
+        builder.setSourceQueueIdentifier("queue-" + (index % 3));
+        if (eventType == ProvenanceEventType.FORK) {
+            builder.addParentUuid(previousAttributes.get("uuid"));
+            builder.addChildUuid(UUID.randomUUID().toString());
+            builder.addChildUuid(UUID.randomUUID().toString());
+        } else if (eventType == ProvenanceEventType.RECEIVE) {
+            builder.setTransitUri("nifi://unit-test/" + index);
+        } else {
+            builder.setRelationship("success");
+            builder.setDetails(index % 7 == 0 ? null : "details");
+        }
+
+        return builder.build();
+    }
+
+    private void assertEventsEqual(final ProvenanceEventRecord expected, final long eventId, final ProvenanceEventRecord actual) {
+        assertNotNull(actual);
+        assertEquals(eventId, actual.getEventId());
+        assertEquals(expected.getEventType(), actual.getEventType());
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+        assertEquals(expected.getFlowFileEntryDate(), actual.getFlowFileEntryDate());
+        assertEquals(expected.getLineageStartDate(), actual.getLineageStartDate());
+        assertEquals(expected.getEventDuration(), actual.getEventDuration());
+        assertEquals(expected.getLineageIdentifiers(), actual.getLineageIdentifiers());
+        assertEquals(expected.getComponentId(), actual.getComponentId());
+        assertEquals(expected.getComponentType(), actual.getComponentType());
+        assertEquals(expected.getFlowFileUuid(), actual.getFlowFileUuid());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.getPreviousAttributes(), actual.getPreviousAttributes());
+        assertEquals(expected.getUpdatedAttributes(), actual.getUpdatedAttributes());
+        assertEquals(expected.getContentClaimContainer(), actual.getContentClaimContainer());
+        assertEquals(expected.getContentClaimSection(), actual.getContentClaimSection());
+        assertEquals(expected.getContentClaimIdentifier(), actual.getContentClaimIdentifier());
+        assertEquals(expected.getContentClaimOffset(), actual.getContentClaimOffset());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getPreviousContentClaimIdentifier(), actual.getPreviousContentClaimIdentifier());
+        assertEquals(expected.getPreviousFileSize(), actual.getPreviousFileSize());
+        assertEquals(expected.getSourceQueueIdentifier(), actual.getSourceQueueIdentifier());
+        assertEquals(expected.getParentUuids().size(), actual.getParentUuids().size());
+        assertTrue(actual.getParentUuids().containsAll(expected.getParentUuids()));
+        assertEquals(expected.getChildUuids().size(), actual.getChildUuids().size());
+        assertTrue(actual.getChildUuids().containsAll(expected.getChildUuids()));
+        assertEquals(expected.getTransitUri(), actual.getTransitUri());
+        assertEquals(expected.getRelationship(), actual.getRelationship());
+    }
+
+    @Test
+    public void testCompactMultipleRecordsMultipleBlocksCompressed() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testCompactWrite.gz");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+        final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+        final StandardRecordWriter writer = new CompactRecordWriter(journalFile, tocWriter, true, 2048);
+
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        writer.writeHeader(1000L);
+        for (int i = 0; i < 200; i++) {
+            final ProvenanceEventRecord event = createEvent(i);
+            events.add(event);
+            writer.writeRecord(event, 1000L + i);
+        }
+        writer.close();
+
+        final TocReader tocReader = new StandardTocReader(tocFile);
+        assertTrue(tocReader.getBlockOffset(3) > 0L);
+
+        // the blocks are compressed with LZ4 rather than GZIP
+        final byte[] magic = new byte[8];
+        try (final FileInputStream fis = new FileInputStream(journalFile)) {
+            StreamUtils.fillBuffer(fis, magic);
+        }
+        assertEquals("LZ4Block", new String(magic, StandardCharsets.US_ASCII));
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final StandardRecordReader reader = new StandardRecordReader(fis, journalFile.getName(), tocReader, 2048)) {
+            for (int i = 0; i < 200; i++) {
+                assertEventsEqual(events.get(i), 1000L + i, reader.nextRecord());
+            }
+            assertNull(reader.nextRecord());
+        }
+
+        // each block must be readable on its own
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final StandardRecordReader reader = new StandardRecordReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+            reader.skipToBlock(3);
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            final int index = (int) (recovered.getEventId() - 1000L);
+            assertTrue(index > 0);
+            assertEventsEqual(events.get(index), 1000L + index, recovered);
+            assertEquals(1199L, reader.getMaxEventId());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testCompactSkipToWithoutToc() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testCompactSkip");
+        journalFile.getParentFile().mkdirs();
+        final StandardRecordWriter writer = new CompactRecordWriter(journalFile, null, false, 1024 * 1024);
+
+        // enough distinct Strings to fill the dictionary several times, and some that are too long to be kept in it
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        writer.writeHeader(0L);
+        for (int i = 0; i < CompactRecordWriter.MAX_DICTIONARY_SIZE; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put("uuid", UUID.randomUUID().toString());
+            attributes.put("long", new String(new char[CompactRecordWriter.MAX_DICTIONARY_STRING_LENGTH + 1]).replace('\0', 'x'));
+
+            final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+            builder.setEventTime(System.currentTimeMillis());
+            builder.setEventType(ProvenanceEventType.RECEIVE);
+            builder.setTransitUri("nifi://unit-test/" + i);
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setComponentId("1234");
+            builder.setComponentType("dummy processor");
+
+            final ProvenanceEventRecord event = builder.build();
+            events.add(event);
+            writer.writeRecord(event, i);
+        }
+        writer.close();
+
+        final List<Long> offsets = new ArrayList<>();
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final StandardRecordReader reader = new StandardRecordReader(fis, journalFile.getName(), 2048)) {
+            StandardProvenanceEventRecord recovered;
+            while ((recovered = reader.nextRecord()) != null) {
+                final int index = (int) recovered.getEventId();
+                assertEquals(events.get(index).getTransitUri(), recovered.getTransitUri());
+                assertEquals(events.get(index).getAttributes(), recovered.getAttributes());
+                offsets.add(recovered.getStorageByteOffset());
+            }
+        }
+        assertEquals(events.size(), offsets.size());
+
+        // skipping to a record requires reading the records before it, which must result in the same record
+        final int index = events.size() - 10;
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final StandardRecordReader reader = new StandardRecordReader(fis, journalFile.getName(), 2048)) {
+            reader.skipTo(offsets.get(index) - offsets.get(0));
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            assertEquals(index, recovered.getEventId());
+            assertEquals(events.get(index).getTransitUri(), recovered.getTransitUri());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    /**
+     * Writes and then reads the same events in both the standard and the compact encoding and reports the number of
+     * events per second and the size of the file for each.
+     */
+    @Test
+    @Ignore("For local performance testing only")
+    public void testWriteAndReadPerformance() throws IOException {
+        final int eventCount = 500000;
+        final List<ProvenanceEventRecord> events = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            events.add(createEvent(i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            for (final boolean compact : new boolean[] {false, true}) {
+                final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testPerformance.gz");
+                final File tocFile = TocUtil.getTocFile(journalFile);
+                final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+                final StandardRecordWriter writer = compact ? new CompactRecordWriter(journalFile, tocWriter, true, 1024 * 1024)
+                    : new StandardRecordWriter(journalFile, tocWriter, true, 1024 * 1024);
+
+                final long writeStart = System.nanoTime();
+                writer.writeHeader(0L);
+                for (int j = 0; j < eventCount; j++) {
+                    writer.writeRecord(events.get(j % events.size()), j);
+                }
+                writer.close();
+                final long writeNanos = System.nanoTime() - writeStart;
+
+                final long readStart = System.nanoTime();
+                int recordsRead = 0;
+                try (final FileInputStream fis = new FileInputStream(journalFile);
+                    final StandardRecordReader reader = new StandardRecordReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 65536)) {
+                    while (reader.nextRecord() != null) {
+                        recordsRead++;
+                    }
+                }
+                final long readNanos = System.nanoTime() - readStart;
+                assertEquals(eventCount, recordsRead);
+
+                System.out.printf("%s: wrote %,d events/sec, read %,d events/sec, %,d bytes%n", compact ? "Compact" : "Standard",
+                    eventCount * TimeUnit.SECONDS.toNanos(1L) / writeNanos, eventCount * TimeUnit.SECONDS.toNanos(1L) / readNanos, journalFile.length());
+
+                FileUtils.deleteFile(journalFile.getParentFile(), true);
+            }
+        }
+    }
 }
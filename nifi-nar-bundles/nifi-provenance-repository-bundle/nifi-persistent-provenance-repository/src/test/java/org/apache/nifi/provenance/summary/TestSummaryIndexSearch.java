@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.summary;
+
+import static org.apache.nifi.provenance.TestUtil.createFlowFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.nifi.provenance.ProvenanceEventBuilder;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.StandardQueryResult;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerms;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSummaryIndexSearch {
+
+    private static final long BASE_TIME = 1000000000L;
+    private static final int EVENTS_PER_FILE = 100;
+
+    private File storageDir;
+    private List<File> eventFiles;
+
+    @Before
+    public void setup() throws IOException {
+        storageDir = new File("target/storage/" + UUID.randomUUID().toString());
+        eventFiles = new ArrayList<>();
+        eventFiles.add(writeEventFile(0L));
+        eventFiles.add(writeEventFile(EVENTS_PER_FILE));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteFile(storageDir, true);
+    }
+
+    private static String getFlowFileUuid(final long flowFile) {
+        return new UUID(0L, flowFile).toString();
+    }
+
+    private ProvenanceEventRecord createEvent(final long eventId) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", eventId + ".txt");
+        attributes.put("uuid", getFlowFileUuid(eventId % 50));
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(BASE_TIME + eventId * 1000L);
+        builder.setEventType(eventId % 2 == 0 ? ProvenanceEventType.RECEIVE : ProvenanceEventType.CREATE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(eventId, 3000L, attributes));
+        builder.setComponentId("Component-" + (eventId % 3));
+        builder.setComponentType("dummy processor");
+        return builder.build();
+    }
+
+    private File writeEventFile(final long firstEventId) throws IOException {
+        final File eventFile = new File(storageDir, firstEventId + ".prov.gz");
+        final EventFileSummaryWriter summaryWriter = new EventFileSummaryWriter(SummaryUtil.getSummaryFile(eventFile));
+
+        // use small blocks so that the events are spread out over many of them
+        try (final RecordWriter writer = RecordWriters.newRecordWriter(eventFile, true, true, 1024, false)) {
+            writer.writeHeader(firstEventId);
+            for (long eventId = firstEventId; eventId < firstEventId + EVENTS_PER_FILE; eventId++) {
+                final ProvenanceEventRecord event = createEvent(eventId);
+                writer.writeRecord(event, eventId);
+                summaryWriter.addEvent(event, eventId, writer.getTocWriter().getCurrentBlockIndex());
+            }
+        }
+
+        summaryWriter.write();
+        return eventFile;
+    }
+
+    private StandardQueryResult search(final Query query) throws IOException {
+        final List<Path> allLogFiles = new ArrayList<>();
+        for (final File eventFile : eventFiles) {
+            allLogFiles.add(eventFile.toPath());
+        }
+        return new SummaryIndexSearch(eventFiles, allLogFiles, 65536).search(query);
+    }
+
+    @Test
+    public void testReadSummary() throws IOException {
+        final File summaryFile = SummaryUtil.getSummaryFile(eventFiles.get(1));
+        final EventFileSummary summary = EventFileSummary.read(summaryFile, null, null);
+        assertEquals(EVENTS_PER_FILE, summary.getEventCount());
+        assertEquals(EVENTS_PER_FILE, summary.getMinEventId());
+        assertEquals(2 * EVENTS_PER_FILE - 1, summary.getMaxEventId());
+        assertEquals(BASE_TIME + EVENTS_PER_FILE * 1000L, summary.getMinEventTime());
+        assertEquals(BASE_TIME + (2 * EVENTS_PER_FILE - 1) * 1000L, summary.getMaxEventTime());
+        assertTrue(summary.getBlockIndex(EVENTS_PER_FILE - 1) > 0);
+
+        for (int i = 0; i < EVENTS_PER_FILE; i++) {
+            assertEquals(EVENTS_PER_FILE + i, summary.getEventId(i));
+        }
+
+        // values are compared without regard to case
+        final BitSet component = summary.getEventsWithComponentId("COMPONENT-1");
+        assertEquals(34, component.cardinality());
+        assertEquals(50, summary.getEventsWithEventType("receive").cardinality());
+        assertTrue(summary.getEventsWithEventType(ProvenanceEventType.DROP.name()).isEmpty());
+
+        final BitSet uuid = summary.getEventsWithFlowFileUuid(getFlowFileUuid(7L).toUpperCase());
+        assertEquals(2, uuid.cardinality());
+        assertTrue(uuid.get(7));
+        assertTrue(uuid.get(57));
+
+        assertEquals(11, summary.getEventsInTimeRange(BASE_TIME + 110000L, BASE_TIME + 120000L).cardinality());
+
+        // a file that is entirely outside of the time range is skipped without reading its columns
+        assertNull(EventFileSummary.read(summaryFile, BASE_TIME + 200000L, null));
+        assertNull(EventFileSummary.read(summaryFile, null, BASE_TIME + 99999L));
+    }
+
+    @Test
+    public void testFlowFileUuidOfRelatedFlowFiles() throws IOException {
+        final File summaryFile = SummaryUtil.getSummaryFile(new File(storageDir, "1000.prov.gz"));
+        final EventFileSummaryWriter summaryWriter = new EventFileSummaryWriter(summaryFile);
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", getFlowFileUuid(1L));
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(BASE_TIME);
+        builder.setEventType(ProvenanceEventType.FORK);
+        builder.fromFlowFile(createFlowFile(1L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        builder.addChildUuid(getFlowFileUuid(2L));
+        builder.addChildUuid(getFlowFileUuid(3L));
+        summaryWriter.addEvent(builder.build(), 1000L, 0);
+
+        final StandardProvenanceEventRecord.Builder receiveBuilder = new StandardProvenanceEventRecord.Builder();
+        receiveBuilder.setEventTime(BASE_TIME);
+        receiveBuilder.setEventType(ProvenanceEventType.RECEIVE);
+        receiveBuilder.fromFlowFile(createFlowFile(1L, 3000L, attributes));
+        receiveBuilder.setComponentId("1234");
+        receiveBuilder.setComponentType("dummy processor");
+        receiveBuilder.setTransitUri("nifi://unit-test");
+        receiveBuilder.setSourceSystemFlowFileIdentifier("urn:nifi:" + getFlowFileUuid(4L));
+        summaryWriter.addEvent(receiveBuilder.build(), 1001L, 0);
+        summaryWriter.write();
+
+        // the event is found by the UUIDs of the FlowFiles that it created, as it is in the Lucene index
+        final EventFileSummary summary = EventFileSummary.read(summaryFile, null, null);
+        assertEquals(2, summary.getEventsWithFlowFileUuid(getFlowFileUuid(1L)).cardinality());
+        assertTrue(summary.getEventsWithFlowFileUuid(getFlowFileUuid(2L)).get(0));
+        assertTrue(summary.getEventsWithFlowFileUuid(getFlowFileUuid(3L)).get(0));
+        assertTrue(summary.getEventsWithFlowFileUuid(getFlowFileUuid(4L)).get(1));
+        assertEquals(1, summary.getEventsWithFlowFileUuid(getFlowFileUuid(4L)).cardinality());
+    }
+
+    @Test
+    public void testSearchComponentInTimeRange() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "Component-1"));
+        query.setStartDate(new Date(BASE_TIME + 50000L));
+        query.setEndDate(new Date(BASE_TIME + 150000L));
+
+        final StandardQueryResult result = search(query);
+        assertEquals(33, result.getTotalHitCount());
+
+        final List<ProvenanceEventRecord> events = result.getMatchingEvents();
+        assertEquals(33, events.size());
+        for (final ProvenanceEventRecord event : events) {
+            assertEquals("Component-1", event.getComponentId());
+            assertEquals(BASE_TIME + event.getEventId() * 1000L, event.getEventTime());
+            assertTrue(event.getEventId() >= 50L && event.getEventId() <= 150L);
+        }
+    }
+
+    @Test
+    public void testSearchReturnsMostRecentEvents() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "RECEIVE"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.FlowFileUUID, getFlowFileUuid(4L)));
+        query.setMaxResults(3);
+
+        // FlowFile 4 is the FlowFile of events 4, 54, 104, and 154, all of which are RECEIVE events
+        final StandardQueryResult result = search(query);
+        assertEquals(4, result.getTotalHitCount());
+
+        final List<ProvenanceEventRecord> events = result.getMatchingEvents();
+        assertEquals(3, events.size());
+        assertEquals(154L, events.get(0).getEventId());
+        assertEquals(104L, events.get(1).getEventId());
+        assertEquals(54L, events.get(2).getEventId());
+        assertEquals(getFlowFileUuid(4L), events.get(2).getFlowFileUuid());
+    }
+
+    @Test
+    public void testSearchWithNoMatches() throws IOException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "Component-9"));
+
+        final StandardQueryResult result = search(query);
+        assertEquals(0, result.getTotalHitCount());
+        assertTrue(result.getMatchingEvents().isEmpty());
+    }
+
+    @Test
+    public void testIsSupported() {
+        final Query supported = new Query(UUID.randomUUID().toString());
+        supported.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        supported.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "SEND"));
+        supported.setStartDate(new Date());
+        assertTrue(SummaryIndexSearch.isSupported(supported));
+
+        final Query wildcard = new Query(UUID.randomUUID().toString());
+        wildcard.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "12?4"));
+        assertFalse(SummaryIndexSearch.isSupported(wildcard));
+
+        final Query otherField = new Query(UUID.randomUUID().toString());
+        otherField.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.TransitURI, "nifi://unit-test"));
+        assertFalse(SummaryIndexSearch.isSupported(otherField));
+
+        final Query fileSize = new Query(UUID.randomUUID().toString());
+        fileSize.setMinFileSize("1 KB");
+        assertFalse(SummaryIndexSearch.isSupported(fileSize));
+    }
+
+    @Test
+    public void testHasSummaries() {
+        assertTrue(SummaryIndexSearch.hasSummaries(eventFiles));
+
+        final List<File> withoutSummary = new ArrayList<>(eventFiles);
+        withoutSummary.add(new File(storageDir, "200.prov.gz"));
+        assertFalse(SummaryIndexSearch.hasSummaries(withoutSummary));
+    }
+}
@@ -35,21 +35,19 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
 
 import org.apache.nifi.events.EventReporter;
-import org.apache.nifi.flowfile.attributes.CoreAttributes;
-import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.lineage.FlowFileLineage;
 import org.apache.nifi.provenance.lineage.Lineage;
 import org.apache.nifi.provenance.lineage.LineageComputationType;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
-import org.apache.nifi.provenance.search.SearchTerm;
 import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.util.IntegerHolder;
+import org.apache.nifi.util.LongHolder;
 import org.apache.nifi.util.NiFiProperties;
 import org.apache.nifi.util.RingBuffer;
 import org.apache.nifi.util.RingBuffer.Filter;
@@ -118,8 +116,12 @@ public class VolatileProvenanceRepository implements ProvenanceEventRepository {
 
     @Override
     public void registerEvent(final ProvenanceEventRecord event) {
-        final long id = idGenerator.getAndIncrement();
-        ringBuffer.add(new IdEnrichedProvEvent(event, id));
+        // assign the ID and add the event in one step, so that the ring buffer holds the events in order of their IDs
+        // and a query page never sees an ID whose event has not yet been added
+        synchronized (ringBuffer) {
+            final long id = idGenerator.getAndIncrement();
+            ringBuffer.add(new IdEnrichedProvEvent(event, id));
+        }
     }
 
     @Override
@@ -200,153 +202,6 @@ public class VolatileProvenanceRepository implements ProvenanceEventRepository {
         return result;
     }
 
-    private Filter<ProvenanceEventRecord> createFilter(final Query query) {
-        return new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                if (query.getStartDate() != null && query.getStartDate().getTime() > event.getEventTime()) {
-                    return false;
-                }
-
-                if (query.getEndDate() != null && query.getEndDate().getTime() < event.getEventTime()) {
-                    return false;
-                }
-
-                if (query.getMaxFileSize() != null) {
-                    final long maxFileSize = DataUnit.parseDataSize(query.getMaxFileSize(), DataUnit.B).longValue();
-                    if (event.getFileSize() > maxFileSize) {
-                        return false;
-                    }
-                }
-
-                if (query.getMinFileSize() != null) {
-                    final long minFileSize = DataUnit.parseDataSize(query.getMinFileSize(), DataUnit.B).longValue();
-                    if (event.getFileSize() < minFileSize) {
-                        return false;
-                    }
-                }
-
-                for (final SearchTerm searchTerm : query.getSearchTerms()) {
-                    final SearchableField searchableField = searchTerm.getSearchableField();
-                    final String searchValue = searchTerm.getValue();
-
-                    if (searchableField.isAttribute()) {
-                        final String attributeName = searchableField.getIdentifier();
-
-                        final String eventAttributeValue = event.getAttributes().get(attributeName);
-
-                        if (searchValue.contains("?") || searchValue.contains("*")) {
-                            if (eventAttributeValue == null || eventAttributeValue.isEmpty()) {
-                                return false;
-                            }
-
-                            final String regex = searchValue.replace("?", ".").replace("*", ".*");
-                            final Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                            if (!pattern.matcher(eventAttributeValue).matches()) {
-                                return false;
-                            }
-                        } else {
-                            if (!searchValue.equalsIgnoreCase(eventAttributeValue)) {
-                                return false;
-                            }
-                        }
-                    } else {
-                        // if FlowFileUUID, search parent & child UUID's also.
-                        if (searchableField.equals(SearchableFields.FlowFileUUID)) {
-                            if (searchValue.contains("?") || searchValue.contains("*")) {
-                                final String regex = searchValue.replace("?", ".").replace("*", ".*");
-                                final Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                                if (pattern.matcher(event.getFlowFileUuid()).matches()) {
-                                    continue;
-                                }
-
-                                boolean found = false;
-                                for (final String uuid : event.getParentUuids()) {
-                                    if (pattern.matcher(uuid).matches()) {
-                                        found = true;
-                                        break;
-                                    }
-                                }
-
-                                for (final String uuid : event.getChildUuids()) {
-                                    if (pattern.matcher(uuid).matches()) {
-                                        found = true;
-                                        break;
-                                    }
-                                }
-
-                                if (found) {
-                                    continue;
-                                }
-                            } else if (event.getFlowFileUuid().equals(searchValue) || event.getParentUuids().contains(searchValue) || event.getChildUuids().contains(searchValue)) {
-                                continue;
-                            }
-
-                            return false;
-                        }
-
-                        final Object fieldValue = getFieldValue(event, searchableField);
-                        if (fieldValue == null) {
-                            return false;
-                        }
-
-                        if (searchValue.contains("?") || searchValue.contains("*")) {
-                            final String regex = searchValue.replace("?", ".").replace("*", ".*");
-                            final Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                            if (!pattern.matcher(String.valueOf(fieldValue)).matches()) {
-                                return false;
-                            }
-                        } else {
-                            if (!searchValue.equalsIgnoreCase(String.valueOf(fieldValue))) {
-                                return false;
-                            }
-                        }
-                    }
-                }
-
-                return true;
-            }
-        };
-    }
-
-    private Object getFieldValue(final ProvenanceEventRecord record, final SearchableField field) {
-        if (SearchableFields.AlternateIdentifierURI.equals(field)) {
-            return record.getAlternateIdentifierUri();
-        }
-        if (SearchableFields.ComponentID.equals(field)) {
-            return record.getComponentId();
-        }
-        if (SearchableFields.Details.equals(field)) {
-            return record.getDetails();
-        }
-        if (SearchableFields.EventTime.equals(field)) {
-            return record.getEventTime();
-        }
-        if (SearchableFields.EventType.equals(field)) {
-            return record.getEventType();
-        }
-        if (SearchableFields.Filename.equals(field)) {
-            return record.getAttributes().get(CoreAttributes.FILENAME.key());
-        }
-        if (SearchableFields.FileSize.equals(field)) {
-            return record.getFileSize();
-        }
-        if (SearchableFields.FlowFileUUID.equals(field)) {
-            return record.getFlowFileUuid();
-        }
-        if (SearchableFields.LineageStartDate.equals(field)) {
-            return record.getLineageStartDate();
-        }
-        if (SearchableFields.Relationship.equals(field)) {
-            return record.getRelationship();
-        }
-        if (SearchableFields.TransitURI.equals(field)) {
-            return record.getTransitUri();
-        }
-
-        return null;
-    }
-
     @Override
     public QuerySubmission submitQuery(final Query query) {
         if (query.getEndDate() != null && query.getStartDate() != null && query.getStartDate().getTime() > query.getEndDate().getTime()) {
@@ -355,18 +210,48 @@ public class VolatileProvenanceRepository implements ProvenanceEventRepository {
 
         if (query.getSearchTerms().isEmpty() && query.getStartDate() == null && query.getEndDate() == null) {
             final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1);
-            queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query), query.getMaxResults(), result));
+            queryExecService.submit(new QueryRunnable(ringBuffer, new QueryFilter(query), query.getMaxResults(), result));
             querySubmissionMap.put(query.getIdentifier(), result);
             return result;
         }
 
         final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1);
         querySubmissionMap.put(query.getIdentifier(), result);
-        queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query), query.getMaxResults(), result));
+        queryExecService.submit(new QueryRunnable(ringBuffer, new QueryFilter(query), query.getMaxResults(), result));
 
         return result;
     }
 
+    @Override
+    public QueryPage getQueryPage(final Query query, final String continuationToken, final int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+
+        final long firstEventId = StandardQueryPage.getFirstEventId(continuationToken);
+        final QueryFilter filter = new QueryFilter(query);
+
+        // the ring buffer holds the events in order of their IDs, from the oldest, so stop as soon as the page is full
+        final List<ProvenanceEventRecord> matches = new ArrayList<>(Math.min(pageSize, ringBuffer.getSize()));
+        final LongHolder nextEventId = new LongHolder(firstEventId);
+        ringBuffer.forEach(new ForEachEvaluator<ProvenanceEventRecord>() {
+            @Override
+            public boolean evaluate(final ProvenanceEventRecord event) {
+                if (event.getEventId() < firstEventId) {
+                    return true;
+                }
+
+                nextEventId.set(event.getEventId() + 1);
+                if (filter.select(event)) {
+                    matches.add(event);
+                }
+                return matches.size() < pageSize;
+            }
+        }, IterationDirection.FORWARD);
+
+        return new StandardQueryPage(matches, nextEventId.get(), matches.size() >= pageSize);
+    }
+
     @Override
     public QuerySubmission retrieveQuerySubmission(final String queryIdentifier) {
         return querySubmissionMap.get(queryIdentifier);
@@ -17,6 +17,8 @@
 package org.apache.nifi.provenance;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -28,6 +30,7 @@ import java.util.UUID;
 
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryPage;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerms;
 import org.apache.nifi.util.NiFiProperties;
@@ -119,6 +122,85 @@ public class TestVolatileProvenanceRepository {
         }
     }
 
+    @Test
+    public void testQueryPages() throws IOException {
+        repo = new VolatileProvenanceRepository();
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", UUID.randomUUID().toString());
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 10; i++) {
+            builder.setEventType(i % 2 == 0 ? ProvenanceEventType.RECEIVE : ProvenanceEventType.SEND);
+            builder.setComponentId(String.valueOf(i % 3));
+            repo.registerEvent(builder.build());
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "RECEIVE"));
+
+        final QueryPage firstPage = repo.getQueryPage(query, null, 3);
+        assertTrue(firstPage.hasMoreResults());
+        assertEquals(3, firstPage.getMatchingEvents().size());
+        assertEquals(0L, firstPage.getMatchingEvents().get(0).getEventId());
+        assertEquals(2L, firstPage.getMatchingEvents().get(1).getEventId());
+        assertEquals(4L, firstPage.getMatchingEvents().get(2).getEventId());
+
+        final QueryPage lastPage = repo.getQueryPage(query, firstPage.getContinuationToken(), 3);
+        assertFalse(lastPage.hasMoreResults());
+        assertEquals(2, lastPage.getMatchingEvents().size());
+        assertEquals(6L, lastPage.getMatchingEvents().get(0).getEventId());
+        assertEquals(8L, lastPage.getMatchingEvents().get(1).getEventId());
+
+        // events that are registered after the last page are found by continuing from it
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        repo.registerEvent(builder.build());
+        final QueryPage laterPage = repo.getQueryPage(query, lastPage.getContinuationToken(), 3);
+        assertFalse(laterPage.hasMoreResults());
+        assertEquals(1, laterPage.getMatchingEvents().size());
+        assertEquals(10L, laterPage.getMatchingEvents().get(0).getEventId());
+
+        final Query componentQuery = new Query(UUID.randomUUID().toString());
+        componentQuery.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1"));
+        componentQuery.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "SEND"));
+        final QueryPage componentPage = repo.getQueryPage(componentQuery, null, 10);
+        assertEquals(2, componentPage.getMatchingEvents().size());
+        assertEquals(1L, componentPage.getMatchingEvents().get(0).getEventId());
+        assertEquals(7L, componentPage.getMatchingEvents().get(1).getEventId());
+    }
+
+    @Test
+    public void testQueryPageByFlowFileUuid() throws IOException {
+        repo = new VolatileProvenanceRepository();
+
+        final String uuid = UUID.randomUUID().toString();
+        final String sourceUuid = UUID.randomUUID().toString();
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", uuid);
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setSourceSystemFlowFileIdentifier("urn:nifi:" + sourceUuid);
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        repo.registerEvent(builder.build());
+
+        // the UUID is matched without regard to case, and the Source System's UUID is matched as well, as in the index
+        for (final String searchValue : new String[] {uuid.toUpperCase(), sourceUuid.toUpperCase(), sourceUuid.substring(0, 8) + "*"}) {
+            final Query query = new Query(UUID.randomUUID().toString());
+            query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.FlowFileUUID, searchValue));
+            assertEquals(1, repo.getQueryPage(query, null, 10).getMatchingEvents().size());
+        }
+    }
+
     private FlowFile createFlowFile(final long id, final long fileSize, final Map<String, String> attributes) {
         final Map<String, String> attrCopy = new HashMap<>(attributes);
 
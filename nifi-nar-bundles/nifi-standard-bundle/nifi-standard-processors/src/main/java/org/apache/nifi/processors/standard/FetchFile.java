@@ -214,7 +214,7 @@ public class FetchFile extends AbstractProcessor {
 
         // import content from file system
         try (final FileInputStream fis = new FileInputStream(file)) {
-            flowFile = session.importFrom(fis, flowFile);
+            flowFile = session.importFrom(fis.getChannel(), flowFile);
         } catch (final IOException ioe) {
             getLogger().error("Could not fetch file {} from file system for {} due to {}; routing to failure", new Object[] {file, flowFile, ioe.toString()}, ioe);
             session.transfer(session.penalize(flowFile), REL_FAILURE);